@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (C) 2020, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.openrefine.benchmark;
+
+import java.text.Normalizer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.refine.clustering.binning.FingerprintKeyer;
+import com.google.refine.clustering.binning.NGramFingerprintKeyer;
+
+/**
+ * Compares the fingerprint keyers with the regular expression based
+ * implementation they replaced, on ASCII and accented names.
+ */
+public class FingerprintKeyerBenchmark {
+
+    static final String[] ASCII_WORDS = { "John", "Smith", "Mary-Ann", "O'Brien", "Co.", "Inc", "& Sons", "Dr." };
+    static final String[] ACCENTED_WORDS = { "Jöhn", "Smíth", "Marie-Anne", "Ørsted", "Straße", "Ça", "Æsir", "Dr." };
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+
+        @Param({ "ascii", "accented" })
+        public String alphabet;
+
+        public FingerprintKeyer fingerprint = new FingerprintKeyer();
+        public NGramFingerprintKeyer ngramFingerprint = new NGramFingerprintKeyer();
+        public String[] names = new String[1024];
+        int next = 0;
+        Random rnd = new Random(1234);
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String[] words = "ascii".equals(alphabet) ? ASCII_WORDS : ACCENTED_WORDS;
+            for (int i = 0; i < names.length; i++) {
+                StringBuilder sb = new StringBuilder(" ");
+                for (int j = 2 + rnd.nextInt(3); j > 0; j--) {
+                    sb.append(words[rnd.nextInt(words.length)]).append(' ');
+                }
+                names[i] = sb.toString();
+            }
+        }
+
+        String nextName() {
+            next = (next + 1) & (names.length - 1);
+            return names[next];
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Fork(1)
+    public void fingerprint(ExecutionPlan plan, Blackhole blackhole) {
+        blackhole.consume(plan.fingerprint.key(plan.nextName()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Fork(1)
+    public void fingerprintLegacy(ExecutionPlan plan, Blackhole blackhole) {
+        blackhole.consume(Legacy.fingerprint(plan.nextName()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Fork(1)
+    public void ngramFingerprint(ExecutionPlan plan, Blackhole blackhole) {
+        blackhole.consume(plan.ngramFingerprint.key(plan.nextName(), 2));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+    @Fork(1)
+    public void ngramFingerprintLegacy(ExecutionPlan plan, Blackhole blackhole) {
+        blackhole.consume(Legacy.ngramFingerprint(plan.nextName(), 2));
+    }
+
+    /**
+     * The regular expression based keyers, as they were before the ASCII fast path.
+     * Only the non-diacritic replacements used by the benchmark data are kept.
+     */
+    static class Legacy {
+        static final Pattern PUNCTCTRL = Pattern.compile("\\p{Punct}|[\\x00-\\x08\\x0E-\\x1F\\x7F\\x80-\\x84\\x86-\\x9F]",
+                Pattern.UNICODE_CHARACTER_CLASS);
+        static final Pattern DIACRITICS = Pattern.compile("[\\p{InCombiningDiacriticalMarks}\\p{IsLm}\\p{IsSk}]+");
+        static final Pattern WHITESPACE = Pattern.compile("\\s+", Pattern.UNICODE_CHARACTER_CLASS);
+        static final Pattern CTRLSPACE = Pattern.compile("\\p{Cntrl}|\\p{Space}", Pattern.UNICODE_CHARACTER_CLASS);
+
+        static String normalize(String s) {
+            s = s.trim().toLowerCase();
+            s = Normalizer.normalize(s, Normalizer.Form.NFKD);
+            s = DIACRITICS.matcher(s).replaceAll("");
+            StringBuffer result = new StringBuffer();
+            for (int i = 0; i < s.length(); i++) {
+                String source = s.substring(i, i + 1);
+                String replace = "ß".equals(source) ? "ss" : "æ".equals(source) ? "ae" : "ø".equals(source) ? "oe" : null;
+                result.append(replace == null ? source : replace);
+            }
+            return PUNCTCTRL.matcher(result.toString()).replaceAll("");
+        }
+
+        static String fingerprint(String s) {
+            return WHITESPACE.splitAsStream(normalize(s)).sorted().distinct().collect(Collectors.joining(" "));
+        }
+
+        static String ngramFingerprint(String s, int size) {
+            String t = CTRLSPACE.matcher(normalize(s)).replaceAll("");
+            return IntStream.rangeClosed(0, t.length() - size)
+                    .mapToObj(i -> t.substring(i, i + size))
+                    .sorted()
+                    .distinct()
+                    .collect(Collectors.joining());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (C) 2020, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package org.openrefine.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.refine.io.BinaryRowFormat;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.ModelException;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.Pool;
+
+/**
+ * Compares saving and loading project rows as JSON lines (the legacy
+ * data.txt format) and in the {@link BinaryRowFormat}.
+ */
+public class ProjectSerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ExecutionPlan {
+
+        @Param({"10000", "100000" })
+        public int rowCount;
+
+        public Project project;
+        public byte[] text;
+        public byte[] textWithoutRows;
+        public byte[] binary;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, ModelException {
+            Random rnd = new Random(1234);
+            project = new Project();
+            for (int i = 0; i < 6; i++) {
+                project.columnModel.addColumn(i, new Column(i, "column " + i), false);
+            }
+            for (int i = 0; i < rowCount; i++) {
+                Row row = new Row(6);
+                row.setCell(0, new Cell("row " + i, null));
+                row.setCell(1, new Cell("category " + rnd.nextInt(50), null));
+                row.setCell(2, new Cell((long) rnd.nextInt(1000000), null));
+                row.setCell(3, new Cell(rnd.nextDouble() * 1000, null));
+                if (rnd.nextBoolean()) {
+                    row.setCell(4, new Cell(rnd.nextBoolean(), null));
+                }
+                row.setCell(5, new Cell("some longer free text value " + rnd.nextLong(), null));
+                project.rows.add(row);
+            }
+            project.update();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            project.saveToOutputStream(out, new Pool());
+            text = out.toByteArray();
+
+            out = new ByteArrayOutputStream();
+            project.saveToOutputStream(out, new Pool(), BinaryRowFormat.ROW_FORMAT);
+            textWithoutRows = out.toByteArray();
+
+            out = new ByteArrayOutputStream();
+            BinaryRowFormat.write(project, out, new Pool());
+            binary = out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public int saveText(ExecutionPlan plan) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plan.text.length);
+        plan.project.saveToOutputStream(out, new Pool());
+        return out.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public int saveBinary(ExecutionPlan plan) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plan.binary.length);
+        Pool pool = new Pool();
+        plan.project.saveToOutputStream(out, pool, BinaryRowFormat.ROW_FORMAT);
+        BinaryRowFormat.write(plan.project, out, pool);
+        return out.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public Project loadText(ExecutionPlan plan) throws Exception {
+        return Project.loadFromInputStream(new ByteArrayInputStream(plan.text), 1L, new Pool());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Fork(1)
+    public Project loadBinary(ExecutionPlan plan) throws Exception {
+        Pool pool = new Pool();
+        return Project.loadFromInputStream(
+                new ByteArrayInputStream(plan.textWithoutRows),
+                (project, format, progress) -> BinaryRowFormat.read(
+                        project, new ByteArrayInputStream(plan.binary), pool, progress),
+                1L, pool);
+    }
+}
@@ -69,6 +69,7 @@ public class JythonEvaluable implements Evaluable {
     }
     
     private final String s_functionName;
+    private final PyFunction _function;
     
     private static PythonInterpreter _engine; 
     
@@ -112,13 +113,15 @@ public class JythonEvaluable implements Evaluable {
         }
 
         _engine.exec(sb.toString());
+        // keep the compiled function, as another expression with the same hash may replace the global
+        _function = (PyFunction) _engine.get(s_functionName);
     }
     
     @Override
     public Object evaluate(Properties bindings) {
         try {
             // call the temporary PyFunction directly
-            Object result = ((PyFunction)_engine.get(s_functionName)).__call__(
+            Object result = _function.__call__(
                 new PyObject[] {
                     Py.java2py( bindings.get("value") ),
                     new JythonHasFieldsWrapper((HasFields) bindings.get("cell"), bindings),
@@ -23,7 +23,9 @@ public class BeiderMorseKeyer extends Keyer {
              * We could also return the entire list but it would make
              * matching harder.
              */
-            return encoder.encode(string).split("\\|")[0];
+            String encoded = encoder.encode(string);
+            int separator = encoded.indexOf('|');
+            return separator < 0 ? encoded : encoded.substring(0, separator);
         } catch (EncoderException e) {
             return string;
         }
@@ -45,6 +45,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.slf4j.Logger;
@@ -57,6 +59,7 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.refine.history.HistoryEntryManager;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
 import com.google.refine.preference.PreferenceStore;
 import com.google.refine.preference.TopList;
 import com.google.refine.util.ParsingUtilities;
@@ -101,6 +104,24 @@ public abstract class ProjectManager {
      */
     transient protected Map<Long, Project> _projects;
 
+    /**
+     *  Estimated heap size of each loaded project, refreshed when the project is loaded
+     *  and after each change. Read and written without holding the manager lock.
+     */
+    transient protected Map<Long, Long> _memoryEstimates = new ConcurrentHashMap<Long, Long>();
+
+    /**
+     *  Logical time of the last access to each loaded project, used to pick the
+     *  least recently used projects when the memory budget is exceeded.
+     */
+    transient protected Map<Long, Long> _projectAccess = new ConcurrentHashMap<Long, Long>();
+    transient protected AtomicLong _accessClock = new AtomicLong();
+
+    /**
+     *  Heap budget in bytes for the rows of all loaded projects.
+     */
+    transient protected long _memoryBudget = getDefaultMemoryBudget();
+
     static public ProjectManager singleton;
 
     protected ProjectManager(){
@@ -123,6 +144,8 @@ public abstract class ProjectManager {
         
         _projects.clear();
         _projectsMetadata.clear();
+        _memoryEstimates.clear();
+        _projectAccess.clear();
     }
 
     /**
@@ -134,6 +157,7 @@ public abstract class ProjectManager {
         synchronized (this) {
             _projects.put(project.id, project);
             _projectsMetadata.put(project.id, projectMetadata);
+            touchProject(project.id);
             if (_projectsTags == null)
                 _projectsTags = new HashMap<String, Integer>();
             String[] tags = projectMetadata.getTags();
@@ -147,6 +171,8 @@ public abstract class ProjectManager {
                 }
             }
         }
+        updateMemoryEstimate(project);
+        enforceMemoryBudget(project.id);
     }
 
     /**
@@ -268,13 +294,7 @@ public abstract class ProjectManager {
                 Project project = _projects.get(id); // don't call getProject() as that will load the project.
 
                 if (project != null) {
-                    boolean hasUnsavedChanges =
-                        metadata.getModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() >= project.getLastSave().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-                    // We use >= instead of just > to avoid the case where a newly created project
-                    // has the same modified and last save times, resulting in the project not getting
-                    // saved at all.
-
-                    if (hasUnsavedChanges) {
+                    if (hasUnsavedChanges(project, metadata)) {
                         long msecsOverdue = startTimeOfSave.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() - project.getLastSave().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
 
                         records.add(new SaveRecord(project, msecsOverdue));
@@ -286,7 +306,7 @@ public abstract class ProjectManager {
                          *  It's been a while since the project was last saved and it hasn't been
                          *  modified. We can safely remove it from the cache to save some memory.
                          */
-                        _projects.remove(id).dispose();
+                        forgetProject(id).dispose();
                     }
                 }
             }
@@ -337,8 +357,130 @@ public abstract class ProjectManager {
                 ProjectMetadata metadata = getProjectMetadata(id);
                 Project project = _projects.get(id);
                 if (project != null && !project.getProcessManager().hasPending() 
-                        && metadata.getModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() < project.getLastSave().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()) {
-                        _projects.remove(id).dispose();
+                        && !hasUnsavedChanges(project, metadata)) {
+                        forgetProject(id).dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether a loaded project has been modified since it was last saved.
+     */
+    protected boolean hasUnsavedChanges(Project project, ProjectMetadata metadata) {
+        // We use >= instead of just > to avoid the case where a newly created project
+        // has the same modified and last save times, resulting in the project not getting
+        // saved at all.
+        return metadata.getModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                >= project.getLastSave().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Removes a project from the in-memory cache, without disposing it.
+     */
+    protected Project forgetProject(long id) {
+        _memoryEstimates.remove(id);
+        _projectAccess.remove(id);
+        return _projects.remove(id);
+    }
+
+    static protected long getDefaultMemoryBudget() {
+        long budgetMB = Long.getLong("refine.projectMemoryBudgetMB", 0);
+        if (budgetMB > 0) {
+            return budgetMB * 1024 * 1024;
+        }
+        return Runtime.getRuntime().maxMemory() / 10 * 6;
+    }
+
+    /**
+     * Gets the heap budget, in bytes, for the rows of all loaded projects.
+     */
+    @JsonIgnore
+    public long getMemoryBudget() {
+        return _memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        _memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Re-estimates the heap size of a loaded project. Called when a project is loaded
+     * and after each change applied to it.
+     */
+    public void updateMemoryEstimate(Project project) {
+        if (_projects.get(project.id) == project) {
+            _memoryEstimates.put(project.id, ProjectMemoryEstimator.estimate(project));
+        }
+    }
+
+    /**
+     * Gets the estimated heap size, in bytes, of each loaded project.
+     */
+    @JsonIgnore
+    public Map<Long, Long> getProjectMemoryEstimates() {
+        return Collections.unmodifiableMap(_memoryEstimates);
+    }
+
+    protected void touchProject(long id) {
+        _projectAccess.put(id, _accessClock.incrementAndGet());
+    }
+
+    /**
+     * Saves and evicts the least recently used projects until the estimated size
+     * of the loaded projects fits in the memory budget. Projects with pending
+     * processes and the project being accessed are never evicted.
+     *
+     * @param keepId
+     *     the project being accessed
+     */
+    protected void enforceMemoryBudget(long keepId) {
+        List<Project> victims = new ArrayList<Project>();
+        Map<Long, Long> stamps = new HashMap<Long, Long>();
+        synchronized (this) {
+            long total = 0;
+            for (long id : _projects.keySet()) {
+                Long estimate = _memoryEstimates.get(id);
+                total += estimate == null ? 0 : estimate;
+            }
+            if (total <= _memoryBudget) {
+                return;
+            }
+
+            List<Long> ids = new ArrayList<Long>(_projects.keySet());
+            Collections.sort(ids, Comparator.comparingLong(id -> _projectAccess.getOrDefault(id, 0L)));
+            for (long id : ids) {
+                if (total <= _memoryBudget) {
+                    break;
+                }
+                Project project = _projects.get(id);
+                if (id == keepId || project == null || project.getProcessManager().hasPending()) {
+                    continue;
+                }
+                Long estimate = _memoryEstimates.get(id);
+                total -= estimate == null ? 0 : estimate;
+                victims.add(project);
+                stamps.put(id, _projectAccess.getOrDefault(id, 0L));
+            }
+        }
+
+        for (Project project : victims) {
+            ProjectMetadata metadata = getProjectMetadata(project.id);
+            if (metadata != null && hasUnsavedChanges(project, metadata)) {
+                try {
+                    saveProject(project);
+                } catch (Exception e) {
+                    logger.warn("Failed to save project " + project.id + " before evicting it", e);
+                }
+            }
+            synchronized (this) {
+                // the project may have been used or changed while we were saving it
+                if (_projects.get(project.id) == project
+                        && stamps.get(project.id).equals(_projectAccess.getOrDefault(project.id, 0L))
+                        && (metadata == null || !hasUnsavedChanges(project, metadata))
+                        && !project.getProcessManager().hasPending()) {
+                    logger.info("Evicting project " + project.id + " from memory");
+                    forgetProject(project.id).dispose();
                 }
             }
         }
@@ -509,17 +651,24 @@ public abstract class ProjectManager {
      *     the project with the matching id, or null if it can't be found
      */
     public Project getProject(long id) {
+        Project project;
         synchronized (this) {
             if (_projects.containsKey(id)) {
+                touchProject(id);
                 return _projects.get(id);
             } else {
-                Project project = loadProject(id);
+                project = loadProject(id);
                 if (project != null) {
                     _projects.put(id, project);                    
+                    touchProject(id);
                 }
-                return project;
             }
         }
+        if (project != null) {
+            updateMemoryEstimate(project);
+            enforceMemoryBudget(id);
+        }
+        return project;
     }
 
     /**
@@ -568,7 +717,7 @@ public abstract class ProjectManager {
      */
     protected void removeProject(long projectID){
         if (_projects.containsKey(projectID)) {
-            _projects.remove(projectID).dispose();
+            forgetProject(projectID).dispose();
         }
         if (_projectsMetadata.containsKey(projectID)) {
             _projectsMetadata.remove(projectID);
@@ -33,24 +33,39 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.refine.browsing.facets.Facet;
+import com.google.refine.browsing.facets.FacetConfig;
+import com.google.refine.browsing.facets.FusableFacet;
 import com.google.refine.browsing.util.ConjunctiveFilteredRecords;
 import com.google.refine.browsing.util.ConjunctiveFilteredRows;
+import com.google.refine.browsing.util.FilterBitmapCache;
 import com.google.refine.browsing.util.FilteredRecordsAsFilteredRows;
+import com.google.refine.browsing.util.ParallelScan;
 import com.google.refine.model.Project;
+import com.google.refine.model.Record;
 import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
 
 /**
  * Faceted browsing engine.
  */
 public class Engine  {
+    final static Logger logger = LoggerFactory.getLogger("engine");
+
     static public enum Mode {
         @JsonProperty("row-based")
         RowBased,
@@ -70,6 +85,16 @@ public class Engine  {
     protected List<Facet> _facets = new LinkedList<Facet>();
     @JsonIgnore
     protected EngineConfig _config = new EngineConfig(Collections.emptyList(), Mode.RowBased);
+    @JsonIgnore
+    protected boolean _singlePass = true;
+    @JsonIgnore
+    protected Map<Facet, Long> _facetTimings = new LinkedHashMap<>();
+    @JsonIgnore
+    protected long _sharedScanTime;
+    @JsonIgnore
+    protected boolean _filterCaching = true;
+    @JsonIgnore
+    protected List<String> _filterCacheKeys = Collections.emptyList();
 
     static public String modeToString(Mode mode) {
         return mode == Mode.RowBased ? MODE_ROW_BASED : MODE_RECORD_BASED;
@@ -92,24 +117,8 @@ public class Engine  {
 
     @JsonIgnore
     public FilteredRows getAllRows() {
-        return new FilteredRows() {
-            @Override
-            public void accept(Project project, RowVisitor visitor) {
-                try {
-                    visitor.start(project);
-
-                    int c = project.rows.size();
-                    for (int rowIndex = 0; rowIndex < c; rowIndex++) {
-                        Row row = project.rows.get(rowIndex);
-                        if (visitor.visit(project, rowIndex, row)) {
-                            break;
-                        }
-                    }
-                } finally {
-                    visitor.end(project);
-                }
-            }
-        };
+        // without any filter, all rows are visited
+        return new ConjunctiveFilteredRows();
     }
 
     @JsonIgnore
@@ -122,9 +131,9 @@ public class Engine  {
             return new FilteredRecordsAsFilteredRows(getFilteredRecords(except));
         } else if (_config.getMode().equals(Mode.RowBased)) {
             ConjunctiveFilteredRows cfr = new ConjunctiveFilteredRows();
-            for (Facet facet : _facets) {
-                if (facet != except) {
-                    RowFilter rowFilter = facet.getRowFilter(_project);
+            for (int i = 0; i < _facets.size(); i++) {
+                if (_facets.get(i) != except) {
+                    RowFilter rowFilter = getRowFilter(i);
                     if (rowFilter != null) {
                         cfr.add(rowFilter);
                     }
@@ -135,23 +144,54 @@ public class Engine  {
         throw new InternalError("Unknown mode.");
     }
 
+    /**
+     * Returns the row filter of the facet at the given position, served from the
+     * {@link FilterBitmapCache} of the project if caching is enabled and the facet
+     * is deterministic.
+     */
+    protected RowFilter getRowFilter(int facetIndex) {
+        RowFilter rowFilter = _facets.get(facetIndex).getRowFilter(_project);
+        String cacheKey = getFilterCacheKey(facetIndex);
+        if (rowFilter != null && cacheKey != null) {
+            rowFilter = FilterBitmapCache.getCache(_project).getRowFilter(_project, cacheKey, rowFilter);
+        }
+        return rowFilter;
+    }
+
+    /**
+     * Same as {@link #getRowFilter(int)}, for records.
+     */
+    protected RecordFilter getRecordFilter(int facetIndex) {
+        RecordFilter recordFilter = _facets.get(facetIndex).getRecordFilter(_project);
+        String cacheKey = getFilterCacheKey(facetIndex);
+        if (recordFilter != null && cacheKey != null) {
+            recordFilter = FilterBitmapCache.getCache(_project).getRecordFilter(_project, cacheKey, recordFilter);
+        }
+        return recordFilter;
+    }
+
+    protected String getFilterCacheKey(int facetIndex) {
+        if (!_filterCaching || _filterCacheKeys.size() != _facets.size()) {
+            return null;
+        }
+        // rows matched by expressions such as now() or random() would go stale
+        if (!_facets.get(facetIndex).isDeterministic()) {
+            return null;
+        }
+        return _filterCacheKeys.get(facetIndex);
+    }
+
+    /**
+     * Enables or disables caching the rows matched by each facet across engines
+     * built for the same project (enabled by default).
+     */
+    public void setFilterCaching(boolean filterCaching) {
+        _filterCaching = filterCaching;
+    }
+
     @JsonIgnore
     public FilteredRecords getAllRecords() {
-        return new FilteredRecords() {
-            @Override
-            public void accept(Project project, RecordVisitor visitor) {
-                try {
-                    visitor.start(project);
-
-                    int c = project.recordModel.getRecordCount();
-                    for (int r = 0; r < c; r++) {
-                        visitor.visit(project, project.recordModel.getRecord(r));
-                    }
-                } finally {
-                    visitor.end(project);
-                }
-            }
-        };
+        return new ConjunctiveFilteredRecords();
     }
 
     @JsonIgnore
@@ -162,9 +202,9 @@ public class Engine  {
     public FilteredRecords getFilteredRecords(Facet except) {
         if (_config.getMode().equals(Mode.RecordBased)) {
             ConjunctiveFilteredRecords cfr = new ConjunctiveFilteredRecords();
-            for (Facet facet : _facets) {
-                if (facet != except) {
-                    RecordFilter recordFilter = facet.getRecordFilter(_project);
+            for (int i = 0; i < _facets.size(); i++) {
+                if (_facets.get(i) != except) {
+                    RecordFilter recordFilter = getRecordFilter(i);
                     if (recordFilter != null) {
                         cfr.add(recordFilter);
                     }
@@ -180,23 +220,321 @@ public class Engine  {
         _facets = config.getFacetConfigs().stream()
                 .map(c -> c.apply(_project))
                 .collect(Collectors.toList());
+        // computed upfront because some facets update their configuration when computed
+        _filterCacheKeys = new ArrayList<>(_facets.size());
+        for (FacetConfig facetConfig : config.getFacetConfigs()) {
+            try {
+                _filterCacheKeys.add(ParsingUtilities.mapper.writeValueAsString(facetConfig));
+            } catch (JsonProcessingException e) {
+                _filterCacheKeys.add(null);
+            }
+        }
+    }
+
+    /**
+     * Enables or disables the computation of all facets in a single scan over the project
+     * (enabled by default). When disabled, each facet is computed with its own scan.
+     */
+    public void setSinglePassFacetComputation(boolean singlePass) {
+        _singlePass = singlePass;
+    }
+
+    /**
+     * @return the time spent computing each facet, in nanoseconds, during the last call
+     *     to {@link #computeFacets()}. When facets are computed in a single pass, the time
+     *     of the shared scan is not attributed to any facet and is available through
+     *     {@link #getSharedScanTime()} instead.
+     */
+    @JsonIgnore
+    public Map<Facet, Long> getFacetTimings() {
+        return _facetTimings;
+    }
+
+    /**
+     * @return the time spent in the scan shared by all facets, in nanoseconds, during the last
+     *     call to {@link #computeFacets()}, or 0 if facets were computed separately.
+     */
+    @JsonIgnore
+    public long getSharedScanTime() {
+        return _sharedScanTime;
     }
 
     public void computeFacets() {
+        _facetTimings.clear();
+        _sharedScanTime = 0;
         if (_config.getMode().equals(Mode.RowBased)) {
-            for (Facet facet : _facets) {
-                FilteredRows filteredRows = getFilteredRows(facet);
+            if (_singlePass) {
+                computeRowFacetsInSinglePass();
+            } else {
+                for (Facet facet : _facets) {
+                    long start = System.nanoTime();
+                    FilteredRows filteredRows = getFilteredRows(facet);
 
-                facet.computeChoices(_project, filteredRows);
+                    facet.computeChoices(_project, filteredRows);
+                    _facetTimings.put(facet, System.nanoTime() - start);
+                }
             }
         } else if (_config.getMode().equals(Mode.RecordBased)) {
-            for (Facet facet : _facets) {
-                FilteredRecords filteredRecords = getFilteredRecords(facet);
+            if (_singlePass) {
+                computeRecordFacetsInSinglePass();
+            } else {
+                for (Facet facet : _facets) {
+                    long start = System.nanoTime();
+                    FilteredRecords filteredRecords = getFilteredRecords(facet);
 
-                facet.computeChoices(_project, filteredRecords);
+                    facet.computeChoices(_project, filteredRecords);
+                    _facetTimings.put(facet, System.nanoTime() - start);
+                }
             }
         } else {
             throw new InternalError("Unknown mode.");
         }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Computed {} facets (shared scan: {} ms, per facet: {} ms)",
+                    _facets.size(), _sharedScanTime / 1000000,
+                    _facetTimings.values().stream().map(t -> t / 1000000).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Evaluates the row filter of each facet once per row, and feeds each row to the
+     * choices visitor of every facet whose peers all accept the row.
+     */
+    protected void computeRowFacetsInSinglePass() {
+        int n = _facets.size();
+        RowFilter[] filters = new RowFilter[n];
+        RowVisitor[] visitors = new RowVisitor[n];
+        for (int i = 0; i < n; i++) {
+            filters[i] = getRowFilter(i);
+        }
+        for (int i = 0; i < n; i++) {
+            Facet facet = _facets.get(i);
+            if (facet instanceof FusableFacet) {
+                long start = System.nanoTime();
+                visitors[i] = ((FusableFacet) facet).getChoicesRowVisitor(_project);
+                _facetTimings.put(facet, System.nanoTime() - start);
+            } else {
+                // facets which do not expose their visitor still get their own scan
+                long start = System.nanoTime();
+                facet.computeChoices(_project, getFilteredRows(facet));
+                _facetTimings.put(facet, System.nanoTime() - start);
+            }
+        }
+
+        long scanStart = System.nanoTime();
+        for (RowVisitor visitor : visitors) {
+            if (visitor != null) {
+                visitor.start(_project);
+            }
+        }
+        try {
+            int c = _project.rows.size();
+            if (canScanInParallel(c, visitors)) {
+                RowVisitor[] merged = ParallelScan.scan(c,
+                        (from, to) -> {
+                            RowVisitor[] split = splitVisitors(visitors);
+                            scanRows(filters, split, from, to);
+                            return split;
+                        },
+                        Engine::mergeVisitors);
+                mergeVisitors(visitors, merged);
+            } else {
+                scanRows(filters, visitors, 0, c);
+            }
+        } finally {
+            _sharedScanTime = System.nanoTime() - scanStart;
+            endVisitors(visitors);
+        }
+    }
+
+    protected void scanRows(RowFilter[] filters, RowVisitor[] visitors, int from, int to) {
+        int n = visitors.length;
+        boolean[] done = new boolean[n];
+        int remaining = 0;
+        for (int i = 0; i < n; i++) {
+            if (visitors[i] != null) {
+                remaining++;
+            } else {
+                done[i] = true;
+            }
+        }
+
+        for (int rowIndex = from; rowIndex < to && remaining > 0; rowIndex++) {
+            Row row = _project.rows.get(rowIndex);
+
+            int rejectedBy = -1;
+            boolean rejectedTwice = false;
+            for (int i = 0; i < n; i++) {
+                if (filters[i] != null && !filters[i].filterRow(_project, rowIndex, row)) {
+                    if (rejectedBy >= 0) {
+                        rejectedTwice = true;
+                        break;
+                    }
+                    rejectedBy = i;
+                }
+            }
+
+            if (rejectedTwice) {
+                continue;
+            } else if (rejectedBy >= 0) {
+                if (!done[rejectedBy] && visitors[rejectedBy].visit(_project, rowIndex, row)) {
+                    done[rejectedBy] = true;
+                    remaining--;
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    if (!done[i] && visitors[i].visit(_project, rowIndex, row)) {
+                        done[i] = true;
+                        remaining--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #computeRowFacetsInSinglePass()}, in records mode.
+     */
+    protected void computeRecordFacetsInSinglePass() {
+        int n = _facets.size();
+        RecordFilter[] filters = new RecordFilter[n];
+        RecordVisitor[] visitors = new RecordVisitor[n];
+        for (int i = 0; i < n; i++) {
+            filters[i] = getRecordFilter(i);
+        }
+        for (int i = 0; i < n; i++) {
+            Facet facet = _facets.get(i);
+            if (facet instanceof FusableFacet) {
+                long start = System.nanoTime();
+                visitors[i] = ((FusableFacet) facet).getChoicesRecordVisitor(_project);
+                _facetTimings.put(facet, System.nanoTime() - start);
+            } else {
+                long start = System.nanoTime();
+                facet.computeChoices(_project, getFilteredRecords(facet));
+                _facetTimings.put(facet, System.nanoTime() - start);
+            }
+        }
+
+        long scanStart = System.nanoTime();
+        for (RecordVisitor visitor : visitors) {
+            if (visitor != null) {
+                visitor.start(_project);
+            }
+        }
+        try {
+            int c = _project.recordModel.getRecordCount();
+            if (canScanInParallel(c, visitors)) {
+                RecordVisitor[] merged = ParallelScan.scan(c,
+                        (from, to) -> {
+                            RecordVisitor[] split = splitVisitors(visitors);
+                            scanRecords(filters, split, from, to);
+                            return split;
+                        },
+                        Engine::mergeVisitors);
+                mergeVisitors(visitors, merged);
+            } else {
+                scanRecords(filters, visitors, 0, c);
+            }
+        } finally {
+            _sharedScanTime = System.nanoTime() - scanStart;
+            endVisitors(visitors);
+        }
+    }
+
+    protected void scanRecords(RecordFilter[] filters, RecordVisitor[] visitors, int from, int to) {
+        int n = visitors.length;
+        boolean[] done = new boolean[n];
+        int remaining = 0;
+        for (int i = 0; i < n; i++) {
+            if (visitors[i] != null) {
+                remaining++;
+            } else {
+                done[i] = true;
+            }
+        }
+
+        for (int r = from; r < to && remaining > 0; r++) {
+            Record record = _project.recordModel.getRecord(r);
+
+            int rejectedBy = -1;
+            boolean rejectedTwice = false;
+            for (int i = 0; i < n; i++) {
+                if (filters[i] != null && !filters[i].filterRecord(_project, record)) {
+                    if (rejectedBy >= 0) {
+                        rejectedTwice = true;
+                        break;
+                    }
+                    rejectedBy = i;
+                }
+            }
+
+            if (rejectedTwice) {
+                continue;
+            } else if (rejectedBy >= 0) {
+                if (!done[rejectedBy] && visitors[rejectedBy].visit(_project, record)) {
+                    done[rejectedBy] = true;
+                    remaining--;
+                }
+            } else {
+                for (int i = 0; i < n; i++) {
+                    if (!done[i] && visitors[i].visit(_project, record)) {
+                        done[i] = true;
+                        remaining--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The shared scan is only run in parallel if all the visitors taking part in it
+     * can be split.
+     */
+    static protected boolean canScanInParallel(int size, Object[] visitors) {
+        boolean any = false;
+        for (Object visitor : visitors) {
+            if (visitor != null) {
+                if (!ParallelScan.canScanInParallel(size, visitor)) {
+                    return false;
+                }
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    @SuppressWarnings("unchecked")
+    static protected <T> T[] splitVisitors(T[] visitors) {
+        T[] split = visitors.clone();
+        for (int i = 0; i < visitors.length; i++) {
+            if (visitors[i] != null) {
+                split[i] = (T) ((ParallelVisitor) visitors[i]).split();
+            }
+        }
+        return split;
+    }
+
+    static protected <T> T[] mergeVisitors(T[] first, T[] second) {
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] != null) {
+                ((ParallelVisitor) first[i]).merge((ParallelVisitor) second[i]);
+            }
+        }
+        return first;
+    }
+
+    protected void endVisitors(Object[] visitors) {
+        for (int i = 0; i < visitors.length; i++) {
+            if (visitors[i] != null) {
+                Facet facet = _facets.get(i);
+                long start = System.nanoTime();
+                if (visitors[i] instanceof RowVisitor) {
+                    ((RowVisitor) visitors[i]).end(_project);
+                } else {
+                    ((RecordVisitor) visitors[i]).end(_project);
+                }
+                _facetTimings.put(facet, _facetTimings.get(facet) + System.nanoTime() - start);
+            }
+        }
     }
 }
@@ -0,0 +1,71 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.browsing;
+
+/**
+ * Interface for row or record visitors whose work can be split across threads. Each
+ * thread visits a contiguous range of rows (or records) with its own copy of the visitor,
+ * obtained with {@link #split()}, and the copies are then merged back in the order of
+ * their ranges. Only the original visitor gets its start() and end() methods called.
+ * 
+ * Parallel visitors are expected to visit all the rows they are given: aborting the
+ * visitation early only stops the range being visited by the copy which requested it.
+ */
+public interface ParallelVisitor {
+
+    /**
+     * Tells whether {@link #split()} returns a visitor, without building one. This is
+     * checked before choosing to scan in parallel, so it should be cheap.
+     * 
+     * @return false if this visitor cannot be used from several threads
+     */
+    default public boolean isSplittable() {
+        return true;
+    }
+
+    /**
+     * @return a visitor with the same configuration as this one and no accumulated
+     *     results, or null if this visitor is not splittable
+     */
+    public ParallelVisitor split();
+
+    /**
+     * Adds the results accumulated by a visitor returned by {@link #split()} to the
+     * results of this one. The other visitor has visited rows or records which come
+     * after those visited by this visitor.
+     * 
+     * @param other
+     */
+    public void merge(ParallelVisitor other);
+}
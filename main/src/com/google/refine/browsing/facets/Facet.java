@@ -45,6 +45,15 @@ import com.google.refine.model.Project;
 public interface Facet  {
     public RowFilter getRowFilter(Project project);
     
+    /**
+     * Tells whether the filter of this facet matches the same rows for as long as the
+     * project does not change, so that the matched rows can be cached. Facets which
+     * evaluate expressions are only deterministic if their expressions are pure.
+     */
+    default public boolean isDeterministic() {
+        return false;
+    }
+    
     public RecordFilter getRecordFilter(Project project);
     
     public void computeChoices(Project project, FilteredRows filteredRows);
@@ -47,18 +47,23 @@ import com.google.refine.browsing.DecoratedValue;
 import com.google.refine.browsing.FilteredRecords;
 import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RecordFilter;
+import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.filters.AllRowsRecordFilter;
 import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionEqualRowFilter;
 import com.google.refine.browsing.util.ExpressionNominalValueGrouper;
 import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.ExpressionOptimizer;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
+import com.google.refine.model.columnar.ColumnVector;
 
-public class ListFacet implements Facet {
+public class ListFacet implements FusableFacet {
     public static final String ERR_TOO_MANY_CHOICES = "Too many choices";
     
     /**
@@ -264,21 +269,49 @@ public class ListFacet implements Facet {
         }
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return _eval == null || ExpressionOptimizer.isPure(_eval);
+    }
+
     @Override
     public RowFilter getRowFilter(Project project) {
-        return 
-            _eval == null || 
+        if (_eval == null || 
             _errorMessage != null ||
-            (_config.selection.size() == 0 && !_config.selectBlank && !_config.selectError) ? 
-                null :
-                new ExpressionEqualRowFilter(
-                    _eval, 
-                    _config.columnName,
-                    _cellIndex, 
-                    createMatches(), 
-                    _config.selectBlank, 
-                    _config.selectError,
-                    _config.invert);
+            (_config.selection.size() == 0 && !_config.selectBlank && !_config.selectError)) {
+            return null;
+        }
+        Column column = getCellValueColumn(project);
+        if (column != null) {
+            return new ExpressionEqualRowFilter(
+                _eval, 
+                _config.columnName,
+                _cellIndex, 
+                createMatches(), 
+                _config.selectBlank, 
+                _config.selectError,
+                _config.invert,
+                column.getValueIndex(project));
+        } else {
+            return new ExpressionEqualRowFilter(
+                _eval, 
+                _config.columnName,
+                _cellIndex, 
+                createMatches(), 
+                _config.selectBlank, 
+                _config.selectError,
+                _config.invert);
+        }
+    }
+    
+    /**
+     * @return the facet column if the facet expression simply returns the cell value,
+     *      in which case the column's value index and vector can be used instead of
+     *      evaluating the expression; null otherwise
+     */
+    protected Column getCellValueColumn(Project project) {
+        return _cellIndex >= 0 && ExpressionUtils.isCellValueExpression(_config.expression) ?
+                project.columnModel.getColumnByCellIndex(_cellIndex) : null;
     }
     
     @Override
@@ -292,26 +325,42 @@ public class ListFacet implements Facet {
 
     @Override
     public void computeChoices(Project project, FilteredRows filteredRows) {
-        if (_eval != null && _errorMessage == null) {
-            ExpressionNominalValueGrouper grouper = 
-                new ExpressionNominalValueGrouper(_eval, _config.columnName, _cellIndex);
-            
-            filteredRows.accept(project, grouper);
-            
-            postProcessGrouper(grouper);
+        RowVisitor visitor = getChoicesRowVisitor(project);
+        if (visitor != null) {
+            filteredRows.accept(project, visitor);
         }
     }
     
     @Override
     public void computeChoices(Project project, FilteredRecords filteredRecords) {
-        if (_eval != null && _errorMessage == null) {
-            ExpressionNominalValueGrouper grouper = 
-                new ExpressionNominalValueGrouper(_eval, _config.columnName, _cellIndex);
-            
-            filteredRecords.accept(project, grouper);
-            
-            postProcessGrouper(grouper);
+        RecordVisitor visitor = getChoicesRecordVisitor(project);
+        if (visitor != null) {
+            filteredRecords.accept(project, visitor);
+        }
+    }
+    
+    @Override
+    public RowVisitor getChoicesRowVisitor(Project project) {
+        return createGrouper(project);
+    }
+    
+    @Override
+    public RecordVisitor getChoicesRecordVisitor(Project project) {
+        return createGrouper(project);
+    }
+    
+    protected ExpressionNominalValueGrouper createGrouper(Project project) {
+        if (_eval == null || _errorMessage != null) {
+            return null;
         }
+        Column column = getCellValueColumn(project);
+        ColumnVector vector = column == null ? null : ColumnVector.get(project, column);
+        return new ExpressionNominalValueGrouper(_eval, _config.columnName, _cellIndex, vector) {
+            @Override
+            public void end(Project project) {
+                postProcessGrouper(this);
+            }
+        };
     }
     
     protected void postProcessGrouper(ExpressionNominalValueGrouper grouper) {
@@ -41,9 +41,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.refine.browsing.FilteredRecords;
 import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RecordFilter;
+import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionNumberComparisonRowFilter;
+import com.google.refine.browsing.util.ColumnVectorRowEvaluable;
 import com.google.refine.browsing.util.ExpressionBasedRowEvaluable;
 import com.google.refine.browsing.util.ExpressionNumericValueBinner;
 import com.google.refine.browsing.util.NumericBinIndex;
@@ -51,12 +54,15 @@ import com.google.refine.browsing.util.NumericBinRecordIndex;
 import com.google.refine.browsing.util.NumericBinRowIndex;
 import com.google.refine.browsing.util.RowEvaluable;
 import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.ExpressionOptimizer;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
+import com.google.refine.model.columnar.ColumnVector;
 
-public class RangeFacet implements Facet {
+public class RangeFacet implements FusableFacet {
     
     public static final String ERR_NO_NUMERIC_VALUE_PRESENT = "No numeric value present.";
     
@@ -292,6 +298,11 @@ public class RangeFacet implements Facet {
         }
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return _eval == null || ExpressionOptimizer.isPure(_eval);
+    }
+
     @Override
     public RowFilter getRowFilter(Project project) {
         if (_eval != null && _errorMessage == null && _config._selected) {
@@ -316,6 +327,22 @@ public class RangeFacet implements Facet {
 
     @Override
     public void computeChoices(Project project, FilteredRows filteredRows) {
+        RowVisitor visitor = getChoicesRowVisitor(project);
+        if (visitor != null) {
+            filteredRows.accept(project, visitor);
+        }
+    }
+    
+    @Override
+    public void computeChoices(Project project, FilteredRecords filteredRecords) {
+        RecordVisitor visitor = getChoicesRecordVisitor(project);
+        if (visitor != null) {
+            filteredRecords.accept(project, visitor);
+        }
+    }
+    
+    @Override
+    public RowVisitor getChoicesRowVisitor(Project project) {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
             
@@ -329,16 +356,13 @@ public class RangeFacet implements Facet {
             
             retrieveDataFromBaseBinIndex(index);
             
-            ExpressionNumericValueBinner binner = 
-                new ExpressionNumericValueBinner(rowEvaluable, index);
-            
-            filteredRows.accept(project, binner);
-            retrieveDataFromBinner(binner);
+            return createBinner(rowEvaluable, index);
         }
+        return null;
     }
     
     @Override
-    public void computeChoices(Project project, FilteredRecords filteredRecords) {
+    public RecordVisitor getChoicesRecordVisitor(Project project) {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
             
@@ -352,16 +376,27 @@ public class RangeFacet implements Facet {
             
             retrieveDataFromBaseBinIndex(index);
             
-            ExpressionNumericValueBinner binner = 
-                new ExpressionNumericValueBinner(rowEvaluable, index);
-            
-            filteredRecords.accept(project, binner);
-            
-            retrieveDataFromBinner(binner);
+            return createBinner(rowEvaluable, index);
         }
+        return null;
+    }
+    
+    protected ExpressionNumericValueBinner createBinner(RowEvaluable rowEvaluable, NumericBinIndex index) {
+        return new ExpressionNumericValueBinner(rowEvaluable, index) {
+            @Override
+            public void end(Project project) {
+                retrieveDataFromBinner(this);
+            }
+        };
     }
     
     protected RowEvaluable getRowEvaluable(Project project) {
+        Column column = ExpressionUtils.isCellValueExpression(_config._expression) ?
+                project.columnModel.getColumnByCellIndex(_cellIndex) : null;
+        ColumnVector vector = column == null ? null : ColumnVector.get(project, column);
+        if (vector != null) {
+            return new ColumnVectorRowEvaluable(vector, _cellIndex);
+        }
         return new ExpressionBasedRowEvaluable(_config._columnName, _cellIndex, _eval);
     }
     
@@ -54,7 +54,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.refine.browsing.FilteredRecords;
 import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RecordFilter;
+import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.DualExpressionsNumberComparisonRowFilter;
 import com.google.refine.browsing.util.ExpressionBasedRowEvaluable;
@@ -64,10 +66,11 @@ import com.google.refine.browsing.util.NumericBinRowIndex;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.ExpressionOptimizer;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 
-public class ScatterplotFacet implements Facet {
+public class ScatterplotFacet implements FusableFacet {
 
     public static final int LIN = 0;
     public static final int LOG = 1;
@@ -385,6 +388,12 @@ public class ScatterplotFacet implements Facet {
         
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return (eval_x == null || ExpressionOptimizer.isPure(eval_x))
+                && (eval_y == null || ExpressionOptimizer.isPure(eval_y));
+    }
+
     @Override
     public RowFilter getRowFilter(Project project) {
         if (config.isSelected() && 
@@ -419,64 +428,61 @@ public class ScatterplotFacet implements Facet {
 
     @Override
     public void computeChoices(Project project, FilteredRows filteredRows) {
-        if (eval_x != null && eval_y != null && errorMessage_x == null && errorMessage_y == null) {
-            Column column_x = project.columnModel.getColumnByCellIndex(columnIndex_x);
-            NumericBinIndex index_x = getBinIndex(project, column_x, eval_x, config.expression_x, "row-based");
-            
-            Column column_y = project.columnModel.getColumnByCellIndex(columnIndex_y);
-            NumericBinIndex index_y = getBinIndex(project, column_y, eval_y, config.expression_y, "row-based");
-
-            retrieveDataFromBinIndices(index_x, index_y);
-            
-            if (IMAGE_URI) {
-                if (index_x.isNumeric() && index_y.isNumeric()) {
-                    ScatterplotDrawingRowVisitor drawer = new ScatterplotDrawingRowVisitor(
-                      columnIndex_x, columnIndex_y, min_x, max_x, min_y, max_y, 
-                      config.size, config.dim_x, config.dim_y, config.rotation, config.dot, config.getColor()
-                    );
-                    filteredRows.accept(project, drawer);
-                 
-                    try {
-                        image = serializeImage(drawer.getImage());
-                    } catch (IOException e) {
-                        logger.warn("Exception caught while generating the image", e);
-                    }
-                } else {
-                    image = EMPTY_IMAGE;
-                }
-            }
+        RowVisitor visitor = getChoicesRowVisitor(project);
+        if (visitor != null) {
+            filteredRows.accept(project, visitor);
         }
     }
     
     @Override
     public void computeChoices(Project project, FilteredRecords filteredRecords) {
+        RecordVisitor visitor = getChoicesRecordVisitor(project);
+        if (visitor != null) {
+            filteredRecords.accept(project, visitor);
+        }
+    }
+    
+    @Override
+    public RowVisitor getChoicesRowVisitor(Project project) {
+        return createDrawer(project, "row-based");
+    }
+    
+    @Override
+    public RecordVisitor getChoicesRecordVisitor(Project project) {
+        return createDrawer(project, "record-based");
+    }
+    
+    protected ScatterplotDrawingRowVisitor createDrawer(Project project, String mode) {
         if (eval_x != null && eval_y != null && errorMessage_x == null && errorMessage_y == null) {
             Column column_x = project.columnModel.getColumnByCellIndex(columnIndex_x);
-            NumericBinIndex index_x = getBinIndex(project, column_x, eval_x, config.expression_x, "record-based");
+            NumericBinIndex index_x = getBinIndex(project, column_x, eval_x, config.expression_x, mode);
             
             Column column_y = project.columnModel.getColumnByCellIndex(columnIndex_y);
-            NumericBinIndex index_y = getBinIndex(project, column_y, eval_y, config.expression_y, "record-based");
+            NumericBinIndex index_y = getBinIndex(project, column_y, eval_y, config.expression_y, mode);
             
             retrieveDataFromBinIndices(index_x, index_y);
             
             if (IMAGE_URI) {
                 if (index_x.isNumeric() && index_y.isNumeric()) {
-                    ScatterplotDrawingRowVisitor drawer = new ScatterplotDrawingRowVisitor(
+                    return new ScatterplotDrawingRowVisitor(
                       columnIndex_x, columnIndex_y, min_x, max_x, min_y, max_y, 
                       config.size, config.dim_x, config.dim_y, config.rotation, config.dot, config.getColor()
-                    );
-                    filteredRecords.accept(project, drawer);
-                 
-                    try {
-                        image = serializeImage(drawer.getImage());
-                    } catch (IOException e) {
-                        logger.warn("Exception caught while generating the image", e);
-                    }
+                    ) {
+                        @Override
+                        public void end(Project project) {
+                            try {
+                                ScatterplotFacet.this.image = serializeImage(getImage());
+                            } catch (IOException e) {
+                                logger.warn("Exception caught while generating the image", e);
+                            }
+                        }
+                    };
                 } else {
                     image = EMPTY_IMAGE;
                 }
             }
         }
+        return null;
     }
     
     protected void retrieveDataFromBinIndices(NumericBinIndex index_x, NumericBinIndex index_y) {
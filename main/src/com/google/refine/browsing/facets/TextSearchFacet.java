@@ -39,7 +39,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.refine.browsing.FilteredRecords;
 import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RecordFilter;
+import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionStringComparisonRowFilter;
 import com.google.refine.expr.Evaluable;
@@ -48,7 +50,7 @@ import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 import com.google.refine.util.PatternSyntaxExceptionParser;
 
-public class TextSearchFacet implements Facet {
+public class TextSearchFacet implements FusableFacet {
     
     /*
      *  Configuration
@@ -145,6 +147,11 @@ public class TextSearchFacet implements Facet {
 
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     @Override
     public RowFilter getRowFilter(Project project) {
         if (_query == null || _query.length() == 0 || _cellIndex < 0) {
@@ -187,4 +194,14 @@ public class TextSearchFacet implements Facet {
     public void computeChoices(Project project, FilteredRecords filteredRecords) {
         // nothing to do
     }
+
+    @Override
+    public RowVisitor getChoicesRowVisitor(Project project) {
+        return null;
+    }
+
+    @Override
+    public RecordVisitor getChoicesRecordVisitor(Project project) {
+        return null;
+    }
 }
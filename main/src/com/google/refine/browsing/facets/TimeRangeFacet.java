@@ -40,9 +40,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.refine.browsing.FilteredRecords;
 import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RecordFilter;
+import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.filters.AnyRowRecordFilter;
 import com.google.refine.browsing.filters.ExpressionTimeComparisonRowFilter;
+import com.google.refine.browsing.util.ColumnVectorRowEvaluable;
 import com.google.refine.browsing.util.ExpressionBasedRowEvaluable;
 import com.google.refine.browsing.util.ExpressionTimeValueBinner;
 import com.google.refine.browsing.util.RowEvaluable;
@@ -50,12 +53,15 @@ import com.google.refine.browsing.util.TimeBinIndex;
 import com.google.refine.browsing.util.TimeBinRecordIndex;
 import com.google.refine.browsing.util.TimeBinRowIndex;
 import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.ExpressionOptimizer;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
+import com.google.refine.model.columnar.ColumnVector;
 
-public class TimeRangeFacet implements Facet {
+public class TimeRangeFacet implements FusableFacet {
     /*
      * Configuration, from the client side
      */
@@ -242,6 +248,11 @@ public class TimeRangeFacet implements Facet {
         }
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return _eval == null || ExpressionOptimizer.isPure(_eval);
+    }
+
     @Override
     public RowFilter getRowFilter(Project project) {
         if (_eval != null && _errorMessage == null && _config.isSelected()) {
@@ -260,6 +271,22 @@ public class TimeRangeFacet implements Facet {
 
     @Override
     public void computeChoices(Project project, FilteredRows filteredRows) {
+        RowVisitor visitor = getChoicesRowVisitor(project);
+        if (visitor != null) {
+            filteredRows.accept(project, visitor);
+        }
+    }
+    
+    @Override
+    public void computeChoices(Project project, FilteredRecords filteredRecords) {
+        RecordVisitor visitor = getChoicesRecordVisitor(project);
+        if (visitor != null) {
+            filteredRecords.accept(project, visitor);
+        }
+    }
+    
+    @Override
+    public RowVisitor getChoicesRowVisitor(Project project) {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
             
@@ -272,16 +299,14 @@ public class TimeRangeFacet implements Facet {
             }
             
             retrieveDataFromBaseBinIndex(index);
-                        
-            ExpressionTimeValueBinner binner = new ExpressionTimeValueBinner(rowEvaluable, index);
             
-            filteredRows.accept(project, binner);
-            retrieveDataFromBinner(binner);
+            return createBinner(rowEvaluable, index);
         }
+        return null;
     }
     
     @Override
-    public void computeChoices(Project project, FilteredRecords filteredRecords) {
+    public RecordVisitor getChoicesRecordVisitor(Project project) {
         if (_eval != null && _errorMessage == null) {
             RowEvaluable rowEvaluable = getRowEvaluable(project);
             
@@ -295,12 +320,18 @@ public class TimeRangeFacet implements Facet {
             
             retrieveDataFromBaseBinIndex(index);
             
-            ExpressionTimeValueBinner binner = new ExpressionTimeValueBinner(rowEvaluable, index);
-            
-            filteredRecords.accept(project, binner);
-            
-            retrieveDataFromBinner(binner);
+            return createBinner(rowEvaluable, index);
         }
+        return null;
+    }
+    
+    protected ExpressionTimeValueBinner createBinner(RowEvaluable rowEvaluable, TimeBinIndex index) {
+        return new ExpressionTimeValueBinner(rowEvaluable, index) {
+            @Override
+            public void end(Project project) {
+                retrieveDataFromBinner(this);
+            }
+        };
     }
         
     protected void retrieveDataFromBaseBinIndex(TimeBinIndex index) {
@@ -338,6 +369,12 @@ public class TimeRangeFacet implements Facet {
     }
     
     protected RowEvaluable getRowEvaluable(Project project) {
+        Column column = ExpressionUtils.isCellValueExpression(_config._expression) ?
+                project.columnModel.getColumnByCellIndex(_cellIndex) : null;
+        ColumnVector vector = column == null ? null : ColumnVector.get(project, column);
+        if (vector != null) {
+            return new ColumnVectorRowEvaluable(vector, _cellIndex);
+        }
         return new ExpressionBasedRowEvaluable(_config._columnName, _cellIndex, _eval);
     }
 }
@@ -33,6 +33,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.filters;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Properties;
 
@@ -44,6 +45,7 @@ import com.google.refine.expr.util.JsonValueConverter;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
+import com.google.refine.model.ValueIndex;
 
 /**
  * Judge if a row matches by evaluating a given expression on the row, based on a particular
@@ -63,6 +65,11 @@ public class ExpressionEqualRowFilter implements RowFilter {
     final protected boolean         _selectError;
     final protected boolean         _invert;
     
+    // rows matched by this filter, when the expression returns the cell value and
+    // they can be looked up in the value index of the column; null otherwise
+    protected BitSet                _matchedRows;
+    protected int                   _indexedRowCount;
+    
     public ExpressionEqualRowFilter(
         Evaluable evaluable,
         String columnName,
@@ -80,9 +87,34 @@ public class ExpressionEqualRowFilter implements RowFilter {
         _selectError = selectError;
         _invert = invert;
     }
+    
+    /**
+     * Creates a filter on the cell values of a column, whose matching rows are
+     * looked up in the value index of that column.
+     */
+    public ExpressionEqualRowFilter(
+        Evaluable evaluable,
+        String columnName,
+        int cellIndex, 
+        Object[] matches, 
+        boolean selectBlank, 
+        boolean selectError,
+        boolean invert,
+        ValueIndex valueIndex
+    ) {
+        this(evaluable, columnName, cellIndex, matches, selectBlank, selectError, invert);
+        _indexedRowCount = valueIndex.getRowCount();
+        _matchedRows = valueIndex.getRows(matches, selectBlank, selectError);
+        if (invert) {
+            _matchedRows.flip(0, _indexedRowCount);
+        }
+    }
 
     @Override
     public boolean filterRow(Project project, int rowIndex, Row row) {
+        if (_matchedRows != null && rowIndex < _indexedRowCount) {
+            return _matchedRows.get(rowIndex);
+        }
         return _invert ?
                 internalInvertedFilterRow(project, rowIndex, row) :
                 internalFilterRow(project, rowIndex, row);
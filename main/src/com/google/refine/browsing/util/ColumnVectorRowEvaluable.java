@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.browsing.util;
+
+import java.util.Properties;
+
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.model.columnar.ColumnVector;
+
+/**
+ * Evaluates to the cell value of a column by reading it from the vector of that
+ * column, which is equivalent to but cheaper than evaluating the "value" expression.
+ */
+public class ColumnVectorRowEvaluable implements RowEvaluable {
+    final protected ColumnVector _vector;
+    final protected int _cellIndex;
+    
+    public ColumnVectorRowEvaluable(ColumnVector vector, int cellIndex) {
+        _vector = vector;
+        _cellIndex = cellIndex;
+    }
+
+    @Override
+    public Object eval(Project project, int rowIndex, Row row, Properties bindings) {
+        return rowIndex < _vector.size() ? _vector.get(rowIndex) : row.getCellValue(_cellIndex);
+    }
+}
@@ -37,6 +37,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import com.google.refine.browsing.FilteredRecords;
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RecordFilter;
 import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.model.Project;
@@ -44,6 +45,9 @@ import com.google.refine.model.Record;
 
 /**
  * Encapsulate logic for visiting records that match all given record filters.
+ * 
+ * Visitors implementing {@link ParallelVisitor} visit large projects in parallel,
+ * on the common fork/join pool.
  */
 public class ConjunctiveFilteredRecords implements FilteredRecords {
     final protected List<RecordFilter> _recordFilters = new LinkedList<RecordFilter>();
@@ -58,19 +62,38 @@ public class ConjunctiveFilteredRecords implements FilteredRecords {
             visitor.start(project);
 
             int c = project.recordModel.getRecordCount();
-            for (int r = 0; r < c; r++) {
-                Record record = project.recordModel.getRecord(r);
-                if (matchRecord(project, record)) {
-                    if (visitor.visit(project, record)) {
-                        return;
-                    }
-                }
+            if (ParallelScan.canScanInParallel(c, visitor)) {
+                ParallelVisitor parallelVisitor = (ParallelVisitor) visitor;
+                ParallelVisitor merged = ParallelScan.scan(c,
+                        (from, to) -> {
+                            ParallelVisitor split = parallelVisitor.split();
+                            visitRecords(project, (RecordVisitor) split, from, to);
+                            return split;
+                        },
+                        (first, second) -> {
+                            first.merge(second);
+                            return first;
+                        });
+                parallelVisitor.merge(merged);
+            } else {
+                visitRecords(project, visitor, 0, c);
             }
         } finally {
             visitor.end(project);
         }
     }
     
+    protected void visitRecords(Project project, RecordVisitor visitor, int from, int to) {
+        for (int r = from; r < to; r++) {
+            Record record = project.recordModel.getRecord(r);
+            if (matchRecord(project, record)) {
+                if (visitor.visit(project, record)) {
+                    return;
+                }
+            }
+        }
+    }
+    
     protected boolean matchRecord(Project project, Record record) {
         for (RecordFilter recordFilter : _recordFilters) {
             if (!recordFilter.filterRecord(project, record)) {
@@ -37,6 +37,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RowFilter;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.model.Project;
@@ -45,6 +46,9 @@ import com.google.refine.model.Row;
 /**
  * Encapsulate logic for visiting rows that match all give row filters. Also visit
  * context rows and dependent rows if configured so.
+ * 
+ * Visitors implementing {@link ParallelVisitor} visit large projects in parallel,
+ * on the common fork/join pool.
  */
 public class ConjunctiveFilteredRows implements FilteredRows {
     final protected List<RowFilter> _rowFilters = new LinkedList<RowFilter>();
@@ -59,19 +63,38 @@ public class ConjunctiveFilteredRows implements FilteredRows {
             visitor.start(project);
 
             int c = project.rows.size();
-            for (int rowIndex = 0; rowIndex < c; rowIndex++) {
-                Row row = project.rows.get(rowIndex);
-                if (matchRow(project, rowIndex, row)) {
-                    if (visitRow(project, visitor, rowIndex, row)) {
-                        break;
-                    }
-                }
+            if (ParallelScan.canScanInParallel(c, visitor)) {
+                ParallelVisitor parallelVisitor = (ParallelVisitor) visitor;
+                ParallelVisitor merged = ParallelScan.scan(c,
+                        (from, to) -> {
+                            ParallelVisitor split = parallelVisitor.split();
+                            visitRows(project, (RowVisitor) split, from, to);
+                            return split;
+                        },
+                        (first, second) -> {
+                            first.merge(second);
+                            return first;
+                        });
+                parallelVisitor.merge(merged);
+            } else {
+                visitRows(project, visitor, 0, c);
             }
         } finally {
             visitor.end(project);
         }
     }
     
+    protected void visitRows(Project project, RowVisitor visitor, int from, int to) {
+        for (int rowIndex = from; rowIndex < to; rowIndex++) {
+            Row row = project.rows.get(rowIndex);
+            if (matchRow(project, rowIndex, row)) {
+                if (visitRow(project, visitor, rowIndex, row)) {
+                    break;
+                }
+            }
+        }
+    }
+    
     protected boolean visitRow(Project project, RowVisitor visitor, int rowIndex, Row row) {
         return visitor.visit(project, rowIndex, row);
     }
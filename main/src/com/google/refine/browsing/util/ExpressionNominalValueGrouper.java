@@ -41,6 +41,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import com.google.refine.browsing.DecoratedValue;
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.browsing.facets.NominalFacetChoice;
@@ -50,13 +51,14 @@ import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
 import com.google.refine.model.Row;
+import com.google.refine.model.columnar.ColumnVector;
 import com.google.refine.util.StringUtils;
 
 /**
  * Visit matched rows or records and group them into facet choices based on the values computed
  * from a given expression.
  */
-public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor {
+public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor, ParallelVisitor {
     static public class IndexedNominalFacetChoice extends NominalFacetChoice {
         int _latestIndex;
 
@@ -72,6 +74,7 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
     final protected Evaluable   _evaluable;
     final protected String      _columnName;
     final protected int         _cellIndex;
+    final protected ColumnVector _vector; // the cell values, when the expression is just "value"
 
     /*
      * Computed results
@@ -87,9 +90,19 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
     protected boolean hasError;
 
     public ExpressionNominalValueGrouper(Evaluable evaluable, String columnName, int cellIndex) {
+        this(evaluable, columnName, cellIndex, null);
+    }
+
+    /**
+     * @param vector
+     *      the vector of the column, from which values are read instead of evaluating
+     *      the expression; only valid if the expression returns the cell value
+     */
+    public ExpressionNominalValueGrouper(Evaluable evaluable, String columnName, int cellIndex, ColumnVector vector) {
         _evaluable = evaluable;
         _columnName = columnName;
         _cellIndex = cellIndex;
+        _vector = vector;
     }
 
     @Override
@@ -102,6 +115,29 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
         // nothing to do
     }
 
+    @Override
+    public ParallelVisitor split() {
+        return new ExpressionNominalValueGrouper(_evaluable, _columnName, _cellIndex, _vector);
+    }
+
+    @Override
+    public void merge(ParallelVisitor other) {
+        ExpressionNominalValueGrouper grouper = (ExpressionNominalValueGrouper) other;
+        for (Map.Entry<Object, IndexedNominalFacetChoice> entry : grouper.choices.entrySet()) {
+            IndexedNominalFacetChoice otherChoice = entry.getValue();
+            IndexedNominalFacetChoice choice = choices.get(entry.getKey());
+            if (choice != null) {
+                // the other grouper visited later rows, so no row is counted twice
+                choice.count += otherChoice.count;
+                choice._latestIndex = Math.max(choice._latestIndex, otherChoice._latestIndex);
+            } else {
+                choices.put(entry.getKey(), otherChoice);
+            }
+        }
+        blankCount += grouper.blankCount;
+        errorCount += grouper.errorCount;
+    }
+
     @Override
     public boolean visit(Project project, int rowIndex, Row row) {
         hasError = false;
@@ -144,7 +180,8 @@ public class ExpressionNominalValueGrouper implements RowVisitor, RecordVisitor
     }
 
     protected void visitRow(Project project, int rowIndex, Row row, Properties bindings, int index) {
-        Object value = evalRow(project, rowIndex, row, bindings);
+        Object value = _vector != null && rowIndex < _vector.size() ?
+                _vector.get(rowIndex) : evalRow(project, rowIndex, row, bindings);
         if (value != null) {
             if (value.getClass().isArray()) {
                 Object[] a = (Object[]) value;
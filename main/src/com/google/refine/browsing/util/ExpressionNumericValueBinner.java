@@ -36,6 +36,7 @@ package com.google.refine.browsing.util;
 import java.util.Collection;
 import java.util.Properties;
 
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.ExpressionUtils;
@@ -47,7 +48,7 @@ import com.google.refine.model.Row;
  * Visit matched rows or records and slot them into bins based on the numbers computed
  * from a given expression.
  */
-public class ExpressionNumericValueBinner implements RowVisitor, RecordVisitor {
+public class ExpressionNumericValueBinner implements RowVisitor, RecordVisitor, ParallelVisitor {
     /*
      * Configuration
      */
@@ -87,6 +88,23 @@ public class ExpressionNumericValueBinner implements RowVisitor, RecordVisitor {
         // nothing to do
     }
     
+    @Override
+    public ParallelVisitor split() {
+        return new ExpressionNumericValueBinner(_rowEvaluable, _index);
+    }
+
+    @Override
+    public void merge(ParallelVisitor other) {
+        ExpressionNumericValueBinner binner = (ExpressionNumericValueBinner) other;
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += binner.bins[i];
+        }
+        numericCount += binner.numericCount;
+        nonNumericCount += binner.nonNumericCount;
+        blankCount += binner.blankCount;
+        errorCount += binner.errorCount;
+    }
+
     @Override
     public boolean visit(Project project, int rowIndex, Row row) {
         resetFlags();
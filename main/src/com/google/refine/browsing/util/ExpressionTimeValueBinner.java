@@ -37,6 +37,7 @@ import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.Properties;
 
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.ExpressionUtils;
@@ -48,7 +49,7 @@ import com.google.refine.model.Row;
  * Visit matched rows or records and slot them into bins based on the date computed
  * from a given expression.
  */
-public class ExpressionTimeValueBinner implements RowVisitor, RecordVisitor {
+public class ExpressionTimeValueBinner implements RowVisitor, RecordVisitor, ParallelVisitor {
 
     /*
      * Configuration
@@ -89,6 +90,23 @@ public class ExpressionTimeValueBinner implements RowVisitor, RecordVisitor {
         // nothing to do
     }
     
+    @Override
+    public ParallelVisitor split() {
+        return new ExpressionTimeValueBinner(_rowEvaluable, _index);
+    }
+
+    @Override
+    public void merge(ParallelVisitor other) {
+        ExpressionTimeValueBinner binner = (ExpressionTimeValueBinner) other;
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += binner.bins[i];
+        }
+        timeCount += binner.timeCount;
+        nonTimeCount += binner.nonTimeCount;
+        blankCount += binner.blankCount;
+        errorCount += binner.errorCount;
+    }
+
     @Override
     public boolean visit(Project project, int rowIndex, Row row) {
         resetFlags();
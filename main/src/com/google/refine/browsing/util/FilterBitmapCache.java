@@ -0,0 +1,215 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.browsing.util;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.IntPredicate;
+
+import com.google.refine.browsing.RecordFilter;
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.model.MemoryEstimable;
+import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
+
+/**
+ * Caches the rows (or records) matched by the filters of facets, keyed by the configuration
+ * of the facet, so that an engine can be rebuilt without evaluating again the expressions of
+ * the facets whose configuration did not change. Filters served from the cache only look up
+ * a bit in the stored bitmap, so the filtered rows are the intersection of those bitmaps.
+ * 
+ * The bitmaps of a project are discarded as soon as its history moves to another entry.
+ */
+public class FilterBitmapCache implements MemoryEstimable {
+    static final protected int MAX_BITMAPS = 64;
+
+    static final protected Map<Project, FilterBitmapCache> s_caches =
+            Collections.synchronizedMap(new WeakHashMap<Project, FilterBitmapCache>());
+
+    static public FilterBitmapCache getCache(Project project) {
+        synchronized (s_caches) {
+            FilterBitmapCache cache = s_caches.get(project);
+            if (cache == null) {
+                cache = new FilterBitmapCache();
+                s_caches.put(project, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @return the cache of the project, or null if none was created yet
+     */
+    static public FilterBitmapCache peekCache(Project project) {
+        return s_caches.get(project);
+    }
+
+    protected long _lastDoneEntryID = -1;
+    protected int _rowCount = -1;
+    protected int _hits;
+    protected int _misses;
+    protected final Map<String, BitSet> _bitmaps = new LinkedHashMap<String, BitSet>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BitSet> eldest) {
+            return size() > MAX_BITMAPS;
+        }
+    };
+
+    /**
+     * Returns a row filter equivalent to the given one, reading the matched rows from
+     * the cache, and computing them with a scan over the project if they are not cached yet.
+     * 
+     * @param project
+     * @param key
+     *      a key which identifies the configuration of the filter
+     * @param rowFilter
+     *      the filter to use to compute the matched rows
+     */
+    public RowFilter getRowFilter(Project project, String key, RowFilter rowFilter) {
+        String fullKey = "row:" + key;
+        long lastDoneEntryID = project.history.getLastDoneEntryID();
+        BitSet bitmap = getBitmap(project, fullKey, lastDoneEntryID);
+        if (bitmap == null) {
+            bitmap = computeBitmap(project.rows.size(),
+                    rowIndex -> rowFilter.filterRow(project, rowIndex, project.rows.get(rowIndex)));
+            putBitmap(project, fullKey, lastDoneEntryID, bitmap);
+        }
+
+        final BitSet matched = bitmap;
+        return (p, rowIndex, row) -> matched.get(rowIndex);
+    }
+
+    /**
+     * Same as {@link #getRowFilter(Project, String, RowFilter)}, for records.
+     */
+    public RecordFilter getRecordFilter(Project project, String key, RecordFilter recordFilter) {
+        String fullKey = "record:" + key;
+        long lastDoneEntryID = project.history.getLastDoneEntryID();
+        BitSet bitmap = getBitmap(project, fullKey, lastDoneEntryID);
+        if (bitmap == null) {
+            bitmap = computeBitmap(project.recordModel.getRecordCount(),
+                    r -> recordFilter.filterRecord(project, project.recordModel.getRecord(r)));
+            putBitmap(project, fullKey, lastDoneEntryID, bitmap);
+        }
+
+        final BitSet matched = bitmap;
+        return (p, record) -> matched.get(record.recordIndex);
+    }
+
+    /**
+     * Computes the indices matched by a filter, in parallel chunks when there are
+     * enough of them. Filters are already run in parallel by the filtered rows and
+     * records, so they are expected to be thread-safe.
+     */
+    static protected BitSet computeBitmap(int size, IntPredicate matcher) {
+        BitSet bitmap = new BitSet(size);
+        if (ParallelScan.canScanInParallel(size)) {
+            ParallelScan.scan(size,
+                    (from, to) -> {
+                        BitSet chunk = new BitSet(to - from);
+                        for (int i = from; i < to; i++) {
+                            if (matcher.test(i)) {
+                                chunk.set(i - from);
+                            }
+                        }
+                        // chunk bounds are not aligned on the words of the bitmap
+                        synchronized (bitmap) {
+                            for (int i = chunk.nextSetBit(0); i >= 0; i = chunk.nextSetBit(i + 1)) {
+                                bitmap.set(from + i);
+                            }
+                        }
+                        return null;
+                    },
+                    (first, second) -> null);
+        } else {
+            for (int i = 0; i < size; i++) {
+                if (matcher.test(i)) {
+                    bitmap.set(i);
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    synchronized public void clear() {
+        _bitmaps.clear();
+        _lastDoneEntryID = -1;
+        _rowCount = -1;
+    }
+
+    @Override
+    synchronized public long estimateMemory() {
+        long size = 0;
+        for (Map.Entry<String, BitSet> entry : _bitmaps.entrySet()) {
+            size += ProjectMemoryEstimator.HASH_ENTRY + ProjectMemoryEstimator.OBJECT_HEADER
+                    + 2 * entry.getKey().length() + entry.getValue().size() / 8;
+        }
+        return size;
+    }
+
+    synchronized public int getHitCount() {
+        return _hits;
+    }
+
+    synchronized public int getMissCount() {
+        return _misses;
+    }
+
+    synchronized protected BitSet getBitmap(Project project, String key, long lastDoneEntryID) {
+        if (lastDoneEntryID != _lastDoneEntryID || project.rows.size() != _rowCount) {
+            _bitmaps.clear();
+            _lastDoneEntryID = lastDoneEntryID;
+            _rowCount = project.rows.size();
+        }
+        BitSet bitmap = _bitmaps.get(key);
+        if (bitmap != null) {
+            _hits++;
+        } else {
+            _misses++;
+        }
+        return bitmap;
+    }
+
+    synchronized protected void putBitmap(Project project, String key, long lastDoneEntryID, BitSet bitmap) {
+        // the project may have changed while we were computing the bitmap
+        if (lastDoneEntryID == _lastDoneEntryID && project.rows.size() == _rowCount) {
+            _bitmaps.put(key, bitmap);
+        }
+    }
+}
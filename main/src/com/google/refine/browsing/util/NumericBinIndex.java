@@ -33,13 +33,14 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.util;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.model.MemoryEstimable;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
 import com.google.refine.model.Row;
 
 /**
@@ -51,8 +52,10 @@ import com.google.refine.model.Row;
  * This class processes all rows rather than just the filtered rows because it
  * needs to compute the base bins of a numeric range facet, which remain unchanged 
  * as the user interacts with the facet.
+ * 
+ * Large projects are scanned in parallel chunks whose results are merged.
  */
-abstract public class NumericBinIndex {
+abstract public class NumericBinIndex implements MemoryEstimable {
     
     protected int _totalValueCount;
     protected int _numbericValueCount;
@@ -66,23 +69,113 @@ abstract public class NumericBinIndex {
     protected int _blankRowCount;
     protected int _errorRowCount;
     
-    protected boolean _hasError = false;
-    protected boolean _hasNonNumeric = false;
-    protected boolean _hasNumeric = false;
-    protected boolean _hasBlank = false;
+    /**
+     * Values and row counts collected over a range of rows or records.
+     */
+    static protected class Accumulator {
+        double[] values = new double[16];
+        int size = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        
+        int totalValueCount;
+        int numericRowCount;
+        int nonNumericRowCount;
+        int blankRowCount;
+        int errorRowCount;
+        
+        boolean hasError = false;
+        boolean hasNonNumeric = false;
+        boolean hasNumeric = false;
+        boolean hasBlank = false;
+        
+        protected void preprocessing() {
+            hasBlank = false;
+            hasError = false;
+            hasNonNumeric = false;
+            hasNumeric = false;
+        }
+        
+        protected void postprocessing() {
+            if (hasError) {
+                errorRowCount++;
+            }
+            if (hasBlank) {
+                blankRowCount++;
+            }
+            if (hasNumeric) {
+                numericRowCount++;
+            }
+            if (hasNonNumeric) {
+                nonNumericRowCount++;
+            }
+        }
+        
+        protected boolean processValue(double v) {
+            if (!Double.isInfinite(v) && !Double.isNaN(v)) {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = v;
+                return true;
+            } else {
+                return false;
+            }
+        }
+        
+        protected Accumulator merge(Accumulator other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, size + other.size);
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            
+            totalValueCount += other.totalValueCount;
+            numericRowCount += other.numericRowCount;
+            nonNumericRowCount += other.nonNumericRowCount;
+            blankRowCount += other.blankRowCount;
+            errorRowCount += other.errorRowCount;
+            return this;
+        }
+    }
+    
+    /**
+     * @return the number of rows or records to iterate over
+     */
+    abstract protected int getCount(Project project);
     
-    abstract protected void iterate(Project project, RowEvaluable rowEvaluable, List<Double> allValues);
+    /**
+     * Processes the rows or records between from (inclusive) and to (exclusive).
+     */
+    abstract protected void iterate(Project project, RowEvaluable rowEvaluable, Accumulator accumulator, int from, int to);
     
     public NumericBinIndex(Project project, RowEvaluable rowEvaluable) {
-        _min = Double.POSITIVE_INFINITY;
-        _max = Double.NEGATIVE_INFINITY;
-        
-        // TODO: An array of doubles would be more memmory efficient - double[] allValues
-        List<Double> allValues = new ArrayList<Double>();
+        int count = getCount(project);
+        Accumulator accumulator;
+        if (ParallelScan.canScanInParallel(count)) {
+            accumulator = ParallelScan.scan(count, (from, to) -> {
+                Accumulator chunk = new Accumulator();
+                iterate(project, rowEvaluable, chunk, from, to);
+                return chunk;
+            }, Accumulator::merge);
+        } else {
+            accumulator = new Accumulator();
+            iterate(project, rowEvaluable, accumulator, 0, count);
+        }
         
-        iterate(project, rowEvaluable, allValues);
+        _totalValueCount = accumulator.totalValueCount;
+        _numericRowCount = accumulator.numericRowCount;
+        _nonNumericRowCount = accumulator.nonNumericRowCount;
+        _blankRowCount = accumulator.blankRowCount;
+        _errorRowCount = accumulator.errorRowCount;
+        _min = accumulator.min;
+        _max = accumulator.max;
         
-        _numbericValueCount = allValues.size();
+        _numbericValueCount = accumulator.size;
         
         if (_min >= _max) {
             _step = 1;
@@ -122,8 +215,8 @@ abstract public class NumericBinIndex {
         }
         
         _bins = new int[(int) Math.round(binCount)];
-        for (double d : allValues) {
-            int bin = Math.max((int) Math.floor((d - _min) / _step),0);
+        for (int i = 0; i < accumulator.size; i++) {
+            int bin = Math.max((int) Math.floor((accumulator.values[i] - _min) / _step),0);
             _bins[bin]++;
         }
     }
@@ -167,7 +260,7 @@ abstract public class NumericBinIndex {
     protected void processRow(
         Project         project, 
         RowEvaluable    rowEvaluable,
-        List<Double>     allValues,
+        Accumulator     accumulator,
         int             rowIndex,
         Row             row,
         Properties         bindings
@@ -175,98 +268,57 @@ abstract public class NumericBinIndex {
         Object value = rowEvaluable.eval(project, rowIndex, row, bindings);
         
         if (ExpressionUtils.isError(value)) {
-            _hasError = true;
+            accumulator.hasError = true;
         } else if (ExpressionUtils.isNonBlankData(value)) {
             if (value.getClass().isArray()) {
                 Object[] a = (Object[]) value;
                 for (Object v : a) {
-                    _totalValueCount++;
-                    
-                    if (ExpressionUtils.isError(v)) {
-                        _hasError = true;
-                    } else if (ExpressionUtils.isNonBlankData(v)) {
-                        if (v instanceof Number) {
-                            if (processValue(((Number) v).doubleValue(), allValues)) {
-                                _hasNumeric = true;
-                            } else {
-                                _hasError = true;
-                            }
-                        } else {
-                            _hasNonNumeric = true;
-                        }
-                    } else {
-                        _hasBlank = true;
-                    }
+                    processElement(v, accumulator);
                 }
             } else if (value instanceof Collection<?>) {
                 for (Object v : ExpressionUtils.toObjectCollection(value)) {
-                    _totalValueCount++;
-                    
-                    if (ExpressionUtils.isError(v)) {
-                        _hasError = true;
-                    } else if (ExpressionUtils.isNonBlankData(v)) {
-                        if (v instanceof Number) {
-                            if (processValue(((Number) v).doubleValue(), allValues)) {
-                                _hasNumeric = true;
-                            } else {
-                                _hasError = true;
-                            }
-                        } else {
-                            _hasNonNumeric = true;
-                        }
-                    } else {
-                        _hasBlank = true;
-                    }
+                    processElement(v, accumulator);
                 }
             } else {
-                _totalValueCount++;
+                accumulator.totalValueCount++;
                 
                 if (value instanceof Number) {
-                    if (processValue(((Number) value).doubleValue(), allValues)) {
-                        _hasNumeric = true;
+                    if (accumulator.processValue(((Number) value).doubleValue())) {
+                        accumulator.hasNumeric = true;
                     } else {
-                        _hasError = true;
+                        accumulator.hasError = true;
                     }
                 } else {
-                    _hasNonNumeric = true;
+                    accumulator.hasNonNumeric = true;
                 }
             }
         } else {
-            _hasBlank = true;
+            accumulator.hasBlank = true;
         }
     }
     
-    protected void preprocessing() {
-        _hasBlank = false;
-        _hasError = false;
-        _hasNonNumeric = false;
-        _hasNumeric = false;
-    }
-    
-    protected void postprocessing() {
-        if (_hasError) {
-            _errorRowCount++;
-        }
-        if (_hasBlank) {
-            _blankRowCount++;
-        }
-        if (_hasNumeric) {
-            _numericRowCount++;
-        }
-        if (_hasNonNumeric) {
-            _nonNumericRowCount++;
-        }
-    }
-
-    protected boolean processValue(double v, List<Double> allValues) {
-        if (!Double.isInfinite(v) && !Double.isNaN(v)) {
-            _min = Math.min(_min, v);
-            _max = Math.max(_max, v);
-            allValues.add(v);
-            return true;
+    protected void processElement(Object v, Accumulator accumulator) {
+        accumulator.totalValueCount++;
+        
+        if (ExpressionUtils.isError(v)) {
+            accumulator.hasError = true;
+        } else if (ExpressionUtils.isNonBlankData(v)) {
+            if (v instanceof Number) {
+                if (accumulator.processValue(((Number) v).doubleValue())) {
+                    accumulator.hasNumeric = true;
+                } else {
+                    accumulator.hasError = true;
+                }
+            } else {
+                accumulator.hasNonNumeric = true;
+            }
         } else {
-            return false;
+            accumulator.hasBlank = true;
         }
     }
 
+    @Override
+    public long estimateMemory() {
+        return ProjectMemoryEstimator.estimateArray(_bins == null ? 0 : _bins.length, 4);
+    }
 }
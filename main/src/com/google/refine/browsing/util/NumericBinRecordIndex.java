@@ -33,7 +33,6 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.util;
 
-import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.expr.ExpressionUtils;
@@ -46,25 +45,29 @@ public class NumericBinRecordIndex extends NumericBinIndex {
         super(project, rowEvaluable);
     }
 
+    @Override
+    protected int getCount(Project project) {
+        return project.recordModel.getRecordCount();
+    }
+
     @Override
     protected void iterate(
-        Project project, RowEvaluable rowEvaluable, List<Double> allValues) {
+        Project project, RowEvaluable rowEvaluable, Accumulator accumulator, int from, int to) {
         
         Properties bindings = ExpressionUtils.createBindings(project);
-        int count = project.recordModel.getRecordCount();
         
-        for (int r = 0; r < count; r++) {
+        for (int r = from; r < to; r++) {
             Record record = project.recordModel.getRecord(r);
             
-            preprocessing();
+            accumulator.preprocessing();
             
             for (int i = record.fromRowIndex; i < record.toRowIndex; i++) {
                 Row row = project.rows.get(i);
                 
-                processRow(project, rowEvaluable, allValues, i, row, bindings);
+                processRow(project, rowEvaluable, accumulator, i, row, bindings);
             }
             
-            postprocessing();
+            accumulator.postprocessing();
         }
     }
 
@@ -33,7 +33,6 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.util;
 
-import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.expr.ExpressionUtils;
@@ -42,24 +41,28 @@ import com.google.refine.model.Row;
 
 public class NumericBinRowIndex extends NumericBinIndex {
     public NumericBinRowIndex(Project project, RowEvaluable rowEvaluable) {
-        
         super(project, rowEvaluable);
     }
 
+    @Override
+    protected int getCount(Project project) {
+        return project.rows.size();
+    }
+
     @Override
     protected void iterate(
-        Project project, RowEvaluable rowEvaluable, List<Double> allValues) {
+        Project project, RowEvaluable rowEvaluable, Accumulator accumulator, int from, int to) {
         
         Properties bindings = ExpressionUtils.createBindings(project);
         
-        for (int i = 0; i < project.rows.size(); i++) {
+        for (int i = from; i < to; i++) {
             Row row = project.rows.get(i);
             
-            preprocessing();
+            accumulator.preprocessing();
             
-            processRow(project, rowEvaluable, allValues, i, row, bindings);
+            processRow(project, rowEvaluable, accumulator, i, row, bindings);
             
-            postprocessing();
+            accumulator.postprocessing();
         }
     }
 
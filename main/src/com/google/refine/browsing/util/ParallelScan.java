@@ -0,0 +1,129 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.browsing.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+import com.google.refine.browsing.ParallelVisitor;
+
+/**
+ * Fork/join helper which splits a range of row or record indices into chunks, processes
+ * the chunks in a fork/join pool and merges their results in index order.
+ */
+public class ParallelScan {
+    /**
+     * Ranges smaller than this are processed on the calling thread.
+     */
+    static public int MIN_PARALLEL_SIZE = 10000;
+    /**
+     * Size of the chunks which are not split further.
+     */
+    static public int CHUNK_SIZE = 4096;
+    /**
+     * Pool the chunks are processed on.
+     */
+    static protected ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    static public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Changes the pool scans are run on, for instance to bound the number of threads they use.
+     */
+    static public void setPool(ForkJoinPool pool) {
+        ParallelScan.pool = pool;
+    }
+
+    /**
+     * Processes the indices between from (inclusive) and to (exclusive).
+     */
+    public interface RangeProcessor<T> {
+        public T process(int from, int to);
+    }
+
+    /**
+     * @param size
+     *      the number of rows or records to scan
+     * @return whether the scan is large enough to be run in parallel
+     */
+    static public boolean canScanInParallel(int size) {
+        return size >= MIN_PARALLEL_SIZE && pool.getParallelism() > 1;
+    }
+
+    /**
+     * @param size
+     *      the number of rows or records to scan
+     * @param visitor
+     *      the visitor to run
+     * @return whether the scan is large enough to be run in parallel and the visitor can be split
+     */
+    static public boolean canScanInParallel(int size, Object visitor) {
+        return canScanInParallel(size) && visitor instanceof ParallelVisitor && ((ParallelVisitor) visitor).isSplittable();
+    }
+
+    static public <T> T scan(int size, RangeProcessor<T> processor, BinaryOperator<T> merger) {
+        return pool.invoke(new RangeTask<T>(0, size, processor, merger));
+    }
+
+    static protected class RangeTask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        final int _from;
+        final int _to;
+        final RangeProcessor<T> _processor;
+        final BinaryOperator<T> _merger;
+
+        RangeTask(int from, int to, RangeProcessor<T> processor, BinaryOperator<T> merger) {
+            _from = from;
+            _to = to;
+            _processor = processor;
+            _merger = merger;
+        }
+
+        @Override
+        protected T compute() {
+            if (_to - _from <= CHUNK_SIZE) {
+                return _processor.process(_from, _to);
+            }
+            int middle = (_from + _to) >>> 1;
+            RangeTask<T> right = new RangeTask<T>(middle, _to, _processor, _merger);
+            right.fork();
+            T leftResult = new RangeTask<T>(_from, middle, _processor, _merger).compute();
+            return _merger.apply(leftResult, right.join());
+        }
+    }
+}
@@ -33,12 +33,13 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.util;
 
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RecordVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
 
-public class RowVisitorAsRecordVisitor implements RecordVisitor {
+public class RowVisitorAsRecordVisitor implements RecordVisitor, ParallelVisitor {
     final protected RowVisitor _rowVisitor;
     
     public RowVisitorAsRecordVisitor(RowVisitor rowVisitor) {
@@ -64,4 +65,25 @@ public class RowVisitorAsRecordVisitor implements RecordVisitor {
         }
         return false;
     }
+
+    @Override
+    public boolean isSplittable() {
+        return _rowVisitor instanceof ParallelVisitor && ((ParallelVisitor) _rowVisitor).isSplittable();
+    }
+
+    @Override
+    public ParallelVisitor split() {
+        if (_rowVisitor instanceof ParallelVisitor) {
+            ParallelVisitor split = ((ParallelVisitor) _rowVisitor).split();
+            if (split != null) {
+                return new RowVisitorAsRecordVisitor((RowVisitor) split);
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public void merge(ParallelVisitor other) {
+        ((ParallelVisitor) _rowVisitor).merge((ParallelVisitor) ((RowVisitorAsRecordVisitor) other)._rowVisitor);
+    }
 }
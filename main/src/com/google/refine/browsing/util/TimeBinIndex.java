@@ -34,13 +34,14 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.browsing.util;
 
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.model.MemoryEstimable;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
 import com.google.refine.model.Row;
 
 /**
@@ -52,8 +53,10 @@ import com.google.refine.model.Row;
  * This class processes all rows rather than just the filtered rows because it
  * needs to compute the base bins of a temporal range facet, which remain unchanged 
  * as the user interacts with the facet.
+ * 
+ * Like {@link NumericBinIndex}, large projects are scanned in parallel chunks.
  */
-abstract public class TimeBinIndex {
+abstract public class TimeBinIndex implements MemoryEstimable {
     
     protected int _totalValueCount;
     protected int _timeValueCount;
@@ -67,11 +70,6 @@ abstract public class TimeBinIndex {
     protected int _blankRowCount;
     protected int _errorRowCount;
     
-    protected boolean _hasError = false;
-    protected boolean _hasNonTime = false;
-    protected boolean _hasTime = false;
-    protected boolean _hasBlank = false;
-    
     protected long[] steps = { 
             1,                  // msec
             1000,               // sec
@@ -86,17 +84,108 @@ abstract public class TimeBinIndex {
             1000l*31556952l*1000l, // millennium 
     };
                       
-    abstract protected void iterate(Project project, RowEvaluable rowEvaluable, List<Long> allValues);
+    /**
+     * Values and row counts collected over a range of rows or records.
+     */
+    static protected class Accumulator {
+        long[] values = new long[16];
+        int size = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        
+        int totalValueCount;
+        int timeRowCount;
+        int nonTimeRowCount;
+        int blankRowCount;
+        int errorRowCount;
+        
+        boolean hasError = false;
+        boolean hasNonTime = false;
+        boolean hasTime = false;
+        boolean hasBlank = false;
+        
+        protected void preprocessing() {
+            hasBlank = false;
+            hasError = false;
+            hasNonTime = false;
+            hasTime = false;
+        }
+        
+        protected void postprocessing() {
+            if (hasError) {
+                errorRowCount++;
+            }
+            if (hasBlank) {
+                blankRowCount++;
+            }
+            if (hasTime) {
+                timeRowCount++;
+            }
+            if (hasNonTime) {
+                nonTimeRowCount++;
+            }
+        }
+        
+        protected void processValue(long v) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+        
+        protected Accumulator merge(Accumulator other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, size + other.size);
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            
+            totalValueCount += other.totalValueCount;
+            timeRowCount += other.timeRowCount;
+            nonTimeRowCount += other.nonTimeRowCount;
+            blankRowCount += other.blankRowCount;
+            errorRowCount += other.errorRowCount;
+            return this;
+        }
+    }
+    
+    /**
+     * @return the number of rows or records to iterate over
+     */
+    abstract protected int getCount(Project project);
+    
+    /**
+     * Processes the rows or records between from (inclusive) and to (exclusive).
+     */
+    abstract protected void iterate(Project project, RowEvaluable rowEvaluable, Accumulator accumulator, int from, int to);
     
     public TimeBinIndex(Project project, RowEvaluable rowEvaluable) {
-        _min = Long.MAX_VALUE;
-        _max = Long.MIN_VALUE;
-        
-        List<Long> allValues = new ArrayList<Long>();
+        int count = getCount(project);
+        Accumulator accumulator;
+        if (ParallelScan.canScanInParallel(count)) {
+            accumulator = ParallelScan.scan(count, (from, to) -> {
+                Accumulator chunk = new Accumulator();
+                iterate(project, rowEvaluable, chunk, from, to);
+                return chunk;
+            }, Accumulator::merge);
+        } else {
+            accumulator = new Accumulator();
+            iterate(project, rowEvaluable, accumulator, 0, count);
+        }
         
-        iterate(project, rowEvaluable, allValues);
+        _totalValueCount = accumulator.totalValueCount;
+        _timeRowCount = accumulator.timeRowCount;
+        _nonTimeRowCount = accumulator.nonTimeRowCount;
+        _blankRowCount = accumulator.blankRowCount;
+        _errorRowCount = accumulator.errorRowCount;
+        _min = accumulator.min;
+        _max = accumulator.max;
         
-        _timeValueCount = allValues.size();
+        _timeValueCount = accumulator.size;
         
         if (_min >= _max) {
             _step = 1;
@@ -117,8 +206,8 @@ abstract public class TimeBinIndex {
         }
 
         _bins = new int[(int) (diff / _step) + 1];
-        for (long d : allValues) {
-            int bin = (int) Math.max((d - _min) / _step,0);
+        for (int i = 0; i < accumulator.size; i++) {
+            int bin = (int) Math.max((accumulator.values[i] - _min) / _step,0);
             _bins[bin]++;
         }
     }
@@ -162,7 +251,7 @@ abstract public class TimeBinIndex {
     protected void processRow(
         Project         project, 
         RowEvaluable    rowEvaluable,
-        List<Long>     allValues,
+        Accumulator     accumulator,
         int             rowIndex,
         Row             row,
         Properties         bindings
@@ -170,84 +259,51 @@ abstract public class TimeBinIndex {
         Object value = rowEvaluable.eval(project, rowIndex, row, bindings);
         
         if (ExpressionUtils.isError(value)) {
-            _hasError = true;
+            accumulator.hasError = true;
         } else if (ExpressionUtils.isNonBlankData(value)) {
             if (value.getClass().isArray()) {
                 Object[] a = (Object[]) value;
                 for (Object v : a) {
-                    _totalValueCount++;
-                    
-                    if (ExpressionUtils.isError(v)) {
-                        _hasError = true;
-                    } else if (ExpressionUtils.isNonBlankData(v)) {
-                        if (v instanceof OffsetDateTime) {
-                            _hasTime = true;
-                            processValue(((OffsetDateTime) v).toInstant().toEpochMilli(), allValues);
-                        } else {
-                            _hasNonTime = true;
-                        }
-                    } else {
-                        _hasBlank = true;
-                    }
+                    processElement(v, accumulator);
                 }
             } else if (value instanceof Collection<?>) {
                 for (Object v : ExpressionUtils.toObjectCollection(value)) {
-                    _totalValueCount++;
-                    
-                    if (ExpressionUtils.isError(v)) {
-                        _hasError = true;
-                    } else if (ExpressionUtils.isNonBlankData(v)) {
-                        if (v instanceof OffsetDateTime) {
-                            _hasTime = true;
-                            processValue(((OffsetDateTime) v).toInstant().toEpochMilli(), allValues);
-                        } else {
-                            _hasNonTime = true;
-                        }
-                    } else {
-                        _hasBlank = true;
-                    }
+                    processElement(v, accumulator);
                 }
             } else {
-                _totalValueCount++;
+                accumulator.totalValueCount++;
 
                 if (value instanceof OffsetDateTime) {
-                    _hasTime = true;
-                    processValue(((OffsetDateTime) value).toInstant().toEpochMilli(), allValues);
+                    accumulator.hasTime = true;
+                    accumulator.processValue(((OffsetDateTime) value).toInstant().toEpochMilli());
                 } else {
-                    _hasNonTime = true;
+                    accumulator.hasNonTime = true;
                 }
             }
         } else {
-            _hasBlank = true;
+            accumulator.hasBlank = true;
         }
     }
     
-    protected void preprocessing() {
-        _hasBlank = false;
-        _hasError = false;
-        _hasNonTime = false;
-        _hasTime = false;
-    }
-    
-    protected void postprocessing() {
-        if (_hasError) {
-            _errorRowCount++;
-        }
-        if (_hasBlank) {
-            _blankRowCount++;
-        }
-        if (_hasTime) {
-            _timeRowCount++;
-        }
-        if (_hasNonTime) {
-            _nonTimeRowCount++;
+    protected void processElement(Object v, Accumulator accumulator) {
+        accumulator.totalValueCount++;
+        
+        if (ExpressionUtils.isError(v)) {
+            accumulator.hasError = true;
+        } else if (ExpressionUtils.isNonBlankData(v)) {
+            if (v instanceof OffsetDateTime) {
+                accumulator.hasTime = true;
+                accumulator.processValue(((OffsetDateTime) v).toInstant().toEpochMilli());
+            } else {
+                accumulator.hasNonTime = true;
+            }
+        } else {
+            accumulator.hasBlank = true;
         }
     }
 
-    protected void processValue(long v, List<Long> allValues) {
-        _min = Math.min(_min, v);
-        _max = Math.max(_max, v);
-        allValues.add(v);
+    @Override
+    public long estimateMemory() {
+        return ProjectMemoryEstimator.estimateArray(_bins == null ? 0 : _bins.length, 4);
     }
-
 }
@@ -33,7 +33,6 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.browsing.util;
 
-import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.expr.ExpressionUtils;
@@ -41,24 +40,29 @@ import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
 public class TimeBinRowIndex extends TimeBinIndex {
-
     public TimeBinRowIndex(Project project, RowEvaluable rowEvaluable) {
         super(project, rowEvaluable);
     }
 
     @Override
-    protected void iterate(Project project, RowEvaluable rowEvaluable, List<Long> allValues) {
+    protected int getCount(Project project) {
+        return project.rows.size();
+    }
+
+    @Override
+    protected void iterate(
+        Project project, RowEvaluable rowEvaluable, Accumulator accumulator, int from, int to) {
         
         Properties bindings = ExpressionUtils.createBindings(project);
         
-        for (int i = 0; i < project.rows.size(); i++) {
+        for (int i = from; i < to; i++) {
             Row row = project.rows.get(i);
             
-            preprocessing();
+            accumulator.preprocessing();
             
-            processRow(project, rowEvaluable, allValues, i, row, bindings);
+            processRow(project, rowEvaluable, accumulator, i, row, bindings);
             
-            postprocessing();
+            accumulator.postprocessing();
         }
     }
 
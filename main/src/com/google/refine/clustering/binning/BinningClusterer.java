@@ -54,7 +54,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.util.ParallelScan;
 import com.google.refine.clustering.ClusteredEntry;
 import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.ClustererConfig;
@@ -127,13 +129,17 @@ public class BinningClusterer extends Clusterer {
     
     List<Map<String,Integer>> _clusters;
 
-    class BinningRowVisitor implements RowVisitor {
+    /**
+     * Counts the occurrences of each distinct value in the column, so that
+     * each value is keyed only once however many rows it appears in.
+     */
+    class BinningRowVisitor implements RowVisitor, ParallelVisitor {
 
         Keyer _keyer;
         Object[] _params;
         BinningParameters _parameters;
         
-        Map<String,Map<String,Integer>> _map = new HashMap<String,Map<String,Integer>>();
+        Map<String,Integer> _counts = new HashMap<String,Integer>();
         
         public BinningRowVisitor(Keyer k, BinningParameters parameters) {
             _keyer = k;
@@ -162,25 +168,49 @@ public class BinningClusterer extends Clusterer {
             if (cell != null && cell.value != null) {
                 Object v = cell.value;
                 String s = (v instanceof String) ? ((String) v) : v.toString();
-                String key = _keyer.key(s,_params);
-                if (_map.containsKey(key)) {
-                    Map<String,Integer> m = _map.get(key);
-                    if (m.containsKey(s)) {
-                        m.put(s, m.get(s) + 1);
-                    } else {
-                        m.put(s,1);
-                    }
-                } else {
-                    Map<String,Integer> m = new TreeMap<String,Integer>();
-                    m.put(s,1);
-                    _map.put(key, m);
-                }
+                _counts.merge(s, 1, Integer::sum);
             }
             return false;
         }
+
+        @Override
+        public ParallelVisitor split() {
+            return new BinningRowVisitor(_keyer, _parameters);
+        }
+
+        @Override
+        public void merge(ParallelVisitor other) {
+            for (Entry<String,Integer> entry : ((BinningRowVisitor) other)._counts.entrySet()) {
+                _counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
         
+        /**
+         * Keys the distinct values, in parallel for large columns, and groups
+         * them by key.
+         * 
+         * @return the values and their counts, for each key
+         */
         public Map<String,Map<String,Integer>> getMap() {
-            return _map;
+            String[] values = _counts.keySet().toArray(new String[_counts.size()]);
+            String[] keys = new String[values.length];
+            ParallelScan.RangeProcessor<Void> keyRange = (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    keys[i] = _keyer.key(values[i], _params);
+                }
+                return null;
+            };
+            if (ParallelScan.canScanInParallel(values.length)) {
+                ParallelScan.scan(values.length, keyRange, (a, b) -> null);
+            } else {
+                keyRange.process(0, values.length);
+            }
+
+            Map<String,Map<String,Integer>> map = new HashMap<String,Map<String,Integer>>();
+            for (int i = 0; i < values.length; i++) {
+                map.computeIfAbsent(keys[i], k -> new TreeMap<String,Integer>()).put(values[i], _counts.get(values[i]));
+            }
+            return map;
         }
     }
             
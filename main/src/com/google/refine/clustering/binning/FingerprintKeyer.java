@@ -87,13 +87,35 @@ public class FingerprintKeyer extends Keyer {
             .put("ẝ", "s")
             .build();
 
+    // ASCII lookup tables derived from the patterns above, so that ASCII strings
+    // are normalized and split exactly as the patterns would without running them
+    static final boolean[] ASCII_DIACRITICS = asciiTable(DIACRITICS_AND_FRIENDS);
+    static final boolean[] ASCII_PUNCTCTRL = asciiTable(punctctrl);
+    static final boolean[] ASCII_WHITESPACE = asciiTable(WHITESPACE);
+    static final boolean[] ASCII_STRONG = new boolean[128];
+    static {
+        for (int c = 0; c < 128; c++) {
+            ASCII_STRONG[c] = ASCII_DIACRITICS[c] || ASCII_PUNCTCTRL[c];
+        }
+    }
+
+    // the insertion sort of tokens is only used for strings with few of them
+    private static final int MAX_SORTED_TOKENS = 32;
+
 
     @Override
     public String key(String s, Object... o) {
         if (s == null || o !=null && o.length > 0) {
             throw new IllegalArgumentException("Fingerprint keyer accepts a single string parameter");
         }
-        return WHITESPACE.splitAsStream(normalize(s, true)).sorted().distinct().collect(Collectors.joining(" "));
+        s = normalize(s, true);
+        if (isAscii(s)) {
+            String key = asciiFingerprint(s);
+            if (key != null) {
+                return key;
+            }
+        }
+        return WHITESPACE.splitAsStream(s).sorted().distinct().collect(Collectors.joining(" "));
     }
 
     protected String normalize(String s) {
@@ -106,6 +128,10 @@ public class FingerprintKeyer extends Keyer {
             s = s.trim(); // first off, remove whitespace around the string
             s = s.toLowerCase(); // TODO: This is using the default locale. Is that what we want?
         }
+        if (isAscii(s)) {
+            // NFKD and the non-diacritics table leave ASCII unchanged
+            return strip(s, strong ? ASCII_STRONG : ASCII_DIACRITICS);
+        }
         s = stripDiacritics(s);
         s = stripNonDiacritics(s);
         if (strong) {
@@ -130,15 +156,140 @@ public class FingerprintKeyer extends Keyer {
         return str;
     }
 
+    static boolean[] asciiTable(Pattern pattern) {
+        boolean[] table = new boolean[128];
+        for (int c = 0; c < 128; c++) {
+            table[c] = pattern.matcher(String.valueOf((char) c)).matches();
+        }
+        return table;
+    }
+
+    static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the ASCII characters flagged in the table, returning the string
+     * itself when there are none.
+     */
+    static String strip(String s, boolean[] table) {
+        int i = 0;
+        while (i < s.length() && !table[s.charAt(i)]) {
+            i++;
+        }
+        if (i == s.length()) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        sb.append(s, 0, i);
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!table[c]) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Splits an ASCII string on whitespace runs and joins its sorted distinct
+     * tokens, with the same results as {@link Pattern#splitAsStream}: a leading
+     * empty token is kept when another token follows it, and trailing ones are
+     * dropped.
+     * 
+     * @return the fingerprint, or null if the string has too many tokens for
+     *         this method
+     */
+    private static String asciiFingerprint(String s) {
+        int length = s.length();
+        int[] starts = new int[MAX_SORTED_TOKENS];
+        int[] ends = new int[MAX_SORTED_TOKENS];
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            if (count == MAX_SORTED_TOKENS) {
+                return null;
+            }
+            starts[count] = i;
+            while (i < length && !ASCII_WHITESPACE[s.charAt(i)]) {
+                i++;
+            }
+            ends[count++] = i;
+            while (i < length && ASCII_WHITESPACE[s.charAt(i)]) {
+                i++;
+            }
+        }
+        if (count == 0 || (count == 1 && ends[0] == length)) {
+            return s; // no whitespace: the string is its own fingerprint
+        } else if (count == 1 && starts[0] == ends[0]) {
+            return ""; // only whitespace
+        }
+
+        for (int j = 1; j < count; j++) {
+            int start = starts[j];
+            int end = ends[j];
+            int k = j - 1;
+            while (k >= 0 && compare(s, starts[k], ends[k], start, end) > 0) {
+                starts[k + 1] = starts[k];
+                ends[k + 1] = ends[k];
+                k--;
+            }
+            starts[k + 1] = start;
+            ends[k + 1] = end;
+        }
+
+        StringBuilder sb = new StringBuilder(length);
+        for (int j = 0; j < count; j++) {
+            if (j > 0) {
+                if (compare(s, starts[j - 1], ends[j - 1], starts[j], ends[j]) == 0) {
+                    continue;
+                }
+                sb.append(' ');
+            }
+            sb.append(s, starts[j], ends[j]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compares two regions of a string as {@link String#compareTo(String)} compares strings.
+     */
+    static int compare(String s, int start1, int end1, int start2, int end2) {
+        int length = Math.min(end1 - start1, end2 - start2);
+        for (int i = 0; i < length; i++) {
+            char c1 = s.charAt(start1 + i);
+            char c2 = s.charAt(start2 + i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return (end1 - start1) - (end2 - start2);
+    }
+
     // Based on https://stackoverflow.com/a/1453284/167425 by Andreas Petersson
     private static String stripNonDiacritics(String orig) {
-        StringBuffer result = new StringBuffer();
+        StringBuilder result = null;
         for (int i = 0; i < orig.length(); i++) {
-            String source = orig.substring(i, i + 1);
-            String replace = NONDIACRITICS.get(source);
-            result.append(replace == null ? source : replace);
+            char c = orig.charAt(i);
+            String replace = c < 128 ? null : NONDIACRITICS.get(String.valueOf(c));
+            if (replace != null && result == null) {
+                result = new StringBuilder(orig.length() + 8);
+                result.append(orig, 0, i);
+            }
+            if (result != null) {
+                if (replace == null) {
+                    result.append(c);
+                } else {
+                    result.append(replace);
+                }
+            }
         }
-        return result.toString();
+        return result == null ? orig : result.toString();
     }
 
 }
\ No newline at end of file
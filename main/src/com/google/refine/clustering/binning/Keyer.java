@@ -34,6 +34,11 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.clustering.binning;
 
 
+/**
+ * Computes the key under which a string is binned for clustering. A keyer
+ * instance is shared by all the threads computing the keys of a column, so
+ * implementations must be thread-safe.
+ */
 public abstract class Keyer {
 
     public String key(String s) {
@@ -33,6 +33,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.clustering.binning;
 
+import java.util.Arrays;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -49,6 +50,10 @@ import java.util.stream.Stream;
 public class NGramFingerprintKeyer extends FingerprintKeyer {
 
     static final Pattern ctrlspace = Pattern.compile("\\p{Cntrl}|\\p{Space}", Pattern.UNICODE_CHARACTER_CLASS);
+    static final boolean[] ASCII_CTRLSPACE = asciiTable(ctrlspace);
+
+    // n-grams up to this size are sorted as packed 7-bit characters
+    private static final int MAX_PACKED_SIZE = 4;
     
     @Override
     public String key(String s, Object... o) {
@@ -57,10 +62,46 @@ public class NGramFingerprintKeyer extends FingerprintKeyer {
             ngram_size = (Integer) o[0];
         }
         s = normalize(s, true);
+        if (ngram_size > 0 && ngram_size <= MAX_PACKED_SIZE && isAscii(s)) {
+            return asciiNgrams(strip(s, ASCII_CTRLSPACE), ngram_size);
+        }
         s = ctrlspace.matcher(s).replaceAll(""); // then remove all control chars & whitespace
         return sorted_ngrams(s, ngram_size).collect(Collectors.joining());
     }
 
+    /**
+     * Joins the sorted distinct N-grams of an ASCII string. Each N-gram is
+     * packed into an int, seven bits per character, so that sorting the ints
+     * sorts the N-grams.
+     */
+    private static String asciiNgrams(String s, int size) {
+        int count = s.length() - size + 1;
+        if (count <= 0) {
+            return "";
+        }
+        int[] ngrams = new int[count];
+        int packed = 0;
+        int mask = (1 << (7 * size)) - 1;
+        for (int i = 0; i < s.length(); i++) {
+            packed = ((packed << 7) | s.charAt(i)) & mask;
+            if (i >= size - 1) {
+                ngrams[i - size + 1] = packed;
+            }
+        }
+        Arrays.sort(ngrams);
+
+        StringBuilder sb = new StringBuilder(count * size);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && ngrams[i] == ngrams[i - 1]) {
+                continue;
+            }
+            for (int shift = 7 * (size - 1); shift >= 0; shift -= 7) {
+                sb.append((char) ((ngrams[i] >> shift) & 0x7F));
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Generate a stream of sorted unique character N-grams from a string
      * 
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.clustering.knn;
+
+/**
+ * Levenshtein distance with unit costs, comparing characters case-insensitively.
+ * It returns the same values as the Vicino Levenshtein distance, but when given
+ * a threshold it only fills the diagonal band of the edit matrix which can stay
+ * within that threshold, and gives up as soon as a whole row exceeds it.
+ */
+public class BoundedLevenshteinDistance implements SimilarityDistance {
+
+    @Override
+    public double compute(String a, String b) {
+        return distance(a, b, Math.max(a.length(), b.length()));
+    }
+
+    @Override
+    public double compute(String a, String b, double threshold) {
+        if (threshold < 0) {
+            return compute(a, b);
+        }
+        int bound = threshold >= Math.max(a.length(), b.length()) ?
+                Math.max(a.length(), b.length()) : (int) threshold;
+        return distance(a, b, bound);
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    /**
+     * @return the edit distance between a and b if it is at most bound, bound + 1 otherwise
+     */
+    static int distance(String a, String b, int bound) {
+        if (a.length() < b.length()) {
+            String tmp = a;
+            a = b;
+            b = tmp;
+        }
+        int la = a.length();
+        int lb = b.length();
+        if (la - lb > bound) {
+            return bound + 1;
+        }
+        // common prefixes and suffixes do not change the distance
+        int start = 0;
+        while (start < lb && sameChar(a.charAt(start), b.charAt(start))) {
+            start++;
+        }
+        while (lb > start && sameChar(a.charAt(la - 1), b.charAt(lb - 1))) {
+            la--;
+            lb--;
+        }
+        la -= start;
+        lb -= start;
+        if (lb == 0) {
+            return la;
+        }
+
+        char[] ca = toLowerCase(a, start, la);
+        char[] cb = toLowerCase(b, start, lb);
+        int outside = bound + 1;
+        int[] previous = new int[lb + 1];
+        int[] current = new int[lb + 1];
+        for (int j = 0; j <= lb; j++) {
+            previous[j] = Math.min(j, outside);
+        }
+        for (int i = 1; i <= la; i++) {
+            int from = Math.max(1, i - bound);
+            int to = Math.min(lb, i + bound);
+            current[0] = Math.min(i, outside);
+            current[from - 1] = from == 1 ? current[0] : outside;
+            int rowMin = current[from - 1];
+            char c = ca[i - 1];
+            for (int j = from; j <= to; j++) {
+                int d = previous[j - 1] + (c == cb[j - 1] ? 0 : 1);
+                d = Math.min(d, Math.min(previous[j], current[j - 1]) + 1);
+                if (d > outside) {
+                    d = outside;
+                }
+                current[j] = d;
+                if (d < rowMin) {
+                    rowMin = d;
+                }
+            }
+            if (to < lb) {
+                current[to + 1] = outside;
+            }
+            if (rowMin > bound) {
+                return outside;
+            }
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[lb];
+    }
+
+    private static boolean sameChar(char a, char b) {
+        return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+    }
+
+    private static char[] toLowerCase(String s, int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = Character.toLowerCase(s.charAt(offset + i));
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.clustering.knn;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import com.google.refine.browsing.util.ParallelScan;
+
+/**
+ * kNN clusterer which only compares values sharing a block, like the Vicino
+ * NGramClusterer, but which runs the comparisons of the blocks in parallel
+ * and evaluates each pair of values only once, in the first block they share.
+ * 
+ * With n-gram blocking, it returns the same clusters as the Vicino clusterer:
+ * for each value, the set of values within the radius which share one of its
+ * n-grams, when there are any. MinHash blocking trades some recall for smaller
+ * blocks on large columns.
+ */
+public class ParallelBlockingClusterer {
+
+    /**
+     * Assigns values to blocks. Implementations must be thread-safe.
+     */
+    public interface Blocker {
+        /**
+         * @return the distinct keys of the blocks this value belongs to
+         */
+        public Object[] getBlockingKeys(String value);
+    }
+
+    /**
+     * Blocks values by the n-grams of their normalized form, as the Vicino
+     * NGramTokenizer does.
+     */
+    public static class NGramBlocker implements Blocker {
+        static final Pattern extra = Pattern.compile("\\p{Cntrl}|\\p{Punct}");
+        static final Pattern whitespace = Pattern.compile("\\p{Space}+");
+
+        final int _ngramSize;
+
+        public NGramBlocker(int ngramSize) {
+            _ngramSize = ngramSize;
+        }
+
+        static String normalize(String s) {
+            s = extra.matcher(s.trim()).replaceAll("");
+            s = whitespace.matcher(s).replaceAll(" ");
+            return s.toLowerCase();
+        }
+
+        @Override
+        public Object[] getBlockingKeys(String value) {
+            String s = normalize(value);
+            Set<String> ngrams = new LinkedHashSet<>();
+            for (int i = 0; i + _ngramSize <= s.length(); i++) {
+                ngrams.add(s.substring(i, i + _ngramSize));
+            }
+            return ngrams.toArray();
+        }
+    }
+
+    /**
+     * Locality-sensitive blocking: the n-grams of each value are summarized by
+     * bands * rows MinHash signatures, and two values share a block when all
+     * the signatures of one of the bands agree. Values with a Jaccard similarity
+     * J end up in a common block with probability 1 - (1 - J^rows)^bands.
+     */
+    public static class MinHashBlocker implements Blocker {
+        final int _ngramSize;
+        final int _bands;
+        final int _rows;
+        final long[] _seeds;
+
+        public MinHashBlocker(int ngramSize, int bands, int rows) {
+            _ngramSize = ngramSize;
+            _bands = bands;
+            _rows = rows;
+            _seeds = new long[bands * rows];
+            long seed = 0x5DEECE66DL;
+            for (int i = 0; i < _seeds.length; i++) {
+                seed += 0x9E3779B97F4A7C15L;
+                _seeds[i] = mix(seed);
+            }
+        }
+
+        @Override
+        public Object[] getBlockingKeys(String value) {
+            String s = NGramBlocker.normalize(value);
+            if (s.isEmpty()) {
+                return new Object[0];
+            }
+            long[] minima = new long[_seeds.length];
+            Arrays.fill(minima, Long.MAX_VALUE);
+            // values shorter than an n-gram are represented by themselves
+            int last = Math.max(0, s.length() - _ngramSize);
+            for (int i = 0; i <= last; i++) {
+                long h = hash(s, i, Math.min(s.length(), i + _ngramSize));
+                for (int k = 0; k < _seeds.length; k++) {
+                    long m = mix(h ^ _seeds[k]);
+                    if (m < minima[k]) {
+                        minima[k] = m;
+                    }
+                }
+            }
+            Set<Long> keys = new LinkedHashSet<>();
+            for (int band = 0; band < _bands; band++) {
+                long key = mix(band + 1);
+                for (int row = 0; row < _rows; row++) {
+                    key = mix(key ^ minima[band * _rows + row]);
+                }
+                keys.add(key);
+            }
+            return keys.toArray();
+        }
+
+        private static long hash(String s, int from, int to) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = from; i < to; i++) {
+                h = (h ^ s.charAt(i)) * 0x100000001B3L;
+            }
+            return h;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * Growable list of pairs of value indices, packed in longs.
+     */
+    static class Pairs {
+        long[] _pairs = new long[16];
+        int _size = 0;
+
+        void add(int i, int j) {
+            if (_size == _pairs.length) {
+                _pairs = Arrays.copyOf(_pairs, _size * 2);
+            }
+            _pairs[_size++] = ((long) i << 32) | j;
+        }
+
+        Pairs append(Pairs other) {
+            if (_size + other._size > _pairs.length) {
+                _pairs = Arrays.copyOf(_pairs, Math.max(_size + other._size, _size * 2));
+            }
+            System.arraycopy(other._pairs, 0, _pairs, _size, other._size);
+            _size += other._size;
+            return this;
+        }
+    }
+
+    private final SimilarityDistance _distance;
+    private final Blocker _blocker;
+    private final Set<String> _values = new HashSet<>();
+
+    public ParallelBlockingClusterer(SimilarityDistance distance, Blocker blocker) {
+        _distance = distance;
+        _blocker = blocker;
+    }
+
+    public void populate(String s) {
+        _values.add(s);
+    }
+
+    /**
+     * @param radius
+     *      the maximum distance between two values of a cluster, or a negative
+     *      number to group all the values which share a block
+     * @return the clusters, largest first
+     */
+    public List<Set<Serializable>> getClusters(double radius) {
+        String[] values = _values.toArray(new String[_values.size()]);
+        // sorting makes the first value of each pair the one Vicino compares first
+        Arrays.sort(values);
+        int[][] valueBlocks = new int[values.length][];
+        int[][] blocks = buildBlocks(values, valueBlocks);
+
+        ParallelScan.RangeProcessor<Pairs> processor = (from, to) -> {
+            Pairs pairs = new Pairs();
+            for (int b = from; b < to; b++) {
+                int[] block = blocks[b];
+                for (int x = 0; x < block.length; x++) {
+                    for (int y = x + 1; y < block.length; y++) {
+                        int i = block[x];
+                        int j = block[y];
+                        if (firstCommonBlock(valueBlocks[i], valueBlocks[j]) == b
+                                && matches(values[i], values[j], radius)) {
+                            pairs.add(i, j);
+                        }
+                    }
+                }
+            }
+            return pairs;
+        };
+        Pairs pairs = ParallelScan.canScanInParallel(blocks.length) ?
+                ParallelScan.scan(blocks.length, processor, Pairs::append) :
+                processor.process(0, blocks.length);
+
+        return collectClusters(values, pairs);
+    }
+
+    /**
+     * Groups the values by blocking key. Only blocks with at least two values
+     * are returned, and valueBlocks is filled with the sorted indices of the
+     * blocks each value belongs to.
+     */
+    private int[][] buildBlocks(String[] values, int[][] valueBlocks) {
+        Object[][] keys = new Object[values.length][];
+        ParallelScan.RangeProcessor<Void> keyer = (from, to) -> {
+            for (int i = from; i < to; i++) {
+                keys[i] = _blocker.getBlockingKeys(values[i]);
+            }
+            return null;
+        };
+        if (ParallelScan.canScanInParallel(values.length)) {
+            ParallelScan.scan(values.length, keyer, (a, b) -> null);
+        } else {
+            keyer.process(0, values.length);
+        }
+
+        Map<Object, Integer> keyIds = new HashMap<>();
+        int[] keySizes = new int[16];
+        int[][] valueKeys = new int[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            int[] ids = new int[keys[i].length];
+            for (int k = 0; k < ids.length; k++) {
+                Integer id = keyIds.get(keys[i][k]);
+                if (id == null) {
+                    id = keyIds.size();
+                    keyIds.put(keys[i][k], id);
+                    if (id == keySizes.length) {
+                        keySizes = Arrays.copyOf(keySizes, id * 2);
+                    }
+                }
+                ids[k] = id;
+                keySizes[id]++;
+            }
+            valueKeys[i] = ids;
+            keys[i] = null;
+        }
+
+        // renumber the keys shared by several values, in order of first appearance
+        int[] blockIds = new int[keyIds.size()];
+        int blockCount = 0;
+        for (int id = 0; id < blockIds.length; id++) {
+            blockIds[id] = keySizes[id] > 1 ? blockCount++ : -1;
+        }
+        int[][] blocks = new int[blockCount][];
+        int[] filled = new int[blockCount];
+        for (int id = 0; id < blockIds.length; id++) {
+            if (blockIds[id] >= 0) {
+                blocks[blockIds[id]] = new int[keySizes[id]];
+            }
+        }
+        for (int i = 0; i < values.length; i++) {
+            int[] ids = valueKeys[i];
+            int count = 0;
+            for (int k = 0; k < ids.length; k++) {
+                int b = blockIds[ids[k]];
+                if (b >= 0) {
+                    ids[count++] = b;
+                    blocks[b][filled[b]++] = i;
+                }
+            }
+            valueBlocks[i] = Arrays.copyOf(ids, count);
+            Arrays.sort(valueBlocks[i]);
+        }
+        return blocks;
+    }
+
+    private static int firstCommonBlock(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                return a[i];
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(String a, String b, double radius) {
+        if (radius < 0) {
+            return true;
+        }
+        if (_distance.compute(a, b, radius) <= radius) {
+            return true;
+        }
+        return !_distance.isSymmetric() && _distance.compute(b, a, radius) <= radius;
+    }
+
+    private static List<Set<Serializable>> collectClusters(String[] values, Pairs pairs) {
+        int[] degrees = new int[values.length];
+        for (int p = 0; p < pairs._size; p++) {
+            degrees[(int) (pairs._pairs[p] >>> 32)]++;
+            degrees[(int) pairs._pairs[p]]++;
+        }
+        int[][] neighbours = new int[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            neighbours[i] = new int[degrees[i]];
+            degrees[i] = 0;
+        }
+        for (int p = 0; p < pairs._size; p++) {
+            int i = (int) (pairs._pairs[p] >>> 32);
+            int j = (int) pairs._pairs[p];
+            neighbours[i][degrees[i]++] = j;
+            neighbours[j][degrees[j]++] = i;
+        }
+
+        Set<Set<Serializable>> clusters = new HashSet<>();
+        for (int i = 0; i < values.length; i++) {
+            if (neighbours[i].length > 0) {
+                Set<Serializable> cluster = new TreeSet<>();
+                cluster.add(values[i]);
+                for (int j : neighbours[i]) {
+                    cluster.add(values[j]);
+                }
+                clusters.add(cluster);
+            }
+        }
+        List<Set<Serializable>> result = new ArrayList<>(clusters);
+        Collections.sort(result, (a, b) -> b.size() - a.size());
+        return result;
+    }
+}
@@ -41,4 +41,22 @@ public interface SimilarityDistance {
 	 * two arguments are equal, and rise as their differences increase.
 	 */
 	public double compute(String a, String b);
+
+	/**
+	 * Compute the distance between two strings, when only distances up to
+	 * the given threshold are of interest. Implementations can stop early
+	 * and return any value greater than the threshold as soon as they know
+	 * it is exceeded. Distances within the threshold must be exact.
+	 */
+	default double compute(String a, String b, double threshold) {
+		return compute(a, b);
+	}
+
+	/**
+	 * Whether compute(a, b) always equals compute(b, a), in which case
+	 * clusterers only need to evaluate each pair once.
+	 */
+	default boolean isSymmetric() {
+		return false;
+	}
 }
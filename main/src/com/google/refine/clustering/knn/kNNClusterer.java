@@ -34,6 +34,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.clustering.knn;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -41,12 +43,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.refine.browsing.Engine;
@@ -56,13 +61,10 @@ import com.google.refine.clustering.ClusteredEntry;
 import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.ClustererConfig;
 import com.google.refine.model.Cell;
+import com.google.refine.model.EditDistanceIndex;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
-import edu.mit.simile.vicino.clustering.NGramClusterer;
-import edu.mit.simile.vicino.clustering.VPTreeClusterer;
-import edu.mit.simile.vicino.distances.Distance;
-
 public class kNNClusterer extends Clusterer {
     
     public static class kNNClustererConfig extends ClustererConfig {
@@ -116,10 +118,37 @@ public class kNNClusterer extends Clusterer {
     public static class kNNClustererConfigParameters  {
         public static final double defaultRadius = 1.0d;
         public static final int defaultBlockingNgramSize = 6;
+        public static final int defaultMinhashBands = 16;
+        public static final int defaultMinhashRows = 2;
         @JsonProperty("radius")
         public double radius = defaultRadius;
         @JsonProperty("blocking-ngram-size")
         public int blockingNgramSize = defaultBlockingNgramSize;
+        /**
+         * "minhash" to block values by locality-sensitive hashing of their n-grams
+         * rather than by the n-grams themselves. This can miss some clusters.
+         * "index" to look up the Levenshtein neighbours of each value in the edit
+         * distance index of the column rather than blocking them.
+         */
+        @JsonProperty("blocking")
+        @JsonInclude(Include.NON_NULL)
+        public String blocking = null;
+        @JsonProperty("minhash-bands")
+        @JsonInclude(Include.NON_NULL)
+        public Integer minhashBands = null;
+        @JsonProperty("minhash-rows")
+        @JsonInclude(Include.NON_NULL)
+        public Integer minhashRows = null;
+
+        @JsonIgnore
+        public ParallelBlockingClusterer.Blocker getBlocker() {
+            if ("minhash".equals(blocking)) {
+                return new ParallelBlockingClusterer.MinHashBlocker(blockingNgramSize,
+                        minhashBands == null ? defaultMinhashBands : minhashBands,
+                        minhashRows == null ? defaultMinhashRows : minhashRows);
+            }
+            return new ParallelBlockingClusterer.NGramBlocker(blockingNgramSize);
+        }
     }
 
     private SimilarityDistance _distance;
@@ -131,16 +160,18 @@ public class kNNClusterer extends Clusterer {
 
     final static Logger logger = LoggerFactory.getLogger("kNN_clusterer");
 
-    class VPTreeClusteringRowVisitor implements RowVisitor {
+    /**
+     * Looks up the neighbours of each value in the edit distance index of the
+     * column, which is kept up to date across edits, instead of blocking the
+     * values again. This finds all the values within the radius, whether they
+     * share an n-gram or not.
+     */
+    class IndexClusteringRowVisitor implements RowVisitor {
 
-        Distance _distance;
-        kNNClustererConfigParameters _params;
-        VPTreeClusterer _clusterer;
+        int _radius;
         
-        public VPTreeClusteringRowVisitor(Distance d, kNNClustererConfigParameters params) {
-            _distance = d;
-            _clusterer = new VPTreeClusterer(_distance);
-            _params = params;
+        public IndexClusteringRowVisitor(kNNClustererConfigParameters params) {
+            _radius = (int) Math.floor(params.radius);
         }
         
         @Override
@@ -158,45 +189,39 @@ public class kNNClusterer extends Clusterer {
             Cell cell = row.getCell(_colindex);
             if (cell != null && cell.value != null) {
                 Object v = cell.value;
-                String s = (v instanceof String) ? ((String) v) : v.toString();
-                _clusterer.populate(s);
+                String s = (v instanceof String) ? ((String) v) : v.toString().intern();
                 count(s);
             }
             return false;
         }
         
         public List<Set<Serializable>> getClusters() {
-            return _clusterer.getClusters(_params.radius);
+            EditDistanceIndex index = _project.columnModel.getColumnByCellIndex(_colindex)
+                    .getValueIndex(_project).getEditDistanceIndex();
+            Map<Serializable, Set<Serializable>> neighbours = new HashMap<>();
+            for (Serializable v : _counts.keySet()) {
+                for (String u : index.search((String) v, _radius).keySet()) {
+                    // the index covers the whole column, not only the filtered rows
+                    if (!u.equals(v) && _counts.containsKey(u)) {
+                        neighbours.computeIfAbsent(v, k -> new TreeSet<>(Collections.singleton(k))).add(u);
+                        neighbours.computeIfAbsent(u, k -> new TreeSet<>(Collections.singleton(k))).add(v);
+                    }
+                }
+            }
+            List<Set<Serializable>> clusters = new ArrayList<>(new HashSet<>(neighbours.values()));
+            Collections.sort(clusters, (a, b) -> b.size() - a.size());
+            return clusters;
         }
     }
 
     class BlockingClusteringRowVisitor implements RowVisitor {
 
-        SimilarityDistance _distance;
         double _radius = 1.0d;
-        int _blockingNgramSize = 6;
-        HashSet<String> _data;
-        NGramClusterer _clusterer;
-        
-        private class DistanceWrapper extends Distance {
-        	private final SimilarityDistance _d;
-        	
-        	protected DistanceWrapper(SimilarityDistance d) {
-        		_d = d;
-        	}
-
-			@Override
-			public double d(String arg0, String arg1) {
-				return _d.compute(arg0, arg1);
-			}
-        }
+        ParallelBlockingClusterer _clusterer;
         
         public BlockingClusteringRowVisitor(SimilarityDistance _distance2, kNNClustererConfigParameters params) {
-            _distance = _distance2;
-            _data = new HashSet<String>();
-            _blockingNgramSize = params.blockingNgramSize;
             _radius = params.radius;
-            _clusterer = new NGramClusterer(new DistanceWrapper(_distance), _blockingNgramSize);
+            _clusterer = new ParallelBlockingClusterer(_distance2, params.getBlocker());
         }
         
         @Override
@@ -234,12 +259,16 @@ public class kNNClusterer extends Clusterer {
 
     @Override
     public void computeClusters(Engine engine) {
-        //VPTreeClusteringRowVisitor visitor = new VPTreeClusteringRowVisitor(_distance,_config);
-        BlockingClusteringRowVisitor visitor = new BlockingClusteringRowVisitor(_distance,_params);
         FilteredRows filteredRows = engine.getAllFilteredRows();
-        filteredRows.accept(_project, visitor);
-     
-        _clusters = visitor.getClusters();
+        if ("index".equals(_params.blocking) && _distance instanceof BoundedLevenshteinDistance && _params.radius >= 0) {
+            IndexClusteringRowVisitor visitor = new IndexClusteringRowVisitor(_params);
+            filteredRows.accept(_project, visitor);
+            _clusters = visitor.getClusters();
+        } else {
+            BlockingClusteringRowVisitor visitor = new BlockingClusteringRowVisitor(_distance,_params);
+            filteredRows.accept(_project, visitor);
+            _clusters = visitor.getClusters();
+        }
     }
 
     public static class ValuesComparator implements Comparator<Entry<Serializable,Integer>>, Serializable {
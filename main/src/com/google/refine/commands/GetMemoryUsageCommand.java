@@ -0,0 +1,100 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.commands;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.refine.ProjectManager;
+import com.google.refine.ProjectMetadata;
+
+/**
+ * Reports the heap usage of the server along with the estimated size of each
+ * project currently loaded in memory.
+ */
+public class GetMemoryUsageCommand extends Command {
+
+    protected static class ProjectMemoryUsage {
+        @JsonProperty("id")
+        public final long id;
+        @JsonProperty("name")
+        public final String name;
+        @JsonProperty("estimatedBytes")
+        public final long estimatedBytes;
+
+        protected ProjectMemoryUsage(long id, String name, long estimatedBytes) {
+            this.id = id;
+            this.name = name;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    protected static class MemoryUsageResponse {
+        @JsonProperty("maxMemory")
+        public long maxMemory = Runtime.getRuntime().maxMemory();
+        @JsonProperty("totalMemory")
+        public long totalMemory = Runtime.getRuntime().totalMemory();
+        @JsonProperty("freeMemory")
+        public long freeMemory = Runtime.getRuntime().freeMemory();
+        @JsonProperty("usedMemory")
+        public long usedMemory = totalMemory - freeMemory;
+        @JsonProperty("projectMemoryBudget")
+        public long projectMemoryBudget;
+        @JsonProperty("estimatedProjectMemory")
+        public long estimatedProjectMemory;
+        @JsonProperty("projects")
+        public List<ProjectMemoryUsage> projects = new ArrayList<>();
+    }
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        ProjectManager manager = ProjectManager.singleton;
+        MemoryUsageResponse usage = new MemoryUsageResponse();
+        usage.projectMemoryBudget = manager.getMemoryBudget();
+        for (Map.Entry<Long, Long> entry : manager.getProjectMemoryEstimates().entrySet()) {
+            ProjectMetadata metadata = manager.getProjectMetadata(entry.getKey());
+            usage.projects.add(new ProjectMemoryUsage(entry.getKey(),
+                    metadata != null ? metadata.getName() : null, entry.getValue()));
+            usage.estimatedProjectMemory += entry.getValue();
+        }
+        respondJSON(response, usage);
+    }
+}
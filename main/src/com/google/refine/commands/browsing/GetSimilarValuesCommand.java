@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.commands.browsing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.refine.commands.Command;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.EditDistanceIndex;
+import com.google.refine.model.Project;
+import com.google.refine.model.ValueIndex;
+
+/**
+ * Lists the values of a column which are within a small edit distance of a given
+ * value, or of the value of a given cell, using the edit distance index of the column.
+ * This does not modify any state, so it is not protected against CSRF.
+ */
+public class GetSimilarValuesCommand extends Command {
+
+    /**
+     * Largest radius searched. Beyond a few edits, most values of a column
+     * match and the search visits the whole index.
+     */
+    static public int MAX_RADIUS = 4;
+
+    protected static class SimilarValue {
+        @JsonProperty("v")
+        protected final String value;
+        @JsonProperty("c")
+        protected final int count;
+        @JsonProperty("d")
+        protected final int distance;
+
+        protected SimilarValue(String value, int count, int distance) {
+            this.value = value;
+            this.count = count;
+            this.distance = distance;
+        }
+    }
+
+    protected static class SimilarValuesResponse {
+        @JsonProperty("values")
+        protected final List<SimilarValue> values;
+
+        protected SimilarValuesResponse(List<SimilarValue> values) {
+            this.values = values;
+        }
+    }
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        try {
+            Project project = getProject(request);
+            Column column = project.columnModel.getColumnByName(request.getParameter("column"));
+            if (column == null) {
+                throw new Exception("No such column");
+            }
+
+            String value = request.getParameter("value");
+            if (value == null) {
+                int rowIndex = getIntegerParameter(request, "row", -1);
+                if (rowIndex < 0 || rowIndex >= project.rows.size()) {
+                    throw new Exception("No such row");
+                }
+                Cell cell = project.rows.get(rowIndex).getCell(column.getCellIndex());
+                value = cell == null || cell.value == null ? "" : EditDistanceIndex.toText(cell.value);
+            }
+            int radius = Math.max(0, Math.min(MAX_RADIUS, getIntegerParameter(request, "radius", 1)));
+            int limit = getIntegerParameter(request, "limit", 10);
+
+            ValueIndex valueIndex = column.getValueIndex(project);
+            List<SimilarValue> values = new ArrayList<>();
+            for (Entry<String, Integer> entry : valueIndex.getEditDistanceIndex().search(value, radius).entrySet()) {
+                if (!entry.getKey().equals(value)) {
+                    values.add(new SimilarValue(entry.getKey(), valueIndex.countRowsWithText(entry.getKey()), entry.getValue()));
+                }
+            }
+            values.sort(Comparator.<SimilarValue>comparingInt(v -> v.distance)
+                    .thenComparing(v -> -v.count)
+                    .thenComparing(v -> v.value));
+            if (values.size() > limit) {
+                values = values.subList(0, limit);
+            }
+            respondJSON(response, new SimilarValuesResponse(values));
+        } catch (Exception e) {
+            respondException(response, e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.expr;
+
+import java.util.Properties;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Bindings for evaluating expressions on rows. The variables set for every row
+ * (row, cells, cell, value...) are kept in fixed slots rather than in the
+ * synchronized hash table, so that expressions can resolve them by slot index
+ * ahead of time. The row, cells and cell wrappers are only created when an
+ * expression asks for them.
+ * 
+ * As it is still a {@link Properties}, code which only knows about Properties
+ * keeps working: get, put, remove and containsKey see the slots. Other
+ * variables, such as those of loops, are stored in the hash table as before.
+ */
+public class BindingFrame extends Properties {
+    private static final long serialVersionUID = 1L;
+
+    static public final int PROJECT = 0;
+    static public final int ROW_INDEX = 1;
+    static public final int ROW = 2;
+    static public final int CELLS = 3;
+    static public final int COLUMN_NAME = 4;
+    static public final int CELL = 5;
+    static public final int VALUE = 6;
+    static public final int RECORD_INDEX = 7;
+
+    static final String[] s_slotNames = {
+        "project", "rowIndex", "row", "cells", "columnName", "cell", "value", "recordIndex"
+    };
+
+    // values of the slots, null when unbound
+    final protected Object[] _slots = new Object[s_slotNames.length];
+    // slots whose value is derived from the bound row on first access
+    protected int _lazySlots = 0;
+
+    protected Row _row;
+    protected int _rowIndex;
+    protected Cell _cell;
+
+    /**
+     * @return the slot of the variable, or -1 if it is not stored in a slot
+     */
+    static public int slotOf(String name) {
+        for (int i = 0; i < s_slotNames.length; i++) {
+            if (s_slotNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Binds the variables of a row and, optionally, of one of its cells.
+     * Equivalent to setting rowIndex, row, cells, columnName, cell and value.
+     */
+    public void bind(Row row, int rowIndex, String columnName, Cell cell) {
+        _row = row;
+        _rowIndex = rowIndex;
+        _cell = cell;
+        _slots[ROW_INDEX] = null;
+        _slots[ROW] = null;
+        _slots[CELLS] = null;
+        _slots[CELL] = null;
+        _lazySlots = (1 << ROW_INDEX) | (1 << ROW) | (1 << CELLS) | (cell != null ? 1 << CELL : 0);
+
+        if (columnName != null) {
+            _slots[COLUMN_NAME] = columnName;
+        }
+        _slots[VALUE] = cell != null ? cell.value : null;
+    }
+
+    public Object get(int slot) {
+        Object value = _slots[slot];
+        if (value == null && (_lazySlots & (1 << slot)) != 0) {
+            value = derive(slot);
+            _slots[slot] = value;
+        }
+        return value;
+    }
+
+    protected Object derive(int slot) {
+        Project project = (Project) _slots[PROJECT];
+        switch (slot) {
+        case ROW_INDEX:
+            return _rowIndex;
+        case ROW:
+            return new WrappedRow(project, _rowIndex, _row);
+        case CELLS:
+            return new CellTuple(project, _row);
+        case CELL:
+            return new WrappedCell(project, (String) _slots[COLUMN_NAME], _cell);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the slot still holds the value derived from the bound row,
+     *     in which case {@link #getBoundRow()} and {@link #getBoundCell()} can be
+     *     read instead of the wrappers
+     */
+    public boolean isBound(int slot) {
+        return (_lazySlots & (1 << slot)) != 0;
+    }
+
+    public Row getBoundRow() {
+        return _row;
+    }
+
+    public Cell getBoundCell() {
+        return _cell;
+    }
+
+    public Project getProject() {
+        return (Project) _slots[PROJECT];
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        return slot >= 0 ? get(slot) : super.get(key);
+    }
+
+    @Override
+    public String getProperty(String key) {
+        Object value = get(key);
+        return value instanceof String ? (String) value : super.getProperty(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        return slot >= 0 ? get(slot) != null : super.containsKey(key);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        if (slot < 0) {
+            return super.put(key, value);
+        }
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        Object old = get(slot);
+        _slots[slot] = value;
+        _lazySlots &= ~(1 << slot);
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int slot = key instanceof String ? slotOf((String) key) : -1;
+        if (slot < 0) {
+            return super.remove(key);
+        }
+        Object old = get(slot);
+        _slots[slot] = null;
+        _lazySlots &= ~(1 << slot);
+        return old;
+    }
+}
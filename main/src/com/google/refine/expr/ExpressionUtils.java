@@ -56,7 +56,7 @@ public class ExpressionUtils {
     }
 
     static public Properties createBindings(Project project) {
-        Properties bindings = new Properties();
+        Properties bindings = new BindingFrame();
 
         bindings.put("true", true);
         bindings.put("false", false);
@@ -72,6 +72,14 @@ public class ExpressionUtils {
     }
 
     static public void bind(Properties bindings, Row row, int rowIndex, String columnName, Cell cell) {
+        if (bindings instanceof BindingFrame) {
+            ((BindingFrame) bindings).bind(row, rowIndex, columnName, cell);
+            for (Binder binder : s_binders) {
+                binder.bind(bindings, row, rowIndex, columnName, cell);
+            }
+            return;
+        }
+
         Project project = (Project) bindings.get("project");
 
         bindings.put("rowIndex", rowIndex);
@@ -99,6 +107,18 @@ public class ExpressionUtils {
         }
     }
 
+    /**
+     * @return whether the expression simply evaluates to the value of the cell, so
+     *      that the cell value can be read directly instead
+     */
+    static public boolean isCellValueExpression(String expression) {
+        if (expression == null) {
+            return false;
+        }
+        expression = expression.trim();
+        return "value".equals(expression) || "grel:value".equals(expression);
+    }
+
     static public boolean isError(Object o) {
         return o instanceof EvalError;
     }
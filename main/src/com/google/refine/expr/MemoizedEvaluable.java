@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.expr;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.refine.grel.ExpressionOptimizer;
+
+/**
+ * Wraps a pure expression which reads no variable but "value", so that it is
+ * evaluated once per distinct value instead of once per row. The memo table is
+ * bounded: once it is full, further values are evaluated without being
+ * remembered. An instance is meant to be used for a single run of an
+ * operation, and can be shared by the threads running it.
+ */
+public class MemoizedEvaluable implements Evaluable {
+
+    static public int MAX_ENTRIES = Integer.getInteger("refine.expressionMemoSize", 65536);
+
+    // ConcurrentHashMap takes neither null keys nor null values
+    static final private Object NULL = new Object();
+
+    final protected Evaluable                         _eval;
+    final protected int                               _maxEntries;
+    final protected ConcurrentHashMap<Object, Object> _memo = new ConcurrentHashMap<>();
+
+    public MemoizedEvaluable(Evaluable eval, int maxEntries) {
+        _eval = eval;
+        _maxEntries = maxEntries;
+    }
+
+    /**
+     * @return a memoizing wrapper around the expression if it only depends on
+     *         "value", or the expression itself otherwise
+     */
+    static public Evaluable memoizeByValue(Evaluable eval) {
+        if (MAX_ENTRIES > 0 && ExpressionOptimizer.dependsOnlyOnValue(eval)) {
+            return new MemoizedEvaluable(eval, MAX_ENTRIES);
+        }
+        return eval;
+    }
+
+    @Override
+    public Object evaluate(Properties bindings) {
+        Object value = bindings.get("value");
+        Object key = value == null ? NULL : value;
+
+        Object result = _memo.get(key);
+        if (result == null) {
+            result = _eval.evaluate(bindings);
+            if (_memo.size() < _maxEntries) {
+                _memo.putIfAbsent(key, result == null ? NULL : result);
+            }
+            return result;
+        }
+        return result == NULL ? null : result;
+    }
+
+    /**
+     * @return the number of distinct values remembered so far
+     */
+    public int getMemoSize() {
+        return _memo.size();
+    }
+
+    @Override
+    public String toString() {
+        return _eval.toString();
+    }
+}
@@ -41,6 +41,10 @@ import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.refine.grel.ExpressionOptimizer;
 import com.google.refine.grel.Parser;
 
 import clojure.lang.IFn;
@@ -65,6 +69,16 @@ abstract public class MetaParser {
     
     static final protected Map<String, LanguageInfo> s_languages = new HashMap<String, LanguageInfo>();
 
+    /**
+     * Parsed expressions, keyed by language prefix and source. Evaluables hold no
+     * per-evaluation state, so the same instance can be shared by every facet,
+     * preview and operation which uses the same expression.
+     */
+    static final protected Cache<String, Evaluable> s_cache = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger("refine.expressionCacheSize", 512))
+            .recordStats()
+            .build();
+
     // TODO: We should switch from using the internal compiler class 
 //    final static private Var CLOJURE_READ_STRING = RT.var("clojure.core", "read-string");
 //    final static private Var CLOJURE_EVAL = RT.var("clojure.core", "eval");
@@ -135,6 +149,7 @@ abstract public class MetaParser {
      */
     static public void registerLanguageParser(String languagePrefix, String name, LanguageSpecificParser parser, String defaultExpression) {
         s_languages.put(languagePrefix, new LanguageInfo(name, parser, defaultExpression));
+        clearCache();
     }
     
     static public LanguageInfo getLanguageInfo(String languagePrefix) {
@@ -166,16 +181,44 @@ abstract public class MetaParser {
         }
         
         LanguageInfo info = s_languages.get(language.toLowerCase());
+        String source = s;
         if (info != null) {
-            return info.parser.parse(s.substring(colon + 1));
+            source = s.substring(colon + 1);
         } else {
-            return parseGREL(s);
+            language = "grel";
         }
+
+        String key = language + ":" + source;
+        Evaluable eval = s_cache.getIfPresent(key);
+        if (eval == null) {
+            eval = info != null ? info.parser.parse(source) : parseGREL(source);
+            s_cache.put(key, eval);
+        }
+        return eval;
+    }
+
+    /**
+     * @return the hit and miss counts of the parsed expression cache
+     */
+    static public CacheStats getCacheStats() {
+        return s_cache.stats();
+    }
+
+    /**
+     * Discards all parsed expressions, for instance after changing how
+     * expressions are compiled.
+     */
+    static public void clearCache() {
+        s_cache.invalidateAll();
     }
     
     static protected Evaluable parseGREL(String s) throws ParsingException {
         Parser parser = new Parser(s);
         
-        return parser.getExpression();
+        Evaluable expr = parser.getExpression();
+        if (ExpressionOptimizer.enabled) {
+            expr = ExpressionOptimizer.optimize(expr);
+        }
+        return expr;
     }
 }
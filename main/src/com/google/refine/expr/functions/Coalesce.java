@@ -72,4 +72,9 @@ public class Coalesce implements Function {
     }
   
     			
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
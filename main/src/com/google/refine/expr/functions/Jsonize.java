@@ -68,4 +68,9 @@ public class Jsonize implements Function {
     public String getReturns() {
         return "JSON literal value";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -82,4 +82,9 @@ public class Length implements Function {
     public String getReturns() {
         return "number";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -139,4 +139,9 @@ public class Slice implements Function {
     public String getReturns() {
         return "Depends on actual arguments";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
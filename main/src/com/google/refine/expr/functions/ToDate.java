@@ -217,4 +217,8 @@ public class ToDate implements Function {
         }
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
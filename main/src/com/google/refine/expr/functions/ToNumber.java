@@ -87,4 +87,8 @@ public class ToNumber implements Function {
         return "number";
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -82,4 +82,9 @@ public class ToString implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
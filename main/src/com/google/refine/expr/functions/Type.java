@@ -84,4 +84,9 @@ public class Type implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
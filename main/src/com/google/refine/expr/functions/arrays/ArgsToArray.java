@@ -58,4 +58,9 @@ public class ArgsToArray implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -86,4 +86,9 @@ public class InArray implements Function {
     public String getReturns() {
         return "boolean";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
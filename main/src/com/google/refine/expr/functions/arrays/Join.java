@@ -107,4 +107,9 @@ public class Join implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -93,4 +93,9 @@ public class Reverse implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
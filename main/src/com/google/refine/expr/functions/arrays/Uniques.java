@@ -85,4 +85,9 @@ public class Uniques implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -68,4 +68,9 @@ public class And implements Function {
     public String getReturns() {
         return "boolean";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
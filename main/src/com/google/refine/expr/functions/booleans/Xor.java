@@ -55,4 +55,9 @@ public class Xor implements Function {
     public String getReturns() {
         return "boolean";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
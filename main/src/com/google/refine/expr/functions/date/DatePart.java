@@ -151,4 +151,9 @@ public class DatePart implements Function {
     public String getReturns() {
         return "date";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
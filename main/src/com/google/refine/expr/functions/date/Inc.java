@@ -98,4 +98,9 @@ public class Inc implements Function {
     public String getReturns() {
         return "date";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -72,5 +72,9 @@ public class InnerHtml implements Function {
     public String getReturns() {
         return "String innerHtml";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
@@ -68,5 +68,9 @@ public class ParseHtml implements Function {
     public String getReturns() {
         return "HTML object";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
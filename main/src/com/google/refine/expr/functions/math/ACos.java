@@ -63,4 +63,9 @@ public class ACos implements Function {
     public String getReturns() {
         return "number";
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
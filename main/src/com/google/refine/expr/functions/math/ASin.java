@@ -63,4 +63,9 @@ public class ASin implements Function {
     public String getReturns() {
         return "number";
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
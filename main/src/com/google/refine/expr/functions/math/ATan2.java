@@ -64,4 +64,9 @@ public class ATan2 implements Function {
     public String getReturns() {
         return "number theta";
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
@@ -97,4 +97,9 @@ public class Combin implements Function {
     public String getReturns() {
         return "number";
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
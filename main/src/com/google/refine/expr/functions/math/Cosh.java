@@ -63,4 +63,9 @@ public class Cosh implements Function {
     public String getReturns() {
         return "number";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
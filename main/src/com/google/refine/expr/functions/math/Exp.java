@@ -61,4 +61,9 @@ public class Exp implements Function {
     public String getReturns() {
         return "number";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -64,4 +64,8 @@ public class Floor implements Function {
         return "number";
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
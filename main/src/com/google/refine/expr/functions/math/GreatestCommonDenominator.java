@@ -68,4 +68,9 @@ public class GreatestCommonDenominator implements Function {
     public String getReturns() {
         return "number";
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
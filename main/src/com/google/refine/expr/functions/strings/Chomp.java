@@ -67,4 +67,9 @@ public class Chomp implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
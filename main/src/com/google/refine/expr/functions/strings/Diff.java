@@ -111,4 +111,9 @@ public class Diff implements Function {
     public String getReturns() {
         return "string for strings, number for dates";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
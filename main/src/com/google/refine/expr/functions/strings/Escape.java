@@ -96,4 +96,9 @@ public class Escape implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
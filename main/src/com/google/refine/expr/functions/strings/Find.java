@@ -82,4 +82,9 @@ public class Find implements Function {
     public String getReturns() {
         return "array of strings";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -67,4 +67,9 @@ public class Fingerprint implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -68,4 +68,8 @@ public class LastIndexOf implements Function {
         return "number";
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -88,4 +88,9 @@ public class Match implements Function {
     public String getReturns() {
         return "array of strings";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -90,4 +90,9 @@ public class NGram implements Function {
     public String getReturns() {
         return "array of strings";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
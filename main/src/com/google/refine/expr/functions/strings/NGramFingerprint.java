@@ -86,4 +86,9 @@ public class NGramFingerprint implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -73,4 +73,9 @@ public class ParseJson implements Function {
     public String getReturns() {
         return "JSON object";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
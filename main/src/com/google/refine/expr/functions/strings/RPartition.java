@@ -113,4 +113,9 @@ public class RPartition implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
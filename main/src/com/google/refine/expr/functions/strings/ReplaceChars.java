@@ -72,4 +72,9 @@ public class ReplaceChars implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -114,4 +114,9 @@ public class SmartSplit implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -69,4 +69,9 @@ public class SplitByCharType implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -81,4 +81,9 @@ public class SplitByLengths implements Function {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -76,4 +76,8 @@ public class ToTitlecase implements Function {
         return "string";
     }
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -64,4 +64,9 @@ public class ToUppercase implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -104,4 +104,9 @@ public class UnicodeType implements Function {
     public String getReturns() {
         return "string";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -82,5 +82,9 @@ public class InnerXml implements Function {
     public String getReturns() {
         return "String innerXml/innerHtml";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
@@ -73,5 +73,9 @@ public class OwnText implements Function {
     public String getReturns() {
         return "String ownText";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
@@ -80,5 +80,9 @@ public class ParseXml implements Function {
     public String getReturns() {
     	return "XML object";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
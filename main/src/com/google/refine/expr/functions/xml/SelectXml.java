@@ -75,5 +75,9 @@ public class SelectXml implements Function {
     public String getReturns() {
         return "HTML Elements";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
@@ -73,4 +73,9 @@ public class WholeText implements Function {
     public String getReturns() {
         return "String text";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -75,5 +75,9 @@ public class XmlAttr implements Function {
     public String getReturns() {
         return "String attribute Value";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
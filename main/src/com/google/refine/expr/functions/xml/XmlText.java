@@ -73,5 +73,9 @@ public class XmlText implements Function {
     public String getReturns() {
         return "String text";
     }
-}
 
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
@@ -35,6 +35,7 @@ package com.google.refine.grel;
 
 import java.util.Properties;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -61,4 +62,15 @@ public interface Control  {
     
     @JsonProperty("returns")
     public String getReturns();
+
+    /**
+     * Whether the control is pure: apart from the bindings it restores after
+     * evaluating its arguments, it has no side effects, so a call to it is
+     * pure when its arguments are. Controls are not assumed to be pure unless
+     * they override this.
+     */
+    @JsonIgnore
+    default public boolean isPure() {
+        return false;
+    }
 }
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.grel;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.grel.ast.BinaryOperatorExpr;
+import com.google.refine.grel.ast.ControlCallExpr;
+import com.google.refine.grel.ast.FieldAccessorExpr;
+import com.google.refine.grel.ast.FunctionCallExpr;
+import com.google.refine.grel.ast.LiteralExpr;
+import com.google.refine.grel.ast.OperatorCallExpr;
+import com.google.refine.grel.ast.VariableExpr;
+import com.google.refine.grel.controls.Filter;
+import com.google.refine.grel.controls.ForEach;
+import com.google.refine.grel.controls.ForEachIndex;
+import com.google.refine.grel.controls.ForNonBlank;
+import com.google.refine.grel.controls.ForRange;
+import com.google.refine.grel.controls.With;
+
+/**
+ * Rewrites a parsed GREL syntax tree before it is evaluated. Operator calls are
+ * specialized into {@link BinaryOperatorExpr} nodes, and calls to pure functions,
+ * controls and operators whose arguments are all constant are replaced by their
+ * value.
+ * <p>
+ * Only immutable values (strings, numbers and booleans) are folded, since a
+ * folded value is shared by every evaluation of the expression. Calls which
+ * fail or return an error are left alone so that the error is reported when
+ * the expression is evaluated, as it would be without the optimizer.
+ */
+public class ExpressionOptimizer {
+
+    /**
+     * Whether {@link com.google.refine.expr.MetaParser} optimizes the GREL
+     * expressions it parses. Set the "refine.grel.optimize" system property to
+     * false to evaluate expressions exactly as parsed.
+     */
+    static public boolean enabled = !"false".equals(System.getProperty("refine.grel.optimize"));
+
+    /**
+     * For the core controls which declare loop variables, the arguments naming
+     * the variables and the arguments in which they are bound. Other arguments
+     * are evaluated in the enclosing scope.
+     */
+    static final protected Map<Class<? extends Control>, int[][]> s_variableScopes = new HashMap<>();
+    static {
+        s_variableScopes.put(With.class, new int[][] { { 1 }, { 2 } });
+        s_variableScopes.put(ForEach.class, new int[][] { { 1 }, { 2 } });
+        s_variableScopes.put(Filter.class, new int[][] { { 1 }, { 2 } });
+        s_variableScopes.put(ForNonBlank.class, new int[][] { { 1 }, { 2 } });
+        s_variableScopes.put(ForEachIndex.class, new int[][] { { 1, 2 }, { 3 } });
+        s_variableScopes.put(ForRange.class, new int[][] { { 3 }, { 4 } });
+    }
+
+    static public Evaluable optimize(Evaluable expr) {
+        if (expr instanceof OperatorCallExpr) {
+            OperatorCallExpr call = (OperatorCallExpr) expr;
+            Evaluable[] args = optimizeAll(call.getArgs());
+            Operator op = Operator.forSymbol(call.getOperator());
+            Evaluable optimized = op != null && args.length == 2 ?
+                    new BinaryOperatorExpr(op, args[0], args[1]) : new OperatorCallExpr(args, call.getOperator());
+            return allConstant(args) ? fold(optimized) : optimized;
+        } else if (expr instanceof FunctionCallExpr) {
+            FunctionCallExpr call = (FunctionCallExpr) expr;
+            Evaluable[] args = optimizeAll(call.getArgs());
+            Evaluable optimized = new FunctionCallExpr(args, call.getFunction());
+            return call.getFunction().isPure() && allConstant(args) ? fold(optimized) : optimized;
+        } else if (expr instanceof ControlCallExpr) {
+            ControlCallExpr call = (ControlCallExpr) expr;
+            Evaluable[] args = optimizeAll(call.getArgs());
+            Evaluable optimized = new ControlCallExpr(args, call.getControl());
+            return call.getControl().isPure() && allConstant(args) ? fold(optimized) : optimized;
+        } else if (expr instanceof FieldAccessorExpr) {
+            FieldAccessorExpr accessor = (FieldAccessorExpr) expr;
+            Evaluable inner = optimize(accessor.getInner());
+            return inner == accessor.getInner() ? accessor : new FieldAccessorExpr(inner, accessor.getFieldName());
+        }
+        return expr;
+    }
+
+    /**
+     * Tells whether evaluating an expression only calls pure functions and
+     * controls, so that its result depends on nothing but the bindings it
+     * reads. Expressions which are not GREL syntax trees are not pure.
+     */
+    static public boolean isPure(Evaluable expr) {
+        if (expr instanceof LiteralExpr || expr instanceof VariableExpr) {
+            return true;
+        } else if (expr instanceof FieldAccessorExpr) {
+            return isPure(((FieldAccessorExpr) expr).getInner());
+        } else if (expr instanceof OperatorCallExpr) {
+            return allPure(((OperatorCallExpr) expr).getArgs());
+        } else if (expr instanceof FunctionCallExpr) {
+            FunctionCallExpr call = (FunctionCallExpr) expr;
+            return call.getFunction().isPure() && allPure(call.getArgs());
+        } else if (expr instanceof ControlCallExpr) {
+            ControlCallExpr call = (ControlCallExpr) expr;
+            return call.getControl().isPure() && allPure(call.getArgs());
+        }
+        return false;
+    }
+
+    /**
+     * Collects the names of the variables an expression reads from its bindings.
+     * Loop variables declared by controls such as forEach or with are only
+     * bound inside the control, so they are not free.
+     *
+     * @return the free variables, or null if the expression is not a GREL
+     *         syntax tree and cannot be analyzed
+     */
+    static public Set<String> getFreeVariables(Evaluable expr) {
+        Set<String> variables = new HashSet<>();
+        return collectFreeVariables(expr, Collections.emptySet(), variables) ? variables : null;
+    }
+
+    /**
+     * Tells whether an expression is pure and reads no variable but "value",
+     * so that it gives the same result for all cells with the same value.
+     */
+    static public boolean dependsOnlyOnValue(Evaluable expr) {
+        if (!isPure(expr)) {
+            return false;
+        }
+        Set<String> variables = getFreeVariables(expr);
+        return variables != null && (variables.isEmpty() || variables.equals(Collections.singleton("value")));
+    }
+
+    static protected boolean collectFreeVariables(Evaluable expr, Set<String> bound, Set<String> variables) {
+        if (expr instanceof LiteralExpr) {
+            return true;
+        } else if (expr instanceof VariableExpr) {
+            String name = ((VariableExpr) expr).getName();
+            if (!bound.contains(name)) {
+                variables.add(name);
+            }
+            return true;
+        } else if (expr instanceof FieldAccessorExpr) {
+            return collectFreeVariables(((FieldAccessorExpr) expr).getInner(), bound, variables);
+        } else if (expr instanceof OperatorCallExpr) {
+            return collectFreeVariables(((OperatorCallExpr) expr).getArgs(), bound, variables);
+        } else if (expr instanceof FunctionCallExpr) {
+            return collectFreeVariables(((FunctionCallExpr) expr).getArgs(), bound, variables);
+        } else if (expr instanceof ControlCallExpr) {
+            ControlCallExpr call = (ControlCallExpr) expr;
+            Evaluable[] args = call.getArgs();
+            int[][] scope = s_variableScopes.get(call.getControl().getClass());
+            if (scope == null) {
+                return collectFreeVariables(args, bound, variables);
+            }
+            Set<String> inner = new HashSet<>(bound);
+            for (int i : scope[0]) {
+                inner.add(((VariableExpr) args[i]).getName());
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (contains(scope[0], i)) {
+                    continue;
+                } else if (!collectFreeVariables(args[i], contains(scope[1], i) ? inner : bound, variables)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static protected boolean collectFreeVariables(Evaluable[] args, Set<String> bound, Set<String> variables) {
+        for (Evaluable arg : args) {
+            if (!collectFreeVariables(arg, bound, variables)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static private boolean contains(int[] indices, int i) {
+        for (int index : indices) {
+            if (index == i) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static protected Evaluable[] optimizeAll(Evaluable[] args) {
+        Evaluable[] optimized = new Evaluable[args.length];
+        for (int i = 0; i < args.length; i++) {
+            optimized[i] = optimize(args[i]);
+        }
+        return optimized;
+    }
+
+    static protected boolean allConstant(Evaluable[] args) {
+        for (Evaluable arg : args) {
+            if (!(arg instanceof LiteralExpr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static protected boolean allPure(Evaluable[] args) {
+        for (Evaluable arg : args) {
+            if (!isPure(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static protected Evaluable fold(Evaluable expr) {
+        Object value;
+        try {
+            value = expr.evaluate(new Properties());
+        } catch (RuntimeException e) {
+            return expr;
+        }
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return new LiteralExpr(value);
+        } else {
+            // errors, nulls and mutable values are computed on each evaluation
+            return expr;
+        }
+    }
+}
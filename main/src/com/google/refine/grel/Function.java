@@ -35,6 +35,7 @@ package com.google.refine.grel;
 
 import java.util.Properties;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -57,4 +58,18 @@ public interface Function  {
     
     @JsonProperty("returns")
     public String getReturns();
+
+    /**
+     * Whether the function is pure: its result depends on nothing but its
+     * arguments, and calling it has no side effects. Calls to pure functions
+     * with constant arguments can be evaluated once when the expression is
+     * optimized, and pure expressions can be memoized or evaluated in parallel.
+     * Functions are not assumed to be pure: those which neither read the bindings
+     * or the project nor depend on anything else than their arguments should
+     * override this to return true.
+     */
+    @JsonIgnore
+    default public boolean isPure() {
+        return false;
+    }
 }
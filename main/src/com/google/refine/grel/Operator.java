@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.grel;
+
+/**
+ * The binary operators of GREL, resolved once from their symbol so that
+ * evaluation does not need to compare operator strings. The semantics are
+ * those of {@link com.google.refine.grel.ast.OperatorCallExpr}: two integral
+ * operands use long arithmetic, two numeric operands use double arithmetic,
+ * "+" concatenates any other pair of non-null operands, and equality falls
+ * back to {@link Object#equals(Object)}.
+ */
+public enum Operator {
+    PLUS("+") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 + n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 + n2; }
+        @Override
+        protected Object applyToObjects(Object a, Object b) {
+            return a != null && b != null ? a.toString() + b.toString() : null;
+        }
+    },
+    MINUS("-") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 - n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 - n2; }
+    },
+    TIMES("*") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 * n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 * n2; }
+    },
+    DIVIDE("/") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 / n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 / n2; }
+    },
+    MODULO("%") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 % n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 % n2; }
+    },
+    GREATER_THAN(">") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 > n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 > n2; }
+    },
+    GREATER_OR_EQUAL(">=") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 >= n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 >= n2; }
+    },
+    LESS_THAN("<") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 < n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 < n2; }
+    },
+    LESS_OR_EQUAL("<=") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 <= n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 <= n2; }
+    },
+    EQUAL("==") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 == n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 == n2; }
+        @Override
+        protected Object applyToObjects(Object a, Object b) {
+            return a != null ? a.equals(b) : b == null;
+        }
+    },
+    NOT_EQUAL("!=") {
+        @Override
+        protected Object apply(long n1, long n2) { return n1 != n2; }
+        @Override
+        protected Object apply(double n1, double n2) { return n1 != n2; }
+        @Override
+        protected Object applyToObjects(Object a, Object b) {
+            return a != null ? !a.equals(b) : b != null;
+        }
+    };
+
+    final private String _symbol;
+
+    Operator(String symbol) {
+        _symbol = symbol;
+    }
+
+    public String getSymbol() {
+        return _symbol;
+    }
+
+    /**
+     * @return the operator with the given symbol, or null if GREL has no such operator
+     */
+    static public Operator forSymbol(String symbol) {
+        for (Operator op : values()) {
+            if (op._symbol.equals(symbol)) {
+                return op;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies the operator to two operands which are already known not to be errors.
+     */
+    public Object apply(Object a, Object b) {
+        if (a != null && b != null) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return apply(((Number) a).longValue(), ((Number) b).longValue());
+            } else if (a instanceof Number && b instanceof Number) {
+                return apply(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+        }
+        return applyToObjects(a, b);
+    }
+
+    abstract protected Object apply(long n1, long n2);
+
+    abstract protected Object apply(double n1, double n2);
+
+    protected Object applyToObjects(Object a, Object b) {
+        return null;
+    }
+
+    static private boolean isIntegral(Object n) {
+        return n instanceof Long || n instanceof Integer;
+    }
+}
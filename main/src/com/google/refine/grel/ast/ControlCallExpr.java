@@ -50,6 +50,14 @@ public class ControlCallExpr implements Evaluable {
         _args = args;
         _control = c;
     }
+
+    public Evaluable[] getArgs() {
+        return _args;
+    }
+
+    public Control getControl() {
+        return _control;
+    }
                               
     @Override
     public Object evaluate(Properties bindings) {
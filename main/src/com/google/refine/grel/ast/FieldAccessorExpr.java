@@ -37,10 +37,13 @@ import java.util.Properties;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.refine.expr.BindingFrame;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.HasFields;
 import com.google.refine.expr.util.JsonValueConverter;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
 
 /**
  * An abstract syntax tree node encapsulating a field accessor,
@@ -55,9 +58,29 @@ public class FieldAccessorExpr implements Evaluable {
         _inner = inner;
         _fieldName = fieldName;
     }
+
+    public Evaluable getInner() {
+        return _inner;
+    }
+
+    public String getFieldName() {
+        return _fieldName;
+    }
     
     @Override
     public Object evaluate(Properties bindings) {
+        if (bindings instanceof BindingFrame) {
+            // cell.x and cells.y.x are read from the bound row, without wrapping cells
+            BindingFrame frame = (BindingFrame) bindings;
+            if (isBoundVariable(_inner, frame, BindingFrame.CELL)) {
+                return getCellField(frame.getBoundCell(), bindings);
+            } else if (_inner instanceof FieldAccessorExpr
+                    && isBoundVariable(((FieldAccessorExpr) _inner)._inner, frame, BindingFrame.CELLS)) {
+                Column column = frame.getProject().columnModel.getColumnByName(((FieldAccessorExpr) _inner)._fieldName);
+                return column == null ? null : getCellField(frame.getBoundRow().getCell(column.getCellIndex()), bindings);
+            }
+        }
+
         Object o = _inner.evaluate(bindings);
         if (ExpressionUtils.isError(o)) {
             return o; // bubble the error up
@@ -73,6 +96,14 @@ public class FieldAccessorExpr implements Evaluable {
         }
     }
 
+    static protected boolean isBoundVariable(Evaluable evaluable, BindingFrame frame, int slot) {
+        return evaluable instanceof VariableExpr && ((VariableExpr) evaluable).getSlot() == slot && frame.isBound(slot);
+    }
+
+    protected Object getCellField(Cell cell, Properties bindings) {
+        return cell == null ? null : cell.getField(_fieldName, bindings);
+    }
+
     @Override
     public String toString() {
         return _inner.toString() + "." + _fieldName;
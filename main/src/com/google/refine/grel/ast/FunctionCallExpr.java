@@ -54,6 +54,14 @@ public class FunctionCallExpr implements Evaluable {
         _args = args;
         _function = f;
     }
+
+    public Evaluable[] getArgs() {
+        return _args;
+    }
+
+    public Function getFunction() {
+        return _function;
+    }
                               
     @Override
     public Object evaluate(Properties bindings) {
@@ -47,6 +47,10 @@ public class LiteralExpr implements Evaluable {
     public LiteralExpr(Object value) {
         _value = value;
     }
+
+    public Object getValue() {
+        return _value;
+    }
                               
     @Override
     public Object evaluate(Properties bindings) {
@@ -50,6 +50,14 @@ public class OperatorCallExpr implements Evaluable {
         _op = op;
     }
 
+    public Evaluable[] getArgs() {
+        return _args;
+    }
+
+    public String getOperator() {
+        return _op;
+    }
+
     @Override
     public Object evaluate(Properties bindings) {
         Object[] args = new Object[_args.length];
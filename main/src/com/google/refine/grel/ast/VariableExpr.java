@@ -35,6 +35,7 @@ package com.google.refine.grel.ast;
 
 import java.util.Properties;
 
+import com.google.refine.expr.BindingFrame;
 import com.google.refine.expr.Evaluable;
 
 /**
@@ -42,13 +43,18 @@ import com.google.refine.expr.Evaluable;
  */
 public class VariableExpr implements Evaluable {
     final protected String _name;
+    final protected int    _slot;
     
     public VariableExpr(String name) {
         _name = name;
+        _slot = BindingFrame.slotOf(name);
     }
     
     @Override
     public Object evaluate(Properties bindings) {
+        if (_slot >= 0 && bindings instanceof BindingFrame) {
+            return ((BindingFrame) bindings).get(_slot);
+        }
         return bindings.get(_name);
     }
 
@@ -60,4 +66,11 @@ public class VariableExpr implements Evaluable {
     public String getName() {
         return _name;
     }
+
+    /**
+     * @return the slot of the variable in a {@link BindingFrame}, or -1
+     */
+    public int getSlot() {
+        return _slot;
+    }
 }
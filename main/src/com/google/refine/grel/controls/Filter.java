@@ -155,4 +155,9 @@ public class Filter implements Control {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -167,4 +167,9 @@ public class ForEach implements Control {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -157,4 +157,9 @@ public class ForEachIndex implements Control {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -96,4 +96,9 @@ public class ForNonBlank implements Control {
     public String getReturns() {
         return "Depends on actual arguments";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -142,4 +142,9 @@ public class ForRange implements Control {
     public String getReturns() {
         return "array";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -76,4 +76,9 @@ public class If implements Control {
     public String getReturns() {
         return "Depends on actual arguments";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -71,4 +71,9 @@ abstract class IsTest implements Control {
     }
     
     abstract protected boolean test(Object v);
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -92,4 +92,9 @@ public class With implements Control {
     public String getReturns() {
         return "Depends on actual arguments";
     }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
 }
@@ -44,8 +44,14 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.refine.ProjectManager;
 import com.google.refine.RefineServlet;
@@ -58,8 +64,22 @@ import com.google.refine.util.Pool;
  * entry stores only the metadata, while the change object stores the actual data. Thus
  * the history entries are much smaller and can be kept in memory, while the change objects
  * are only loaded into memory on demand.
+ *
+ * Every so often, a checkpoint of the project state is saved in the background after
+ * applying an entry. Jumping to a distant entry then restores the nearest stored
+ * checkpoint and only replays the entries between that checkpoint and the target.
  */
 public class History  {
+    final static Logger logger = LoggerFactory.getLogger("History");
+
+    // save a checkpoint after this many entries or this much change data, whichever comes first
+    static public int checkpointInterval = Integer.getInteger("refine.historyCheckpointInterval", 20);
+    static public long checkpointBytes = Long.getLong("refine.historyCheckpointMB", 64) * 1024 * 1024;
+    // maximum number of checkpoints kept per project, 0 to disable checkpoints
+    static public int checkpointRetention = Integer.getInteger("refine.historyCheckpointRetention", 5);
+    // cost of restoring a checkpoint, counted in entries to replay
+    static public int checkpointRestoreCost = 4;
+
     static public Change readOneChange(InputStream in, Pool pool) throws Exception {
         LineNumberReader reader = new LineNumberReader(new InputStreamReader(in, "UTF-8"));
         try {
@@ -115,6 +135,10 @@ public class History  {
     @JsonProperty("future")
     protected List<HistoryEntry> _futureEntries; // undone changes, can be redone
 
+    // ids of the entries which have a checkpoint, mapped to whether it is stored yet, loaded lazily
+    transient protected Map<Long, Boolean> _checkpoints;
+    transient protected int       _entriesSinceCheckpoint = 0;
+
     public History(Project project) {
         _projectID = project.id;
         _pastEntries = new ArrayList<HistoryEntry>();
@@ -128,27 +152,46 @@ public class History  {
      */
     public void addEntry(HistoryEntry entry) {
         Project project = ProjectManager.singleton.getProject(_projectID);
-        synchronized (project) {
-            // NOTE: project lock must be acquired *first* to prevent deadlocks, so we use a 
-            // synchronized block instead of synchronizing the entire method.
-            synchronized (this) {
-                entry.apply(project);
-                _pastEntries.add(entry);
+        HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        while (true) {
+            // The change files still being written must not see this change, but we
+            // wait for them before taking the project lock rather than under it.
+            manager.awaitSavedChanges(_projectID);
+            synchronized (project) {
+                // NOTE: project lock must be acquired *first* to prevent deadlocks, so we use a
+                // synchronized block instead of synchronizing the entire method.
+                if (manager.hasUnsavedChanges(_projectID)) {
+                    // another change was applied in the meantime
+                    continue;
+                }
+                synchronized (this) {
+                    addEntryLocked(project, entry);
+                }
+                return;
+            }
+        }
+    }
 
-                setModified();
+    protected void addEntryLocked(Project project, HistoryEntry entry) {
+        entry.apply(project);
+        _pastEntries.add(entry);
 
-                // Any new change will clear all future entries.
-                List<HistoryEntry> futureEntries = _futureEntries;
-                _futureEntries = new ArrayList<HistoryEntry>();
+        setModified();
+        saveCheckpointIfDue(project, entry);
 
-                for (HistoryEntry entry2 : futureEntries) {
-                    try {
-                        // remove residual data on disk
-                        entry2.delete();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+        // Any new change will clear all future entries.
+        List<HistoryEntry> futureEntries = _futureEntries;
+        _futureEntries = new ArrayList<HistoryEntry>();
+
+        for (HistoryEntry entry2 : futureEntries) {
+            try {
+                // remove residual data on disk
+                entry2.delete();
+                if (_checkpoints != null) {
+                    _checkpoints.remove(entry2.id);
                 }
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
     }
@@ -165,25 +208,193 @@ public class History  {
         }
     }
 
-    synchronized public void undoRedo(long lastDoneEntryID) {
+    /**
+     * @return the past and future entries whose change is currently held in memory
+     */
+    @JsonIgnore
+    synchronized public List<HistoryEntry> getEntriesWithChanges() {
+        List<HistoryEntry> entries = new ArrayList<HistoryEntry>();
+        for (HistoryEntry entry : _pastEntries) {
+            if (entry.getChange() != null) {
+                entries.add(entry);
+            }
+        }
+        for (HistoryEntry entry : _futureEntries) {
+            if (entry.getChange() != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return the id of the last entry applied to the project, or 0 if the project is
+     *     in its initial state
+     */
+    @JsonIgnore
+    synchronized public long getLastDoneEntryID() {
+        return _pastEntries.isEmpty() ? 0 : _pastEntries.get(_pastEntries.size() - 1).id;
+    }
+
+    public void undoRedo(long lastDoneEntryID) {
+        HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        while (true) {
+            // as in addEntry, wait for change files being written without holding a lock
+            manager.awaitSavedChanges(_projectID);
+            synchronized (this) {
+                if (!manager.hasUnsavedChanges(_projectID)) {
+                    undoRedoLocked(lastDoneEntryID);
+                    return;
+                }
+            }
+        }
+    }
+
+    synchronized protected void undoRedoLocked(long lastDoneEntryID) {
+        int target = -1;
         if (lastDoneEntryID == 0) {
             // undo all the way back to the start of the project
-            undo(_pastEntries.size());
+            target = 0;
         } else {
             for (int i = 0; i < _pastEntries.size(); i++) {
                 if (_pastEntries.get(i).id == lastDoneEntryID) {
-                    undo(_pastEntries.size() - i - 1);
-                    return;
+                    target = i + 1;
                 }
             }
 
             for (int i = 0; i < _futureEntries.size(); i++) {
                 if (_futureEntries.get(i).id == lastDoneEntryID) {
-                    redo(i + 1);
-                    return;
+                    target = _pastEntries.size() + i + 1;
+                }
+            }
+        }
+        if (target < 0) {
+            return;
+        }
+
+        restoreNearestCheckpoint(target);
+        if (target < _pastEntries.size()) {
+            undo(_pastEntries.size() - target);
+        } else {
+            redo(target - _pastEntries.size());
+        }
+    }
+
+    /**
+     * Saves a checkpoint after the given entry if enough entries or change data
+     * have accumulated since the last one, and drops the oldest checkpoints
+     * beyond the retention limit.
+     */
+    protected void saveCheckpointIfDue(Project project, HistoryEntry entry) {
+        if (checkpointRetention <= 0) {
+            return;
+        }
+        HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        _entriesSinceCheckpoint++;
+        if (_entriesSinceCheckpoint < checkpointInterval) {
+            long bytes = 0;
+            for (int i = Math.max(0, _pastEntries.size() - _entriesSinceCheckpoint); i < _pastEntries.size(); i++) {
+                bytes += manager.getChangeSize(_pastEntries.get(i));
+            }
+            if (bytes < checkpointBytes) {
+                return;
+            }
+        }
+
+        // The checkpoint is only used once stored, and is not marked stored if it
+        // was dropped in the meantime. The callback does not take the history lock.
+        Map<Long, Boolean> checkpoints = getCheckpoints();
+        checkpoints.put(entry.id, false);
+        try {
+            if (!manager.saveCheckpoint(entry, project, () -> checkpoints.replace(entry.id, false, true))) {
+                checkpoints.remove(entry.id);
+                return;
+            }
+        } catch (Exception e) {
+            checkpoints.remove(entry.id);
+            logger.warn("Failed to save history checkpoint for project " + _projectID, e);
+            return;
+        }
+        _entriesSinceCheckpoint = 0;
+
+        for (HistoryEntry oldEntry : _pastEntries) {
+            if (checkpoints.size() <= checkpointRetention) {
+                break;
+            }
+            if (checkpoints.remove(oldEntry.id) != null) {
+                manager.deleteCheckpoint(oldEntry);
+            }
+        }
+    }
+
+    protected Map<Long, Boolean> getCheckpoints() {
+        if (_checkpoints == null) {
+            HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+            _checkpoints = new ConcurrentHashMap<Long, Boolean>();
+            for (HistoryEntry entry : _pastEntries) {
+                if (manager.hasCheckpoint(entry)) {
+                    _checkpoints.put(entry.id, true);
                 }
             }
+            for (HistoryEntry entry : _futureEntries) {
+                if (manager.hasCheckpoint(entry)) {
+                    _checkpoints.put(entry.id, true);
+                }
+            }
+        }
+        return _checkpoints;
+    }
+
+    /**
+     * Restores the checkpoint from which the target position can be reached by
+     * replaying the fewest entries, if that is cheaper than undoing or redoing
+     * entries one by one from the current position.
+     * 
+     * @param target
+     *     the number of entries which should be done
+     */
+    protected void restoreNearestCheckpoint(int target) {
+        Map<Long, Boolean> checkpoints = getCheckpoints();
+        if (checkpoints.isEmpty()) {
+            return;
+        }
+
+        List<HistoryEntry> entries = new ArrayList<HistoryEntry>(_pastEntries);
+        entries.addAll(_futureEntries);
+        int best = -1;
+        int bestCost = Math.abs(target - _pastEntries.size());
+        for (int position = 1; position <= entries.size(); position++) {
+            int cost = Math.abs(target - position) + checkpointRestoreCost;
+            if (cost < bestCost && Boolean.TRUE.equals(checkpoints.get(entries.get(position - 1).id))) {
+                best = position;
+                bestCost = cost;
+            }
+        }
+        if (best < 0) {
+            return;
+        }
+
+        Project project = ProjectManager.singleton.getProject(_projectID);
+        try {
+            if (!ProjectManager.singleton.getHistoryEntryManager().restoreCheckpoint(entries.get(best - 1), project)) {
+                return;
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to restore history checkpoint for project " + _projectID, e);
+            return;
+        }
+
+        // Changes kept in memory may share rows with the state we just replaced,
+        // so they are reloaded from their change files when needed again.
+        HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        for (HistoryEntry entry : entries) {
+            if (manager.hasChange(entry)) {
+                entry.setChange(null);
+            }
         }
+        _pastEntries = new ArrayList<HistoryEntry>(entries.subList(0, best));
+        _futureEntries = new ArrayList<HistoryEntry>(entries.subList(best, entries.size()));
+        setModified();
     }
 
     synchronized public long getPrecedingEntryID(long entryID) {
@@ -231,6 +442,10 @@ public class History  {
 
         while (times > 0 && _pastEntries.size() > 0) {
             HistoryEntry entry = _pastEntries.get(_pastEntries.size() - 1);
+            if (entry.isChangeMissing()) {
+                logger.warn("Cannot undo entry " + entry.id + " of project " + _projectID + ": its change was never saved");
+                break;
+            }
 
             entry.revert(project);
 
@@ -247,6 +462,10 @@ public class History  {
 
         while (times > 0 && _futureEntries.size() > 0) {
             HistoryEntry entry = _futureEntries.get(0);
+            if (entry.isChangeMissing()) {
+                logger.warn("Cannot redo entry " + entry.id + " of project " + _projectID + ": its change was never saved");
+                break;
+            }
 
             entry.apply(project);
 
@@ -299,5 +518,27 @@ public class History  {
                 }
             }
         }
+        markMissingChanges();
+    }
+
+    /**
+     * Marks the entries whose change never made it to disk, for instance because
+     * the application stopped while it was being written. Such entries cannot
+     * be undone or redone, although a checkpoint may still get past them.
+     */
+    protected void markMissingChanges() {
+        HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        for (HistoryEntry entry : _pastEntries) {
+            if (entry.getChange() == null && !manager.hasChange(entry)) {
+                entry.markChangeMissing();
+                logger.warn("Missing change for history entry " + entry.id + " of project " + _projectID);
+            }
+        }
+        for (HistoryEntry entry : _futureEntries) {
+            if (entry.getChange() == null && !manager.hasChange(entry)) {
+                entry.markChangeMissing();
+                logger.warn("Missing change for history entry " + entry.id + " of project " + _projectID);
+            }
+        }
     }
 }
@@ -83,6 +83,9 @@ public class HistoryEntry {
     @JsonIgnore
     private transient Change _change;
 
+    // set when the change could not be found in storage when loading the project
+    private transient boolean _changeMissing = false;
+
     private final static String OPERATION = "operation";
 
     public void setChange(Change _change) {
@@ -94,6 +97,15 @@ public class HistoryEntry {
         return _change;
     }
 
+    public void markChangeMissing() {
+        _changeMissing = true;
+    }
+
+    @JsonIgnore
+    public boolean isChangeMissing() {
+        return _changeMissing && _change == null;
+    }
+
     static public long allocateID() {
         return Math.round(Math.random() * 1000000) + System.currentTimeMillis();
     }
@@ -144,8 +156,19 @@ public class HistoryEntry {
             ProjectManager.singleton.getHistoryEntryManager().loadChange(this);
         }
 
+        // changes still being written may refer to rows which this change modifies.
+        // History waits for them before locking the project, so this is then a no-op.
+        _manager.awaitSavedChanges(project.id);
+
         synchronized (project) {
-            getChange().apply(project);
+            project.beginRowWrites();
+            try {
+                getChange().apply(project);
+            } finally {
+                project.endRowWrites();
+            }
+            markDirtyRows(project, getChange());
+            updateMemoryEstimate(project);
 
             // When a change is applied, it can hang on to old data (in order to be able
             // to revert later). Hence, we need to save the change out.
@@ -166,7 +189,30 @@ public class HistoryEntry {
         if (getChange() == null) {
             _manager.loadChange(this);
         }
-        getChange().revert(project);
+        _manager.awaitSavedChanges(project.id);
+        project.beginRowWrites();
+        try {
+            getChange().revert(project);
+        } finally {
+            project.endRowWrites();
+        }
+        markDirtyRows(project, getChange());
+        updateMemoryEstimate(project);
+    }
+
+    static protected void markDirtyRows(Project project, Change change) {
+        if (change instanceof RowScopedChange) {
+            ((RowScopedChange) change).markDirtyRows(project.dirtyRows);
+        } else {
+            project.dirtyRows.markAll();
+        }
+    }
+
+    static protected void updateMemoryEstimate(Project project) {
+        // the budget itself is only enforced when projects are accessed, as we hold the project lock here
+        if (ProjectManager.singleton != null) {
+            ProjectManager.singleton.updateMemoryEstimate(project);
+        }
     }
 
     static public HistoryEntry load(Project project, String s) throws IOException {
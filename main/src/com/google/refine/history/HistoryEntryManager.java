@@ -36,10 +36,74 @@ package com.google.refine.history;
 import java.io.Writer;
 import java.util.Properties;
 
+import com.google.refine.model.Project;
 
 public interface HistoryEntryManager {
     public void loadChange(HistoryEntry historyEntry);
     public void saveChange(HistoryEntry historyEntry) throws Exception;
     public void save(HistoryEntry historyEntry, Writer writer, Properties options);
     public void delete(HistoryEntry historyEntry);
+
+    /**
+     * Waits until the changes of the project which are still being saved are written,
+     * before they can be affected by further changes to the project. Callers should
+     * not hold the project lock, so that the project can be read in the meantime.
+     */
+    default void awaitSavedChanges(long projectID) {
+    }
+
+    /**
+     * @return whether changes of the project are still being saved
+     */
+    default boolean hasUnsavedChanges(long projectID) {
+        return false;
+    }
+
+    /**
+     * @return whether the change of the entry was saved and can be loaded again
+     */
+    default boolean hasChange(HistoryEntry historyEntry) {
+        return true;
+    }
+
+    /**
+     * @return the size in bytes of the stored change of the entry, or 0 if unknown
+     *     or not stored yet
+     */
+    default long getChangeSize(HistoryEntry historyEntry) {
+        return 0;
+    }
+
+    /*
+     * Checkpoints are snapshots of the state of a project right after a history entry
+     * was applied. Managers which cannot store them keep the default implementations.
+     */
+
+    /**
+     * Schedules a checkpoint to be saved. The state of the project is captured
+     * before returning, but may be stored later on another thread.
+     * 
+     * @param onSaved
+     *     called once the checkpoint is stored, possibly on another thread
+     * @return whether a checkpoint was scheduled
+     */
+    default boolean saveCheckpoint(HistoryEntry historyEntry, Project project, Runnable onSaved) throws Exception {
+        return false;
+    }
+
+    default boolean hasCheckpoint(HistoryEntry historyEntry) {
+        return false;
+    }
+
+    /**
+     * Restores the state of the project saved in the checkpoint of the entry.
+     * 
+     * @return whether the checkpoint was restored
+     */
+    default boolean restoreCheckpoint(HistoryEntry historyEntry, Project project) throws Exception {
+        return false;
+    }
+
+    default void deleteCheckpoint(HistoryEntry historyEntry) {
+    }
 }
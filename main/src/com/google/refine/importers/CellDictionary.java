@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.importers;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.refine.model.Cell;
+
+/**
+ * Per-column dictionaries used while importing tabular data, so that rows with the
+ * same value in a column share a single Cell (and a single value instance) instead of
+ * each holding their own copy. This keeps low-cardinality columns such as countries
+ * or categories cheap in memory.
+ * 
+ * A column whose number of distinct values exceeds {@link #MAX_SIZE} stops being
+ * encoded, since most of its values are unlikely to repeat.
+ */
+public class CellDictionary {
+    /**
+     * Imports with fewer rows than this are not encoded.
+     */
+    static public int ROW_THRESHOLD = 10000;
+    /**
+     * Maximum number of distinct values kept per column.
+     */
+    static public int MAX_SIZE = 100000;
+    
+    static final private Map<Object, Cell> DISABLED = Collections.emptyMap();
+    
+    final protected List<Map<Object, Cell>> _columns = new ArrayList<>();
+    protected long _savedBytes = 0;
+    
+    /**
+     * Returns the cell to store for a token read from the input.
+     * 
+     * @param cellIndex
+     *      the cell index of the column
+     * @param key
+     *      the token as read, before type guessing, which identifies the value
+     * @param value
+     *      the value to store, computed from the token only if no cell is found
+     */
+    public Cell getCell(int cellIndex, Object key, Function<Object, Serializable> value) {
+        while (_columns.size() <= cellIndex) {
+            _columns.add(new HashMap<>());
+        }
+        Map<Object, Cell> cells = _columns.get(cellIndex);
+        
+        Cell cell = cells.get(key);
+        if (cell != null) {
+            _savedBytes += estimateSize(cell.value);
+            return cell;
+        }
+        
+        cell = new Cell(value.apply(key), null);
+        if (cells != DISABLED) {
+            if (cells.size() < MAX_SIZE) {
+                cells.put(key, cell);
+            } else {
+                _columns.set(cellIndex, DISABLED);
+            }
+        }
+        return cell;
+    }
+    
+    /**
+     * @return an estimate of the heap saved so far by sharing cells, in bytes
+     */
+    public long getSavedBytes() {
+        return _savedBytes;
+    }
+    
+    /**
+     * Rough size of a cell and its value on a 64-bit JVM with compressed references.
+     */
+    static protected long estimateSize(Serializable value) {
+        long size = 24; // the Cell itself
+        if (value instanceof String) {
+            size += 40 + ((String) value).length(); // String and its byte array
+        } else if (value instanceof Number || value instanceof Boolean) {
+            size += 16;
+        }
+        return size;
+    }
+}
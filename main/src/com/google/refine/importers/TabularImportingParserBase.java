@@ -126,6 +126,8 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
         boolean storeBlankRows = JSONUtilities.getBoolean(options, "storeBlankRows", true);
         boolean storeBlankCellsAsNulls = JSONUtilities.getBoolean(options, "storeBlankCellsAsNulls", true);
         boolean trimStrings = JSONUtilities.getBoolean(options, "trimStrings", false);
+        CellDictionary dictionary = JSONUtilities.getBoolean(options, "dictionaryEncoding", true) ?
+                new CellDictionary() : null;
 
         List<String> columnNames = new ArrayList<String>();
         boolean hasOurOwnColumnNames = headerLines > 0;
@@ -179,19 +181,19 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
                                 row.setCell(column.getCellIndex(), (Cell) value);
                                 rowHasData = true;
                             } else if (ExpressionUtils.isNonBlankData(value)) {
-                                Serializable storedValue;
-                                if (value instanceof String) {
-                                    if(trimStrings) {
-                                        value = ((String) value).trim();
-                                    }
-                                    storedValue = guessCellValueTypes ?
-                                        ImporterUtilities.parseCellValue((String) value) : (String) value;
-                                    
+                                if (value instanceof String && trimStrings) {
+                                    value = ((String) value).trim();
+                                }
+                                
+                                Cell cell;
+                                if (dictionary != null && project.rows.size() >= CellDictionary.ROW_THRESHOLD) {
+                                    cell = dictionary.getCell(column.getCellIndex(), value,
+                                            v -> storableValue(v, guessCellValueTypes));
                                 } else {
-                                    storedValue = ExpressionUtils.wrapStorable(value);
+                                    cell = new Cell(storableValue(value, guessCellValueTypes), null);
                                 }
                                 
-                                row.setCell(column.getCellIndex(), new Cell(storedValue, null));
+                                row.setCell(column.getCellIndex(), cell);
                                 rowHasData = true;
                             } else if (!storeBlankCellsAsNulls) {
                                 row.setCell(column.getCellIndex(), new Cell("", null));
@@ -213,5 +215,18 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
         } catch (IOException e) {
             exceptions.add(e);
         }
+        
+        if (dictionary != null && dictionary.getSavedBytes() > 0) {
+            job.addSavedMemory(dictionary.getSavedBytes());
+        }
+    }
+    
+    static protected Serializable storableValue(Object value, boolean guessCellValueTypes) {
+        if (value instanceof String) {
+            return guessCellValueTypes ?
+                ImporterUtilities.parseCellValue((String) value) : (String) value;
+        } else {
+            return ExpressionUtils.wrapStorable(value);
+        }
     }
 }
@@ -126,6 +126,23 @@ public class ImportingJob  {
         }
     }
 
+    /**
+     * Adds to the estimate of the memory saved while importing by sharing identical
+     * cells, which is reported in MB with the progress of the job.
+     */
+    public void addSavedMemory(long bytes) {
+        synchronized (config) {
+            ObjectNode progress = JSONUtilities.getObject(config, "progress");
+            if (progress == null) {
+                progress = ParsingUtilities.mapper.createObjectNode();
+                JSONUtilities.safePut(config, "progress", progress);
+            }
+            long saved = JSONUtilities.getLong(progress, "savedBytes", 0) + bytes;
+            JSONUtilities.safePut(progress, "savedBytes", saved);
+            JSONUtilities.safePut(progress, "savedmemory", saved / 1000000);
+        }
+    }
+
     public void setFileSelection(ArrayNode fileSelectionArray) {
         synchronized (config) {
             JSONUtilities.safePut(config, "fileSelection", fileSelectionArray);
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes change files on a background thread, so that applying a change does not
+ * wait for it to be serialized and compressed. The backlog is bounded: when it is
+ * full, writes run on the calling thread instead.
+ * 
+ * Files are written under a temporary name and renamed once synced to disk, so a
+ * change file either exists completely or not at all.
+ * 
+ * Snapshots of whole projects, such as history checkpoints, are written by a
+ * thread of their own so that change files do not queue up behind them.
+ */
+public class AsyncChangeWriter {
+    final static Logger logger = LoggerFactory.getLogger("AsyncChangeWriter");
+
+    static public int MAX_BACKLOG = Integer.getInteger("refine.changeWriteBacklog", 16);
+
+    static protected ExecutorService executor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(MAX_BACKLOG),
+            runnable -> {
+                Thread thread = new Thread(runnable, "change-writer");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    static protected ExecutorService snapshotExecutor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(2),
+            runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    static protected final Map<File, PendingWrite> pending = new ConcurrentHashMap<>();
+
+    public interface Task {
+        /**
+         * Writes the whole content of the file.
+         */
+        public void write(File file) throws Exception;
+    }
+
+    static protected class PendingWrite extends FutureTask<Void> {
+        final long projectID;
+        final File file;
+        final boolean snapshot;
+
+        PendingWrite(long projectID, File file, Task task, boolean snapshot, Runnable onWritten) {
+            super(() -> {
+                File tempFile = new File(file.getParentFile(), file.getName() + ".temp");
+                try {
+                    task.write(tempFile);
+                    if (!tempFile.renameTo(file)) {
+                        throw new IOException("Failed to rename " + tempFile.getAbsolutePath());
+                    }
+                    if (onWritten != null) {
+                        onWritten.run();
+                    }
+                } catch (Exception e) {
+                    tempFile.delete();
+                    logger.error("Failed to write " + (snapshot ? "snapshot " : "change file ") + file.getAbsolutePath(), e);
+                    throw e;
+                } finally {
+                    // once the file is in place, readers can use it directly
+                    pending.remove(file);
+                }
+                return null;
+            });
+            this.projectID = projectID;
+            this.file = file;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Schedules a file to be written, unless it is already being written.
+     */
+    static public void submit(long projectID, File file, Task task) {
+        PendingWrite write = new PendingWrite(projectID, file, task, false, null);
+        if (pending.putIfAbsent(file, write) == null) {
+            executor.execute(write);
+        }
+    }
+
+    /**
+     * Schedules a snapshot to be written, unless it is already being written.
+     * The task must only read data captured beforehand, not the live project.
+     * 
+     * @param onWritten
+     *      called on the writing thread once the file is in place, not called
+     *      if the write fails
+     */
+    static public void submitSnapshot(long projectID, File file, Task task, Runnable onWritten) {
+        PendingWrite write = new PendingWrite(projectID, file, task, true, onWritten);
+        if (pending.putIfAbsent(file, write) == null) {
+            snapshotExecutor.execute(write);
+        }
+    }
+
+    static public boolean isPending(File file) {
+        return pending.containsKey(file);
+    }
+
+    /**
+     * @return whether change files of the project are being written, snapshots aside
+     */
+    static public boolean hasPendingChanges(long projectID) {
+        return hasPending(projectID, false);
+    }
+
+    /**
+     * @return whether snapshots of the project are being written
+     */
+    static public boolean hasPendingSnapshots(long projectID) {
+        return hasPending(projectID, true);
+    }
+
+    static protected boolean hasPending(long projectID, boolean snapshot) {
+        for (PendingWrite write : pending.values()) {
+            if (write.projectID == projectID && write.snapshot == snapshot) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits until the file is written, if it is being written. Failed writes
+     * are logged and leave no file behind.
+     */
+    static public void await(File file) {
+        PendingWrite write = pending.get(file);
+        if (write != null) {
+            await(write);
+        }
+    }
+
+    /**
+     * Waits until all the files of the project being written are written.
+     */
+    static public void awaitProject(long projectID) {
+        awaitProject(projectID, true);
+    }
+
+    /**
+     * Waits until the change files of the project being written are written,
+     * without waiting for its snapshots.
+     */
+    static public void awaitProjectChanges(long projectID) {
+        awaitProject(projectID, false);
+    }
+
+    static protected void awaitProject(long projectID, boolean snapshots) {
+        List<PendingWrite> writes = new ArrayList<>();
+        for (PendingWrite write : pending.values()) {
+            if (write.projectID == projectID && (snapshots || !write.snapshot)) {
+                writes.add(write);
+            }
+        }
+        for (PendingWrite write : writes) {
+            await(write);
+        }
+    }
+
+    static public void awaitAll() {
+        for (PendingWrite write : new ArrayList<>(pending.values())) {
+            await(write);
+        }
+    }
+
+    static protected void await(PendingWrite write) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    write.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // already logged by the writer
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
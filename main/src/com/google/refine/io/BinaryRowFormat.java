@@ -0,0 +1,497 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.util.Pool;
+
+/**
+ * Compact binary encoding of the rows of a project, stored in the
+ * "rows.bin" entry of data.zip next to the textual "data.txt" (which still
+ * holds the column model, history and overlay models).
+ * 
+ * The stream starts with a magic number and a format version, followed by
+ * a header listing the columns of the project and the number of rows.
+ * Each row is then written as a varint byte length followed by its body:
+ * a flag byte, the size of its cell list, the number of non-null cells and
+ * for each of them the delta to the previous cell index and a type-tagged
+ * value. Recons are referred to by id and stored in the {@link Pool}, as
+ * in the legacy JSON lines format.
+ * 
+ * Because rows are length-prefixed, a reader can slice the stream into
+ * rows without decoding them.
+ */
+public class BinaryRowFormat {
+
+    final static Logger logger = LoggerFactory.getLogger("binary_row_format");
+
+    static final public String ENTRY_NAME = "rows.bin";
+    static final public String ROW_FORMAT = "binary";
+
+    static final public int VERSION = 1;
+
+    static final private byte[] MAGIC = { 'O', 'R', 'R', 'W' };
+
+    static final private int FLAGGED = 1;
+    static final private int STARRED = 2;
+
+    static final private int RECON_BIT = 0x80;
+
+    static final private int TYPE_NULL = 0;
+    static final private int TYPE_STRING = 1;
+    static final private int TYPE_INTEGER = 2;
+    static final private int TYPE_LONG = 3;
+    static final private int TYPE_DOUBLE = 4;
+    static final private int TYPE_FLOAT = 5;
+    static final private int TYPE_TRUE = 6;
+    static final private int TYPE_FALSE = 7;
+    static final private int TYPE_DATE = 8;
+    static final private int TYPE_ERROR = 9;
+
+    /**
+     * Writes all the rows of the project. Recons found in cells are added
+     * to the pool, which must be saved after this method returns.
+     */
+    static public void write(Project project, OutputStream out, Pool pool) throws IOException {
+        write(project.columnModel.columns, project.rows, out, pool);
+    }
+
+    /**
+     * Writes the given rows, for instance a segment of the rows of a project.
+     */
+    static public void write(List<Column> columns, List<Row> rows, OutputStream out, Pool pool) throws IOException {
+        Encoder header = new Encoder();
+        header.writeBytes(MAGIC, 0, MAGIC.length);
+        header.writeVarLong(VERSION);
+
+        header.writeVarLong(columns.size());
+        for (Column column : columns) {
+            header.writeVarLong(column.getCellIndex());
+            header.writeString(column.getName());
+        }
+        header.writeVarLong(rows.size());
+        header.writeTo(out);
+
+        Encoder body = new Encoder();
+        Encoder length = new Encoder();
+        for (Row row : rows) {
+            body.reset();
+            encodeRow(row, body, pool);
+
+            length.reset();
+            length.writeVarLong(body.size());
+            length.writeTo(out);
+            body.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads rows written by {@link #write(Project, OutputStream, Pool)} and
+     * appends them to the project, whose column model must already be loaded.
+     * Rows are sliced into blocks on the calling thread and decoded by a
+     * {@link ParallelRowLoader}.
+     * 
+     * @return the largest cell list size found in the rows
+     */
+    static public int read(Project project, InputStream is, Pool pool, ProjectLoadProgress progress) throws Exception {
+        return read(project, project.rows, true, is, pool, progress);
+    }
+
+    /**
+     * Reads rows into the given list rather than the rows of the project.
+     * 
+     * @param parallel
+     *      whether rows can be decoded on worker threads
+     */
+    static public int read(Project project, List<Row> target, boolean parallel, InputStream is, Pool pool,
+            ProjectLoadProgress progress) throws Exception {
+        DataInputStream in = new DataInputStream(is);
+
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary row file");
+        }
+        int version = (int) readVarLong(in);
+        if (version > VERSION) {
+            throw new IOException("Unsupported binary row format version " + version);
+        }
+
+        int columnCount = (int) readVarLong(in);
+        for (int i = 0; i < columnCount; i++) {
+            int cellIndex = (int) readVarLong(in);
+            String name = new String(readBytes(in, (int) readVarLong(in)), StandardCharsets.UTF_8);
+            Column column = project.columnModel.getColumnByName(name);
+            if (column == null || column.getCellIndex() != cellIndex) {
+                logger.debug("Column {} of the row file does not match the column model of project {}", name, project.id);
+            }
+        }
+
+        int rowCount = (int) readVarLong(in);
+        if (target instanceof ArrayList) {
+            ((ArrayList<Row>) target).ensureCapacity(target.size() + rowCount);
+        }
+
+        ParallelRowLoader loader = new ParallelRowLoader(target, rowCount, parallel, progress);
+        for (int start = 0; start < rowCount; start += ParallelRowLoader.BLOCK_SIZE) {
+            int count = Math.min(ParallelRowLoader.BLOCK_SIZE, rowCount - start);
+            int[] offsets = new int[count + 1];
+            byte[] buffer = new byte[count * 64];
+            for (int i = 0; i < count; i++) {
+                int length = (int) readVarLong(in);
+                if (buffer.length < offsets[i] + length) {
+                    buffer = Arrays.copyOf(buffer, Math.max(offsets[i] + length, buffer.length * 2));
+                }
+                in.readFully(buffer, offsets[i], length);
+                offsets[i + 1] = offsets[i] + length;
+            }
+
+            final byte[] block = buffer;
+            loader.add(() -> {
+                List<Row> rows = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    rows.add(decodeRow(block, offsets[i], offsets[i + 1] - offsets[i], pool));
+                }
+                return rows;
+            });
+        }
+        return loader.finish();
+    }
+
+    static protected void encodeRow(Row row, Encoder out, Pool pool) {
+        out.write((row.flagged ? FLAGGED : 0) | (row.starred ? STARRED : 0));
+
+        List<Cell> cells = row.cells;
+        int cellCount = cells.size();
+        int nonNull = 0;
+        for (int i = 0; i < cellCount; i++) {
+            if (cells.get(i) != null) {
+                nonNull++;
+            }
+        }
+        out.writeVarLong(cellCount);
+        out.writeVarLong(nonNull);
+
+        int previous = -1;
+        for (int i = 0; i < cellCount; i++) {
+            Cell cell = cells.get(i);
+            if (cell != null) {
+                out.writeVarLong(i - previous - 1);
+                previous = i;
+                encodeCell(cell, out, pool);
+            }
+        }
+    }
+
+    static protected void encodeCell(Cell cell, Encoder out, Pool pool) {
+        Serializable value = cell.value;
+        int reconBit = cell.recon != null ? RECON_BIT : 0;
+
+        if (value == null) {
+            out.write(TYPE_NULL | reconBit);
+        } else if (value instanceof String) {
+            out.write(TYPE_STRING | reconBit);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.write(TYPE_INTEGER | reconBit);
+            out.writeVarLong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.write(TYPE_LONG | reconBit);
+            out.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Float) {
+            out.write(TYPE_FLOAT | reconBit);
+            out.writeFixed(Float.floatToIntBits((Float) value), 4);
+        } else if (value instanceof Number) {
+            out.write(TYPE_DOUBLE | reconBit);
+            out.writeFixed(Double.doubleToLongBits(((Number) value).doubleValue()), 8);
+        } else if (value instanceof Boolean) {
+            out.write(((Boolean) value ? TYPE_TRUE : TYPE_FALSE) | reconBit);
+        } else if (value instanceof OffsetDateTime || value instanceof LocalDateTime) {
+            Instant instant = value instanceof OffsetDateTime ?
+                    ((OffsetDateTime) value).toInstant() :
+                    ((LocalDateTime) value).toInstant(ZoneOffset.UTC);
+            out.write(TYPE_DATE | reconBit);
+            out.writeVarLong(zigZag(instant.getEpochSecond()));
+            out.writeVarLong(instant.getNano());
+        } else if (value instanceof EvalError) {
+            out.write(TYPE_ERROR | reconBit);
+            out.writeString(((EvalError) value).message);
+        } else {
+            out.write(TYPE_STRING | reconBit);
+            out.writeString(value.toString());
+        }
+
+        if (cell.recon != null) {
+            out.writeVarLong(cell.recon.id);
+            if (pool != null) {
+                pool.pool(cell.recon);
+            }
+        }
+    }
+
+    /**
+     * Decodes a single row body, as delimited by its length prefix.
+     */
+    static public Row decodeRow(byte[] buffer, int offset, int length, Pool pool) throws IOException {
+        Decoder in = new Decoder(buffer, offset, offset + length);
+
+        int flags = in.read();
+        int cellCount = (int) in.readVarLong();
+        int nonNull = (int) in.readVarLong();
+
+        Row row = new Row(cellCount);
+        row.flagged = (flags & FLAGGED) != 0;
+        row.starred = (flags & STARRED) != 0;
+
+        List<Cell> cells = row.cells;
+        for (int i = 0; i < nonNull; i++) {
+            int gap = (int) in.readVarLong();
+            for (int j = 0; j < gap; j++) {
+                cells.add(null);
+            }
+            cells.add(decodeCell(in, pool));
+        }
+        while (cells.size() < cellCount) {
+            cells.add(null);
+        }
+        return row;
+    }
+
+    static protected Cell decodeCell(Decoder in, Pool pool) throws IOException {
+        int tag = in.read();
+        Serializable value;
+        switch (tag & ~RECON_BIT) {
+        case TYPE_NULL:
+            value = null;
+            break;
+        case TYPE_STRING:
+            value = in.readString();
+            break;
+        case TYPE_INTEGER:
+            value = (int) unZigZag(in.readVarLong());
+            break;
+        case TYPE_LONG:
+            value = unZigZag(in.readVarLong());
+            break;
+        case TYPE_DOUBLE:
+            value = Double.longBitsToDouble(in.readFixed(8));
+            break;
+        case TYPE_FLOAT:
+            value = Float.intBitsToFloat((int) in.readFixed(4));
+            break;
+        case TYPE_TRUE:
+            value = Boolean.TRUE;
+            break;
+        case TYPE_FALSE:
+            value = Boolean.FALSE;
+            break;
+        case TYPE_DATE:
+            long seconds = unZigZag(in.readVarLong());
+            int nanos = (int) in.readVarLong();
+            value = Instant.ofEpochSecond(seconds, nanos).atOffset(ZoneOffset.UTC);
+            break;
+        case TYPE_ERROR:
+            value = new EvalError(in.readString());
+            break;
+        default:
+            throw new IOException("Unknown cell type " + (tag & ~RECON_BIT));
+        }
+
+        Recon recon = null;
+        if ((tag & RECON_BIT) != 0) {
+            long reconId = in.readVarLong();
+            recon = pool != null ? pool.getRecon(Long.toString(reconId)) : null;
+        }
+        return new Cell(value, recon);
+    }
+
+    static private long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static private long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static protected long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static private byte[] readBytes(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Growable byte buffer with varint and string encoders.
+     */
+    static protected class Encoder {
+        protected byte[] buffer = new byte[256];
+        protected int size = 0;
+
+        protected void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(size + extra, buffer.length * 2));
+            }
+        }
+
+        public void reset() {
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void write(int b) {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        public void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        public void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[size++] = (byte) v;
+        }
+
+        public void writeFixed(long v, int bytes) {
+            ensure(bytes);
+            for (int i = 0; i < bytes; i++) {
+                buffer[size++] = (byte) (v >>> (8 * i));
+            }
+        }
+
+        public void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, size);
+        }
+    }
+
+    /**
+     * Cursor over a row body.
+     */
+    static protected class Decoder {
+        final protected byte[] buffer;
+        protected int position;
+        final protected int limit;
+
+        public Decoder(byte[] buffer, int offset, int limit) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        public int read() throws IOException {
+            if (position >= limit) {
+                throw new EOFException();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        public long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        public long readFixed(int bytes) throws IOException {
+            if (position + bytes > limit) {
+                throw new EOFException();
+            }
+            long result = 0;
+            for (int i = 0; i < bytes; i++) {
+                result |= (long) (buffer[position++] & 0xFF) << (8 * i);
+            }
+            return result;
+        }
+
+        public String readString() throws IOException {
+            int length = (int) readVarLong();
+            if (position + length > limit) {
+                throw new EOFException();
+            }
+            String s = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+    }
+}
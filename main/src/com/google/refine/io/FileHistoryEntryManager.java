@@ -33,20 +33,32 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import com.google.refine.ProjectManager;
+import com.google.refine.history.Change;
 import com.google.refine.history.History;
 import com.google.refine.history.HistoryEntry;
 import com.google.refine.history.HistoryEntryManager;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.Pool;
 
@@ -56,9 +68,11 @@ public class FileHistoryEntryManager implements HistoryEntryManager{
     @Override
     public void delete(HistoryEntry historyEntry) {
         File file = getChangeFile(historyEntry);
+        AsyncChangeWriter.await(file);
         if (file.exists()) {
             file.delete();
         }
+        deleteCheckpoint(historyEntry);
     }
 
     @Override
@@ -77,6 +91,7 @@ public class FileHistoryEntryManager implements HistoryEntryManager{
     @Override
     public void loadChange(HistoryEntry historyEntry) {
         File changeFile = getChangeFile(historyEntry);
+        AsyncChangeWriter.await(changeFile);
 
         try {
             loadChange(historyEntry, changeFile);
@@ -102,22 +117,50 @@ public class FileHistoryEntryManager implements HistoryEntryManager{
         }
     }
 
+    /**
+     * Schedules the change of the entry to be written by the {@link AsyncChangeWriter}.
+     * The change kept in memory by the entry remains the reference until then.
+     */
     @Override
     public void saveChange(HistoryEntry historyEntry) throws Exception {
         File changeFile = getChangeFile(historyEntry);
         if (!(changeFile.exists())) {
-            saveChange(historyEntry, changeFile);
+            Change change = historyEntry.getChange();
+            AsyncChangeWriter.submit(historyEntry.projectID, changeFile, file -> saveChange(change, file));
         }
     }
 
+    @Override
+    public void awaitSavedChanges(long projectID) {
+        // checkpoints are written from copies of the rows, so changes do not wait for them
+        AsyncChangeWriter.awaitProjectChanges(projectID);
+    }
+
+    @Override
+    public boolean hasUnsavedChanges(long projectID) {
+        return AsyncChangeWriter.hasPendingChanges(projectID);
+    }
+
+    @Override
+    public boolean hasChange(HistoryEntry historyEntry) {
+        File changeFile = getChangeFile(historyEntry);
+        AsyncChangeWriter.await(changeFile);
+        return changeFile.exists();
+    }
+
     protected void saveChange(HistoryEntry historyEntry, File file) throws Exception {
-        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        saveChange(historyEntry.getChange(), file);
+    }
+
+    protected void saveChange(Change change, File file) throws Exception {
+        FileOutputStream fileOut = new FileOutputStream(file);
+        ZipOutputStream out = new ZipOutputStream(fileOut);
         try {
             Pool pool = new Pool();
 
             out.putNextEntry(new ZipEntry("change.txt"));
             try {
-                History.writeOneChange(out, historyEntry.getChange(), pool);
+                History.writeOneChange(out, change, pool);
             } catch(Exception e) {
                 e.printStackTrace();
             } finally {
@@ -130,11 +173,196 @@ public class FileHistoryEntryManager implements HistoryEntryManager{
             } finally {
                 out.closeEntry();
             }
+            out.finish();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public long getChangeSize(HistoryEntry historyEntry) {
+        // changes still being written count as empty rather than blocking
+        return getChangeFile(historyEntry).length();
+    }
+
+    /**
+     * Captures the state and a copy of the rows of the project, which the caller
+     * holds the lock of, and writes them by the {@link AsyncChangeWriter}. Rows
+     * of projects saved in segments are only copied if they are dirty; the
+     * others are copied from the segment files in the background.
+     */
+    @Override
+    public boolean saveCheckpoint(HistoryEntry historyEntry, Project project, Runnable onSaved) throws Exception {
+        Pool pool = new Pool();
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        project.saveState(state, pool);
+
+        List<Column> columns = new ArrayList<Column>(project.columnModel.columns.size());
+        for (Column column : project.columnModel.columns) {
+            columns.add(new Column(column.getCellIndex(), column.getName()));
+        }
+
+        SegmentedRowStore store = project.rowStore;
+        BitSet dirty = project.dirtyRows.snapshot();
+        File file = getCheckpointFile(historyEntry);
+        if (store != null && dirty != null && store.getRowCount() == project.rows.size()) {
+            // dirty rows are held in memory, even by a PagedRowList
+            TreeMap<Integer, Row> changed = new TreeMap<>();
+            for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+                changed.put(i, project.rows.get(i).dup());
+            }
+            File dir = ((FileProjectManager) ProjectManager.singleton).getProjectDir(project.id);
+            AsyncChangeWriter.submitSnapshot(historyEntry.projectID, file,
+                    f -> saveCheckpoint(state.toByteArray(), pool, f,
+                            out -> store.copyTo(out, project, dir, columns, changed)),
+                    onSaved);
+            return true;
+        }
+
+        // rows are modified in place by later changes
+        List<Row> rows = new ArrayList<Row>(project.rows.size());
+        for (Row row : project.rows) {
+            rows.add(row.dup());
+        }
+        AsyncChangeWriter.submitSnapshot(historyEntry.projectID, file,
+                f -> saveCheckpoint(state.toByteArray(), pool, f, out -> {
+                    out.putNextEntry(new ZipEntry(BinaryRowFormat.ENTRY_NAME));
+                    try {
+                        BinaryRowFormat.write(columns, rows, out, pool);
+                    } finally {
+                        out.closeEntry();
+                    }
+                    return null;
+                }),
+                onSaved);
+        return true;
+    }
+
+    protected interface RowWriter {
+        /**
+         * Writes the rows of a checkpoint.
+         * 
+         * @return the manifest of the segment entries written, or null if the
+         *      rows were written to a single entry
+         */
+        public SegmentedRowStore write(ZipOutputStream out) throws Exception;
+    }
+
+    protected void saveCheckpoint(byte[] state, Pool pool, File file, RowWriter rowWriter) throws Exception {
+        FileOutputStream fileOut = new FileOutputStream(file);
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(fileOut));
+        try {
+            out.putNextEntry(new ZipEntry("state.txt"));
+            try {
+                out.write(state);
+            } finally {
+                out.closeEntry();
+            }
+
+            SegmentedRowStore segments = rowWriter.write(out);
+            if (segments != null) {
+                out.putNextEntry(new ZipEntry(SegmentedRowStore.MANIFEST_ENTRY));
+                try {
+                    segments.writeManifest(out);
+                } finally {
+                    out.closeEntry();
+                }
+            }
+
+            out.putNextEntry(new ZipEntry("pool.txt"));
+            try {
+                pool.save(out);
+            } finally {
+                out.closeEntry();
+            }
+            out.finish();
+            out.flush();
+            fileOut.getFD().sync();
         } finally {
             out.close();
         }
     }
 
+    @Override
+    public boolean hasCheckpoint(HistoryEntry historyEntry) {
+        File file = getCheckpointFile(historyEntry);
+        AsyncChangeWriter.await(file);
+        return file.exists();
+    }
+
+    /**
+     * Restores the checkpoint of the entry. The rows of a project opened out of
+     * core are written to new segment files as they are decoded and paged in
+     * from there, rather than being loaded in memory.
+     */
+    @Override
+    public boolean restoreCheckpoint(HistoryEntry historyEntry, Project project) throws Exception {
+        File file = getCheckpointFile(historyEntry);
+        AsyncChangeWriter.await(file);
+        if (!file.exists()) {
+            return false;
+        }
+
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            Pool pool = new Pool();
+            pool.load(zipFile.getInputStream(zipFile.getEntry("pool.txt")));
+            ZipEntry manifestEntry = zipFile.getEntry(SegmentedRowStore.MANIFEST_ENTRY);
+            SegmentedRowStore segments = manifestEntry == null ? null
+                    : SegmentedRowStore.readManifest(zipFile.getInputStream(manifestEntry));
+
+            if (project.rows instanceof PagedRowList) {
+                File dir = ((FileProjectManager) ProjectManager.singleton).getProjectDir(project.id);
+                SegmentedRowStore store;
+                if (segments != null) {
+                    store = segments.extract(zipFile, project.rowStore, dir);
+                } else {
+                    SegmentedRowStore.SegmentWriter writer = new SegmentedRowStore.SegmentWriter(project, project.rowStore, dir);
+                    InputStream rowStream = new BufferedInputStream(
+                            zipFile.getInputStream(zipFile.getEntry(BinaryRowFormat.ENTRY_NAME)), 1 << 16);
+                    BinaryRowFormat.read(project, writer, false, rowStream, pool, new ProjectLoadProgress(project.id));
+                    store = writer.finish();
+                }
+
+                synchronized (project) {
+                    project.restoreState(zipFile.getInputStream(zipFile.getEntry("state.txt")),
+                            new PagedRowList(project, store, dir));
+                    // the segments match the restored rows, as after loading the project
+                    project.rowStore = store;
+                    project.dirtyRows.clear();
+                }
+            } else {
+                List<Row> rows = new ArrayList<Row>();
+                if (segments != null) {
+                    segments.loadEntries(project, zipFile, rows, pool);
+                } else {
+                    InputStream rowStream = new BufferedInputStream(
+                            zipFile.getInputStream(zipFile.getEntry(BinaryRowFormat.ENTRY_NAME)), 1 << 16);
+                    BinaryRowFormat.read(project, rows, true, rowStream, pool, new ProjectLoadProgress(project.id));
+                }
+
+                project.restoreState(zipFile.getInputStream(zipFile.getEntry("state.txt")), rows);
+            }
+        } finally {
+            zipFile.close();
+        }
+        return true;
+    }
+
+    @Override
+    public void deleteCheckpoint(HistoryEntry historyEntry) {
+        File file = getCheckpointFile(historyEntry);
+        AsyncChangeWriter.await(file);
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    protected File getCheckpointFile(HistoryEntry historyEntry) {
+        return new File(getHistoryDir(historyEntry), historyEntry.id + ".checkpoint.zip");
+    }
+
     protected File getChangeFile(HistoryEntry historyEntry) {
         return new File(getHistoryDir(historyEntry), historyEntry.id + ".change.zip");
     }
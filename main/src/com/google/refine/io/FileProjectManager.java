@@ -188,6 +188,7 @@ public class FileProjectManager extends ProjectManager  {
 
     @Override
     public void exportProject(long projectId, TarArchiveOutputStream tos) throws IOException {
+        AsyncChangeWriter.awaitProject(projectId);
         File dir = this.getProjectDir(projectId);
         this.tarDir("", dir, tos);
     }
@@ -323,6 +324,7 @@ public class FileProjectManager extends ProjectManager  {
 
     @Override
     public void deleteProject(long projectID) {
+        AsyncChangeWriter.awaitProject(projectID);
         synchronized (this) {
             removeProject(projectID);
 
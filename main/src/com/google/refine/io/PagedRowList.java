@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Row list of a project opened out of core: rows stay in the segment files
+ * of a {@link SegmentedRowStore} and are paged in through a bounded cache of
+ * decoded segments.
+ * 
+ * Rows are mutable, so segments read while a change is applied (see
+ * {@link Project#beginRowWrites()}) are pinned in memory until the project
+ * is saved. Structural modifications (adding or removing rows) load all
+ * rows in memory, which changes doing so already require to keep their old
+ * rows; the list goes back to paging once the project has been saved.
+ */
+public class PagedRowList extends AbstractList<Row> implements RandomAccess {
+    /**
+     * Number of unpinned segments kept decoded in memory.
+     */
+    static public int CACHED_SEGMENTS = 16;
+
+    final protected Project _project;
+    final protected File _dir;
+    protected SegmentedRowStore _store;
+    protected LoadingCache<Integer, List<Row>> _cache;
+    final protected Map<Integer, List<Row>> _pinned = new ConcurrentHashMap<>();
+    final protected AtomicInteger _writers = new AtomicInteger();
+    protected List<Row> _resident = null;
+    protected volatile Page _last = null;
+
+    static protected class Page {
+        final int index;
+        final List<Row> rows;
+
+        Page(int index, List<Row> rows) {
+            this.index = index;
+            this.rows = rows;
+        }
+    }
+
+    public PagedRowList(Project project, SegmentedRowStore store, File dir) {
+        _project = project;
+        _dir = dir;
+        page(store);
+    }
+
+    protected void page(SegmentedRowStore store) {
+        _store = store;
+        _resident = null;
+        _pinned.clear();
+        _last = null;
+        _cache = CacheBuilder.newBuilder()
+                .maximumSize(CACHED_SEGMENTS)
+                .build(new CacheLoader<Integer, List<Row>>() {
+                    @Override
+                    public List<Row> load(Integer index) throws Exception {
+                        return store.loadSegment(_project, _dir, index);
+                    }
+                });
+    }
+
+    /**
+     * @return whether all rows are currently held in memory
+     */
+    public boolean isResident() {
+        return _resident != null;
+    }
+
+    /**
+     * @return the number of rows currently decoded in memory
+     */
+    public int getResidentRowCount() {
+        List<Row> resident = _resident;
+        if (resident != null) {
+            return resident.size();
+        }
+        return (int) Math.min(size(), getLoadedSegmentCount() * _store.getSegmentSize());
+    }
+
+    public int getSegmentSize() {
+        return _store.getSegmentSize();
+    }
+
+    /**
+     * @return the number of segments currently decoded in memory
+     */
+    public long getLoadedSegmentCount() {
+        return _resident != null ? 0 : _cache.size() + _pinned.size();
+    }
+
+    public void beginWrites() {
+        _writers.incrementAndGet();
+    }
+
+    public void endWrites() {
+        _writers.decrementAndGet();
+    }
+
+    /**
+     * Called once the project has been saved, so that pinned segments can
+     * be paged out again.
+     * 
+     * @param store
+     *      the segments the project was saved to, or null if its rows were
+     *      saved elsewhere, in which case all rows are loaded in memory
+     */
+    synchronized public void onSaved(SegmentedRowStore store) {
+        if (store == null) {
+            materialize();
+        } else if (_resident != null || store != _store) {
+            Map<Integer, List<Row>> loaded = _resident == null ? new ConcurrentHashMap<>(_pinned) : null;
+            page(store);
+            if (loaded != null) {
+                _cache.putAll(loaded);
+            }
+        }
+    }
+
+    protected List<Row> segment(int index) {
+        // pinned segments take precedence over copies which may have been
+        // paged in again by other threads
+        List<Row> rows = _pinned.get(index);
+        if (rows == null) {
+            Page last = _last;
+            if (last != null && last.index == index) {
+                rows = last.rows;
+            } else {
+                try {
+                    rows = _cache.getUnchecked(index);
+                } catch (UncheckedExecutionException e) {
+                    throw new IllegalStateException("Failed to read rows of project " + _project.id, e.getCause());
+                }
+                _last = new Page(index, rows);
+            }
+            if (_writers.get() > 0) {
+                rows = pin(index, rows);
+            }
+        }
+        return rows;
+    }
+
+    protected List<Row> pin(int index, List<Row> rows) {
+        List<Row> pinned = _pinned.putIfAbsent(index, rows);
+        return pinned != null ? pinned : rows;
+    }
+
+    synchronized protected List<Row> materialize() {
+        if (_resident == null) {
+            List<Row> resident = new ArrayList<>(_store.getRowCount());
+            for (int i = 0; i < _store.getSegments().size(); i++) {
+                resident.addAll(segment(i));
+            }
+            _resident = resident;
+            _pinned.clear();
+            _cache.invalidateAll();
+            _last = null;
+        }
+        return _resident;
+    }
+
+    @Override
+    public int size() {
+        List<Row> resident = _resident;
+        return resident != null ? resident.size() : _store.getRowCount();
+    }
+
+    @Override
+    public Row get(int index) {
+        List<Row> resident = _resident;
+        if (resident != null) {
+            return resident.get(index);
+        }
+        if (index < 0 || index >= _store.getRowCount()) {
+            throw new IndexOutOfBoundsException("Row " + index + " of " + _store.getRowCount());
+        }
+        int segmentSize = _store.getSegmentSize();
+        return segment(index / segmentSize).get(index % segmentSize);
+    }
+
+    @Override
+    public Row set(int index, Row row) {
+        List<Row> resident = _resident;
+        if (resident != null) {
+            return resident.set(index, row);
+        }
+        if (index < 0 || index >= _store.getRowCount()) {
+            throw new IndexOutOfBoundsException("Row " + index + " of " + _store.getRowCount());
+        }
+        int segmentSize = _store.getSegmentSize();
+        int segmentIndex = index / segmentSize;
+        List<Row> rows = pin(segmentIndex, segment(segmentIndex));
+        return rows.set(index % segmentSize, row);
+    }
+
+    @Override
+    public void add(int index, Row row) {
+        materialize().add(index, row);
+        modCount++;
+    }
+
+    @Override
+    public Row remove(int index) {
+        modCount++;
+        return materialize().remove(index);
+    }
+
+    @Override
+    synchronized public void clear() {
+        _resident = new ArrayList<>();
+        _pinned.clear();
+        _cache.invalidateAll();
+        _last = null;
+        modCount++;
+    }
+
+    /**
+     * Iterates over the rows segment by segment, without a cache lookup per row.
+     */
+    @Override
+    public Iterator<Row> iterator() {
+        List<Row> resident = _resident;
+        if (resident != null) {
+            return resident.iterator();
+        }
+        return new Iterator<Row>() {
+            int _index = 0;
+            List<Row> _segment = null;
+            final int _size = size();
+            final int _segmentSize = _store.getSegmentSize();
+
+            @Override
+            public boolean hasNext() {
+                return _index < _size;
+            }
+
+            @Override
+            public Row next() {
+                if (_index >= _size) {
+                    throw new NoSuchElementException();
+                }
+                int offset = _index % _segmentSize;
+                if (_segment == null || offset == 0) {
+                    _segment = segment(_index / _segmentSize);
+                }
+                _index++;
+                return _segment.get(offset);
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.google.refine.model.Row;
+
+/**
+ * Pipeline which decodes blocks of rows on worker threads while the calling
+ * thread keeps reading the next blocks from disk. Decoded blocks are
+ * appended to the row list in the order they were submitted.
+ */
+public class ParallelRowLoader {
+    /**
+     * Number of rows read from disk before being handed to a worker.
+     */
+    static public int BLOCK_SIZE = 1024;
+    /**
+     * Projects with fewer rows are decoded on the calling thread.
+     */
+    static public int MIN_PARALLEL_ROWS = 10000;
+    /**
+     * Executor the blocks are decoded on.
+     */
+    static protected ExecutorService executor = ForkJoinPool.commonPool();
+
+    final protected List<Row> _rows;
+    final protected ProjectLoadProgress _progress;
+    final protected boolean _parallel;
+    final protected int _window;
+    final protected Deque<Future<List<Row>>> _pending = new ArrayDeque<>();
+    protected int _maxCellCount = 0;
+
+    /**
+     * @param rows
+     *      the list decoded rows are appended to
+     * @param rowCount
+     *      the number of rows announced by the project file, reported as the
+     *      total unless the caller already set one
+     * @param progress
+     *      the progress to report loaded rows to
+     */
+    public ParallelRowLoader(List<Row> rows, int rowCount, ProjectLoadProgress progress) {
+        this(rows, rowCount, true, progress);
+    }
+
+    /**
+     * @param parallel
+     *      false to decode all blocks on the calling thread, for instance
+     *      when it may itself be a worker of the executor
+     */
+    public ParallelRowLoader(List<Row> rows, int rowCount, boolean parallel, ProjectLoadProgress progress) {
+        _rows = rows;
+        _progress = progress;
+        _parallel = parallel && rowCount >= MIN_PARALLEL_ROWS;
+
+        int parallelism = executor instanceof ForkJoinPool ?
+                ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        // bound the number of blocks held in memory while waiting for the head block
+        _window = 2 * parallelism + 2;
+
+        if (progress.getRowCount() < 0) {
+            progress.setRowCount(rowCount);
+        }
+    }
+
+    /**
+     * Schedules a block of rows for decoding. Null rows returned by the
+     * block are skipped.
+     */
+    public void add(Callable<List<Row>> block) throws Exception {
+        if (!_parallel) {
+            append(block.call());
+            return;
+        }
+        // a plain FutureTask rethrows the block's own exception, unlike ForkJoinPool.submit
+        FutureTask<List<Row>> task = new FutureTask<>(block);
+        executor.execute(task);
+        _pending.add(task);
+        while (_pending.size() >= _window) {
+            append(take());
+        }
+    }
+
+    /**
+     * Waits for all scheduled blocks to be decoded.
+     * 
+     * @return the largest cell list size found in the loaded rows
+     */
+    public int finish() throws Exception {
+        while (!_pending.isEmpty()) {
+            append(take());
+        }
+        return _maxCellCount;
+    }
+
+    protected List<Row> take() throws Exception {
+        Future<List<Row>> head = _pending.poll();
+        try {
+            return head.get();
+        } catch (ExecutionException e) {
+            for (Future<List<Row>> future : _pending) {
+                future.cancel(true);
+            }
+            _pending.clear();
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    protected void append(List<Row> block) {
+        int added = 0;
+        for (Row row : block) {
+            if (row != null) {
+                _rows.add(row);
+                _maxCellCount = Math.max(_maxCellCount, row.cells.size());
+                added++;
+            }
+        }
+        _progress.addLoadedRows(added);
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Progress of a project being loaded from disk, so that clients can report
+ * it while the request opening the project is pending.
+ */
+public class ProjectLoadProgress {
+
+    static final private Map<Long, ProjectLoadProgress> s_loading = new ConcurrentHashMap<>();
+
+    @JsonProperty("projectID")
+    final protected long _projectId;
+    final protected long _start = System.currentTimeMillis();
+    protected volatile int _rowCount = -1;
+    final protected AtomicInteger _loadedRows = new AtomicInteger();
+
+    protected ProjectLoadProgress(long projectId) {
+        _projectId = projectId;
+    }
+
+    /**
+     * Registers a project as being loaded.
+     */
+    static public ProjectLoadProgress start(long projectId) {
+        ProjectLoadProgress progress = new ProjectLoadProgress(projectId);
+        s_loading.put(projectId, progress);
+        return progress;
+    }
+
+    /**
+     * @return the progress of the project, or null if it is not being loaded
+     */
+    static public ProjectLoadProgress get(long projectId) {
+        return s_loading.get(projectId);
+    }
+
+    /**
+     * Marks the loading of a project as done, successfully or not.
+     */
+    static public void finish(ProjectLoadProgress progress) {
+        s_loading.remove(progress._projectId, progress);
+    }
+
+    public void setRowCount(int rowCount) {
+        _rowCount = rowCount;
+    }
+
+    public void addLoadedRows(int count) {
+        _loadedRows.addAndGet(count);
+    }
+
+    /**
+     * @return the number of rows announced by the project file, or -1 if
+     *      the rows have not been reached yet
+     */
+    @JsonProperty("rowCount")
+    public int getRowCount() {
+        return _rowCount;
+    }
+
+    @JsonProperty("loadedRows")
+    public int getLoadedRows() {
+        return _loadedRows.get();
+    }
+
+    @JsonProperty("percent")
+    public int getPercent() {
+        int rowCount = _rowCount;
+        return rowCount <= 0 ? 0 : (int) Math.min(100L, 100L * getLoadedRows() / rowCount);
+    }
+
+    @JsonProperty("elapsedMs")
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - _start;
+    }
+}
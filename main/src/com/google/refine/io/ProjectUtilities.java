@@ -33,9 +33,12 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.io;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -51,17 +54,35 @@ import com.google.refine.util.Pool;
 public class ProjectUtilities {
     final static Logger logger = LoggerFactory.getLogger("project_utilities");
 
+    /**
+     * Whether rows are saved in the {@link BinaryRowFormat} rather than as
+     * JSON lines in data.txt. Both formats can always be loaded.
+     */
+    static public boolean saveBinaryRows = !Boolean.getBoolean("refine.legacyProjectFormat");
+
+    /**
+     * Projects saved in segments with at least this many rows are opened out
+     * of core, paging their rows in from disk through a {@link PagedRowList}.
+     * Disabled unless the refine.outOfCoreRows system property is set.
+     */
+    static public int outOfCoreRows = Integer.getInteger("refine.outOfCoreRows", Integer.MAX_VALUE);
+
     synchronized public static void save(Project project) throws IOException {
+        // the saved history should only refer to changes which are on disk
+        AsyncChangeWriter.awaitProjectChanges(project.id);
         synchronized (project) {
             long id = project.id;
             File dir = ((FileProjectManager)ProjectManager.singleton).getProjectDir(id);
 
             File tempFile = new File(dir, "data.temp.zip");
+            BitSet dirty = project.dirtyRows.drain();
+            SegmentedRowStore store;
             try {
-                saveToFile(project, tempFile);
+                store = saveToFile(project, tempFile, dirty);
             } catch (IOException e) {
                 e.printStackTrace();
                 logger.warn("Failed to save project {}", id);
+                project.dirtyRows.markAll();
                 try {
                     tempFile.delete();
                 } catch (Exception e2) {
@@ -82,24 +103,79 @@ public class ProjectUtilities {
                 oldFile.delete();
             }
 
+            project.rowStore = store;
+            if (project.rows instanceof PagedRowList) {
+                // before deleting the segments it may still read from
+                ((PagedRowList) project.rows).onSaved(store);
+            }
+            // checkpoints being written copy rows from the segments they were
+            // taken on, which are then deleted by a later save
+            if (!AsyncChangeWriter.hasPendingSnapshots(id)) {
+                SegmentedRowStore.deleteUnusedSegments(store, dir);
+            }
+
             project.setLastSave();
 
-            logger.info("Saved project '{}'",id);
+            if (store != null) {
+                logger.info("Saved project '{}' ({} of {} row segments rewritten)",
+                        id, store.getWrittenSegments(), store.getSegments().size());
+            } else {
+                logger.info("Saved project '{}'",id);
+            }
         }
     }
 
-    protected static void saveToFile(Project project, File file) throws IOException  {
+    protected static SegmentedRowStore saveToFile(Project project, File file) throws IOException  {
+        return saveToFile(project, file, null);
+    }
+
+    /**
+     * Saves a project to a zip file. Rows of large projects are saved in
+     * segment files next to it, of which only those holding dirty rows are
+     * rewritten.
+     * 
+     * @param dirty
+     *      the rows modified since the last save, or null to rewrite all rows
+     * @return the segments the saved file refers to, or null if the rows are
+     *      stored in the file itself
+     */
+    protected static SegmentedRowStore saveToFile(Project project, File file, BitSet dirty) throws IOException  {
+        SegmentedRowStore store = null;
+        String rowFormat = null;
+        if (saveBinaryRows && SegmentedRowStore.shouldSegment(project)) {
+            store = SegmentedRowStore.write(project, project.rowStore, dirty, file.getParentFile());
+            rowFormat = SegmentedRowStore.ROW_FORMAT;
+        } else if (saveBinaryRows) {
+            rowFormat = BinaryRowFormat.ROW_FORMAT;
+        }
+
         ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
         try {
             Pool pool = new Pool();
 
             out.putNextEntry(new ZipEntry("data.txt"));
             try {
-                project.saveToOutputStream(out, pool);
+                project.saveToOutputStream(out, pool, rowFormat);
             } finally {
                 out.closeEntry();
             }
 
+            if (store != null) {
+                out.putNextEntry(new ZipEntry(SegmentedRowStore.MANIFEST_ENTRY));
+                try {
+                    store.writeManifest(out);
+                } finally {
+                    out.closeEntry();
+                }
+            } else if (saveBinaryRows) {
+                out.putNextEntry(new ZipEntry(BinaryRowFormat.ENTRY_NAME));
+                try {
+                    BinaryRowFormat.write(project, out, pool);
+                } finally {
+                    out.closeEntry();
+                }
+            }
+
             out.putNextEntry(new ZipEntry("pool.txt"));
             try {
                 pool.save(out);
@@ -109,6 +185,7 @@ public class ProjectUtilities {
         } finally {
             out.close();
         }
+        return store;
     }
 
     static public Project load(File dir, long id) {
@@ -154,13 +231,46 @@ public class ProjectUtilities {
                 pool.load(zipFile.getInputStream(poolEntry));
             } // else, it's a legacy project file
 
-            return Project.loadFromInputStream(
+            File dir = file.getParentFile();
+            Project.RowLoader rowLoader = (project, format, progress) -> {
+                if (BinaryRowFormat.ROW_FORMAT.equals(format)) {
+                    InputStream is = zipFile.getInputStream(getEntry(zipFile, BinaryRowFormat.ENTRY_NAME));
+                    return BinaryRowFormat.read(project, new BufferedInputStream(is, 1 << 16), pool, progress);
+                } else if (SegmentedRowStore.ROW_FORMAT.equals(format)) {
+                    SegmentedRowStore store = SegmentedRowStore.readManifest(
+                            zipFile.getInputStream(getEntry(zipFile, SegmentedRowStore.MANIFEST_ENTRY)));
+                    project.rowStore = store;
+                    if (store.getRowCount() >= outOfCoreRows) {
+                        // the column model already records the largest cell index
+                        project.rows = new PagedRowList(project, store, dir);
+                        return 0;
+                    }
+                    return store.load(project, dir, pool, progress);
+                }
+                throw new IOException("Unknown row format " + format);
+            };
+
+            Project project = Project.loadFromInputStream(
                     zipFile.getInputStream(zipFile.getEntry("data.txt")),
+                    rowLoader,
                     id,
                     pool
             );
+            if (project.rowStore != null) {
+                // the segments on disk match the loaded rows
+                project.dirtyRows.clear();
+            }
+            return project;
         } finally {
             zipFile.close();
         }
     }
+
+    static private ZipEntry getEntry(ZipFile zipFile, String name) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            throw new IOException("Missing entry " + name + " in " + zipFile.getName());
+        }
+        return entry;
+    }
 }
@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
+import com.google.refine.util.Pool;
+
+/**
+ * Stores the rows of a large project in fixed-size segments, each in its own
+ * file of the project directory, so that saving the project only rewrites
+ * the segments holding rows marked in {@link Project#dirtyRows}.
+ * 
+ * Instances are immutable manifests listing the segment files, saved in the
+ * "segments.json" entry of data.zip. Segment files are never overwritten:
+ * rewritten segments get a new generation number, so the data.zip being
+ * replaced stays valid until the new one is renamed in place.
+ */
+public class SegmentedRowStore {
+
+    final static Logger logger = LoggerFactory.getLogger("segmented_row_store");
+
+    static final public String MANIFEST_ENTRY = "segments.json";
+    static final public String ROW_FORMAT = "segments";
+
+    static final protected String SEGMENT_PREFIX = "segment-";
+    static final protected String SEGMENT_SUFFIX = ".zip";
+
+    /**
+     * Number of rows per segment.
+     */
+    static public int SEGMENT_SIZE = 65536;
+    /**
+     * Projects with fewer rows are saved entirely in data.zip.
+     */
+    static public int MIN_ROWS = 2 * SEGMENT_SIZE;
+
+    @JsonProperty("segmentSize")
+    final protected int _segmentSize;
+    @JsonProperty("rowCount")
+    final protected int _rowCount;
+    @JsonProperty("generation")
+    final protected long _generation;
+    @JsonProperty("segments")
+    final protected List<String> _segments;
+    @JsonIgnore
+    protected int _writtenSegments = 0;
+
+    @JsonCreator
+    public SegmentedRowStore(
+            @JsonProperty("segmentSize")
+            int segmentSize,
+            @JsonProperty("rowCount")
+            int rowCount,
+            @JsonProperty("generation")
+            long generation,
+            @JsonProperty("segments")
+            List<String> segments) {
+        _segmentSize = segmentSize;
+        _rowCount = rowCount;
+        _generation = generation;
+        _segments = segments;
+    }
+
+    static public boolean shouldSegment(Project project) {
+        return project.rows.size() >= MIN_ROWS;
+    }
+
+    @JsonIgnore
+    public int getRowCount() {
+        return _rowCount;
+    }
+
+    @JsonIgnore
+    public int getSegmentSize() {
+        return _segmentSize;
+    }
+
+    @JsonIgnore
+    public List<String> getSegments() {
+        return _segments;
+    }
+
+    /**
+     * @return the number of segment files written when this store was created
+     */
+    @JsonIgnore
+    public int getWrittenSegments() {
+        return _writtenSegments;
+    }
+
+    /**
+     * Writes the segments of a project which hold dirty rows, or all of them
+     * if the layout of the previous store does not match the project anymore.
+     * 
+     * @param previous
+     *      the store the project was last loaded from or saved to, or null
+     * @param dirty
+     *      the dirty rows, or null if all rows are dirty
+     * @return the store referencing the new and the unchanged segment files
+     */
+    static public SegmentedRowStore write(Project project, SegmentedRowStore previous, BitSet dirty, File dir)
+            throws IOException {
+        int rowCount = project.rows.size();
+        boolean rewriteAll = dirty == null || previous == null
+                || previous._segmentSize != SEGMENT_SIZE || previous._rowCount != rowCount;
+        long generation = Math.max(System.currentTimeMillis(), previous == null ? 0 : previous._generation + 1);
+
+        List<String> segments = new ArrayList<>();
+        int written = 0;
+        for (int from = 0, i = 0; from < rowCount; from += SEGMENT_SIZE, i++) {
+            int to = Math.min(rowCount, from + SEGMENT_SIZE);
+            if (!rewriteAll) {
+                int next = dirty.nextSetBit(from);
+                if (next < 0 || next >= to) {
+                    segments.add(previous._segments.get(i));
+                    continue;
+                }
+            }
+
+            String name = SEGMENT_PREFIX + i + "-" + generation + SEGMENT_SUFFIX;
+            writeSegment(project, project.rows.subList(from, to), new File(dir, name));
+            segments.add(name);
+            written++;
+        }
+
+        SegmentedRowStore store = new SegmentedRowStore(SEGMENT_SIZE, rowCount, generation, segments);
+        store._writtenSegments = written;
+        return store;
+    }
+
+    /**
+     * Writes rows appended one by one to new segment files, holding at most
+     * one segment in memory. This is a list so that it can be the target of
+     * {@link BinaryRowFormat#read(Project, List, boolean, InputStream, Pool, ProjectLoadProgress)};
+     * appended rows cannot be read back.
+     */
+    static public class SegmentWriter extends AbstractList<Row> {
+        final protected Project _project;
+        final protected File _dir;
+        final protected long _generation;
+        final protected List<String> _segments = new ArrayList<>();
+        protected List<Row> _buffer = new ArrayList<>();
+        protected int _rowCount = 0;
+
+        /**
+         * @param previous
+         *      the store the project was last loaded from or saved to, or null
+         */
+        public SegmentWriter(Project project, SegmentedRowStore previous, File dir) {
+            _project = project;
+            _dir = dir;
+            _generation = Math.max(System.currentTimeMillis(), previous == null ? 0 : previous._generation + 1);
+        }
+
+        @Override
+        public boolean add(Row row) {
+            _buffer.add(row);
+            _rowCount++;
+            if (_buffer.size() >= SEGMENT_SIZE) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return true;
+        }
+
+        protected void flush() throws IOException {
+            String name = SEGMENT_PREFIX + _segments.size() + "-" + _generation + SEGMENT_SUFFIX;
+            writeSegment(_project, _buffer, new File(_dir, name));
+            _segments.add(name);
+            _buffer = new ArrayList<>();
+        }
+
+        @Override
+        public Row get(int index) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int size() {
+            return _rowCount;
+        }
+
+        /**
+         * Writes the remaining rows.
+         * 
+         * @return the store referencing the written segment files
+         */
+        public SegmentedRowStore finish() throws IOException {
+            if (!_buffer.isEmpty()) {
+                flush();
+            }
+            SegmentedRowStore store = new SegmentedRowStore(SEGMENT_SIZE, _rowCount, _generation, _segments);
+            store._writtenSegments = _segments.size();
+            return store;
+        }
+    }
+
+    static protected void writeSegment(Project project, List<Row> rows, File file) throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            writeSegmentEntries(project.columnModel.columns, rows, out, "");
+        } finally {
+            out.close();
+        }
+    }
+
+    static protected void writeSegmentEntries(List<Column> columns, List<Row> rows, ZipOutputStream out, String prefix)
+            throws IOException {
+        Pool pool = new Pool();
+
+        out.putNextEntry(new ZipEntry(prefix + BinaryRowFormat.ENTRY_NAME));
+        try {
+            BinaryRowFormat.write(columns, rows, out, pool);
+        } finally {
+            out.closeEntry();
+        }
+
+        out.putNextEntry(new ZipEntry(prefix + "pool.txt"));
+        try {
+            pool.save(out);
+        } finally {
+            out.closeEntry();
+        }
+    }
+
+    static protected void copyEntry(ZipFile zipFile, String name, ZipOutputStream out, String target)
+            throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            return;
+        }
+        out.putNextEntry(new ZipEntry(target));
+        try (InputStream is = zipFile.getInputStream(entry)) {
+            IOUtils.copy(is, out);
+        } finally {
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * Copies the segments of this store into entries of another zip file, such
+     * as a history checkpoint. Segments holding none of the given rows are
+     * copied without being decoded; the others are decoded and written again
+     * with the given rows in place.
+     * 
+     * @param changed
+     *      the rows modified since this store was written, by row index
+     * @return a manifest listing the entry name prefixes of the copied segments,
+     *      to be read by {@link #extract} or {@link #loadEntries}
+     */
+    public SegmentedRowStore copyTo(ZipOutputStream out, Project project, File dir, List<Column> columns,
+            NavigableMap<Integer, Row> changed) throws Exception {
+        List<String> prefixes = new ArrayList<>(_segments.size());
+        for (int i = 0; i < _segments.size(); i++) {
+            int from = i * _segmentSize;
+            String prefix = SEGMENT_PREFIX + i + "/";
+            SortedMap<Integer, Row> patch = changed.subMap(from, from + _segmentSize);
+            if (patch.isEmpty()) {
+                try (ZipFile zipFile = new ZipFile(new File(dir, _segments.get(i)))) {
+                    copyEntry(zipFile, BinaryRowFormat.ENTRY_NAME, out, prefix + BinaryRowFormat.ENTRY_NAME);
+                    copyEntry(zipFile, "pool.txt", out, prefix + "pool.txt");
+                }
+            } else {
+                List<Row> rows = loadSegment(project, dir, i);
+                for (Map.Entry<Integer, Row> entry : patch.entrySet()) {
+                    rows.set(entry.getKey() - from, entry.getValue());
+                }
+                writeSegmentEntries(columns, rows, out, prefix);
+            }
+            prefixes.add(prefix);
+        }
+        return new SegmentedRowStore(_segmentSize, _rowCount, _generation, prefixes);
+    }
+
+    /**
+     * Writes the segments copied by {@link #copyTo} into a zip file back to
+     * new segment files, without decoding them.
+     * 
+     * @param previous
+     *      the store the project was last loaded from or saved to, or null
+     * @return the store referencing the new segment files
+     */
+    public SegmentedRowStore extract(ZipFile zipFile, SegmentedRowStore previous, File dir) throws IOException {
+        long generation = Math.max(System.currentTimeMillis(), previous == null ? 0 : previous._generation + 1);
+        List<String> segments = new ArrayList<>(_segments.size());
+        for (int i = 0; i < _segments.size(); i++) {
+            String prefix = _segments.get(i);
+            String name = SEGMENT_PREFIX + i + "-" + generation + SEGMENT_SUFFIX;
+            ZipOutputStream out = new ZipOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(new File(dir, name))));
+            try {
+                copyEntry(zipFile, prefix + BinaryRowFormat.ENTRY_NAME, out, BinaryRowFormat.ENTRY_NAME);
+                copyEntry(zipFile, prefix + "pool.txt", out, "pool.txt");
+            } finally {
+                out.close();
+            }
+            segments.add(name);
+        }
+        SegmentedRowStore store = new SegmentedRowStore(_segmentSize, _rowCount, generation, segments);
+        store._writtenSegments = segments.size();
+        return store;
+    }
+
+    /**
+     * Decodes the segments copied by {@link #copyTo} into a zip file, pooling
+     * their recons as {@link #load} does.
+     */
+    public void loadEntries(Project project, ZipFile zipFile, List<Row> target, Pool pool) throws Exception {
+        for (String prefix : _segments) {
+            ZipEntry poolEntry = zipFile.getEntry(prefix + "pool.txt");
+            if (poolEntry != null) {
+                pool.load(zipFile.getInputStream(poolEntry));
+            }
+        }
+        ProjectLoadProgress progress = new ProjectLoadProgress(project.id);
+        progress.setRowCount(_rowCount);
+        for (String prefix : _segments) {
+            InputStream is = zipFile.getInputStream(zipFile.getEntry(prefix + BinaryRowFormat.ENTRY_NAME));
+            BinaryRowFormat.read(project, target, true, new BufferedInputStream(is, 1 << 16), pool, progress);
+        }
+    }
+
+    public void writeManifest(OutputStream out) throws IOException {
+        // not writeValue, which would close the zip stream
+        out.write(ParsingUtilities.saveWriter.writeValueAsBytes(this));
+    }
+
+    static public SegmentedRowStore readManifest(InputStream is) throws IOException {
+        return ParsingUtilities.mapper.readValue(is, SegmentedRowStore.class);
+    }
+
+    /**
+     * Loads the rows of all segments into the project. The recons of all
+     * segments are pooled before any row is decoded, so that cells in
+     * different segments share the same recon objects.
+     * 
+     * @return the largest cell list size found in the rows
+     */
+    public int load(Project project, File dir, Pool pool, ProjectLoadProgress progress) throws Exception {
+        progress.setRowCount(_rowCount);
+
+        List<ZipFile> zipFiles = new ArrayList<>(_segments.size());
+        try {
+            for (String segment : _segments) {
+                ZipFile zipFile = new ZipFile(new File(dir, segment));
+                zipFiles.add(zipFile);
+                ZipEntry poolEntry = zipFile.getEntry("pool.txt");
+                if (poolEntry != null) {
+                    pool.load(zipFile.getInputStream(poolEntry));
+                }
+            }
+
+            int maxCellCount = 0;
+            for (ZipFile zipFile : zipFiles) {
+                InputStream is = zipFile.getInputStream(zipFile.getEntry(BinaryRowFormat.ENTRY_NAME));
+                maxCellCount = Math.max(maxCellCount,
+                        BinaryRowFormat.read(project, new BufferedInputStream(is, 1 << 16), pool, progress));
+            }
+            if (project.rows.size() != _rowCount) {
+                throw new IOException("Expected " + _rowCount + " rows in segments of project " + project.id
+                        + " but found " + project.rows.size());
+            }
+            return maxCellCount;
+        } finally {
+            for (ZipFile zipFile : zipFiles) {
+                zipFile.close();
+            }
+        }
+    }
+
+    /**
+     * Decodes the rows of a single segment, with their own recon pool.
+     */
+    public List<Row> loadSegment(Project project, File dir, int index) throws Exception {
+        List<Row> rows = new ArrayList<>(_segmentSize);
+        try (ZipFile zipFile = new ZipFile(new File(dir, _segments.get(index)))) {
+            Pool pool = new Pool();
+            ZipEntry poolEntry = zipFile.getEntry("pool.txt");
+            if (poolEntry != null) {
+                pool.load(zipFile.getInputStream(poolEntry));
+            }
+            InputStream is = zipFile.getInputStream(zipFile.getEntry(BinaryRowFormat.ENTRY_NAME));
+            BinaryRowFormat.read(project, rows, false, new BufferedInputStream(is, 1 << 16), pool,
+                    new ProjectLoadProgress(project.id));
+        }
+        return rows;
+    }
+
+    /**
+     * Deletes the segment files of the directory which this store does not
+     * reference, left over by earlier saves.
+     * 
+     * @param store
+     *      the store referenced by data.zip, or null if rows are saved in data.zip
+     */
+    static public void deleteUnusedSegments(SegmentedRowStore store, File dir) {
+        Set<String> used = store == null ? new HashSet<>() : new HashSet<>(store._segments);
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) && !used.contains(name)) {
+                if (!file.delete()) {
+                    logger.warn("Failed to delete unused segment {}", file);
+                }
+            }
+        }
+    }
+}
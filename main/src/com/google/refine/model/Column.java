@@ -63,6 +63,7 @@ public class Column  {
     private Map<String, Object> constraints = Collections.emptyMap();
     
     transient protected Map<String, Object> _precomputes;
+    transient protected ValueIndex _valueIndex;
     
     @JsonCreator
     public Column(
@@ -124,20 +125,66 @@ public class Column  {
      * {@link com.google.refine.LookupCacheManager#flushLookupsInvolvingProjectColumn(long, String)}
      * e.g. ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, column.getName())
      */
-    public void clearPrecomputes() {
+    synchronized public void clearPrecomputes() {
         if (_precomputes != null) {
             _precomputes.clear();
         }
+        _valueIndex = null;
     }
     
-    public Object getPrecompute(String key) {
+    /**
+     * Same as {@link #clearPrecomputes()}, except that the value index is kept so
+     * that the caller can patch it with the cells it has changed.
+     * 
+     * @return the value index of this column, or null if it has not been built
+     */
+    synchronized public ValueIndex clearPrecomputesExceptValueIndex() {
+        if (_precomputes != null) {
+            _precomputes.clear();
+        }
+        return _valueIndex;
+    }
+    
+    /**
+     * @return the index from the values of this column to the rows containing them,
+     *      built on first use and rebuilt once rows have been added, removed or moved
+     */
+    public ValueIndex getValueIndex(Project project) {
+        // changes lock the project before the column, so we do the same
+        synchronized (project) {
+            synchronized (this) {
+                if (_valueIndex == null || _valueIndex.getVersion() != project.getVersion()) {
+                    _valueIndex = new ValueIndex(project, _cellIndex);
+                }
+                return _valueIndex;
+            }
+        }
+    }
+    
+    /**
+     * @return the estimated heap size in bytes of the value index and of the
+     *      precomputed values which can estimate their size
+     */
+    synchronized public long estimatePrecomputes() {
+        long size = _valueIndex != null ? _valueIndex.estimateMemory() : 0;
+        if (_precomputes != null) {
+            for (Object value : _precomputes.values()) {
+                if (value instanceof MemoryEstimable) {
+                    size += ((MemoryEstimable) value).estimateMemory();
+                }
+            }
+        }
+        return size;
+    }
+    
+    synchronized public Object getPrecompute(String key) {
         if (_precomputes != null) {
             return _precomputes.get(key);
         }
         return null;
     }
     
-    public void setPrecompute(String key, Object value) {
+    synchronized public void setPrecompute(String key, Object value) {
         if (_precomputes == null) {
             _precomputes = new HashMap<String, Object>();
         }
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model;
+
+import java.util.BitSet;
+
+/**
+ * Tracks which rows of a project were modified since it was last saved, so
+ * that a segmented project store only needs to rewrite the segments holding
+ * them. Changes which cannot tell which rows they touch mark all rows dirty.
+ */
+public class DirtyRows {
+    protected BitSet _rows = new BitSet();
+    protected boolean _all = true;
+
+    synchronized public void mark(int rowIndex) {
+        if (!_all) {
+            _rows.set(rowIndex);
+        }
+    }
+
+    synchronized public void markAll() {
+        _all = true;
+        _rows = new BitSet();
+    }
+
+    synchronized public boolean isAllDirty() {
+        return _all;
+    }
+
+    synchronized public boolean isDirty(int rowIndex) {
+        return _all || _rows.get(rowIndex);
+    }
+
+    /**
+     * Marks all rows clean, typically after loading or saving the project.
+     */
+    synchronized public void clear() {
+        _all = false;
+        _rows = new BitSet();
+    }
+
+    /**
+     * Returns the rows marked dirty, leaving them marked.
+     * 
+     * @return a copy of the dirty row indices, or null if all rows are dirty
+     */
+    synchronized public BitSet snapshot() {
+        return _all ? null : (BitSet) _rows.clone();
+    }
+
+    /**
+     * Returns the rows marked dirty and marks them clean.
+     * 
+     * @return the dirty row indices, or null if all rows are dirty
+     */
+    synchronized public BitSet drain() {
+        BitSet rows = _all ? null : _rows;
+        clear();
+        return rows;
+    }
+}
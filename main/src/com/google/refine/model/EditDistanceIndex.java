@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.refine.clustering.knn.BoundedLevenshteinDistance;
+import com.google.refine.util.StringUtils;
+
+/**
+ * BK-tree over the text of the distinct values of a column, to find the values
+ * within a given Levenshtein distance of a string without comparing it to all of
+ * them. Values which are not strings are indexed by their text, see
+ * {@link #toText(Object)}, and distinct values sharing a text share a node.
+ * It is kept by the {@link ValueIndex} of the column, which patches it as cells
+ * change, so it survives edits instead of being rebuilt for each query.
+ * 
+ * Removed values are only marked as such, and the tree is rebuilt once they make
+ * up half of its nodes.
+ */
+public class EditDistanceIndex implements MemoryEstimable {
+
+    static final protected BoundedLevenshteinDistance distance = new BoundedLevenshteinDistance();
+
+    static protected class Node {
+        final String value;
+        // the indexed values with this text, none once the node is deleted
+        final List<Object> keys = new ArrayList<>(1);
+        Map<Integer, Node> children = null;
+        int maxDistance = 0;
+
+        Node(String value) {
+            this.value = value;
+        }
+    }
+
+    protected Node _root = null;
+    protected final Map<String, Node> _nodes = new HashMap<>();
+    protected int _deleted = 0;
+
+    public EditDistanceIndex(Collection<?> values) {
+        for (Object value : values) {
+            if (value != null) {
+                add(value);
+            }
+        }
+    }
+
+    /**
+     * @return the text a value is indexed by. Numbers without a fractional part
+     *      print as integers, as they do in cells holding long values.
+     */
+    static public String toText(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+                return Long.toString((long) d);
+            }
+        }
+        return StringUtils.toString(value);
+    }
+
+    /**
+     * @return the number of distinct texts in the index
+     */
+    synchronized public int size() {
+        return _nodes.size() - _deleted;
+    }
+
+    @Override
+    synchronized public long estimateMemory() {
+        // each node is in the map of nodes and in the children of its parent,
+        // and holds a list of keys
+        return (long) _nodes.size() * (2 * ProjectMemoryEstimator.HASH_ENTRY
+                + 2 * ProjectMemoryEstimator.OBJECT_HEADER + 4 * ProjectMemoryEstimator.REFERENCE + 16);
+    }
+
+    synchronized public boolean contains(String text) {
+        Node node = _nodes.get(text);
+        return node != null && !node.keys.isEmpty();
+    }
+
+    /**
+     * @return the indexed values whose text is the given one
+     */
+    synchronized public List<Object> getValues(String text) {
+        Node node = _nodes.get(text);
+        return node == null ? new ArrayList<>() : new ArrayList<>(node.keys);
+    }
+
+    synchronized public void add(Object value) {
+        String text = toText(value);
+        Node node = _nodes.get(text);
+        if (node != null) {
+            if (node.keys.isEmpty()) {
+                _deleted--;
+            }
+            if (!node.keys.contains(value)) {
+                node.keys.add(value);
+            }
+            return;
+        }
+        node = new Node(text);
+        node.keys.add(value);
+        _nodes.put(text, node);
+        if (_root == null) {
+            _root = node;
+            return;
+        }
+        Node parent = _root;
+        while (true) {
+            int d = (int) distance.compute(text, parent.value);
+            if (parent.children == null) {
+                parent.children = new HashMap<>();
+            }
+            Node child = parent.children.get(d);
+            if (child == null) {
+                parent.children.put(d, node);
+                parent.maxDistance = Math.max(parent.maxDistance, d);
+                return;
+            }
+            parent = child;
+        }
+    }
+
+    synchronized public void remove(Object value) {
+        Node node = _nodes.get(toText(value));
+        if (node == null || !node.keys.remove(value) || !node.keys.isEmpty()) {
+            return;
+        }
+        _deleted++;
+        if (_deleted * 2 > _nodes.size()) {
+            List<Object> values = new ArrayList<>();
+            for (Node n : _nodes.values()) {
+                values.addAll(n.keys);
+            }
+            _root = null;
+            _nodes.clear();
+            _deleted = 0;
+            values.forEach(this::add);
+        }
+    }
+
+    /**
+     * Finds the values of the index within a distance of a string. Only the
+     * subtrees which can contain such values are visited, and distances are
+     * only computed up to what is needed to decide that.
+     * 
+     * @param query
+     *      the string to look up
+     * @param radius
+     *      the maximum distance of the values to return
+     * @return the texts within the radius, including the query itself if it
+     *      is indexed, mapped to their distance to the query
+     */
+    synchronized public Map<String, Integer> search(String query, int radius) {
+        Map<String, Integer> results = new HashMap<>();
+        if (_root == null || radius < 0) {
+            return results;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(_root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            // beyond this bound, neither the node nor its children can match
+            int bound = radius + node.maxDistance;
+            int d = (int) distance.compute(query, node.value, bound);
+            if (d > bound) {
+                continue;
+            }
+            if (d <= radius && !node.keys.isEmpty()) {
+                results.put(node.value, d);
+            }
+            if (node.children != null) {
+                for (Entry<Integer, Node> entry : node.children.entrySet()) {
+                    if (Math.abs(entry.getKey() - d) <= radius) {
+                        stack.push(entry.getValue());
+                    }
+                }
+            }
+        }
+        return results;
+    }
+}
@@ -52,10 +52,16 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.refine.ProjectManager;
 import com.google.refine.ProjectMetadata;
 import com.google.refine.RefineServlet;
 import com.google.refine.history.History;
+import com.google.refine.io.BinaryRowFormat;
+import com.google.refine.io.PagedRowList;
+import com.google.refine.io.ParallelRowLoader;
+import com.google.refine.io.ProjectLoadProgress;
+import com.google.refine.io.SegmentedRowStore;
 import com.google.refine.process.ProcessManager;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.Pool;
@@ -65,14 +71,28 @@ public class Project {
         s_overlayModelClasses = new HashMap<String, Class<? extends OverlayModel>>();
     
     final public long                       id;
-    final public List<Row>                  rows = new ArrayList<Row>();
+    /**
+     * Replaced by a {@link PagedRowList} when the project is opened out of core.
+     */
+    public List<Row>                        rows = new ArrayList<Row>();
     final public ColumnModel                columnModel = new ColumnModel();
     final public RecordModel                recordModel = new RecordModel();
     final public Map<String, OverlayModel>  overlayModels = new HashMap<String, OverlayModel>();
     final public History                    history;
     
     transient public ProcessManager processManager = new ProcessManager();
+    transient final public DirtyRows dirtyRows = new DirtyRows();
+    /**
+     * The segments the rows were last loaded from, saved to or restored into, if any.
+     */
+    transient public SegmentedRowStore rowStore = null;
     transient private LocalDateTime _lastSave = LocalDateTime.now();
+    /**
+     * Incremented by {@link #update()}, which every change that adds, removes or
+     * moves rows calls. Caches derived from the rows compare it with the version
+     * they were built from.
+     */
+    transient private volatile long _version = 0;
 
     final static Logger logger = LoggerFactory.getLogger("project");
 
@@ -119,11 +139,37 @@ public class Project {
         this._lastSave = LocalDateTime.now();
     }
 
+    /**
+     * Called before a change modifies rows of the project, so that rows
+     * paged in from disk stay in memory until they are saved.
+     */
+    public void beginRowWrites() {
+        if (rows instanceof PagedRowList) {
+            ((PagedRowList) rows).beginWrites();
+        }
+    }
+
+    public void endRowWrites() {
+        if (rows instanceof PagedRowList) {
+            ((PagedRowList) rows).endWrites();
+        }
+    }
+
     public ProjectMetadata getMetadata() {
         return ProjectManager.singleton.getProjectMetadata(id);
     }
 
     public void saveToOutputStream(OutputStream out, Pool pool) throws IOException {
+        saveToOutputStream(out, pool, null);
+    }
+
+    /**
+     * Saves the project in the legacy text format. If rowFormat is not null,
+     * rows are left out and must be saved separately, for instance with
+     * {@link BinaryRowFormat#write(Project, OutputStream, Pool)}. The format
+     * is passed to the {@link RowLoader} when the project is loaded.
+     */
+    public void saveToOutputStream(OutputStream out, Pool pool, String rowFormat) throws IOException {
         for (OverlayModel overlayModel : overlayModels.values()) {
             try {
                 overlayModel.onBeforeSave(this);
@@ -137,6 +183,9 @@ public class Project {
             Properties options = new Properties();
             options.setProperty("mode", "save");
             options.put("pool", pool);
+            if (rowFormat != null) {
+                options.setProperty("rowFormat", rowFormat);
+            }
 
             saveToWriter(writer, options);
         } finally {
@@ -167,20 +216,136 @@ public class Project {
             writer.write('\n');
         }
         
+        if (options.containsKey("rowFormat")) {
+            writer.write("rowFormat="); writer.write(options.getProperty("rowFormat")); writer.write('\n');
+            return;
+        }
+
         writer.write("rowCount="); writer.write(Integer.toString(rows.size())); writer.write('\n');
         for (Row row : rows) {
             row.save(writer, options); writer.write('\n');
         }
     }
     
+    /**
+     * Saves the column model and the overlay models, but neither the history nor
+     * the rows, for a history checkpoint. See {@link #restoreState(InputStream, List)}.
+     */
+    public void saveState(OutputStream out, Pool pool) throws IOException {
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        try {
+            Properties options = new Properties();
+            options.setProperty("mode", "save");
+            options.put("pool", pool);
+
+            writer.write(RefineServlet.VERSION); writer.write('\n');
+            writer.write("columnModel=\n"); columnModel.save(writer, options);
+            for (String modelName : overlayModels.keySet()) {
+                writer.write("overlayModel:");
+                writer.write(modelName);
+                writer.write("=");
+
+                ParsingUtilities.saveWriter.writeValue(writer, overlayModels.get(modelName));
+                writer.write('\n');
+            }
+        } finally {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Replaces the state of the project by a state saved with {@link #saveState(OutputStream, Pool)}
+     * and the given rows. The history is left untouched: it is up to the caller to
+     * bring it in line with the restored state.
+     */
+    public void restoreState(InputStream is, List<Row> rows) throws Exception {
+        LineNumberReader reader = new LineNumberReader(new InputStreamReader(is, "UTF-8"));
+        /* String version = */ reader.readLine();
+
+        ColumnModel restoredColumns = new ColumnModel();
+        Map<String, OverlayModel> restoredModels = new HashMap<String, OverlayModel>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int equal = line.indexOf('=');
+            String field = line.substring(0, equal);
+            String value = line.substring(equal + 1);
+
+            if ("columnModel".equals(field)) {
+                restoredColumns.load(reader);
+            } else if (field.startsWith("overlayModel:")) {
+                String modelName = field.substring("overlayModel:".length());
+                if (s_overlayModelClasses.containsKey(modelName)) {
+                    restoredModels.put(modelName, ParsingUtilities.mapper.readValue(value, s_overlayModelClasses.get(modelName)));
+                }
+            }
+        }
+
+        synchronized (this) {
+            synchronized (columnModel) {
+                columnModel.columns.clear();
+                columnModel.columns.addAll(restoredColumns.columns);
+                columnModel.columnGroups.clear();
+                columnModel.columnGroups.addAll(restoredColumns.columnGroups);
+                columnModel.setMaxCellIndex(restoredColumns.getMaxCellIndex());
+                columnModel.setKeyColumnIndex(restoredColumns.getKeyColumnIndex());
+                columnModel.internalInitialize();
+            }
+            overlayModels.clear();
+            overlayModels.putAll(restoredModels);
+
+            this.rows = rows;
+            dirtyRows.markAll();
+
+            ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(id);
+            update();
+        }
+    }
+    
     static public Project loadFromInputStream(InputStream is, long id, Pool pool) throws Exception {
-        return loadFromReader(new LineNumberReader(new InputStreamReader(is, "UTF-8")), id, pool);
+        return loadFromInputStream(is, null, id, pool);
+    }
+
+    /**
+     * Loads rows which were saved outside of the main project stream.
+     */
+    public interface RowLoader {
+        /**
+         * @param format
+         *      the row format recorded when saving the project
+         * @return the largest cell list size found in the loaded rows
+         */
+        public int loadRows(Project project, String format, ProjectLoadProgress progress) throws Exception;
+    }
+
+    /**
+     * Loads a project whose rows may be stored separately, for instance in
+     * the binary row format. rowLoader is only called if the text stream
+     * declares such a format.
+     */
+    static public Project loadFromInputStream(InputStream is, RowLoader rowLoader, long id, Pool pool) throws Exception {
+        return loadFromReader(new LineNumberReader(new InputStreamReader(is, "UTF-8")), rowLoader, id, pool);
     }
     
     static private Project loadFromReader(
         LineNumberReader reader,
+        RowLoader rowLoader,
         long id,
         Pool pool
+    ) throws Exception {
+        ProjectLoadProgress progress = ProjectLoadProgress.start(id);
+        try {
+            return loadFromReader(reader, rowLoader, id, pool, progress);
+        } finally {
+            ProjectLoadProgress.finish(progress);
+        }
+    }
+
+    static private Project loadFromReader(
+        LineNumberReader reader,
+        RowLoader rowLoader,
+        long id,
+        Pool pool,
+        ProjectLoadProgress progress
     ) throws Exception {
         long start = System.currentTimeMillis();
         
@@ -211,15 +376,12 @@ public class Project {
                 project.history.load(project, reader);
             } else if ("rowCount".equals(field)) {
                 int count = Integer.parseInt(value);
-
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        Row row = Row.load(line, pool);
-                        project.rows.add(row);
-                        maxCellCount = Math.max(maxCellCount, row.cells.size());
-                    }
+                maxCellCount = Math.max(maxCellCount, loadRowLines(reader, project, count, pool, progress));
+            } else if ("rowFormat".equals(field)) {
+                if (rowLoader == null) {
+                    throw new IOException("Missing rows in " + value + " format for project " + id);
                 }
+                maxCellCount = Math.max(maxCellCount, rowLoader.loadRows(project, value, progress));
             } else if (field.startsWith("overlayModel:")) {
                 String modelName = field.substring("overlayModel:".length());
                 if (s_overlayModelClasses.containsKey(modelName)) {
@@ -247,11 +409,54 @@ public class Project {
         return project;
     }
 
+    /**
+     * Reads rows in the legacy JSON lines format. The lines are read on the
+     * calling thread and parsed in blocks by a {@link ParallelRowLoader}.
+     */
+    static private int loadRowLines(
+        LineNumberReader reader,
+        Project project,
+        int count,
+        Pool pool,
+        ProjectLoadProgress progress
+    ) throws Exception {
+        ObjectReader rowReader = Row.getReader(pool);
+        ParallelRowLoader loader = new ParallelRowLoader(project.rows, count, progress);
+        for (int start = 0; start < count; start += ParallelRowLoader.BLOCK_SIZE) {
+            int blockSize = Math.min(ParallelRowLoader.BLOCK_SIZE, count - start);
+            List<String> lines = new ArrayList<>(blockSize);
+            String line;
+            while (lines.size() < blockSize && (line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+
+            loader.add(() -> {
+                List<Row> rows = new ArrayList<>(lines.size());
+                for (String l : lines) {
+                    rows.add(Row.load(l, rowReader));
+                }
+                return rows;
+            });
+            if (lines.size() < blockSize) {
+                break;
+            }
+        }
+        return loader.finish();
+    }
+
     public void update() {
+        _version++;
         columnModel.update();
         recordModel.update(this);
     }
 
+    /**
+     * @return the number of times the project was updated, see {@link #update()}
+     */
+    public long getVersion() {
+        return _version;
+    }
+
 
     //wrapper of processManager variable to allow unit testing
     //TODO make the processManager variable private, and force all calls through this method
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.browsing.util.FilterBitmapCache;
+import com.google.refine.expr.EvalError;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.history.HistoryEntryManager;
+import com.google.refine.io.PagedRowList;
+
+/**
+ * Rough estimate of the heap used by a project: its rows, extrapolated from
+ * a sample of rows, the caches kept next to them and the changes its history
+ * holds in memory. This is only meant to compare projects with each other and
+ * with a memory budget: shared cells and recons are not accounted for precisely.
+ */
+public class ProjectMemoryEstimator {
+    static public int SAMPLE_SIZE = 1000;
+
+    static final public int OBJECT_HEADER = 16;
+    static final public int REFERENCE = 8;
+    static final public int HASH_ENTRY = OBJECT_HEADER + 3 * REFERENCE + 8 + REFERENCE;
+    static final int ROW = OBJECT_HEADER + 2 * REFERENCE;
+    static final int LIST = OBJECT_HEADER + 2 * REFERENCE + OBJECT_HEADER;
+    static final int CELL = OBJECT_HEADER + 2 * REFERENCE;
+    static final int BOXED = OBJECT_HEADER + 8;
+    static final int STRING = OBJECT_HEADER + REFERENCE + 8 + OBJECT_HEADER;
+    static final int DATE = 6 * OBJECT_HEADER + 32;
+    static final int RECON = 256;
+    /**
+     * Ratio between the heap size of a change and the size of its compressed
+     * change file, for changes which cannot estimate their own size.
+     */
+    static final int CHANGE_FILE_RATIO = 4;
+
+    /**
+     * @return the estimated size in bytes of the project held in memory
+     */
+    static public long estimate(Project project) {
+        return estimateRows(project) + estimateCaches(project) + estimateHistory(project);
+    }
+
+    /**
+     * @return the estimated size in bytes of an array
+     */
+    static public long estimateArray(int length, int elementSize) {
+        return OBJECT_HEADER + (long) length * elementSize;
+    }
+
+    /**
+     * @return the estimated size in bytes of the precomputed values of the columns
+     *      and of the cached facet bitmaps
+     */
+    static public long estimateCaches(Project project) {
+        long size = 0;
+        if (project.columnModel == null) {
+            return size;
+        }
+        for (Column column : project.columnModel.columns) {
+            size += column.estimatePrecomputes();
+        }
+        FilterBitmapCache cache = FilterBitmapCache.peekCache(project);
+        if (cache != null) {
+            size += cache.estimateMemory();
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated size in bytes of the changes the history holds in memory
+     */
+    static public long estimateHistory(Project project) {
+        HistoryEntryManager manager = ProjectManager.singleton == null ? null :
+            ProjectManager.singleton.getHistoryEntryManager();
+        long size = 0;
+        if (project.history == null) {
+            return size;
+        }
+        for (HistoryEntry entry : project.history.getEntriesWithChanges()) {
+            Object change = entry.getChange();
+            if (change instanceof MemoryEstimable) {
+                size += ((MemoryEstimable) change).estimateMemory();
+            } else if (change != null && manager != null) {
+                size += CHANGE_FILE_RATIO * manager.getChangeSize(entry);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated size in bytes of the rows held in memory
+     */
+    static public long estimateRows(Project project) {
+        List<Row> rows = project.rows;
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+
+        int residentRows = rows.size();
+        int sampleRange = rows.size();
+        if (rows instanceof PagedRowList && !((PagedRowList) rows).isResident()) {
+            // sample the first segment only, rather than paging in the whole project
+            residentRows = ((PagedRowList) rows).getResidentRowCount();
+            sampleRange = Math.min(sampleRange, ((PagedRowList) rows).getSegmentSize());
+        }
+        if (residentRows == 0) {
+            return 0;
+        }
+
+        int sampleSize = Math.min(SAMPLE_SIZE, sampleRange);
+        long sampled = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            Row row = rows.get((int) ((long) i * sampleRange / sampleSize));
+            if (row != null) {
+                sampled += estimate(row);
+            }
+        }
+        return sampled * residentRows / sampleSize + (long) residentRows * REFERENCE;
+    }
+
+    static public long estimate(Row row) {
+        List<Cell> cells = row.cells;
+        long size = ROW + LIST + (long) cells.size() * REFERENCE;
+        for (Cell cell : cells) {
+            size += estimate(cell);
+        }
+        return size;
+    }
+
+    static public long estimate(Cell cell) {
+        if (cell == null) {
+            return 0;
+        }
+        return CELL + estimate(cell.value) + (cell.recon != null ? RECON : 0);
+    }
+
+    static protected long estimate(Serializable value) {
+        if (value == null || value instanceof Boolean) {
+            return 0;
+        } else if (value instanceof String) {
+            return STRING + ((String) value).length();
+        } else if (value instanceof Number) {
+            return BOXED;
+        } else if (value instanceof OffsetDateTime || value instanceof LocalDateTime) {
+            return DATE;
+        } else if (value instanceof EvalError) {
+            return OBJECT_HEADER + REFERENCE + STRING + ((EvalError) value).message.length();
+        }
+        return STRING + value.toString().length();
+    }
+}
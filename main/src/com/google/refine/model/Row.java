@@ -43,6 +43,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.refine.expr.CellTuple;
 import com.google.refine.expr.HasFields;
 import com.google.refine.util.ParsingUtilities;
@@ -218,6 +219,23 @@ public class Row implements HasFields {
         return new Row(cells, flagged, starred);
     }
     
+    /**
+     * Parses a row with a reader obtained from {@link #getReader(Pool)}.
+     */
+    static public Row load(String s, ObjectReader reader) throws Exception {
+        return s.length() == 0 ? null : reader.readValue(s);
+    }
+
+    /**
+     * Unlike {@link #loadStreaming(String, Pool)}, the returned reader does
+     * not reconfigure the shared mapper, so it can be used by several threads.
+     */
+    static public ObjectReader getReader(Pool pool) {
+        InjectableValues injectableValues = new InjectableValues.Std()
+                .addValue("pool", pool);
+        return ParsingUtilities.mapper.readerFor(Row.class).with(injectableValues);
+    }
+    
     static public Row loadStreaming(String s, Pool pool) throws Exception {
         InjectableValues injectableValues = new InjectableValues.Std()
                 .addValue("pool", pool);
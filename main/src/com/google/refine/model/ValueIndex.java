@@ -0,0 +1,367 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.google.refine.expr.ExpressionUtils;
+
+/**
+ * Inverted index from the values of a column to the rows which contain them. It is
+ * kept by the column next to its other precomputed values, and lets list facets on
+ * the plain cell values find the rows they select without evaluating any expression.
+ * 
+ * Values are compared the same way as in ExpressionEqualRowFilter: numbers by their
+ * double value, other values with equals().
+ */
+public class ValueIndex implements MemoryEstimable {
+    
+    /**
+     * Sorted list of row indices.
+     */
+    static protected class RowList {
+        int[] rows = new int[2];
+        int size = 0;
+        
+        void add(int row) {
+            int i = size > 0 && rows[size - 1] < row ? size : Arrays.binarySearch(rows, 0, size, row);
+            if (i >= 0 && i < size) {
+                return; // already there
+            }
+            if (i < 0) {
+                i = -i - 1;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(rows, i, rows, i + 1, size - i);
+            rows[i] = row;
+            size++;
+        }
+        
+        void remove(int row) {
+            int i = Arrays.binarySearch(rows, 0, size, row);
+            if (i >= 0) {
+                System.arraycopy(rows, i + 1, rows, i, size - i - 1);
+                size--;
+            }
+        }
+        
+        /**
+         * Appends a row without keeping the list sorted, to collect a batch of rows.
+         */
+        void append(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+        
+        /**
+         * Removes the rows of a sorted batch in a single pass.
+         */
+        void removeAll(RowList batch) {
+            int j = 0;
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                while (k < batch.size && batch.rows[k] < row) {
+                    k++;
+                }
+                if (k >= batch.size || batch.rows[k] != row) {
+                    rows[j++] = row;
+                }
+            }
+            size = j;
+        }
+        
+        /**
+         * Adds the rows of a sorted batch in a single merge.
+         */
+        void addAll(RowList batch) {
+            int[] merged = new int[Math.max(2, size + batch.size)];
+            int i = 0, k = 0, n = 0;
+            while (i < size || k < batch.size) {
+                int row;
+                if (k >= batch.size || (i < size && rows[i] <= batch.rows[k])) {
+                    row = rows[i++];
+                } else {
+                    row = batch.rows[k++];
+                }
+                if (n == 0 || merged[n - 1] != row) {
+                    merged[n++] = row;
+                }
+            }
+            rows = merged;
+            size = n;
+        }
+        
+        void addTo(BitSet bitSet) {
+            for (int i = 0; i < size; i++) {
+                bitSet.set(rows[i]);
+            }
+        }
+    }
+    
+    final protected int _cellIndex;
+    final protected int _rowCount;
+    final protected long _version;
+    final protected Map<Object, RowList> _rows = new HashMap<>();
+    final protected RowList _blankRows = new RowList();
+    final protected RowList _errorRows = new RowList();
+    protected EditDistanceIndex _editDistanceIndex = null;
+    
+    public ValueIndex(Project project, int cellIndex) {
+        _cellIndex = cellIndex;
+        _rowCount = project.rows.size();
+        _version = project.getVersion();
+        for (int r = 0; r < _rowCount; r++) {
+            add(r, project.rows.get(r).getCellValue(cellIndex));
+        }
+    }
+    
+    /**
+     * @return the number of rows of the project when the index was built
+     */
+    public int getRowCount() {
+        return _rowCount;
+    }
+    
+    /**
+     * @return the version of the project the index was built from, see {@link Project#getVersion()}
+     */
+    public long getVersion() {
+        return _version;
+    }
+    
+    /**
+     * @return the number of distinct non-blank values in the column
+     */
+    synchronized public int getValueCount() {
+        return _rows.size();
+    }
+    
+    /**
+     * @return the number of rows whose cell value is the given non-blank value
+     */
+    synchronized public int countRows(Object value) {
+        Object key = normalize(value);
+        RowList rows = key == null ? null : _rows.get(key);
+        return rows == null ? 0 : rows.size;
+    }
+    
+    /**
+     * @return the number of rows whose cell value has the given text in the
+     *      edit distance index, see {@link EditDistanceIndex#toText(Object)}
+     */
+    synchronized public int countRowsWithText(String text) {
+        int count = 0;
+        for (Object key : getEditDistanceIndex().getValues(text)) {
+            RowList rows = _rows.get(key);
+            count += rows == null ? 0 : rows.size;
+        }
+        return count;
+    }
+    
+    @Override
+    synchronized public long estimateMemory() {
+        long size = estimate(_blankRows) + estimate(_errorRows);
+        for (RowList rows : _rows.values()) {
+            // the values themselves are shared with the cells
+            size += ProjectMemoryEstimator.HASH_ENTRY + estimate(rows);
+        }
+        if (_editDistanceIndex != null) {
+            size += _editDistanceIndex.estimateMemory();
+        }
+        return size;
+    }
+    
+    static protected long estimate(RowList rows) {
+        return ProjectMemoryEstimator.OBJECT_HEADER + ProjectMemoryEstimator.estimateArray(rows.rows.length, 4);
+    }
+    
+    /**
+     * @return the index of the distinct values of the column by edit distance,
+     *      built on first use and then patched along with this index
+     */
+    synchronized public EditDistanceIndex getEditDistanceIndex() {
+        if (_editDistanceIndex == null) {
+            _editDistanceIndex = new EditDistanceIndex(_rows.keySet());
+        }
+        return _editDistanceIndex;
+    }
+    
+    /**
+     * Looks up the rows whose cell value is one of the given values.
+     * 
+     * @param values
+     *      the values to look up
+     * @param blank
+     *      whether to include the rows with a blank cell
+     * @param error
+     *      whether to include the rows with an error cell
+     * @return the set of matching row indices
+     */
+    synchronized public BitSet getRows(Object[] values, boolean blank, boolean error) {
+        BitSet bitSet = new BitSet(_rowCount);
+        for (Object value : values) {
+            Object key = normalize(value);
+            RowList rows = key == null ? null : _rows.get(key);
+            if (rows != null) {
+                rows.addTo(bitSet);
+            }
+        }
+        if (blank) {
+            _blankRows.addTo(bitSet);
+        }
+        if (error) {
+            _errorRows.addTo(bitSet);
+        }
+        return bitSet;
+    }
+    
+    /**
+     * Patches the index after a cell of its column has changed.
+     */
+    synchronized public void update(int rowIndex, Cell oldCell, Cell newCell) {
+        remove(rowIndex, oldCell == null ? null : oldCell.value);
+        add(rowIndex, newCell == null ? null : newCell.value);
+    }
+    
+    /**
+     * Patches the index after many cells of its column have changed. The rows are
+     * grouped by value so that each row list is only rewritten once, rather than
+     * once per changed cell.
+     * 
+     * @param rows
+     *      the indices of the changed rows, each at most once
+     */
+    synchronized public void updateAll(int[] rows, Object[] oldValues, Object[] newValues) {
+        Map<RowList, RowList> removed = new IdentityHashMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            RowList list = getRowList(oldValues[i], false);
+            if (list != null) {
+                removed.computeIfAbsent(list, l -> new RowList()).append(rows[i]);
+            }
+        }
+        for (Map.Entry<RowList, RowList> entry : removed.entrySet()) {
+            RowList batch = entry.getValue();
+            Arrays.sort(batch.rows, 0, batch.size);
+            entry.getKey().removeAll(batch);
+        }
+        
+        Map<RowList, RowList> added = new IdentityHashMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            RowList list = getRowList(newValues[i], true);
+            if (list != null) {
+                added.computeIfAbsent(list, l -> new RowList()).append(rows[i]);
+            }
+        }
+        for (Map.Entry<RowList, RowList> entry : added.entrySet()) {
+            RowList batch = entry.getValue();
+            Arrays.sort(batch.rows, 0, batch.size);
+            entry.getKey().addAll(batch);
+        }
+        
+        // values all of whose rows have moved elsewhere
+        for (int i = 0; i < rows.length; i++) {
+            RowList list = getRowList(oldValues[i], false);
+            if (list != null && list.size == 0 && list != _blankRows && list != _errorRows) {
+                removeKey(normalize(oldValues[i]));
+            }
+        }
+    }
+    
+    protected RowList getRowList(Object value, boolean create) {
+        if (ExpressionUtils.isError(value)) {
+            return _errorRows;
+        } else if (ExpressionUtils.isNonBlankData(value)) {
+            Object key = normalize(value);
+            if (key == null) {
+                return null;
+            }
+            RowList rows = _rows.get(key);
+            if (rows == null && create) {
+                rows = new RowList();
+                _rows.put(key, rows);
+                if (_editDistanceIndex != null) {
+                    _editDistanceIndex.add(key);
+                }
+            }
+            return rows;
+        } else {
+            return _blankRows;
+        }
+    }
+    
+    protected void add(int rowIndex, Object value) {
+        RowList rows = getRowList(value, true);
+        if (rows != null) {
+            rows.add(rowIndex);
+        }
+    }
+    
+    protected void remove(int rowIndex, Object value) {
+        RowList rows = getRowList(value, false);
+        if (rows != null) {
+            rows.remove(rowIndex);
+            if (rows.size == 0 && rows != _blankRows && rows != _errorRows) {
+                removeKey(normalize(value));
+            }
+        }
+    }
+    
+    protected void removeKey(Object key) {
+        _rows.remove(key);
+        if (_editDistanceIndex != null) {
+            _editDistanceIndex.remove(key);
+        }
+    }
+    
+    /**
+     * @return the key under which the value is indexed, or null for values which
+     *      never match, such as NaN
+     */
+    static protected Object normalize(Object value) {
+        if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            return Double.isNaN(d) ? null : d + 0.0; // also turns -0.0 into 0.0
+        }
+        return value;
+    }
+}
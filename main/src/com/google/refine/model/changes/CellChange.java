@@ -40,12 +40,17 @@ import java.util.Properties;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
+import com.google.refine.history.RowScopedChange;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
+import com.google.refine.model.DirtyRows;
+import com.google.refine.model.MemoryEstimable;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
+import com.google.refine.model.ValueIndex;
 import com.google.refine.util.Pool;
 
-public class CellChange implements Change {
+public class CellChange implements RowScopedChange, MemoryEstimable {
     final public int     row;
     final public int     cellIndex;
     final public Cell    oldCell;
@@ -63,7 +68,10 @@ public class CellChange implements Change {
         project.rows.get(row).setCell(cellIndex, newCell);
         
         Column column = project.columnModel.getColumnByCellIndex(cellIndex);
-        column.clearPrecomputes();
+        ValueIndex valueIndex = column.clearPrecomputesExceptValueIndex();
+        if (valueIndex != null) {
+            valueIndex.update(row, oldCell, newCell);
+        }
         ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, column.getName());
     }
 
@@ -72,10 +80,25 @@ public class CellChange implements Change {
         project.rows.get(row).setCell(cellIndex, oldCell);
         
         Column column = project.columnModel.getColumnByCellIndex(cellIndex);
-        column.clearPrecomputes();
+        ValueIndex valueIndex = column.clearPrecomputesExceptValueIndex();
+        if (valueIndex != null) {
+            valueIndex.update(row, newCell, oldCell);
+        }
         ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, column.getName());
     }
     
+    @Override
+    public void markDirtyRows(DirtyRows dirtyRows) {
+        dirtyRows.mark(row);
+    }
+
+    @Override
+    public long estimateMemory() {
+        // one of the cells is in the project, the other one is only kept by the change
+        return ProjectMemoryEstimator.OBJECT_HEADER + 2 * ProjectMemoryEstimator.REFERENCE + 8
+                + Math.max(ProjectMemoryEstimator.estimate(oldCell), ProjectMemoryEstimator.estimate(newCell));
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("row="); writer.write(Integer.toString(row)); writer.write('\n');
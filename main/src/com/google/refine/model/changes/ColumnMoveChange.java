@@ -42,12 +42,14 @@ import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.history.Change;
+import com.google.refine.history.RowScopedChange;
 import com.google.refine.model.Column;
 import com.google.refine.model.ColumnGroup;
+import com.google.refine.model.DirtyRows;
 import com.google.refine.model.Project;
 import com.google.refine.util.Pool;
 
-public class ColumnMoveChange extends ColumnChange {
+public class ColumnMoveChange extends ColumnChange implements RowScopedChange {
     final protected String  _columnName;
     final protected int     _newColumnIndex;
     protected int           _oldColumnIndex;
@@ -92,6 +94,11 @@ public class ColumnMoveChange extends ColumnChange {
         }
     }
 
+    @Override
+    public void markDirtyRows(DirtyRows dirtyRows) {
+        // only the column model is modified
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("columnName="); writer.write(_columnName); writer.write('\n');
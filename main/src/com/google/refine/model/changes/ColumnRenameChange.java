@@ -40,10 +40,12 @@ import java.util.Properties;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
+import com.google.refine.history.RowScopedChange;
+import com.google.refine.model.DirtyRows;
 import com.google.refine.model.Project;
 import com.google.refine.util.Pool;
 
-public class ColumnRenameChange extends ColumnChange {
+public class ColumnRenameChange extends ColumnChange implements RowScopedChange {
     final protected String _oldColumnName;
     final protected String _newColumnName;
     
@@ -70,6 +72,11 @@ public class ColumnRenameChange extends ColumnChange {
         }
     }
 
+    @Override
+    public void markDirtyRows(DirtyRows dirtyRows) {
+        // only the column model is modified
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("oldColumnName="); writer.write(_oldColumnName); writer.write('\n');
@@ -36,17 +36,24 @@ package com.google.refine.model.changes;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
+import com.google.refine.history.RowScopedChange;
+import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
+import com.google.refine.model.DirtyRows;
+import com.google.refine.model.MemoryEstimable;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
 import com.google.refine.model.Row;
+import com.google.refine.model.ValueIndex;
 import com.google.refine.util.Pool;
 
-public class MassCellChange implements Change {
+public class MassCellChange implements RowScopedChange, MemoryEstimable {
     final protected CellChange[]  _cellChanges;
     final protected String        _commonColumnName;
     final protected boolean       _updateRowContextDependencies;
@@ -91,11 +98,7 @@ public class MassCellChange implements Change {
                 rows.get(cellChange.row).setCell(cellChange.cellIndex, cellChange.newCell);
             }
             
-            if (_commonColumnName != null) {
-                Column column = project.columnModel.getColumnByName(_commonColumnName);
-                column.clearPrecomputes();
-                ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, _commonColumnName);
-            }
+            clearPrecomputes(project, true);
             
             if (_updateRowContextDependencies) {
                 project.update();
@@ -103,6 +106,48 @@ public class MassCellChange implements Change {
         }
     }
 
+    /**
+     * Clears the precomputed values of the columns whose cells have changed. The value
+     * index of the common column is patched rather than dropped.
+     */
+    protected void clearPrecomputes(Project project, boolean applied) {
+        Column commonColumn = null;
+        ValueIndex valueIndex = null;
+        if (_commonColumnName != null) {
+            commonColumn = project.columnModel.getColumnByName(_commonColumnName);
+            valueIndex = commonColumn.clearPrecomputesExceptValueIndex();
+            ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, _commonColumnName);
+        }
+        
+        int[] rows = new int[_cellChanges.length];
+        Object[] oldValues = new Object[_cellChanges.length];
+        Object[] newValues = new Object[_cellChanges.length];
+        int patched = 0;
+        for (CellChange cellChange : _cellChanges) {
+            if (commonColumn != null && cellChange.cellIndex == commonColumn.getCellIndex()) {
+                if (valueIndex != null) {
+                    Cell from = applied ? cellChange.oldCell : cellChange.newCell;
+                    Cell to = applied ? cellChange.newCell : cellChange.oldCell;
+                    rows[patched] = cellChange.row;
+                    oldValues[patched] = from == null ? null : from.value;
+                    newValues[patched] = to == null ? null : to.value;
+                    patched++;
+                }
+            } else {
+                // the value index cannot be left out of date for other columns
+                Column column = project.columnModel.getColumnByCellIndex(cellChange.cellIndex);
+                if (column != null) {
+                    column.clearPrecomputes();
+                }
+            }
+        }
+        if (patched > 0) {
+            // patched in one batch, as moving most rows of a value one at a time is quadratic
+            valueIndex.updateAll(Arrays.copyOf(rows, patched), Arrays.copyOf(oldValues, patched),
+                    Arrays.copyOf(newValues, patched));
+        }
+    }
+
     @Override
     public void revert(Project project) {
         synchronized (project) {
@@ -112,11 +157,7 @@ public class MassCellChange implements Change {
                 rows.get(cellChange.row).setCell(cellChange.cellIndex, cellChange.oldCell);
             }
             
-            if (_commonColumnName != null) {
-                Column column = project.columnModel.getColumnByName(_commonColumnName);
-                column.clearPrecomputes();
-                ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProjectColumn(project.id, _commonColumnName);
-            }
+            clearPrecomputes(project, false);
             
             if (_updateRowContextDependencies) {
                 project.update();
@@ -124,6 +165,22 @@ public class MassCellChange implements Change {
         }
     }
     
+    @Override
+    public void markDirtyRows(DirtyRows dirtyRows) {
+        for (CellChange cellChange : _cellChanges) {
+            dirtyRows.mark(cellChange.row);
+        }
+    }
+
+    @Override
+    public long estimateMemory() {
+        long size = ProjectMemoryEstimator.estimateArray(_cellChanges.length, ProjectMemoryEstimator.REFERENCE);
+        for (CellChange cellChange : _cellChanges) {
+            size += cellChange.estimateMemory();
+        }
+        return size;
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         if (_commonColumnName != null) {
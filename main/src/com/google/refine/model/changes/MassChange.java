@@ -43,10 +43,13 @@ import java.util.Properties;
 import com.google.common.collect.Lists;
 import com.google.refine.history.Change;
 import com.google.refine.history.History;
+import com.google.refine.history.RowScopedChange;
+import com.google.refine.model.DirtyRows;
+import com.google.refine.model.MemoryEstimable;
 import com.google.refine.model.Project;
 import com.google.refine.util.Pool;
 
-public class MassChange implements Change {
+public class MassChange implements RowScopedChange, MemoryEstimable {
     final protected List<? extends Change> _changes;
     final protected boolean                _updateRowContextDependencies;
     
@@ -81,6 +84,29 @@ public class MassChange implements Change {
         }
     }
     
+    @Override
+    public void markDirtyRows(DirtyRows dirtyRows) {
+        for (Change change : _changes) {
+            if (change instanceof RowScopedChange) {
+                ((RowScopedChange) change).markDirtyRows(dirtyRows);
+            } else {
+                dirtyRows.markAll();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long estimateMemory() {
+        long size = 0;
+        for (Change change : _changes) {
+            if (change instanceof MemoryEstimable) {
+                size += ((MemoryEstimable) change).estimateMemory();
+            }
+        }
+        return size;
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("updateRowContextDependencies="); writer.write(Boolean.toString(_updateRowContextDependencies)); writer.write('\n');
@@ -36,19 +36,103 @@ package com.google.refine.model.changes;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
+import com.google.refine.history.RowScopedChange;
+import com.google.refine.model.Cell;
+import com.google.refine.model.DirtyRows;
+import com.google.refine.model.MemoryEstimable;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
+import com.google.refine.model.Recon;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
 
-public class MassRowChange implements Change {
-    final protected List<Row> _newRows;
-    protected List<Row>       _oldRows;
+/**
+ * Replaces the rows of a project by a new list of rows. Only the spans of rows
+ * which were inserted, removed or modified are kept for undo and written to the
+ * change file.
+ * 
+ * Operations which know the rows they replace should describe them with a
+ * {@link Builder}. Otherwise the new rows are compared with the rows of the
+ * project when the change is first applied, which reads all of them.
+ */
+public class MassRowChange implements Change, RowScopedChange, MemoryEstimable {
+    /**
+     * A contiguous run of rows replaced by this change: oldRows, starting at
+     * oldStart in the rows before the change, were replaced by newRows,
+     * starting at newStart in the rows after the change.
+     */
+    static protected class Span {
+        final int oldStart;
+        final int newStart;
+        final List<Row> oldRows;
+        final List<Row> newRows;
+
+        Span(int oldStart, int newStart, List<Row> oldRows, List<Row> newRows) {
+            this.oldStart = oldStart;
+            this.newStart = newStart;
+            this.oldRows = oldRows;
+            this.newRows = newRows;
+        }
+    }
+
+    /**
+     * Collects the spans of rows replaced by an operation as it walks over the
+     * rows of the project, so that the rows it keeps are neither compared nor
+     * copied.
+     */
+    static public class Builder {
+        final protected List<Span> _spans = new ArrayList<Span>();
+        protected int _shift = 0;
+
+        /**
+         * Records that the old rows, starting at oldStart in the rows of the project,
+         * are replaced by the new rows. Spans must be added in the order of the rows
+         * and must not overlap.
+         */
+        public Builder replace(int oldStart, List<Row> oldRows, List<Row> newRows) {
+            if (oldRows.isEmpty() && newRows.isEmpty()) {
+                return this;
+            }
+            Span last = _spans.isEmpty() ? null : _spans.get(_spans.size() - 1);
+            if (last != null && last.oldStart + last.oldRows.size() == oldStart) {
+                last.oldRows.addAll(oldRows);
+                last.newRows.addAll(newRows);
+            } else {
+                _spans.add(new Span(oldStart, oldStart + _shift,
+                    new ArrayList<Row>(oldRows), new ArrayList<Row>(newRows)));
+            }
+            _shift += newRows.size() - oldRows.size();
+            return this;
+        }
+
+        /**
+         * Records that the row at the given index is replaced by another one.
+         */
+        public Builder replace(int index, Row oldRow, Row newRow) {
+            return replace(index, Collections.singletonList(oldRow), Collections.singletonList(newRow));
+        }
+
+        public MassRowChange build() {
+            MassRowChange change = new MassRowChange(null);
+            change._spans = Collections.unmodifiableList(_spans);
+            return change;
+        }
+    }
+
+    protected List<Row>  _newRows;
+    protected List<Span> _spans;
     
     public MassRowChange(List<Row> newRows) {
         _newRows = newRows;
@@ -57,9 +141,11 @@ public class MassRowChange implements Change {
     @Override
     public void apply(Project project) {
         synchronized (project) {
-            _oldRows = new ArrayList<Row>(project.rows);
-            project.rows.clear();
-            project.rows.addAll(_newRows);
+            if (_spans == null) {
+                _spans = diff(project.rows, _newRows);
+                _newRows = null;
+            }
+            replaceRows(project, true);
             
             project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
@@ -71,63 +157,287 @@ public class MassRowChange implements Change {
     @Override
     public void revert(Project project) {
         synchronized (project) {
-            project.rows.clear();
-            project.rows.addAll(_oldRows);
+            replaceRows(project, false);
+            
+            project.columnModel.clearPrecomputes();
+            ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
             
             project.update();
         }
     }
 
+    protected void replaceRows(Project project, boolean forward) {
+        replaceRows(project, _spans, forward);
+    }
+
+    static protected void replaceRows(Project project, List<Span> spans, boolean forward) {
+        List<Row> from = project.rows;
+        boolean resized = false;
+        int size = from.size();
+        for (Span span : spans) {
+            resized |= span.oldRows.size() != span.newRows.size();
+            size += forward ? span.newRows.size() - span.oldRows.size() : span.oldRows.size() - span.newRows.size();
+        }
+
+        if (!resized) {
+            // replace the rows in place, so that the rows of a paged project
+            // which are not part of any span are not read
+            for (Span span : spans) {
+                List<Row> rows = forward ? span.newRows : span.oldRows;
+                for (int i = 0; i < rows.size(); i++) {
+                    from.set(span.oldStart + i, rows.get(i));
+                }
+            }
+            return;
+        }
+
+        List<Row> rows = new ArrayList<Row>(size);
+        int next = 0;
+        for (Span span : spans) {
+            int start = forward ? span.oldStart : span.newStart;
+            rows.addAll(from.subList(next, start));
+            rows.addAll(forward ? span.newRows : span.oldRows);
+            next = start + (forward ? span.oldRows : span.newRows).size();
+        }
+        rows.addAll(from.subList(next, from.size()));
+
+        project.rows.clear();
+        project.rows.addAll(rows);
+    }
+
+    @Override
+    public void markDirtyRows(DirtyRows dirtyRows) {
+        for (Span span : _spans) {
+            if (span.oldRows.size() != span.newRows.size()) {
+                // the following rows have moved
+                dirtyRows.markAll();
+                return;
+            }
+        }
+        for (Span span : _spans) {
+            for (int i = 0; i < span.newRows.size(); i++) {
+                dirtyRows.mark(span.newStart + i);
+            }
+        }
+    }
+
+    @Override
+    public long estimateMemory() {
+        List<Span> spans = _spans;
+        if (spans == null) {
+            return _newRows == null ? 0 : ProjectMemoryEstimator.estimateArray(_newRows.size(), ProjectMemoryEstimator.REFERENCE);
+        }
+        return estimateSpans(spans);
+    }
+
+    static protected long estimateSpans(List<Span> spans) {
+        long size = 0;
+        for (Span span : spans) {
+            // the rows on one side of the span are in the project, the others are only kept by the change
+            size += Math.max(estimate(span.oldRows), estimate(span.newRows))
+                    + ProjectMemoryEstimator.estimateArray(span.oldRows.size() + span.newRows.size(), ProjectMemoryEstimator.REFERENCE);
+        }
+        return size;
+    }
+
+    static protected long estimate(List<Row> rows) {
+        long size = 0;
+        for (Row row : rows) {
+            size += ProjectMemoryEstimator.estimate(row);
+        }
+        return size;
+    }
+
+    /**
+     * Computes the spans of rows which differ between two row lists. Rows are
+     * compared by content rather than identity, since the rows of a paged project
+     * are decoded again each time their segment is paged in. Rows kept from the old
+     * list are expected to appear in the same order in the new list.
+     */
+    static protected List<Span> diff(List<Row> oldRows, List<Row> newRows) {
+        Map<RowContent, Deque<Integer>> oldIndices = new HashMap<RowContent, Deque<Integer>>();
+        for (int i = 0; i < oldRows.size(); i++) {
+            oldIndices.computeIfAbsent(new RowContent(oldRows.get(i)), k -> new ArrayDeque<Integer>()).add(i);
+        }
+
+        List<Span> spans = new ArrayList<Span>();
+        int oldNext = 0;
+        int newStart = 0;
+        for (int n = 0; n < newRows.size(); n++) {
+            Deque<Integer> indices = oldIndices.get(new RowContent(newRows.get(n)));
+            while (indices != null && !indices.isEmpty() && indices.peekFirst() < oldNext) {
+                indices.pollFirst();
+            }
+            if (indices != null && !indices.isEmpty()) {
+                int o = indices.pollFirst();
+                if (o > oldNext || n > newStart) {
+                    spans.add(new Span(oldNext, newStart,
+                        new ArrayList<Row>(oldRows.subList(oldNext, o)),
+                        new ArrayList<Row>(newRows.subList(newStart, n))));
+                }
+                oldNext = o + 1;
+                newStart = n + 1;
+            }
+        }
+        if (oldNext < oldRows.size() || newStart < newRows.size()) {
+            spans.add(new Span(oldNext, newStart,
+                new ArrayList<Row>(oldRows.subList(oldNext, oldRows.size())),
+                new ArrayList<Row>(newRows.subList(newStart, newRows.size()))));
+        }
+        return spans;
+    }
+
+    /**
+     * Compares rows by their flags and the values and recon ids of their cells.
+     */
+    static protected class RowContent {
+        final Row row;
+        final int hash;
+
+        RowContent(Row row) {
+            this.row = row;
+            int h = Boolean.hashCode(row.flagged) * 31 + Boolean.hashCode(row.starred);
+            int end = row.cells.size();
+            while (end > 0 && row.cells.get(end - 1) == null) {
+                end--;
+            }
+            for (int i = 0; i < end; i++) {
+                Cell cell = row.cells.get(i);
+                h = h * 31 + (cell == null ? 0 : Objects.hashCode(cell.value));
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RowContent)) {
+                return false;
+            }
+            Row other = ((RowContent) o).row;
+            if (row == other) {
+                return true;
+            }
+            if (hash != ((RowContent) o).hash || row.flagged != other.flagged || row.starred != other.starred) {
+                return false;
+            }
+            int size = Math.max(row.cells.size(), other.cells.size());
+            for (int i = 0; i < size; i++) {
+                Cell a = row.getCell(i);
+                Cell b = other.getCell(i);
+                if (a == b) {
+                    continue;
+                }
+                if (a == null || b == null || !Objects.equals(a.value, b.value)) {
+                    return false;
+                }
+                Recon ra = a.recon;
+                Recon rb = b.recon;
+                if (ra != rb && (ra == null || rb == null || ra.id != rb.id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
-        writer.write("newRowCount="); writer.write(Integer.toString(_newRows.size())); writer.write('\n');
-        for (Row row : _newRows) {
-            row.save(writer, options);
-            writer.write('\n');
+        writeSpans(writer, options, _spans);
+        writer.write("/ec/\n"); // end of change marker
+    }
+
+    static protected void writeSpans(Writer writer, Properties options, List<Span> spans) throws IOException {
+        writer.write("spanCount="); writer.write(Integer.toString(spans.size())); writer.write('\n');
+        for (Span span : spans) {
+            writer.write("span="); writer.write(Integer.toString(span.oldStart));
+            writer.write(','); writer.write(Integer.toString(span.newStart)); writer.write('\n');
+            writeRows(writer, options, "newRowCount=", span.newRows);
+            writeRows(writer, options, "oldRowCount=", span.oldRows);
         }
-        writer.write("oldRowCount="); writer.write(Integer.toString(_oldRows.size())); writer.write('\n');
-        for (Row row : _oldRows) {
+    }
+
+    static protected void writeRows(Writer writer, Properties options, String field, List<Row> rows) throws IOException {
+        writer.write(field); writer.write(Integer.toString(rows.size())); writer.write('\n');
+        for (Row row : rows) {
             row.save(writer, options);
             writer.write('\n');
         }
-        writer.write("/ec/\n"); // end of change marker
     }
     
     static public Change load(LineNumberReader reader, Pool pool) throws Exception {
-        List<Row> oldRows = null;
-        List<Row> newRows = null;
+        SpanReader spans = new SpanReader();
         
         String line;
         while ((line = reader.readLine()) != null && !"/ec/".equals(line)) {
             int equal = line.indexOf('=');
-            CharSequence field = line.subSequence(0, equal);
-            
-            if ("oldRowCount".equals(field)) {
-                int count = Integer.parseInt(line.substring(equal + 1));
-                
-                oldRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        oldRows.add(Row.load(line, pool));
-                    }
-                }
-            } else if ("newRowCount".equals(field)) {
-                int count = Integer.parseInt(line.substring(equal + 1));
-                
-                newRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        newRows.add(Row.load(line, pool));
-                    }
-                }
-            }
+            spans.read(line.subSequence(0, equal), line.substring(equal + 1), reader, pool);
         }
         
-        MassRowChange change = new MassRowChange(newRows);
-        change._oldRows = oldRows;
-        
+        MassRowChange change = new MassRowChange(null);
+        change._spans = spans.getSpans();
         return change;
     }
+
+    /**
+     * Reads the spans written by {@link #writeSpans(Writer, Properties, List)}
+     * from the fields of a change file. Change files written before spans were
+     * introduced hold all the old and new rows, which are read as a single span.
+     */
+    static protected class SpanReader {
+        protected List<Span> _spans = new ArrayList<Span>();
+        protected int _oldStart = 0;
+        protected int _newStart = 0;
+        protected List<Row> _oldRows = null;
+        protected List<Row> _newRows = null;
+
+        /**
+         * @return whether the field was a span field
+         */
+        public boolean read(CharSequence field, String value, LineNumberReader reader, Pool pool) throws Exception {
+            if ("spanCount".equals(field)) {
+                _spans = new ArrayList<Span>(Integer.parseInt(value));
+            } else if ("span".equals(field)) {
+                addSpan();
+                int comma = value.indexOf(',');
+                _oldStart = Integer.parseInt(value.substring(0, comma));
+                _newStart = Integer.parseInt(value.substring(comma + 1));
+            } else if ("oldRowCount".equals(field)) {
+                _oldRows = loadRows(reader, pool, Integer.parseInt(value));
+            } else if ("newRowCount".equals(field)) {
+                _newRows = loadRows(reader, pool, Integer.parseInt(value));
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        protected void addSpan() {
+            if (_oldRows != null && _newRows != null) {
+                _spans.add(new Span(_oldStart, _newStart, _oldRows, _newRows));
+            }
+            _oldRows = null;
+            _newRows = null;
+        }
+
+        public List<Span> getSpans() {
+            addSpan();
+            return Collections.unmodifiableList(_spans);
+        }
+    }
+
+    static protected List<Row> loadRows(LineNumberReader reader, Pool pool, int count) throws Exception {
+        List<Row> rows = new ArrayList<Row>(count);
+        for (int i = 0; i < count; i++) {
+            String line = reader.readLine();
+            if (line != null) {
+                rows.add(Row.load(line, pool));
+            }
+        }
+        return rows;
+    }
 }
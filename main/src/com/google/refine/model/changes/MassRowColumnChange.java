@@ -45,15 +45,23 @@ import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
 import com.google.refine.model.Column;
 import com.google.refine.model.ColumnGroup;
+import com.google.refine.model.MemoryEstimable;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
 
-public class MassRowColumnChange implements Change {
+/**
+ * Replaces the columns and the rows of a project. As in {@link MassRowChange},
+ * only the spans of rows which were inserted, removed or modified are kept for
+ * undo and written to the change file; they are computed by comparing the new
+ * rows with the rows of the project when the change is first applied.
+ */
+public class MassRowColumnChange implements Change, MemoryEstimable {
     final protected List<Column>    _newColumns;
-    final protected List<Row>       _newRows;
+    protected List<Row>             _newRows;
     protected List<Column>          _oldColumns;
-    protected List<Row>             _oldRows;
+    protected List<MassRowChange.Span> _spans;
     protected List<ColumnGroup>     _oldColumnGroups;
     
     public MassRowColumnChange(List<Column> newColumns, List<Row> newRows) {
@@ -70,17 +78,18 @@ public class MassRowColumnChange implements Change {
             if (_oldColumns == null) {
                 _oldColumns = new ArrayList<Column>(project.columnModel.columns);
             }
-            if (_oldRows == null) {
-                _oldRows = new ArrayList<Row>(project.rows);
+            if (_spans == null) {
+                _spans = MassRowChange.diff(project.rows, _newRows);
+                _newRows = null;
             }
             
             project.columnModel.columns.clear();
             project.columnModel.columns.addAll(_newColumns);
             project.columnModel.columnGroups.clear();
             
-            project.rows.clear();
-            project.rows.addAll(_newRows);
+            MassRowChange.replaceRows(project, _spans, true);
             
+            project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
             
             project.update();
@@ -96,15 +105,24 @@ public class MassRowColumnChange implements Change {
             project.columnModel.columnGroups.clear();
             project.columnModel.columnGroups.addAll(_oldColumnGroups);
             
-            project.rows.clear();
-            project.rows.addAll(_oldRows);
+            MassRowChange.replaceRows(project, _spans, false);
             
+            project.columnModel.clearPrecomputes();
             ProjectManager.singleton.getLookupCacheManager().flushLookupsInvolvingProject(project.id);
             
             project.update();
         }
     }
 
+    @Override
+    public long estimateMemory() {
+        List<MassRowChange.Span> spans = _spans;
+        if (spans == null) {
+            return _newRows == null ? 0 : ProjectMemoryEstimator.estimateArray(_newRows.size(), ProjectMemoryEstimator.REFERENCE);
+        }
+        return MassRowChange.estimateSpans(spans);
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("newColumnCount="); writer.write(Integer.toString(_newColumns.size())); writer.write('\n');
@@ -117,16 +135,7 @@ public class MassRowColumnChange implements Change {
             column.save(writer);
             writer.write('\n');
         }
-        writer.write("newRowCount="); writer.write(Integer.toString(_newRows.size())); writer.write('\n');
-        for (Row row : _newRows) {
-            row.save(writer, options);
-            writer.write('\n');
-        }
-        writer.write("oldRowCount="); writer.write(Integer.toString(_oldRows.size())); writer.write('\n');
-        for (Row row : _oldRows) {
-            row.save(writer, options);
-            writer.write('\n');
-        }
+        MassRowChange.writeSpans(writer, options, _spans);
         ColumnChange.writeOldColumnGroups(writer, options, _oldColumnGroups);
         writer.write("/ec/\n"); // end of change marker
     }
@@ -136,35 +145,14 @@ public class MassRowColumnChange implements Change {
         List<Column> newColumns = null;
         List<ColumnGroup> oldColumnGroups = null;
 
-        List<Row> oldRows = null;
-        List<Row> newRows = null;
+        MassRowChange.SpanReader spans = new MassRowChange.SpanReader();
         
         String line;
         while ((line = reader.readLine()) != null && !"/ec/".equals(line)) {
             int equal = line.indexOf('=');
             CharSequence field = line.subSequence(0, equal);
             
-            if ("oldRowCount".equals(field)) {
-                int count = Integer.parseInt(line.substring(equal + 1));
-                
-                oldRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        oldRows.add(Row.load(line, pool));
-                    }
-                }
-            } else if ("newRowCount".equals(field)) {
-                int count = Integer.parseInt(line.substring(equal + 1));
-                
-                newRows = new ArrayList<Row>(count);
-                for (int i = 0; i < count; i++) {
-                    line = reader.readLine();
-                    if (line != null) {
-                        newRows.add(Row.load(line, pool));
-                    }
-                }
-            } else if ("oldColumnCount".equals(field)) {
+            if ("oldColumnCount".equals(field)) {
                 int count = Integer.parseInt(line.substring(equal + 1));
                 
                 oldColumns = new ArrayList<Column>(count);
@@ -188,12 +176,14 @@ public class MassRowColumnChange implements Change {
                 int oldColumnGroupCount = Integer.parseInt(line.substring(equal + 1));
                 
                 oldColumnGroups = ColumnChange.readOldColumnGroups(reader, oldColumnGroupCount);
+            } else {
+                spans.read(field, line.substring(equal + 1), reader, pool);
             }
         }
         
-        MassRowColumnChange change = new MassRowColumnChange(newColumns, newRows);
+        MassRowColumnChange change = new MassRowColumnChange(newColumns, null);
         change._oldColumns = oldColumns;
-        change._oldRows = oldRows;
+        change._spans = spans.getSpans();
         change._oldColumnGroups = oldColumnGroups != null ?
                 oldColumnGroups : new LinkedList<ColumnGroup>();
         
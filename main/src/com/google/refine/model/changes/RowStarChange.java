@@ -39,11 +39,13 @@ import java.io.Writer;
 import java.util.Properties;
 
 import com.google.refine.history.Change;
+import com.google.refine.history.RowScopedChange;
+import com.google.refine.model.DirtyRows;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
 
-public class RowStarChange implements Change {
+public class RowStarChange implements RowScopedChange {
     final int rowIndex;
     final boolean newStarred;
     Boolean oldStarred = null;
@@ -69,6 +71,11 @@ public class RowStarChange implements Change {
         row.starred = oldStarred;
     }
     
+    @Override
+    public void markDirtyRows(DirtyRows dirtyRows) {
+        dirtyRows.mark(rowIndex);
+    }
+
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         writer.write("row="); writer.write(Integer.toString(rowIndex)); writer.write('\n');
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model.columnar;
+
+import java.lang.ref.SoftReference;
+import java.util.BitSet;
+
+import com.google.refine.io.PagedRowList;
+import com.google.refine.model.Column;
+import com.google.refine.model.MemoryEstimable;
+import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
+import com.google.refine.model.Row;
+
+/**
+ * Read-only columnar copy of the cell values of a column. Values are stored in typed
+ * arrays (strings are dictionary-encoded) and missing values in a null bitmap, so that
+ * scans over a single column do not need to go through the rows and their cells.
+ * 
+ * This is a cache for facet scans, not a storage backend: the rows of the project
+ * remain the only storage and the {@link Row}/{@link com.google.refine.model.Cell}
+ * objects are not views over vectors, so a vector is a second copy of its column.
+ * To bound that cost, a vector is only built for a column a facet scans, is held
+ * through a soft reference so that the garbage collector can reclaim it, and is not
+ * built at all for projects whose rows are paged in from disk.
+ * 
+ * A vector is cached with the other precomputed values of its column, which are
+ * cleared whenever the cells of the column change. It is rebuilt once rows have
+ * been added, removed or moved, as told by the version of the project.
+ */
+abstract public class ColumnVector implements MemoryEstimable {
+    static final public String PRECOMPUTE_KEY = "column-vector";
+    
+    final protected int _size;
+    final protected long _version;
+    final protected BitSet _nulls;
+    
+    protected ColumnVector(Project project) {
+        _size = project.rows.size();
+        _version = project.getVersion();
+        _nulls = new BitSet(_size);
+    }
+    
+    /**
+     * @return the number of rows in the vector
+     */
+    public int size() {
+        return _size;
+    }
+    
+    /**
+     * @return whether the row has no cell, or a cell without any value
+     */
+    public boolean isNull(int rowIndex) {
+        return _nulls.get(rowIndex);
+    }
+    
+    /**
+     * @return the value of the cell in the given row, or null if there is none
+     */
+    public Object get(int rowIndex) {
+        return _nulls.get(rowIndex) ? null : getNonNull(rowIndex);
+    }
+    
+    abstract protected Object getNonNull(int rowIndex);
+    
+    @Override
+    public long estimateMemory() {
+        return ProjectMemoryEstimator.OBJECT_HEADER + ProjectMemoryEstimator.estimateArray(_nulls.size() / 64, 8);
+    }
+    
+    /**
+     * @return the version of the project the vector was built from, see {@link Project#getVersion()}
+     */
+    public long getVersion() {
+        return _version;
+    }
+    
+    /**
+     * Returns the vector of a column, building it if the cached one is missing, was
+     * reclaimed or was built from another version of the project.
+     * 
+     * @return the vector, or null if the rows of the project are paged in from
+     *      disk, as the vector would keep the whole column in memory
+     */
+    static public ColumnVector get(Project project, Column column) {
+        if (project.rows instanceof PagedRowList) {
+            return null;
+        }
+        // changes lock the project before the column, so we do the same
+        synchronized (project) {
+            synchronized (column) {
+                Object cached = column.getPrecompute(PRECOMPUTE_KEY);
+                ColumnVector vector = cached instanceof CachedVector ? ((CachedVector) cached).get() : null;
+                if (vector != null && vector.getVersion() == project.getVersion()) {
+                    return vector;
+                }
+                vector = build(project, column.getCellIndex());
+                column.setPrecompute(PRECOMPUTE_KEY, new CachedVector(vector));
+                return vector;
+            }
+        }
+    }
+    
+    /**
+     * Holds a cached vector until memory runs short.
+     */
+    static protected class CachedVector extends SoftReference<ColumnVector> implements MemoryEstimable {
+        CachedVector(ColumnVector vector) {
+            super(vector);
+        }
+        
+        @Override
+        public long estimateMemory() {
+            ColumnVector vector = get();
+            return vector == null ? 0 : vector.estimateMemory();
+        }
+    }
+    
+    /**
+     * Copies the values of a column into the most compact vector type which can hold
+     * all of them. The project is locked meanwhile, so that changes cannot modify
+     * the rows between the type scan and the copy.
+     */
+    static public ColumnVector build(Project project, int cellIndex) {
+        synchronized (project) {
+            Class<?> type = null;
+            for (Row row : project.rows) {
+                Object value = row.getCellValue(cellIndex);
+                if (value != null) {
+                    if (type == null) {
+                        type = value.getClass();
+                    } else if (type != value.getClass()) {
+                        type = Object.class;
+                        break;
+                    }
+                }
+            }
+            
+            if (type == String.class) {
+                return new StringColumnVector(project, cellIndex);
+            } else if (type == Long.class) {
+                return new LongColumnVector(project, cellIndex);
+            } else if (type == Double.class) {
+                return new DoubleColumnVector(project, cellIndex);
+            } else {
+                return new ObjectColumnVector(project, cellIndex);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model.columnar;
+
+import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
+
+/**
+ * Vector of double values, stored unboxed.
+ */
+public class DoubleColumnVector extends ColumnVector {
+    final protected double[] _values;
+    
+    public DoubleColumnVector(Project project, int cellIndex) {
+        super(project);
+        _values = new double[_size];
+        
+        for (int r = 0; r < _size; r++) {
+            Double value = (Double) project.rows.get(r).getCellValue(cellIndex);
+            if (value == null) {
+                _nulls.set(r);
+            } else {
+                _values[r] = value;
+            }
+        }
+    }
+    
+    /**
+     * @return the value in the given row, or 0 if it is null
+     */
+    public double getDouble(int rowIndex) {
+        return _values[rowIndex];
+    }
+    
+    @Override
+    protected Object getNonNull(int rowIndex) {
+        return _values[rowIndex];
+    }
+    
+    @Override
+    public long estimateMemory() {
+        return super.estimateMemory() + ProjectMemoryEstimator.estimateArray(_values.length, 8);
+    }
+}
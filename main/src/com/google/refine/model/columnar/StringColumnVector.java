@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model.columnar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
+
+/**
+ * Dictionary-encoded vector of string values: each row holds the code of its value
+ * in a dictionary of the distinct strings of the column.
+ */
+public class StringColumnVector extends ColumnVector {
+    final protected int[] _codes;
+    final protected String[] _dictionary;
+    
+    public StringColumnVector(Project project, int cellIndex) {
+        super(project);
+        _codes = new int[_size];
+        
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (int r = 0; r < _size; r++) {
+            String value = (String) project.rows.get(r).getCellValue(cellIndex);
+            if (value == null) {
+                _nulls.set(r);
+                _codes[r] = -1;
+            } else {
+                Integer code = codes.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    codes.put(value, code);
+                    dictionary.add(value);
+                }
+                _codes[r] = code;
+            }
+        }
+        _dictionary = dictionary.toArray(new String[dictionary.size()]);
+    }
+    
+    /**
+     * @return the code of the value in the given row, or -1 if it is null
+     */
+    public int getCode(int rowIndex) {
+        return _codes[rowIndex];
+    }
+    
+    /**
+     * @return the distinct values of the column, indexed by their code
+     */
+    public String[] getDictionary() {
+        return _dictionary;
+    }
+    
+    @Override
+    protected Object getNonNull(int rowIndex) {
+        return _dictionary[_codes[rowIndex]];
+    }
+    
+    @Override
+    public long estimateMemory() {
+        return super.estimateMemory() + ProjectMemoryEstimator.estimateArray(_codes.length, 4)
+                + ProjectMemoryEstimator.estimateArray(_dictionary.length, ProjectMemoryEstimator.REFERENCE);
+    }
+}
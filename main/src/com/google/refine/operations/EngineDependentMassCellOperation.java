@@ -41,11 +41,13 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.EngineConfig;
 import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.ParallelVisitor;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.history.Change;
 import com.google.refine.history.HistoryEntry;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
+import com.google.refine.model.Row;
 import com.google.refine.model.changes.CellChange;
 import com.google.refine.model.changes.MassCellChange;
 
@@ -75,7 +77,11 @@ abstract public class EngineDependentMassCellOperation extends EngineDependentOp
         
         FilteredRows filteredRows = engine.getAllFilteredRows();
         try {
-            filteredRows.accept(project, createRowVisitor(project, cellChanges, historyEntryID));
+            RowVisitor visitor = createRowVisitor(project, cellChanges, historyEntryID);
+            if (isRowIndependent(project)) {
+                visitor = new PartitionedRowVisitor(project, historyEntryID, visitor, cellChanges);
+            }
+            filteredRows.accept(project, visitor);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -96,6 +102,89 @@ abstract public class EngineDependentMassCellOperation extends EngineDependentOp
         return _columnName;
     }
     
+    /**
+     * Tells whether the change to each cell only depends on its own row and the
+     * visitors returned by {@link #createRowVisitor(Project, List, long)} can run
+     * concurrently. Large projects are then visited in parallel, with one visitor
+     * and one list of cell changes per range of rows.
+     */
+    protected boolean isRowIndependent(Project project) throws Exception {
+        return false;
+    }
+
     abstract protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, long historyEntryID) throws Exception;
     abstract protected String createDescription(Column column, List<CellChange> cellChanges);
+
+    /**
+     * Row visitor of a row-independent operation which can create the visitors
+     * of the other ranges of rows itself, sharing with them the state which is
+     * set up once per run of the operation, such as a memoized expression.
+     * Visitors which do not implement it are created again for each range.
+     */
+    public interface PartitionableRowVisitor extends RowVisitor {
+        /**
+         * @return a visitor which adds the changes of its range of rows to the given list
+         */
+        public RowVisitor partition(List<CellChange> cellChanges);
+    }
+
+    /**
+     * Runs the row visitors of a row-independent operation on ranges of rows.
+     * Each range gets its own visitor and list of cell changes, and the lists
+     * are concatenated in row order as the ranges are merged. The visitors of
+     * the ranges are created by the first visitor if it is a
+     * {@link PartitionableRowVisitor}.
+     */
+    protected class PartitionedRowVisitor implements RowVisitor, ParallelVisitor {
+        final protected Project          _project;
+        final protected long             _historyEntryID;
+        final protected RowVisitor       _visitor;
+        final protected List<CellChange> _cellChanges;
+
+        protected PartitionedRowVisitor(Project project, long historyEntryID, RowVisitor visitor, List<CellChange> cellChanges) {
+            _project = project;
+            _historyEntryID = historyEntryID;
+            _visitor = visitor;
+            _cellChanges = cellChanges;
+        }
+
+        @Override
+        public void start(Project project) {
+            _visitor.start(project);
+        }
+
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            return _visitor.visit(project, rowIndex, row);
+        }
+
+        @Override
+        public void end(Project project) {
+            _visitor.end(project);
+        }
+
+        @Override
+        public ParallelVisitor split() {
+            List<CellChange> cellChanges = new ArrayList<CellChange>();
+            RowVisitor visitor;
+            if (_visitor instanceof PartitionableRowVisitor) {
+                visitor = ((PartitionableRowVisitor) _visitor).partition(cellChanges);
+            } else {
+                try {
+                    visitor = createRowVisitor(_project, cellChanges, _historyEntryID);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            visitor.start(_project);
+            return new PartitionedRowVisitor(_project, _historyEntryID, visitor, cellChanges);
+        }
+
+        @Override
+        public void merge(ParallelVisitor other) {
+            PartitionedRowVisitor partition = (PartitionedRowVisitor) other;
+            partition._visitor.end(_project);
+            _cellChanges.addAll(partition._cellChanges);
+        }
+    }
 }
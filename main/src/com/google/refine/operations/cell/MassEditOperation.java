@@ -47,6 +47,7 @@ import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.expr.MetaParser;
+import com.google.refine.grel.ExpressionOptimizer;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
@@ -140,6 +141,11 @@ public class MassEditOperation extends EngineDependentMassCellOperation {
             " cells in column " + column.getName();
     }
 
+    @Override
+    protected boolean isRowIndependent(Project project) throws Exception {
+        return ExpressionOptimizer.isPure(MetaParser.parse(_expression));
+    }
+
     @Override
     protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, long historyEntryID) throws Exception {
         Column column = project.columnModel.getColumnByName(_columnName);
@@ -100,14 +100,13 @@ public class MultiValuedCellJoinOperation extends AbstractOperation {
         }
         int keyCellIndex = keyColumn.getCellIndex();
         
-        List<Row> newRows = new ArrayList<Row>();
+        MassRowChange.Builder change = new MassRowChange.Builder();
         
         int oldRowCount = project.rows.size();
         for (int r = 0; r < oldRowCount; r++) {
             Row oldRow = project.rows.get(r);
             
             if (oldRow.isCellBlank(keyCellIndex)) {
-                newRows.add(oldRow.dup());
                 continue;
             }
             
@@ -117,7 +116,6 @@ public class MultiValuedCellJoinOperation extends AbstractOperation {
             }
             
             if (r2 == r + 1) {
-                newRows.add(oldRow.dup());
                 continue;
             }
             
@@ -132,7 +130,10 @@ public class MultiValuedCellJoinOperation extends AbstractOperation {
                 }
             }
             
+            List<Row> oldRows = new ArrayList<Row>(r2 - r);
+            List<Row> newRows = new ArrayList<Row>();
             for (int r3 = r; r3 < r2; r3++) {
+                oldRows.add(project.rows.get(r3));
                 Row newRow = project.rows.get(r3).dup();
                 if (r3 == r) {
                     newRow.setCell(cellIndex, new Cell(sb.toString(), null));
@@ -144,6 +145,7 @@ public class MultiValuedCellJoinOperation extends AbstractOperation {
                     newRows.add(newRow);
                 }
             }
+            change.replace(r, oldRows, newRows);
             
             r = r2 - 1; // r will be incremented by the for loop anyway
         }
@@ -153,7 +155,7 @@ public class MultiValuedCellJoinOperation extends AbstractOperation {
             project, 
             getBriefDescription(null), 
             this, 
-            new MassRowChange(newRows)
+            change.build()
         );
     }
 
@@ -170,13 +170,12 @@ public class MultiValuedCellSplitOperation extends AbstractOperation {
         }
         int keyCellIndex = keyColumn.getCellIndex();
 
-        List<Row> newRows = new ArrayList<Row>();
+        MassRowChange.Builder change = new MassRowChange.Builder();
         
         int oldRowCount = project.rows.size();
         for (int r = 0; r < oldRowCount; r++) {
             Row oldRow = project.rows.get(r);
             if (oldRow.isCellBlank(cellIndex)) {
-                newRows.add(oldRow.dup());
                 continue;
             }
             
@@ -209,10 +208,11 @@ public class MultiValuedCellSplitOperation extends AbstractOperation {
             }
             
             if (values.length < 2) {
-                newRows.add(oldRow.dup());
                 continue;
             }
             
+            List<Row> newRows = new ArrayList<Row>(values.length);
+            
             // First value goes into the same row
             {
                 Row firstNewRow = oldRow.dup();
@@ -245,6 +245,7 @@ public class MultiValuedCellSplitOperation extends AbstractOperation {
                 
                 newRows.add(newRow);
             }
+            change.replace(r, project.rows.subList(r, r2), newRows);
             
             r = r2 - 1; // r will be incremented by the for loop anyway
         }
@@ -254,7 +255,7 @@ public class MultiValuedCellSplitOperation extends AbstractOperation {
             project, 
             getBriefDescription(null), 
             this, 
-            new MassRowChange(newRows)
+            change.build()
         );
     }
 }
@@ -43,8 +43,10 @@ import com.google.refine.browsing.EngineConfig;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.expr.MemoizedEvaluable;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.WrappedCell;
+import com.google.refine.grel.ExpressionOptimizer;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
@@ -117,14 +119,26 @@ public class TextTransformOperation extends EngineDependentMassCellOperation {
             " cells in column " + column.getName() + ": " + _expression;
     }
 
+    @Override
+    protected boolean isRowIndependent(Project project) throws Exception {
+        return ExpressionOptimizer.isPure(MetaParser.parse(_expression));
+    }
+
     @Override
     protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, long historyEntryID) throws Exception {
+        return createRowVisitor(project, cellChanges, MemoizedEvaluable.memoizeByValue(MetaParser.parse(_expression)));
+    }
+    
+    /**
+     * Creates a visitor evaluating the given expression, which is shared by the
+     * visitors of all ranges of rows so that they fill a single memo table.
+     */
+    protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, Evaluable eval) {
         Column column = project.columnModel.getColumnByName(_columnName);
         
-        Evaluable eval = MetaParser.parse(_expression);
         Properties bindings = ExpressionUtils.createBindings(project);
         
-        return new RowVisitor() {
+        return new PartitionableRowVisitor() {
             int                 cellIndex;
             Properties             bindings;
             List<CellChange>     cellChanges;
@@ -148,6 +162,11 @@ public class TextTransformOperation extends EngineDependentMassCellOperation {
                 // nothing to do
             }
 
+            @Override
+            public RowVisitor partition(List<CellChange> cellChanges) {
+                return createRowVisitor(project, cellChanges, eval);
+            }
+
             @Override
             public boolean visit(Project project, int rowIndex, Row row) {
                 Cell cell = row.getCell(cellIndex);
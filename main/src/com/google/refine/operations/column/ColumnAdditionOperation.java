@@ -46,6 +46,7 @@ import com.google.refine.browsing.FilteredRows;
 import com.google.refine.browsing.RowVisitor;
 import com.google.refine.expr.Evaluable;
 import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.expr.MemoizedEvaluable;
 import com.google.refine.expr.MetaParser;
 import com.google.refine.expr.WrappedCell;
 import com.google.refine.history.Change;
@@ -160,7 +161,7 @@ public class ColumnAdditionOperation extends EngineDependentOperation {
     protected RowVisitor createRowVisitor(Project project, List<CellAtRow> cellsAtRows) throws Exception {
         Column column = project.columnModel.getColumnByName(_baseColumnName);
         
-        Evaluable eval = MetaParser.parse(_expression);
+        Evaluable eval = MemoizedEvaluable.memoizeByValue(MetaParser.parse(_expression));
         Properties bindings = ExpressionUtils.createBindings(project);
         
         return new RowVisitor() {
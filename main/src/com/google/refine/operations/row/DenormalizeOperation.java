@@ -33,7 +33,6 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.operations.row;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -58,7 +57,7 @@ public class DenormalizeOperation extends AbstractOperation {
 
     @Override
     protected HistoryEntry createHistoryEntry(Project project, long historyEntryID) throws Exception {
-        List<Row> newRows = new ArrayList<Row>();
+        MassRowChange.Builder change = new MassRowChange.Builder();
         
         List<Row> oldRows = project.rows;
         for (int r = 0; r < oldRows.size(); r++) {
@@ -84,7 +83,9 @@ public class DenormalizeOperation extends AbstractOperation {
                 }
             }
             
-            newRows.add(newRow != null ? newRow : oldRow);
+            if (newRow != null) {
+                change.replace(r, oldRow, newRow);
+            }
         }
         
         return new HistoryEntry(
@@ -92,7 +93,7 @@ public class DenormalizeOperation extends AbstractOperation {
             project,
             getBriefDescription(project),
             DenormalizeOperation.this,
-            new MassRowChange(newRows)
+            change.build()
         );
     }
 }
@@ -33,6 +33,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine;
 
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -52,8 +53,12 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import com.google.refine.ProjectMetadata;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
 import com.google.refine.model.Project;
+import com.google.refine.model.ProjectMemoryEstimator;
 import com.google.refine.model.ProjectStub;
+import com.google.refine.model.Row;
 import com.google.refine.process.ProcessManager;
 
 public class ProjectManagerTests extends RefineTest {
@@ -202,8 +207,98 @@ public class ProjectManagerTests extends RefineTest {
     }
     //TODO test canSaveAllModifiedWithRaceCondition
 
+    @Test
+    public void canEvictLeastRecentlyUsedProject(){
+        Project project1 = projectWithRows(1);
+        Project project2 = projectWithRows(2);
+        Project project3 = projectWithRows(3);
+        long estimate = ProjectMemoryEstimator.estimate(project1);
+        Assert.assertTrue(estimate > 0);
+        SUT.setMemoryBudget(estimate * 5 / 2);
+
+        registerProject(project1, savedMetadata());
+        registerProject(project2, savedMetadata());
+        Assert.assertEquals(SUT.getProjectMemoryEstimates().size(), 2);
+
+        SUT.getProject(1); // project 2 is now the least recently used
+        registerProject(project3, savedMetadata());
+
+        Assert.assertEquals(SUT.getProjectMemoryEstimates().keySet().size(), 2);
+        Assert.assertSame(SUT._projects.get(1L), project1);
+        Assert.assertNull(SUT._projects.get(2L));
+        Assert.assertSame(SUT._projects.get(3L), project3);
+        verify(SUT, never()).saveProject(Mockito.any());
+    }
+
+    @Test
+    public void estimateCountsColumnIndexes() throws Exception {
+        Project project1 = projectWithRows(1);
+        Column column = new Column(0, "a");
+        project1.columnModel.addColumn(0, column, false);
+        long estimate = ProjectMemoryEstimator.estimate(project1);
+
+        column.getValueIndex(project1);
+        Assert.assertTrue(ProjectMemoryEstimator.estimate(project1) > estimate);
+        column.clearPrecomputes();
+        Assert.assertEquals(ProjectMemoryEstimator.estimate(project1), estimate);
+    }
+
+    @Test
+    public void canSaveProjectBeforeEviction(){
+        Project project1 = projectWithRows(1);
+        Project project2 = projectWithRows(2);
+        SUT.setMemoryBudget(ProjectMemoryEstimator.estimate(project1) * 3 / 2);
+
+        ProjectMetadata metadata1 = mock(ProjectMetadata.class);
+        when(metadata1.getModified()).thenReturn(LocalDateTime.now().plusDays(1)); // modified after the last save
+        doAnswer(invocation -> {
+            when(metadata1.getModified()).thenReturn(LocalDateTime.now().minusDays(1));
+            return null;
+        }).when(SUT).saveProject(project1);
+
+        registerProject(project1, metadata1);
+        registerProject(project2, savedMetadata());
+
+        verify(SUT, times(1)).saveProject(project1);
+        Assert.assertNull(SUT._projects.get(1L));
+        Assert.assertSame(SUT._projects.get(2L), project2);
+    }
+
+    @Test
+    public void cannotEvictProjectWithPendingProcesses(){
+        Project project1 = spy(projectWithRows(1));
+        Project project2 = projectWithRows(2);
+        ProcessManager busyProcesses = mock(ProcessManager.class);
+        when(busyProcesses.hasPending()).thenReturn(true);
+        when(project1.getProcessManager()).thenReturn(busyProcesses);
+        SUT.setMemoryBudget(ProjectMemoryEstimator.estimate(project2));
+
+        registerProject(project1, savedMetadata());
+        registerProject(project2, savedMetadata());
+
+        Assert.assertSame(SUT._projects.get(1L), project1);
+        Assert.assertSame(SUT._projects.get(2L), project2);
+    }
+
     //-------------helpers-------------
 
+    protected Project projectWithRows(long id){
+        Project proj = new ProjectStub(id);
+        for (int i = 0; i < 100; i++) {
+            Row row = new Row(2);
+            row.setCell(0, new Cell("value " + i, null));
+            row.setCell(1, new Cell(i, null));
+            proj.rows.add(row);
+        }
+        return proj;
+    }
+
+    protected ProjectMetadata savedMetadata(){
+        ProjectMetadata meta = mock(ProjectMetadata.class);
+        when(meta.getModified()).thenReturn(LocalDateTime.now().minusDays(1));
+        return meta;
+    }
+
     protected void registerProject(){
         this.registerProject(project, metadata);
     }
@@ -28,14 +28,58 @@ package com.google.refine.browsing;
 
 import static org.mockito.Mockito.mock;
 
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.refine.RefineTest;
 import com.google.refine.browsing.Engine;
 import com.google.refine.model.Project;
+import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.TestUtils;
 
 
-public class EngineTests {
+public class EngineTests extends RefineTest {
+    
+    private static String engineConfigJson = "{"
+            + "\"mode\":\"%s\","
+            + "\"facets\":["
+            + "  {\"type\":\"list\",\"name\":\"A\",\"columnName\":\"A\",\"expression\":\"value\","
+            + "   \"omitBlank\":false,\"omitError\":false,\"selectBlank\":false,\"selectError\":false,\"invert\":false,"
+            + "   \"selection\":[{\"v\":{\"v\":\"a\",\"l\":\"a\"}}]},"
+            + "  {\"type\":\"list\",\"name\":\"B\",\"columnName\":\"B\",\"expression\":\"value\","
+            + "   \"omitBlank\":false,\"omitError\":false,\"selectBlank\":false,\"selectError\":false,\"invert\":false,"
+            + "   \"selection\":[{\"v\":{\"v\":\"x\",\"l\":\"x\"}}]},"
+            + "  {\"type\":\"range\",\"name\":\"C\",\"columnName\":\"C\",\"expression\":\"value\","
+            + "   \"from\":1,\"to\":3,\"selectNumeric\":true,\"selectNonNumeric\":true,\"selectBlank\":true,\"selectError\":true}"
+            + "]}";
+    
+    private String computeFacets(Project project, String mode, boolean singlePass) throws Exception {
+        Engine engine = new Engine(project);
+        engine.initializeFromConfig(EngineConfig.reconstruct(String.format(engineConfigJson, mode)));
+        engine.setSinglePassFacetComputation(singlePass);
+        engine.computeFacets();
+        Assert.assertEquals(engine.getFacetTimings().size(), 3);
+        return ParsingUtilities.mapper.writeValueAsString(engine);
+    }
+    
+    @Test
+    public void testSinglePassFacetComputation() throws Exception {
+        Project project = createCSVProject(
+                "A,B,C\n"
+                + "a,x,1\n"
+                + "a,y,2\n"
+                + "b,x,2\n"
+                + "c,y,3\n"
+                + ",x,5\n"
+                + "a,,2\n");
+        
+        for (String mode : new String[] { "row-based", "record-based" }) {
+            String expected = computeFacets(project, mode, false);
+            String actual = computeFacets(project, mode, true);
+            TestUtils.assertEqualAsJson(expected, actual);
+        }
+    }
+    
     @Test
     public void serializeEngine() {
         Project project = mock(Project.class);
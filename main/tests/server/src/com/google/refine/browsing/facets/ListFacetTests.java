@@ -28,15 +28,20 @@ package com.google.refine.browsing.facets;
 
 import java.io.IOException;
 
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.google.refine.RefineTest;
 import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.browsing.filters.ExpressionEqualRowFilter;
 import com.google.refine.browsing.facets.Facet;
 import com.google.refine.browsing.facets.ListFacet.ListFacetConfig;
+import com.google.refine.expr.MetaParser;
 import com.google.refine.model.Project;
+import com.google.refine.model.Row;
 import com.google.refine.util.ParsingUtilities;
 import com.google.refine.util.TestUtils;
 
@@ -130,4 +135,30 @@ public class ListFacetTests extends RefineTest {
     	facet.computeChoices(project, engine.getAllFilteredRows());
     	TestUtils.isSerializedTo(facet, selectedEmptyChoiceFacet);
     }
+
+    @Test
+    public void testCellValueFilterUsesValueIndex() throws Exception {
+        Project project = createCSVProject("Column A\n" +
+                "a\n" +
+                "b\n" +
+                "\n" +
+                "c\n" +
+                "a\n");
+        for (boolean invert : new boolean[] { false, true }) {
+            String config = "{\"type\":\"list\",\"name\":\"facet A\",\"columnName\":\"Column A\","
+                    + "\"expression\":\"value\",\"selection\":[{\"v\":{\"v\":\"a\",\"l\":\"a\"}},"
+                    + "{\"v\":{\"v\":\"c\",\"l\":\"c\"}}],"
+                    + "\"selectBlank\":true,\"selectError\":false,\"invert\":" + invert + "}";
+            ListFacetConfig facetConfig = ParsingUtilities.mapper.readValue(config, ListFacetConfig.class);
+            RowFilter indexed = facetConfig.apply(project).getRowFilter(project);
+            RowFilter evaluated = new ExpressionEqualRowFilter(MetaParser.parse("value"), "Column A", 0,
+                    new Object[] { "a", "c" }, true, false, invert);
+
+            for (int i = 0; i < project.rows.size(); i++) {
+                Row row = project.rows.get(i);
+                Assert.assertEquals(indexed.filterRow(project, i, row), evaluated.filterRow(project, i, row));
+            }
+        }
+        Assert.assertEquals(project.columnModel.getColumnByName("Column A").getValueIndex(project).getValueCount(), 3);
+    }
 }
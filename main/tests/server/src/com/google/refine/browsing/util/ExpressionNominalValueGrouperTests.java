@@ -50,6 +50,7 @@ import com.google.refine.model.Cell;
 import com.google.refine.model.ModelException;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
+import com.google.refine.model.columnar.ColumnVector;
 
 public class ExpressionNominalValueGrouperTests extends RefineTest {
     // dependencies    
@@ -204,4 +205,24 @@ public class ExpressionNominalValueGrouperTests extends RefineTest {
         Assert.assertTrue(grouper.choices.containsKey(integerStringValue));
         Assert.assertEquals(grouper.choices.get(integerStringValue).count, 2);
     }
+
+    @Test
+    public void expressionNominalValueGrouperFromColumnVector() throws Exception {
+        project = createCSVProject("col1\na\nb\n\na\n");
+        bindings = new Properties();
+        bindings.put("project", project);
+
+        eval = MetaParser.parse("value");
+        ExpressionNominalValueGrouper evaluated = new ExpressionNominalValueGrouper(eval, "col1", 0);
+        grouper = new ExpressionNominalValueGrouper(eval, "col1", 0, ColumnVector.build(project, 0));
+        for (int rowIndex = 0; rowIndex < project.rows.size(); rowIndex++) {
+            Row row = project.rows.get(rowIndex);
+            evaluated.visit(project, rowIndex, row);
+            grouper.visit(project, rowIndex, row);
+        }
+
+        Assert.assertEquals(grouper.choices.keySet(), evaluated.choices.keySet());
+        Assert.assertEquals(grouper.choices.get("a").count, 2);
+        Assert.assertEquals(grouper.blankCount, evaluated.blankCount);
+    }
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.browsing.util;
+
+import java.util.BitSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.browsing.RowFilter;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class FilterBitmapCacheTests extends RefineTest {
+    
+    private static class CountingRowFilter implements RowFilter {
+        int calls = 0;
+
+        @Override
+        public boolean filterRow(Project project, int rowIndex, Row row) {
+            calls++;
+            return "a".equals(row.getCellValue(0));
+        }
+    }
+    
+    @Test
+    public void testCachedRowFilter() {
+        Project project = createCSVProject("foo\na\nb\na\nc\n");
+        FilterBitmapCache cache = FilterBitmapCache.getCache(project);
+        CountingRowFilter filter = new CountingRowFilter();
+        
+        RowFilter first = cache.getRowFilter(project, "key", filter);
+        RowFilter second = cache.getRowFilter(project, "key", filter);
+        
+        Assert.assertEquals(filter.calls, 4);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        for (int i = 0; i < project.rows.size(); i++) {
+            Row row = project.rows.get(i);
+            Assert.assertEquals(first.filterRow(project, i, row), filter.filterRow(project, i, row));
+            Assert.assertEquals(second.filterRow(project, i, row), filter.filterRow(project, i, row));
+        }
+    }
+    
+    @Test
+    public void testInvalidationOnRowCountChange() {
+        Project project = createCSVProject("foo\na\nb\n");
+        FilterBitmapCache cache = FilterBitmapCache.getCache(project);
+        CountingRowFilter filter = new CountingRowFilter();
+        
+        cache.getRowFilter(project, "key", filter);
+        Row row = new Row(1);
+        row.setCell(0, new Cell("a", null));
+        project.rows.add(row);
+        RowFilter cached = cache.getRowFilter(project, "key", filter);
+        
+        Assert.assertEquals(filter.calls, 5);
+        Assert.assertTrue(cached.filterRow(project, 2, row));
+    }
+
+    @Test
+    public void testParallelBitmapMatchesSerial() {
+        int oldMinSize = ParallelScan.MIN_PARALLEL_SIZE;
+        ParallelScan.MIN_PARALLEL_SIZE = 100;
+        try {
+            int size = 3 * ParallelScan.CHUNK_SIZE + 13;
+            BitSet bitmap = FilterBitmapCache.computeBitmap(size, i -> i % 7 == 0 || i % 100 == 63);
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(bitmap.get(i), i % 7 == 0 || i % 100 == 63, "row " + i);
+            }
+        } finally {
+            ParallelScan.MIN_PARALLEL_SIZE = oldMinSize;
+        }
+    }
+
+    private Engine createEngine(Project project, String expression) {
+        String config = "{\"mode\":\"row-based\",\"facets\":[{\"type\":\"list\",\"name\":\"foo\",\"columnName\":\"foo\","
+                + "\"expression\":\"" + expression + "\",\"selection\":[{\"v\":{\"v\":\"a\",\"l\":\"a\"}}]}]}";
+        Engine engine = new Engine(project);
+        engine.initializeFromConfig(EngineConfig.reconstruct(config));
+        return engine;
+    }
+
+    @Test
+    public void testImpureFacetsAreNotCached() {
+        Project project = createCSVProject("foo\na\nb\na\nc\n");
+        FilterBitmapCache cache = FilterBitmapCache.getCache(project);
+
+        createEngine(project, "value").getAllFilteredRows();
+        createEngine(project, "value").getAllFilteredRows();
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Assert.assertEquals(cache.getHitCount(), 1);
+
+        // now() makes the expression impure, so its rows are never cached
+        String impure = "value + now().toString().substring(0, 0)";
+        createEngine(project, impure).getAllFilteredRows();
+        createEngine(project, impure).getAllFilteredRows();
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Assert.assertEquals(cache.getHitCount(), 1);
+    }
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.browsing.util;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.browsing.FilteredRecords;
+import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.ParallelVisitor;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.expr.MetaParser;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.ParsingUtilities;
+
+public class ParallelScanTests extends RefineTest {
+
+    private int minParallelSize;
+    private int chunkSize;
+    private ForkJoinPool pool;
+    private Project project;
+
+    @BeforeMethod
+    public void setUp() {
+        minParallelSize = ParallelScan.MIN_PARALLEL_SIZE;
+        chunkSize = ParallelScan.CHUNK_SIZE;
+        pool = ParallelScan.pool;
+        // make sure the chunks are processed concurrently, even on a single core
+        ParallelScan.pool = new ForkJoinPool(4);
+
+        StringBuilder sb = new StringBuilder("key,number\n");
+        for (int i = 0; i < 2000; i++) {
+            // every third row continues the previous record
+            sb.append(i % 3 == 0 ? "" : "k" + (i % 17)).append(',');
+            sb.append(i % 11 == 0 ? "" : Integer.toString(i % 97)).append('\n');
+        }
+        project = createCSVProject(sb.toString());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ParallelScan.MIN_PARALLEL_SIZE = minParallelSize;
+        ParallelScan.CHUNK_SIZE = chunkSize;
+        ParallelScan.pool.shutdown();
+        ParallelScan.pool = pool;
+    }
+
+    private void enableParallelScan(boolean enabled) {
+        ParallelScan.MIN_PARALLEL_SIZE = enabled ? 1 : Integer.MAX_VALUE;
+        ParallelScan.CHUNK_SIZE = 64;
+    }
+
+    static private class CountingVisitor implements RowVisitor, ParallelVisitor {
+        int splits = 0;
+
+        @Override
+        public void start(Project project) {
+        }
+
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            return false;
+        }
+
+        @Override
+        public void end(Project project) {
+        }
+
+        @Override
+        public ParallelVisitor split() {
+            splits++;
+            return new CountingVisitor();
+        }
+
+        @Override
+        public void merge(ParallelVisitor other) {
+        }
+    }
+
+    @Test
+    public void testCapabilityCheckDoesNotSplit() {
+        enableParallelScan(true);
+        CountingVisitor visitor = new CountingVisitor();
+        Assert.assertTrue(ParallelScan.canScanInParallel(1000, visitor));
+        Assert.assertTrue(ParallelScan.canScanInParallel(1000, new RowVisitorAsRecordVisitor(visitor)));
+        Assert.assertEquals(visitor.splits, 0);
+
+        RowVisitor sequential = new RowVisitor() {
+            @Override
+            public void start(Project project) {
+            }
+
+            @Override
+            public boolean visit(Project project, int rowIndex, Row row) {
+                return false;
+            }
+
+            @Override
+            public void end(Project project) {
+            }
+        };
+        Assert.assertFalse(ParallelScan.canScanInParallel(1000, new RowVisitorAsRecordVisitor(sequential)));
+    }
+
+    private ExpressionNominalValueGrouper groupRows(boolean parallel) throws Exception {
+        enableParallelScan(parallel);
+        ExpressionNominalValueGrouper grouper = new ExpressionNominalValueGrouper(
+                MetaParser.parse("value"), "key", 0);
+        FilteredRows rows = new Engine(project).getAllRows();
+        rows.accept(project, grouper);
+        return grouper;
+    }
+
+    private ExpressionNominalValueGrouper groupRecords(boolean parallel) throws Exception {
+        enableParallelScan(parallel);
+        ExpressionNominalValueGrouper grouper = new ExpressionNominalValueGrouper(
+                MetaParser.parse("value"), "number", 1);
+        FilteredRecords records = new Engine(project).getAllRecords();
+        records.accept(project, grouper);
+        return grouper;
+    }
+
+    private void assertSameChoices(ExpressionNominalValueGrouper actual, ExpressionNominalValueGrouper expected) {
+        Assert.assertEquals(actual.choices.keySet(), expected.choices.keySet());
+        for (Object key : expected.choices.keySet()) {
+            Assert.assertEquals(actual.choices.get(key).count, expected.choices.get(key).count);
+        }
+        Assert.assertEquals(actual.blankCount, expected.blankCount);
+        Assert.assertEquals(actual.errorCount, expected.errorCount);
+    }
+
+    @Test
+    public void testNominalGroupingInRowsMode() throws Exception {
+        assertSameChoices(groupRows(true), groupRows(false));
+    }
+
+    @Test
+    public void testNominalGroupingInRecordsMode() throws Exception {
+        Assert.assertTrue(project.recordModel.getRecordCount() < project.rows.size());
+        assertSameChoices(groupRecords(true), groupRecords(false));
+    }
+
+    private ExpressionNumericValueBinner binRows(boolean parallel) throws Exception {
+        enableParallelScan(parallel);
+        RowEvaluable evaluable = new ExpressionBasedRowEvaluable("number", 1, MetaParser.parse("value.toNumber()"));
+        NumericBinIndex index = new NumericBinRowIndex(project, evaluable);
+        ExpressionNumericValueBinner binner = new ExpressionNumericValueBinner(evaluable, index);
+        new Engine(project).getAllRows().accept(project, binner);
+        return binner;
+    }
+
+    @Test
+    public void testNumericBinning() throws Exception {
+        ExpressionNumericValueBinner parallel = binRows(true);
+        ExpressionNumericValueBinner sequential = binRows(false);
+
+        Assert.assertEquals(parallel.bins, sequential.bins);
+        Assert.assertEquals(parallel.numericCount, sequential.numericCount);
+        Assert.assertEquals(parallel.nonNumericCount, sequential.nonNumericCount);
+        Assert.assertEquals(parallel.blankCount, sequential.blankCount);
+        Assert.assertEquals(parallel.errorCount, sequential.errorCount);
+    }
+
+    @Test
+    public void testEngineFacetsInParallel() throws Exception {
+        String config = "{\"mode\":\"row-based\",\"facets\":["
+                + "{\"type\":\"list\",\"name\":\"key\",\"columnName\":\"key\",\"expression\":\"value\",\"selection\":[]},"
+                + "{\"type\":\"range\",\"name\":\"number\",\"columnName\":\"number\",\"expression\":\"value.toNumber()\","
+                + "\"from\":10,\"to\":50,\"selectNumeric\":true,\"selectNonNumeric\":true,\"selectBlank\":true,\"selectError\":true}"
+                + "]}";
+
+        enableParallelScan(true);
+        Engine parallel = new Engine(project);
+        parallel.initializeFromConfig(EngineConfig.reconstruct(config));
+        parallel.computeFacets();
+
+        enableParallelScan(false);
+        Engine sequential = new Engine(project);
+        sequential.initializeFromConfig(EngineConfig.reconstruct(config));
+        sequential.computeFacets();
+
+        Assert.assertEquals(ParsingUtilities.mapper.writeValueAsString(parallel),
+                ParsingUtilities.mapper.writeValueAsString(sequential));
+    }
+
+    private NumericBinIndex buildNumericIndex(boolean parallel) throws Exception {
+        enableParallelScan(parallel);
+        RowEvaluable evaluable = new ExpressionBasedRowEvaluable("number", 1, MetaParser.parse("value.toNumber()"));
+        return new NumericBinRecordIndex(project, evaluable);
+    }
+
+    @Test
+    public void testNumericBinIndex() throws Exception {
+        NumericBinIndex parallel = buildNumericIndex(true);
+        NumericBinIndex sequential = buildNumericIndex(false);
+
+        Assert.assertEquals(parallel.getBins(), sequential.getBins());
+        Assert.assertEquals(parallel.getMin(), sequential.getMin());
+        Assert.assertEquals(parallel.getMax(), sequential.getMax());
+        Assert.assertEquals(parallel.getStep(), sequential.getStep());
+        Assert.assertEquals(parallel.getNumericRowCount(), sequential.getNumericRowCount());
+        Assert.assertEquals(parallel.getBlankRowCount(), sequential.getBlankRowCount());
+        Assert.assertEquals(parallel.isNumeric(), sequential.isNumeric());
+    }
+
+    private TimeBinIndex buildTimeIndex(boolean parallel) throws Exception {
+        enableParallelScan(parallel);
+        RowEvaluable evaluable = new ExpressionBasedRowEvaluable("number", 1,
+                MetaParser.parse("if(isBlank(value), null, \"2000-01-01\".toDate().inc(value.toNumber(), \"days\"))"));
+        return new TimeBinRowIndex(project, evaluable);
+    }
+
+    @Test
+    public void testTimeBinIndex() throws Exception {
+        TimeBinIndex parallel = buildTimeIndex(true);
+        TimeBinIndex sequential = buildTimeIndex(false);
+
+        Assert.assertTrue(sequential.isTemporal());
+        Assert.assertEquals(parallel.getBins(), sequential.getBins());
+        Assert.assertEquals(parallel.getMin(), sequential.getMin());
+        Assert.assertEquals(parallel.getMax(), sequential.getMax());
+        Assert.assertEquals(parallel.getTimeRowCount(), sequential.getTimeRowCount());
+        Assert.assertEquals(parallel.getBlankRowCount(), sequential.getBlankRowCount());
+    }
+}
@@ -27,8 +27,12 @@
 package com.google.refine.clustering.binning;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.annotations.Test;
 
@@ -36,6 +40,8 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.google.refine.RefineTest;
 import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.util.ParallelScan;
+import com.google.refine.clustering.ClusteredEntry;
 import com.google.refine.clustering.binning.BinningClusterer.BinningClustererConfig;
 import com.google.refine.model.Project;
 import com.google.refine.util.ParsingUtilities;
@@ -96,4 +102,51 @@ public class BinningClustererTests extends RefineTest {
         clusterer.computeClusters(new Engine(project));
         assertEquals(clusterer.getJsonRepresentation().size(), 1);
     }
+
+    @Test
+    public void testDistinctValuesAreKeyedOnce() throws JsonParseException, JsonMappingException, IOException {
+        StringBuilder sb = new StringBuilder("column\n");
+        for (int i = 0; i < 3000; i++) {
+            sb.append(i % 2 == 0 ? "Value " : "value ").append((i / 2) % 50).append('\n');
+        }
+        Project project = createCSVProject(sb.toString());
+        BinningClustererConfig config = ParsingUtilities.mapper.readValue(configJson, BinningClustererConfig.class);
+
+        List<List<ClusteredEntry>> sequential = computeCountingKeys(project, config, false);
+        List<List<ClusteredEntry>> parallel = computeCountingKeys(project, config, true);
+
+        assertEquals(sequential.size(), 50);
+        String json = ParsingUtilities.mapper.writeValueAsString(sequential);
+        assertTrue(json.contains("{\"v\":\"Value 0\",\"c\":30}"), json);
+        assertEquals(ParsingUtilities.mapper.writeValueAsString(parallel), json);
+    }
+
+    protected List<List<ClusteredEntry>> computeCountingKeys(Project project, BinningClustererConfig config, boolean parallel) {
+        int minParallelSize = ParallelScan.MIN_PARALLEL_SIZE;
+        int chunkSize = ParallelScan.CHUNK_SIZE;
+        ForkJoinPool pool = ParallelScan.getPool();
+        ParallelScan.MIN_PARALLEL_SIZE = parallel ? 1 : Integer.MAX_VALUE;
+        ParallelScan.CHUNK_SIZE = 16;
+        ParallelScan.setPool(new ForkJoinPool(4));
+        try {
+            AtomicInteger calls = new AtomicInteger();
+            Keyer fingerprint = new FingerprintKeyer();
+            BinningClusterer clusterer = config.apply(project);
+            clusterer._keyer = new Keyer() {
+                @Override
+                public String key(String string, Object... params) {
+                    calls.incrementAndGet();
+                    return fingerprint.key(string, params);
+                }
+            };
+            clusterer.computeClusters(new Engine(project));
+            assertEquals(calls.get(), 100);
+            return clusterer.getJsonRepresentation();
+        } finally {
+            ParallelScan.getPool().shutdown();
+            ParallelScan.setPool(pool);
+            ParallelScan.MIN_PARALLEL_SIZE = minParallelSize;
+            ParallelScan.CHUNK_SIZE = chunkSize;
+        }
+    }
 }
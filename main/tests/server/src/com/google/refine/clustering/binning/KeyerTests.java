@@ -31,6 +31,11 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.clustering.binning;
 
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -170,4 +175,67 @@ public class KeyerTests extends RefineTest {
         }
     }
 
+    // characters which exercise every lookup table, plus a few which take the Unicode path
+    private static final String ALPHABET;
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 0; c < 128; c++) {
+            sb.append(c);
+        }
+        for (int i = 0; i < 20; i++) {
+            sb.append("aAbZ  ");
+        }
+        ALPHABET = sb.append("\u00E9\u00DF\u00E6\uFB01\u0149\u00A0\u02C6").toString();
+    }
+
+    private static String randomString(Random random, boolean ascii) {
+        int length = random.nextInt(24);
+        int bound = ascii ? ALPHABET.length() - 7 : ALPHABET.length();
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(bound)));
+        }
+        return sb.toString();
+    }
+
+    // the regular expression based implementation the keyers must stay identical to
+    private static String legacyNormalize(String s) {
+        s = s.trim().toLowerCase();
+        s = FingerprintKeyer.stripDiacritics(s);
+        s = s.replace("\u00DF", "ss").replace("\u00E6", "ae");
+        return FingerprintKeyer.punctctrl.matcher(s).replaceAll("");
+    }
+
+    private static String legacyFingerprint(String s) {
+        return Pattern.compile("\\s+", Pattern.UNICODE_CHARACTER_CLASS)
+                .splitAsStream(legacyNormalize(s)).sorted().distinct().collect(Collectors.joining(" "));
+    }
+
+    private static String legacyNGrams(String s, int size) {
+        String t = NGramFingerprintKeyer.ctrlspace.matcher(legacyNormalize(s)).replaceAll("");
+        return IntStream.rangeClosed(0, t.length() - size)
+                .mapToObj(i -> t.substring(i, i + size)).sorted().distinct().collect(Collectors.joining());
+    }
+
+    @Test
+    public void testFingerprintMatchesRegularExpressions() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            String s = randomString(random, i % 2 == 0);
+            Assert.assertEquals(keyer.key(s), legacyFingerprint(s), "Fingerprint for string: " + s);
+        }
+        Assert.assertEquals(keyer.key("- a"), " a");
+        Assert.assertEquals(keyer.key("- -"), "");
+    }
+
+    @Test
+    public void testNGramMatchesRegularExpressions() {
+        Random random = new Random(42);
+        NGramFingerprintKeyer ngramKeyer = new NGramFingerprintKeyer();
+        for (int i = 0; i < 20000; i++) {
+            String s = randomString(random, i % 2 == 0);
+            int size = 1 + i % 5;
+            Assert.assertEquals(ngramKeyer.key(s, size), legacyNGrams(s, size), "N-grams of size " + size + " for string: " + s);
+        }
+    }
 }
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.clustering.knn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.util.ParallelScan;
+
+import com.wcohen.ss.api.Token;
+
+import edu.mit.simile.vicino.NGramTokenizer;
+import edu.mit.simile.vicino.distances.LevenshteinDistance;
+
+public class ParallelBlockingClustererTests extends RefineTest {
+
+    private int minParallelSize;
+    private int chunkSize;
+    private ForkJoinPool pool;
+
+    @BeforeMethod
+    public void setUp() {
+        minParallelSize = ParallelScan.MIN_PARALLEL_SIZE;
+        chunkSize = ParallelScan.CHUNK_SIZE;
+        pool = ParallelScan.getPool();
+        // make sure the blocks are processed concurrently, even on a single core
+        ParallelScan.setPool(new ForkJoinPool(4));
+        ParallelScan.MIN_PARALLEL_SIZE = 1;
+        ParallelScan.CHUNK_SIZE = 16;
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ParallelScan.MIN_PARALLEL_SIZE = minParallelSize;
+        ParallelScan.CHUNK_SIZE = chunkSize;
+        ParallelScan.getPool().shutdown();
+        ParallelScan.setPool(pool);
+    }
+
+    private static List<String> randomValues(Random random, int count) {
+        String alphabet = "aAbBc .-";
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            values.add(sb.toString());
+        }
+        return values;
+    }
+
+    /**
+     * The clusters computed by each block evaluator of the Vicino NGramClusterer,
+     * run on all the blocks at once: for each value, the values sharing one of its
+     * n-grams which are within the radius in either direction.
+     */
+    private static Set<Set<Serializable>> vicinoClusters(SimilarityDistance distance, int ngramSize, List<String> values, double radius) {
+        NGramTokenizer tokenizer = new NGramTokenizer(ngramSize);
+        Map<String, Set<String>> ngrams = new HashMap<>();
+        for (String value : values) {
+            Set<String> tokens = new HashSet<>();
+            for (Token token : tokenizer.tokenize(value)) {
+                tokens.add(token.getValue());
+            }
+            ngrams.put(value, tokens);
+        }
+        Set<Set<Serializable>> clusters = new HashSet<>();
+        for (String a : ngrams.keySet()) {
+            Set<Serializable> cluster = new TreeSet<>();
+            for (String b : ngrams.keySet()) {
+                if (a != b && !Collections.disjoint(ngrams.get(a), ngrams.get(b))
+                        && (radius < 0 || distance.compute(a, b) <= radius || distance.compute(b, a) <= radius)) {
+                    cluster.add(b);
+                }
+            }
+            if (!cluster.isEmpty()) {
+                cluster.add(a);
+                clusters.add(cluster);
+            }
+        }
+        return clusters;
+    }
+
+    private static List<Set<Serializable>> clusters(SimilarityDistance distance, ParallelBlockingClusterer.Blocker blocker, List<String> values, double radius) {
+        ParallelBlockingClusterer clusterer = new ParallelBlockingClusterer(distance, blocker);
+        values.forEach(clusterer::populate);
+        return clusterer.getClusters(radius);
+    }
+
+    @Test
+    public void testBoundedLevenshteinMatchesVicino() {
+        LevenshteinDistance vicino = new LevenshteinDistance();
+        BoundedLevenshteinDistance bounded = new BoundedLevenshteinDistance();
+        Random random = new Random(42);
+        List<String> values = randomValues(random, 200);
+        for (int i = 0; i < values.size(); i++) {
+            String a = values.get(i);
+            String b = values.get((i * 7 + 3) % values.size());
+            double expected = vicino.d(a, b);
+            assertEquals(bounded.compute(a, b), expected, a + " / " + b);
+            for (int threshold = 0; threshold < 5; threshold++) {
+                double d = bounded.compute(a, b, threshold);
+                if (expected <= threshold) {
+                    assertEquals(d, expected, a + " / " + b);
+                } else {
+                    assertTrue(d > threshold, a + " / " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNGramBlockingMatchesVicino() {
+        Random random = new Random(1234);
+        List<String> values = randomValues(random, 150);
+        for (String name : DistanceFactory.getDistanceNames()) {
+            SimilarityDistance distance = DistanceFactory.get(name);
+            for (double radius : new double[] { 0.0, 1.0, -1.0 }) {
+                List<Set<Serializable>> clusters = clusters(distance, new ParallelBlockingClusterer.NGramBlocker(2), values, radius);
+                assertEquals(new HashSet<>(clusters), vicinoClusters(distance, 2, values, radius), name + " " + radius);
+                for (int i = 1; i < clusters.size(); i++) {
+                    assertTrue(clusters.get(i - 1).size() >= clusters.get(i).size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSequentialMatchesParallel() {
+        List<String> values = randomValues(new Random(99), 500);
+        SimilarityDistance distance = DistanceFactory.get("levenshtein");
+        List<Set<Serializable>> parallel = clusters(distance, new ParallelBlockingClusterer.NGramBlocker(3), values, 1.0);
+        ParallelScan.MIN_PARALLEL_SIZE = Integer.MAX_VALUE;
+        List<Set<Serializable>> sequential = clusters(distance, new ParallelBlockingClusterer.NGramBlocker(3), values, 1.0);
+        assertEquals(new HashSet<>(parallel), new HashSet<>(sequential));
+    }
+
+    @Test
+    public void testMinHashBlocking() {
+        List<String> values = new ArrayList<>();
+        values.add("John Smith");
+        values.add("Jon Smith");
+        values.add("John Smiht");
+        values.add("Mary Jones");
+        values.add("Mary Jone");
+        values.add("Peter Parker");
+        List<Set<Serializable>> clusters = clusters(DistanceFactory.get("levenshtein"),
+                new ParallelBlockingClusterer.MinHashBlocker(2, 32, 2), values, 2.0);
+
+        Set<Set<Serializable>> expected = vicinoClusters(DistanceFactory.get("levenshtein"), 2, values, 2.0);
+        assertEquals(new HashSet<>(clusters), expected);
+        for (Set<Serializable> cluster : clusters) {
+            assertTrue(!cluster.contains("Peter Parker"));
+        }
+    }
+}
@@ -60,6 +60,19 @@ public class kNNClustererTests extends RefineTest {
         TestUtils.isSerializedTo(config, configJson);
     }
     
+    @Test
+    public void serializeMinHashConfig() throws JsonParseException, JsonMappingException, IOException {
+        String json = "{"
+                + "\"type\":\"knn\","
+                + "\"function\":\"levenshtein\","
+                + "\"column\":\"values\","
+                + "\"params\":{\"radius\":1,\"blocking-ngram-size\":2,\"blocking\":\"minhash\",\"minhash-bands\":8,\"minhash-rows\":2}"
+                + "}";
+        kNNClustererConfig config = ParsingUtilities.mapper.readValue(json, kNNClustererConfig.class);
+        TestUtils.isSerializedTo(config, json);
+        assertTrue(config.getParameters().getBlocker() instanceof ParallelBlockingClusterer.MinHashBlocker);
+    }
+    
     @Test
     public void serializekNNClusterer() throws JsonParseException, JsonMappingException, IOException {
         Project project = createCSVProject("column\n"
@@ -75,6 +88,25 @@ public class kNNClustererTests extends RefineTest {
         TestUtils.isSerializedTo(clusterer, clustererJson);
     }
     
+    @Test
+    public void testIndexClustering() throws JsonParseException, JsonMappingException, IOException {
+        Project project = createCSVProject("column\n"
+                + "ab\n"
+                + "ab\n"
+                + "xb\n"
+                + "zzzz\n");
+        String json = "{\"type\":\"knn\",\"function\":\"levenshtein\",\"column\":\"column\","
+                + "\"params\":{\"radius\":1,\"blocking-ngram-size\":2,\"blocking\":\"index\"}}";
+        kNNClustererConfig config = ParsingUtilities.mapper.readValue(json, kNNClustererConfig.class);
+        kNNClusterer clusterer = config.apply(project);
+        clusterer.computeClusters(new Engine(project));
+
+        // "ab" and "xb" share no bigram, so blocking would not compare them
+        TestUtils.isSerializedTo(clusterer, "["
+                + "[{\"v\":\"ab\",\"c\":2},{\"v\":\"xb\",\"c\":1}]"
+                + "]");
+    }
+    
     @Test
     public void testNoLonelyclusters() throws JsonParseException, JsonMappingException, IOException {
     	Project project = createCSVProject("column\n"
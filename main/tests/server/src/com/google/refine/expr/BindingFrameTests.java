@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.expr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class BindingFrameTests extends RefineTest {
+
+    Project project;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        project = createCSVProject("a,b\nx,1\n,2\n");
+    }
+
+    protected Object eval(Properties bindings, String expression) throws ParsingException {
+        return MetaParser.parse("grel:" + expression).evaluate(bindings);
+    }
+
+    @Test
+    public void testLazyWrappers() {
+        BindingFrame frame = (BindingFrame) ExpressionUtils.createBindings(project);
+        Row row = project.rows.get(0);
+        ExpressionUtils.bind(frame, row, 0, "a", row.getCell(0));
+
+        assertTrue(frame.isBound(BindingFrame.CELL));
+        assertEquals(frame.get("value"), "x");
+        assertEquals(frame.get("rowIndex"), 0);
+        WrappedCell cell = (WrappedCell) frame.get("cell");
+        assertSame(cell.cell, row.getCell(0));
+        assertSame(frame.get("cell"), cell);
+        assertSame(((WrappedRow) frame.get("row")).row, row);
+        assertSame(frame.get("project"), project);
+    }
+
+    @Test
+    public void testPropertiesCompatibility() {
+        BindingFrame frame = (BindingFrame) ExpressionUtils.createBindings(project);
+        Row row = project.rows.get(1);
+        ExpressionUtils.bind(frame, row, 1, "a", row.getCell(0));
+
+        assertNull(frame.get("cell"));
+        assertNull(frame.get("value"));
+        assertFalse(frame.containsKey("value"));
+
+        frame.put("value", "replaced");
+        assertEquals(frame.get("value"), "replaced");
+        frame.put("cell", new WrappedCell(project, "b", row.getCell(1)));
+        assertFalse(frame.isBound(BindingFrame.CELL));
+        assertEquals(frame.remove("value"), "replaced");
+        assertNull(frame.get("value"));
+
+        frame.put("v", 42);
+        assertEquals(frame.get("v"), 42);
+        assertEquals(frame.remove("v"), 42);
+    }
+
+    @Test
+    public void testEvaluateAgainstFrameAndProperties() throws ParsingException {
+        String[] expressions = { "value", "cell.value", "cells.b.value", "cells.missing.value",
+                "row.index", "forEach([1,2], v, v + value).join(\",\")", "rowIndex + 1" };
+        Properties frame = ExpressionUtils.createBindings(project);
+        Properties legacy = new Properties();
+        legacy.put("project", project);
+        for (int r = 0; r < project.rows.size(); r++) {
+            Row row = project.rows.get(r);
+            ExpressionUtils.bind(frame, row, r, "a", row.getCell(0));
+            ExpressionUtils.bind(legacy, row, r, "a", row.getCell(0));
+            for (String expression : expressions) {
+                assertEquals(String.valueOf(eval(frame, expression)), String.valueOf(eval(legacy, expression)), expression);
+            }
+        }
+        ExpressionUtils.bind(frame, project.rows.get(0), 0, "a", project.rows.get(0).getCell(0));
+        assertEquals(eval(frame, "cells.b.value"), "1");
+    }
+}
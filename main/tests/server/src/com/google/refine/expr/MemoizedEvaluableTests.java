@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.expr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.operations.OnError;
+import com.google.refine.operations.cell.TextTransformOperation;
+
+public class MemoizedEvaluableTests extends RefineTest {
+
+    Project project;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        project = createCSVProject("a,b\nx,1\ny,2\nx,3\n,4\ny,5\n,6\n");
+    }
+
+    @Test
+    public void testEvaluatesOncePerValue() {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizedEvaluable memo = new MemoizedEvaluable(bindings -> {
+            calls.incrementAndGet();
+            Object value = bindings.get("value");
+            return value == null ? null : value + "!";
+        }, 100);
+
+        Properties bindings = ExpressionUtils.createBindings(project);
+        for (int r = 0; r < project.rows.size(); r++) {
+            Row row = project.rows.get(r);
+            ExpressionUtils.bind(bindings, row, r, "a", row.getCell(0));
+            Object value = row.getCellValue(0);
+            assertEquals(memo.evaluate(bindings), value == null ? null : value + "!");
+        }
+        assertEquals(calls.get(), 3);
+        assertEquals(memo.getMemoSize(), 3);
+    }
+
+    @Test
+    public void testMemoIsBounded() {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizedEvaluable memo = new MemoizedEvaluable(bindings -> calls.incrementAndGet(), 1);
+        Properties bindings = new Properties();
+        for (String value : new String[] { "x", "y", "x", "y" }) {
+            bindings.put("value", value);
+            memo.evaluate(bindings);
+        }
+        assertEquals(memo.getMemoSize(), 1);
+        assertEquals(calls.get(), 3);
+    }
+
+    @Test
+    public void testOnlyValueExpressionsAreMemoized() throws ParsingException {
+        assertTrue(MemoizedEvaluable.memoizeByValue(MetaParser.parse("grel:value.trim().toUppercase()")) instanceof MemoizedEvaluable);
+        assertFalse(MemoizedEvaluable.memoizeByValue(MetaParser.parse("grel:value + cells.b.value")) instanceof MemoizedEvaluable);
+        assertFalse(MemoizedEvaluable.memoizeByValue(MetaParser.parse("grel:value + randomNumber(0, 10)")) instanceof MemoizedEvaluable);
+    }
+
+    @Test
+    public void testTextTransformWithRepeatedValues() throws Exception {
+        TextTransformOperation op = new TextTransformOperation(
+                EngineConfig.reconstruct("{\"mode\":\"row-based\",\"facets\":[]}"),
+                "a", "grel:value.toUppercase() + value.length()", OnError.KeepOriginal, false, 0);
+        op.createProcess(project, new Properties()).performImmediate();
+
+        assertEquals(project.rows.get(0).getCellValue(0), "X1");
+        assertEquals(project.rows.get(1).getCellValue(0), "Y1");
+        assertEquals(project.rows.get(2).getCellValue(0), "X1");
+        assertNull(project.rows.get(3).getCellValue(0));
+        assertEquals(project.rows.get(4).getCellValue(0), "Y1");
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.expr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.common.cache.CacheStats;
+import com.google.refine.RefineTest;
+
+public class MetaParserTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        MetaParser.clearCache();
+    }
+
+    @Test
+    public void testParsedExpressionsAreCached() throws ParsingException {
+        CacheStats before = MetaParser.getCacheStats();
+        Evaluable eval = MetaParser.parse("grel:value + 1");
+
+        assertSame(MetaParser.parse("grel:value + 1"), eval);
+        assertSame(MetaParser.parse("value + 1"), eval);
+        assertSame(MetaParser.parse("GEL:value + 1"), eval);
+        assertNotSame(MetaParser.parse("grel:value + 2"), eval);
+
+        CacheStats stats = MetaParser.getCacheStats().minus(before);
+        assertEquals(stats.hitCount(), 3);
+        assertEquals(stats.missCount(), 2);
+    }
+
+    @Test
+    public void testUnknownPrefixIsParsedAsGrel() throws ParsingException {
+        Evaluable eval = MetaParser.parse("'a:b'.split(':').length()");
+        assertEquals(eval.evaluate(new Properties()), 2);
+        assertSame(MetaParser.parse("'a:b'.split(':').length()"), eval);
+    }
+
+    @Test(expectedExceptions = ParsingException.class)
+    public void testParsingErrorsAreNotCached() throws ParsingException {
+        try {
+            MetaParser.parse("grel:1 +");
+        } catch (ParsingException e) {
+            // fall through: the second attempt has to fail the same way
+        }
+        MetaParser.parse("grel:1 +");
+    }
+
+    @Test
+    public void testRegisteringLanguageClearsCache() throws ParsingException {
+        Evaluable eval = MetaParser.parse("test:anything");
+        MetaParser.registerLanguageParser("test", "Test", s -> bindings -> s, "");
+        try {
+            Evaluable replaced = MetaParser.parse("test:anything");
+            assertNotSame(replaced, eval);
+            assertEquals(replaced.evaluate(null), "anything");
+        } finally {
+            MetaParser.s_languages.remove("test");
+            MetaParser.clearCache();
+        }
+    }
+}
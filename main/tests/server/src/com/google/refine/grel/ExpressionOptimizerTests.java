@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.grel;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.expr.EvalError;
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+import com.google.refine.expr.MetaParser;
+import com.google.refine.expr.ParsingException;
+import com.google.refine.grel.ast.BinaryOperatorExpr;
+import com.google.refine.grel.ast.FunctionCallExpr;
+import com.google.refine.grel.ast.LiteralExpr;
+import com.google.refine.grel.ast.OperatorCallExpr;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class ExpressionOptimizerTests extends RefineTest {
+
+    Project project;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        project = createCSVProject("a,b\nx,1\n,2\nfoo bar,-3\n");
+    }
+
+    protected Evaluable optimize(String expression) throws ParsingException {
+        return ExpressionOptimizer.optimize(new Parser(expression).getExpression());
+    }
+
+    @Test
+    public void testConstantFolding() throws ParsingException {
+        assertEquals(((LiteralExpr) optimize("1 + 2 * 3")).getValue(), 7L);
+        assertEquals(((LiteralExpr) optimize("'abc'.toUppercase() + 1.5")).getValue(), "ABC1.5");
+        assertEquals(((LiteralExpr) optimize("if(1 > 2, 'a', 'b')")).getValue(), "b");
+
+        Evaluable partial = optimize("value + (2 * 3)");
+        assertTrue(partial instanceof BinaryOperatorExpr);
+        assertEquals(((LiteralExpr) ((OperatorCallExpr) partial).getArgs()[1]).getValue(), 6L);
+    }
+
+    @Test
+    public void testUnfoldableCalls() throws ParsingException {
+        // mutable results, errors, exceptions and impure functions are left to evaluation
+        assertTrue(optimize("[1, 2]") instanceof FunctionCallExpr);
+        assertTrue(optimize("toNumber('x')") instanceof FunctionCallExpr);
+        assertTrue(optimize("1 / 0") instanceof BinaryOperatorExpr);
+        assertTrue(optimize("randomNumber(1, 10)") instanceof FunctionCallExpr);
+    }
+
+    @Test
+    public void testPurity() throws ParsingException {
+        assertTrue(ExpressionOptimizer.isPure(MetaParser.parse("grel:value.toUppercase() + cells.b.value")));
+        assertTrue(ExpressionOptimizer.isPure(MetaParser.parse("grel:forEach(value.split(' '), v, v.length())")));
+        assertFalse(ExpressionOptimizer.isPure(MetaParser.parse("grel:facetCount(value, 'value', 'a')")));
+        assertFalse(ExpressionOptimizer.isPure(MetaParser.parse("grel:value + now()")));
+        assertFalse(ExpressionOptimizer.isPure(MetaParser.parse("clojure:value")));
+        // sort() sorts lists in place
+        assertFalse(ExpressionOptimizer.isPure(MetaParser.parse("grel:value.split(' ').sort()")));
+    }
+
+    @Test
+    public void testFunctionsNotPureByDefault() {
+        Function function = new Function() {
+            @Override
+            public Object call(Properties bindings, Object[] args) {
+                return null;
+            }
+
+            @Override
+            public String getDescription() {
+                return "";
+            }
+
+            @Override
+            public String getReturns() {
+                return "";
+            }
+        };
+        assertFalse(function.isPure());
+        assertTrue(ControlFunctionRegistry.getFunction("toUppercase").isPure());
+        assertTrue(ControlFunctionRegistry.getControl("forEach").isPure());
+    }
+
+    @Test
+    public void testFreeVariables() throws ParsingException {
+        assertEquals(ExpressionOptimizer.getFreeVariables(MetaParser.parse("grel:value + cells.b.value + rowIndex")),
+                new HashSet<>(Arrays.asList("value", "cells", "rowIndex")));
+        assertEquals(ExpressionOptimizer.getFreeVariables(MetaParser.parse("grel:forEach(value.split(' '), v, v + w)")),
+                new HashSet<>(Arrays.asList("value", "w")));
+        assertEquals(ExpressionOptimizer.getFreeVariables(MetaParser.parse("grel:forNonBlank(value, v, v, v)")),
+                new HashSet<>(Arrays.asList("value", "v")));
+        assertEquals(ExpressionOptimizer.getFreeVariables(MetaParser.parse("clojure:value")), null);
+
+        assertTrue(ExpressionOptimizer.dependsOnlyOnValue(MetaParser.parse("grel:with(value.trim(), v, v.toLowercase())")));
+        assertTrue(ExpressionOptimizer.dependsOnlyOnValue(MetaParser.parse("grel:'constant'")));
+        assertFalse(ExpressionOptimizer.dependsOnlyOnValue(MetaParser.parse("grel:value + rowIndex")));
+        assertFalse(ExpressionOptimizer.dependsOnlyOnValue(MetaParser.parse("grel:value + now()")));
+    }
+
+    @Test
+    public void testOptimizedMatchesParsed() throws ParsingException {
+        String[] expressions = {
+                "value + 1", "1 + 2 + value", "value == 'x'", "cells.b.value.toNumber() * (2 - 1)",
+                "if(isBlank(value), 'blank' + 1, value)", "forEach([1,2,3], v, v * (1 + 1)).join(',')",
+                "'a,b'.split(',').length() + rowIndex", "toNumber('x') + 1"
+        };
+        Properties bindings = ExpressionUtils.createBindings(project);
+        for (int r = 0; r < project.rows.size(); r++) {
+            Row row = project.rows.get(r);
+            ExpressionUtils.bind(bindings, row, r, "a", row.getCell(0));
+            for (String expression : expressions) {
+                Evaluable parsed = new Parser(expression).getExpression();
+                assertEquals(describe(optimize(expression).evaluate(bindings)), describe(parsed.evaluate(bindings)),
+                        expression + " on row " + r);
+            }
+        }
+    }
+
+    protected String describe(Object result) {
+        return result instanceof EvalError ? "error: " + ((EvalError) result).message : String.valueOf(result);
+    }
+}
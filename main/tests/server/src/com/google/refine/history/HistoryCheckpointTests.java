@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.history;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.ProjectManagerStub;
+import com.google.refine.RefineTest;
+import com.google.refine.io.AsyncChangeWriter;
+import com.google.refine.io.FileHistoryEntryManager;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.ColumnRenameChange;
+import com.google.refine.util.TestUtils;
+
+public class HistoryCheckpointTests extends RefineTest {
+
+    Project project;
+    List<HistoryEntry> entries;
+    HistoryEntryManager manager;
+    int savedInterval;
+    int savedRetention;
+    int savedRestoreCost;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        savedInterval = History.checkpointInterval;
+        savedRetention = History.checkpointRetention;
+        savedRestoreCost = History.checkpointRestoreCost;
+        History.checkpointInterval = 2;
+        History.checkpointRetention = 2;
+        History.checkpointRestoreCost = 0;
+
+        File historyDir = TestUtils.createTempDirectory("openrefine-test-history");
+        manager = new FileHistoryEntryManager() {
+            @Override
+            protected File getHistoryDir(HistoryEntry historyEntry) {
+                return historyDir;
+            }
+        };
+        ProjectManager.singleton = new ProjectManagerStub() {
+            @Override
+            public HistoryEntryManager getHistoryEntryManager() {
+                return manager;
+            }
+        };
+
+        project = createCSVProject("a,b\nx,1\ny,2\n");
+        entries = new ArrayList<HistoryEntry>();
+        // entries 1, 2, 4, 5 and 6 edit the first cell, entry 3 renames the column
+        for (int i = 1; i <= 6; i++) {
+            Change change;
+            if (i == 3) {
+                change = new ColumnRenameChange("a", "renamed");
+            } else {
+                change = new CellChange(0, 0, project.rows.get(0).getCell(0), new Cell("v" + i, null));
+            }
+            HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "step " + i, null, change);
+            project.history.addEntry(entry);
+            entries.add(entry);
+        }
+        // checkpoints are only restored once written
+        AsyncChangeWriter.awaitAll();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        History.checkpointInterval = savedInterval;
+        History.checkpointRetention = savedRetention;
+        History.checkpointRestoreCost = savedRestoreCost;
+    }
+
+    @Test
+    public void testRetention() {
+        assertFalse(manager.hasCheckpoint(entries.get(1)));
+        assertTrue(manager.hasCheckpoint(entries.get(3)));
+        assertTrue(manager.hasCheckpoint(entries.get(5)));
+    }
+
+    @Test
+    public void testUndoFromCheckpoint() {
+        project.history.undoRedo(entries.get(1).id);
+
+        assertEquals(project.history.getLastDoneEntryID(), entries.get(1).id);
+        assertEquals(project.rows.get(0).getCellValue(0), "v2");
+        assertEquals(project.columnModel.getColumnByName("a").getCellIndex(), 0);
+        assertNull(project.columnModel.getColumnByName("renamed"));
+        // restored from the checkpoint after entry 4, so later entries were not reverted
+        assertNull(entries.get(5).getChange());
+
+        project.history.undoRedo(0);
+        assertEquals(project.rows.get(0).getCellValue(0), "x");
+        assertEquals(project.rows.get(1).getCellValue(0), "y");
+    }
+
+    @Test
+    public void testRedoFromCheckpoint() {
+        project.history.undoRedo(0);
+        assertEquals(project.rows.get(0).getCellValue(0), "x");
+
+        project.history.undoRedo(entries.get(4).id);
+        assertEquals(project.history.getLastDoneEntryID(), entries.get(4).id);
+        assertEquals(project.rows.get(0).getCellValue(0), "v5");
+        assertNotNull(project.columnModel.getColumnByName("renamed"));
+
+        project.history.undoRedo(entries.get(2).id);
+        assertEquals(project.rows.get(0).getCellValue(0), "v2");
+        assertNotNull(project.columnModel.getColumnByName("renamed"));
+    }
+
+    @Test
+    public void testMissingChangeStopsUndo() {
+        History.checkpointRestoreCost = Integer.MAX_VALUE / 2;
+        HistoryEntry lost = entries.get(4);
+        assertTrue(manager.hasChange(lost));
+        manager.delete(lost);
+        lost.setChange(null);
+        project.history.markMissingChanges();
+        assertTrue(lost.isChangeMissing());
+
+        project.history.undoRedo(entries.get(1).id);
+        assertEquals(project.history.getLastDoneEntryID(), lost.id);
+        assertEquals(project.rows.get(0).getCellValue(0), "v5");
+    }
+
+    @Test
+    public void testPendingCheckpointIsNotRestored() {
+        // as if the checkpoint after entry 4 was still being written
+        project.history._checkpoints.put(entries.get(3).id, false);
+
+        project.history.undoRedo(entries.get(2).id);
+        assertEquals(project.rows.get(0).getCellValue(0), "v2");
+        assertNotNull(project.columnModel.getColumnByName("renamed"));
+        // undone one by one rather than restored from a checkpoint
+        assertNotNull(entries.get(5).getChange());
+    }
+
+    @Test
+    public void testNewEntryDeletesFutureCheckpoints() {
+        project.history.undoRedo(entries.get(0).id);
+
+        HistoryEntry entry = new HistoryEntry(HistoryEntry.allocateID(), project, "new step", null,
+                new CellChange(0, 0, project.rows.get(0).getCell(0), new Cell("new", null)));
+        project.history.addEntry(entry);
+
+        assertFalse(manager.hasCheckpoint(entries.get(3)));
+        assertFalse(manager.hasCheckpoint(entries.get(5)));
+        assertEquals(project.rows.get(0).getCellValue(0), "new");
+    }
+}
@@ -104,6 +104,22 @@ public class HistoryTests extends RefineTest {
         Assert.assertEquals(SUT.getLastPastEntries(1).get(0), entry);
     }
     
+    @Test
+    public void addEntryWaitsForSavedChangesOutsideProjectLock() {
+        HistoryEntry entry = mock(HistoryEntry.class);
+        Mockito.doAnswer(invocation -> {
+            Assert.assertFalse(Thread.holdsLock(proj));
+            return null;
+        }).when(historyEntryManager).awaitSavedChanges(Mockito.anyLong());
+        // a change is submitted between waiting and locking the project, so it waits again
+        when(historyEntryManager.hasUnsavedChanges(Mockito.anyLong())).thenReturn(true, false);
+
+        SUT.addEntry(entry);
+
+        verify(historyEntryManager, times(2)).awaitSavedChanges(Mockito.anyLong());
+        verify(entry, times(1)).apply(proj);
+    }
+    
     @Test
     public void serializeHistory() throws Exception {
         String json1 = "{\"id\":1533650900300,"
@@ -592,6 +592,32 @@ public class TsvCsvImporterTests extends ImporterTest {
         Assert.assertEquals(project.rows.get(0).cells.get(2).value, "data3");
     }
     
+    @Test
+    public void readSharesRepeatedCells() {
+        String input = "country,count\n" +
+                       "France,12\n" +
+                       "Spain,12\n" +
+                       "France,13\n";
+        int threshold = CellDictionary.ROW_THRESHOLD;
+        CellDictionary.ROW_THRESHOLD = 0;
+        try {
+            prepareOptions(",", -1, 0, 0, 1, true, false);
+            parseOneFile(SUT, new StringReader(input));
+        } catch (Exception e) {
+            Assert.fail("Exception during file parse",e);
+        } finally {
+            CellDictionary.ROW_THRESHOLD = threshold;
+        }
+        
+        Assert.assertEquals(project.rows.size(), 3);
+        Assert.assertSame(project.rows.get(0).getCell(0), project.rows.get(2).getCell(0));
+        Assert.assertNotSame(project.rows.get(0).getCell(0), project.rows.get(1).getCell(0));
+        Assert.assertSame(project.rows.get(0).getCell(1), project.rows.get(1).getCell(1));
+        Assert.assertEquals(project.rows.get(1).getCell(1).value, 12L);
+        Assert.assertEquals(project.rows.get(2).getCell(1).value, 13L);
+        Assert.assertTrue(job.getOrCreateDefaultConfig().get("progress").get("savedBytes").asLong() > 0);
+    }
+    
     //---------------------read tests------------------------
     @Test
     public void readCsvWithProperties() {
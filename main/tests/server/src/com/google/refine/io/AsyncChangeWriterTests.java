@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.util.TestUtils;
+
+public class AsyncChangeWriterTests extends RefineTest {
+
+    File dir;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = TestUtils.createTempDirectory("openrefine-test-change-writer");
+    }
+
+    @Test
+    public void testWriteInBackground() throws Exception {
+        File file = new File(dir, "1.change.zip");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncChangeWriter.submit(1, file, target -> {
+            started.countDown();
+            release.await();
+            Files.write(target.toPath(), "change".getBytes(StandardCharsets.UTF_8));
+        });
+
+        started.await();
+        assertTrue(AsyncChangeWriter.isPending(file));
+        assertFalse(file.exists());
+
+        release.countDown();
+        AsyncChangeWriter.await(file);
+        assertFalse(AsyncChangeWriter.isPending(file));
+        assertEquals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), "change");
+        assertEquals(dir.list().length, 1);
+    }
+
+    @Test
+    public void testAwaitProject() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            AsyncChangeWriter.submit(2, new File(dir, i + ".change.zip"), target -> {
+                Thread.sleep(10);
+                Files.write(target.toPath(), new byte[] { 1 });
+            });
+        }
+        AsyncChangeWriter.awaitProject(2);
+        assertEquals(dir.list().length, 5);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(AsyncChangeWriter.isPending(new File(dir, i + ".change.zip")));
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        File snapshot = new File(dir, "4.checkpoint.zip");
+        File change = new File(dir, "4.change.zip");
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean written = new AtomicBoolean();
+        AsyncChangeWriter.submitSnapshot(4, snapshot, target -> {
+            release.await();
+            Files.write(target.toPath(), new byte[] { 1 });
+        }, () -> written.set(snapshot.exists()));
+        AsyncChangeWriter.submit(4, change, target -> Files.write(target.toPath(), new byte[] { 2 }));
+
+        // change files do not wait for snapshots
+        AsyncChangeWriter.awaitProjectChanges(4);
+        assertTrue(change.exists());
+        assertTrue(AsyncChangeWriter.isPending(snapshot));
+        assertFalse(written.get());
+
+        release.countDown();
+        AsyncChangeWriter.awaitProject(4);
+        assertTrue(written.get());
+    }
+
+    @Test
+    public void testFailedWrite() throws Exception {
+        File file = new File(dir, "3.change.zip");
+        AsyncChangeWriter.submit(3, file, target -> {
+            Files.write(target.toPath(), new byte[] { 1 });
+            throw new IOException("disk full");
+        });
+
+        AsyncChangeWriter.await(file);
+        assertFalse(file.exists());
+        assertEquals(dir.list().length, 0);
+    }
+}
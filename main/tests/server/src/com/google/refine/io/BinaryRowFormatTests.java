@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.ZipFile;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.Cell;
+import com.google.refine.model.ModelException;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.util.TestUtils;
+
+public class BinaryRowFormatTests extends RefineTest {
+
+    Project project;
+    File dir;
+    OffsetDateTime date = OffsetDateTime.of(2020, 5, 17, 10, 30, 12, 500, ZoneOffset.UTC);
+
+    @BeforeMethod
+    public void setUp() throws IOException, ModelException {
+        dir = TestUtils.createTempDirectory("openrefine-binary-rows");
+        project = createProjectWithColumns("binary rows", "a", "b", "c", "d");
+
+        Row row = new Row(4);
+        row.setCell(0, new Cell("hello é中", null));
+        row.setCell(1, new Cell(42, null));
+        row.setCell(2, new Cell(-1234567890123L, null));
+        row.setCell(3, new Cell(Double.NaN, null));
+        row.starred = true;
+        project.rows.add(row);
+
+        row = new Row(4);
+        row.setCell(1, new Cell(2.5, Recon.makeWikidataRecon(3L)));
+        row.setCell(3, new Cell(true, null));
+        row.flagged = true;
+        project.rows.add(row);
+
+        row = new Row(4);
+        row.setCell(0, new Cell(date, null));
+        row.setCell(2, new Cell(new EvalError("boom"), null));
+        row.setCell(3, new Cell(null, null));
+        project.rows.add(row);
+
+        project.rows.add(new Row(0));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ProjectUtilities.saveBinaryRows = true;
+    }
+
+    protected Project roundTrip() throws Exception {
+        File file = new File(dir, "data.zip");
+        ProjectUtilities.saveToFile(project, file);
+        return ProjectUtilities.loadFromFile(file, project.id);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Project loaded = roundTrip();
+
+        assertEquals(loaded.columnModel.columns.size(), 4);
+        assertEquals(loaded.rows.size(), 4);
+
+        Row row = loaded.rows.get(0);
+        assertTrue(row.starred);
+        assertFalse(row.flagged);
+        assertEquals(row.getCellValue(0), "hello é中");
+        assertEquals(row.getCellValue(1), 42);
+        assertEquals(row.getCellValue(2), -1234567890123L);
+        assertTrue(((Double) row.getCellValue(3)).isNaN());
+
+        row = loaded.rows.get(1);
+        assertTrue(row.flagged);
+        assertNull(row.getCell(0));
+        assertEquals(row.getCellValue(1), 2.5);
+        assertEquals(row.getCell(1).recon.id, project.rows.get(1).getCell(1).recon.id);
+        assertEquals(row.getCellValue(3), true);
+        assertEquals(row.cells.size(), 4);
+
+        row = loaded.rows.get(2);
+        assertEquals(row.getCellValue(0), date);
+        assertEquals(((EvalError) row.getCellValue(2)).message, "boom");
+        assertTrue(row.getCell(3) != null);
+        assertNull(row.getCellValue(3));
+
+        assertTrue(loaded.rows.get(3).cells.isEmpty());
+        assertEquals(loaded.columnModel.getMaxCellIndex(), 3);
+    }
+
+    @Test
+    public void testBinaryEntryWritten() throws Exception {
+        File file = new File(dir, "data.zip");
+        ProjectUtilities.saveToFile(project, file);
+        try (ZipFile zip = new ZipFile(file)) {
+            assertTrue(zip.getEntry(BinaryRowFormat.ENTRY_NAME) != null);
+        }
+    }
+
+    @Test
+    public void testLegacyFormatStillLoads() throws Exception {
+        ProjectUtilities.saveBinaryRows = false;
+        File file = new File(dir, "data.zip");
+        ProjectUtilities.saveToFile(project, file);
+        try (ZipFile zip = new ZipFile(file)) {
+            assertNull(zip.getEntry(BinaryRowFormat.ENTRY_NAME));
+        }
+
+        Project loaded = ProjectUtilities.loadFromFile(file, project.id);
+        assertEquals(loaded.rows.size(), 4);
+        assertEquals(loaded.rows.get(0).getCellValue(0), "hello é中");
+        assertEquals(loaded.rows.get(1).getCell(1).recon.id, project.rows.get(1).getCell(1).recon.id);
+        assertTrue(loaded.rows.get(1).flagged);
+    }
+}
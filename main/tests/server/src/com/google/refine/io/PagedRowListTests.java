@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.util.TestUtils;
+
+public class PagedRowListTests extends RefineTest {
+
+    int oldSegmentSize;
+    int oldMinRows;
+    int oldCachedSegments;
+    int oldOutOfCoreRows;
+    File dir;
+    File file;
+    Project project;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        oldSegmentSize = SegmentedRowStore.SEGMENT_SIZE;
+        oldMinRows = SegmentedRowStore.MIN_ROWS;
+        oldCachedSegments = PagedRowList.CACHED_SEGMENTS;
+        oldOutOfCoreRows = ProjectUtilities.outOfCoreRows;
+        SegmentedRowStore.SEGMENT_SIZE = 10;
+        SegmentedRowStore.MIN_ROWS = 20;
+        PagedRowList.CACHED_SEGMENTS = 2;
+        ProjectUtilities.outOfCoreRows = 20;
+
+        dir = TestUtils.createTempDirectory("openrefine-paged-rows");
+        file = new File(dir, "data.zip");
+        Project original = createProjectWithColumns("paged rows", "a", "b");
+        for (int i = 0; i < 55; i++) {
+            Row row = new Row(2);
+            row.setCell(0, new Cell("row " + i, null));
+            row.setCell(1, new Cell(i, null));
+            original.rows.add(row);
+        }
+        original.update();
+        ProjectUtilities.saveToFile(original, file);
+
+        project = ProjectUtilities.loadFromFile(file, original.id);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        SegmentedRowStore.SEGMENT_SIZE = oldSegmentSize;
+        SegmentedRowStore.MIN_ROWS = oldMinRows;
+        PagedRowList.CACHED_SEGMENTS = oldCachedSegments;
+        ProjectUtilities.outOfCoreRows = oldOutOfCoreRows;
+    }
+
+    protected SegmentedRowStore save() throws IOException {
+        SegmentedRowStore store = ProjectUtilities.saveToFile(project, file, project.dirtyRows.drain());
+        project.rowStore = store;
+        ((PagedRowList) project.rows).onSaved(store);
+        SegmentedRowStore.deleteUnusedSegments(store, dir);
+        return store;
+    }
+
+    @Test
+    public void testRowsArePagedIn() {
+        assertTrue(project.rows instanceof PagedRowList);
+        PagedRowList rows = (PagedRowList) project.rows;
+        assertEquals(rows.size(), 55);
+        assertEquals(project.columnModel.getMaxCellIndex(), 1);
+
+        int i = 0;
+        for (Row row : rows) {
+            assertEquals(row.getCellValue(1), i++);
+        }
+        assertEquals(i, 55);
+        assertEquals(rows.get(37).getCellValue(0), "row 37");
+        assertTrue(rows.getLoadedSegmentCount() <= 2);
+        assertEquals(project.recordModel.getRecordCount(), 55);
+    }
+
+    @Test
+    public void testChangedRowsStayInMemoryUntilSaved() throws Exception {
+        CellChange change = new CellChange(23, 0, project.rows.get(23).getCell(0), new Cell("changed", null));
+        project.beginRowWrites();
+        change.apply(project);
+        project.endRowWrites();
+        change.markDirtyRows(project.dirtyRows);
+
+        // page all other segments through the cache
+        for (Row row : project.rows) {
+            row.getCellValue(0);
+        }
+        assertEquals(project.rows.get(23).getCellValue(0), "changed");
+
+        assertEquals(save().getWrittenSegments(), 1);
+        for (Row row : project.rows) {
+            row.getCellValue(0);
+        }
+        assertEquals(project.rows.get(23).getCellValue(0), "changed");
+        assertEquals(ProjectUtilities.loadFromFile(file, project.id).rows.get(23).getCellValue(0), "changed");
+    }
+
+    @Test
+    public void testStructuralChangesLoadAllRows() throws Exception {
+        PagedRowList rows = (PagedRowList) project.rows;
+        rows.remove(0);
+        assertTrue(rows.isResident());
+        assertEquals(rows.size(), 54);
+        assertEquals(rows.get(0).getCellValue(1), 1);
+        project.dirtyRows.markAll();
+
+        assertEquals(save().getWrittenSegments(), 6);
+        assertFalse(rows.isResident());
+        assertEquals(rows.size(), 54);
+        assertEquals(rows.get(53).getCellValue(1), 54);
+    }
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.model.Cell;
+import com.google.refine.model.ModelException;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.TestUtils;
+
+public class ParallelRowLoaderTests extends RefineTest {
+
+    ExecutorService oldExecutor;
+    int oldBlockSize;
+    int oldMinRows;
+    Project project;
+    File dir;
+
+    @BeforeMethod
+    public void setUp() throws IOException, ModelException {
+        oldExecutor = ParallelRowLoader.executor;
+        oldBlockSize = ParallelRowLoader.BLOCK_SIZE;
+        oldMinRows = ParallelRowLoader.MIN_PARALLEL_ROWS;
+        ParallelRowLoader.executor = new ForkJoinPool(4);
+        ParallelRowLoader.BLOCK_SIZE = 7;
+        ParallelRowLoader.MIN_PARALLEL_ROWS = 10;
+
+        dir = TestUtils.createTempDirectory("openrefine-parallel-load");
+        project = createProjectWithColumns("parallel load", "a", "b");
+        for (int i = 0; i < 1000; i++) {
+            Row row = new Row(2);
+            row.setCell(0, new Cell("row " + i, null));
+            row.setCell(1, new Cell(i, null));
+            row.starred = i % 3 == 0;
+            project.rows.add(row);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ParallelRowLoader.executor.shutdown();
+        ParallelRowLoader.executor = oldExecutor;
+        ParallelRowLoader.BLOCK_SIZE = oldBlockSize;
+        ParallelRowLoader.MIN_PARALLEL_ROWS = oldMinRows;
+        ProjectUtilities.saveBinaryRows = true;
+    }
+
+    protected void assertLoadedInOrder(Project loaded) {
+        assertEquals(loaded.rows.size(), 1000);
+        for (int i = 0; i < 1000; i++) {
+            Row row = loaded.rows.get(i);
+            assertEquals(row.getCellValue(0), "row " + i);
+            assertEquals(row.getCellValue(1), i);
+            assertEquals(row.starred, i % 3 == 0);
+        }
+        assertNull(ProjectLoadProgress.get(loaded.id));
+    }
+
+    @Test
+    public void testLoadBinaryRows() throws Exception {
+        File file = new File(dir, "data.zip");
+        ProjectUtilities.saveToFile(project, file);
+        assertLoadedInOrder(ProjectUtilities.loadFromFile(file, project.id));
+    }
+
+    @Test
+    public void testLoadLegacyRows() throws Exception {
+        ProjectUtilities.saveBinaryRows = false;
+        File file = new File(dir, "data.zip");
+        ProjectUtilities.saveToFile(project, file);
+        assertLoadedInOrder(ProjectUtilities.loadFromFile(file, project.id));
+    }
+
+    @Test
+    public void testProgressAndErrors() throws Exception {
+        ProjectLoadProgress progress = ProjectLoadProgress.start(1234L);
+        List<Row> rows = new ArrayList<>();
+        ParallelRowLoader loader = new ParallelRowLoader(rows, 20, progress);
+        assertEquals(ProjectLoadProgress.get(1234L), progress);
+
+        loader.add(() -> Arrays.asList(new Row(0), null, new Row(0)));
+        loader.add(() -> {
+            throw new IOException("corrupt block");
+        });
+        try {
+            loader.finish();
+            fail("Expected the decoding error to be rethrown");
+        } catch (IOException e) {
+            assertEquals(e.getMessage(), "corrupt block");
+        }
+        assertEquals(rows.size(), 2);
+        assertEquals(progress.getLoadedRows(), 2);
+        assertEquals(progress.getPercent(), 10);
+
+        ProjectLoadProgress.finish(progress);
+        assertNull(ProjectLoadProgress.get(1234L));
+    }
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.model.Cell;
+import com.google.refine.model.ModelException;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.ColumnRenameChange;
+import com.google.refine.util.Pool;
+import com.google.refine.util.TestUtils;
+
+public class SegmentedRowStoreTests extends RefineTest {
+
+    int oldSegmentSize;
+    int oldMinRows;
+    Project project;
+    File dir;
+    File file;
+
+    @BeforeMethod
+    public void setUp() throws IOException, ModelException {
+        oldSegmentSize = SegmentedRowStore.SEGMENT_SIZE;
+        oldMinRows = SegmentedRowStore.MIN_ROWS;
+        SegmentedRowStore.SEGMENT_SIZE = 10;
+        SegmentedRowStore.MIN_ROWS = 20;
+
+        dir = TestUtils.createTempDirectory("openrefine-segments");
+        file = new File(dir, "data.zip");
+        project = createProjectWithColumns("segments", "a", "b");
+        for (int i = 0; i < 55; i++) {
+            Row row = new Row(2);
+            row.setCell(0, new Cell("row " + i, null));
+            row.setCell(1, new Cell(i, null));
+            project.rows.add(row);
+        }
+        project.update();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        SegmentedRowStore.SEGMENT_SIZE = oldSegmentSize;
+        SegmentedRowStore.MIN_ROWS = oldMinRows;
+    }
+
+    protected SegmentedRowStore save() throws IOException {
+        SegmentedRowStore store = ProjectUtilities.saveToFile(project, file, project.dirtyRows.drain());
+        project.rowStore = store;
+        SegmentedRowStore.deleteUnusedSegments(store, dir);
+        return store;
+    }
+
+    @Test
+    public void testOnlyDirtySegmentsRewritten() throws Exception {
+        SegmentedRowStore first = save();
+        assertEquals(first.getSegments().size(), 6);
+        assertEquals(first.getWrittenSegments(), 6);
+
+        CellChange change = new CellChange(23, 0, project.rows.get(23).getCell(0), new Cell("changed", null));
+        change.apply(project);
+        change.markDirtyRows(project.dirtyRows);
+
+        SegmentedRowStore second = save();
+        assertEquals(second.getWrittenSegments(), 1);
+        List<String> segments = second.getSegments();
+        for (int i = 0; i < 6; i++) {
+            if (i == 2) {
+                assertNotEquals(segments.get(i), first.getSegments().get(i));
+                assertFalse(new File(dir, first.getSegments().get(i)).exists());
+            } else {
+                assertEquals(segments.get(i), first.getSegments().get(i));
+            }
+            assertTrue(new File(dir, segments.get(i)).exists());
+        }
+
+        Project loaded = ProjectUtilities.loadFromFile(file, project.id);
+        assertEquals(loaded.rows.size(), 55);
+        assertEquals(loaded.rows.get(23).getCellValue(0), "changed");
+        assertEquals(loaded.rows.get(54).getCellValue(1), 54);
+        assertNotNull(loaded.rowStore);
+        assertFalse(loaded.dirtyRows.isAllDirty());
+    }
+
+    @Test
+    public void testColumnRenameLeavesRowsClean() throws Exception {
+        save();
+        new ColumnRenameChange("a", "c").markDirtyRows(project.dirtyRows);
+        assertEquals(save().getWrittenSegments(), 0);
+    }
+
+    @Test
+    public void testRowCountChangeRewritesAll() throws Exception {
+        save();
+        project.rows.remove(0);
+        project.dirtyRows.markAll();
+        SegmentedRowStore store = save();
+        assertEquals(store.getWrittenSegments(), 6);
+        assertEquals(dir.list((d, name) -> name.startsWith("segment-")).length, 6);
+        assertEquals(ProjectUtilities.loadFromFile(file, project.id).rows.get(0).getCellValue(1), 1);
+    }
+
+    @Test
+    public void testSmallProjectsSavedInDataZip() throws Exception {
+        save();
+        while (project.rows.size() > 15) {
+            project.rows.remove(project.rows.size() - 1);
+        }
+        project.dirtyRows.markAll();
+        assertNull(save());
+        assertEquals(dir.list((d, name) -> name.startsWith("segment-")).length, 0);
+
+        Project loaded = ProjectUtilities.loadFromFile(file, project.id);
+        assertEquals(loaded.rows.size(), 15);
+        assertNull(loaded.rowStore);
+    }
+
+    @Test
+    public void testCopySegmentsWithChangedRows() throws Exception {
+        SegmentedRowStore store = save();
+        TreeMap<Integer, Row> changed = new TreeMap<>();
+        Row row = project.rows.get(42).dup();
+        row.setCell(0, new Cell("changed", null));
+        changed.put(42, row);
+
+        File copy = new File(dir, "copy.zip");
+        SegmentedRowStore copied;
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(copy))) {
+            copied = store.copyTo(out, project, dir, project.columnModel.columns, changed);
+        }
+        assertEquals(copied.getSegments().size(), 6);
+
+        try (ZipFile zipFile = new ZipFile(copy)) {
+            List<Row> rows = new ArrayList<>();
+            copied.loadEntries(project, zipFile, rows, new Pool());
+            assertEquals(rows.size(), 55);
+            assertEquals(rows.get(42).getCellValue(0), "changed");
+            assertEquals(rows.get(41).getCellValue(0), "row 41");
+
+            SegmentedRowStore extracted = copied.extract(zipFile, store, dir);
+            assertEquals(extracted.getRowCount(), 55);
+            assertEquals(extracted.loadSegment(project, dir, 4).get(2).getCellValue(0), "changed");
+            assertEquals(extracted.loadSegment(project, dir, 5).get(4).getCellValue(1), 54);
+        }
+        // the original segments are left untouched
+        assertEquals(store.loadSegment(project, dir, 4).get(2).getCellValue(0), "row 42");
+    }
+
+    @Test
+    public void testDrainDirtyRows() {
+        project.dirtyRows.clear();
+        project.dirtyRows.mark(3);
+        BitSet dirty = project.dirtyRows.drain();
+        assertTrue(dirty.get(3));
+        assertEquals(dirty.cardinality(), 1);
+        assertEquals(project.dirtyRows.drain().cardinality(), 0);
+        project.dirtyRows.markAll();
+        assertNull(project.dirtyRows.drain());
+    }
+}
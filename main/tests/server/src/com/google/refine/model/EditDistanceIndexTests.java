@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.refine.clustering.knn.BoundedLevenshteinDistance;
+
+public class EditDistanceIndexTests {
+
+    private static List<String> randomValues(Random random, int count) {
+        String alphabet = "aAbcd ";
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            values.add(sb.toString());
+        }
+        return values;
+    }
+
+    private static Map<String, Integer> bruteForce(Iterable<String> values, String query, int radius) {
+        BoundedLevenshteinDistance distance = new BoundedLevenshteinDistance();
+        Map<String, Integer> results = new HashMap<>();
+        for (String value : values) {
+            int d = (int) distance.compute(query, value);
+            if (d <= radius) {
+                results.put(value, d);
+            }
+        }
+        return results;
+    }
+
+    @Test
+    public void testSearchMatchesBruteForce() {
+        Random random = new Random(7);
+        List<String> values = randomValues(random, 500);
+        EditDistanceIndex index = new EditDistanceIndex(values);
+        for (String query : randomValues(random, 50)) {
+            for (int radius = 0; radius < 4; radius++) {
+                Assert.assertEquals(index.search(query, radius), bruteForce(values, query, radius), query + " " + radius);
+            }
+        }
+    }
+
+    @Test
+    public void testIndexesTextOfNonStrings() {
+        EditDistanceIndex index = new EditDistanceIndex(Arrays.asList("foo", 12.0, 1.5, true, "fob"));
+        Assert.assertEquals(index.size(), 5);
+        Assert.assertEquals(index.search("foo", 1).keySet(), new HashSet<>(Arrays.asList("foo", "fob")));
+        Assert.assertEquals(index.search("13", 1).keySet(), Collections.singleton("12"));
+        Assert.assertTrue(index.contains("1.5"));
+        Assert.assertTrue(index.contains("true"));
+    }
+
+    @Test
+    public void testValuesSharingText() {
+        EditDistanceIndex index = new EditDistanceIndex(Arrays.asList("12", 12.0));
+        Assert.assertEquals(index.size(), 1);
+        Assert.assertEquals(new HashSet<>(index.getValues("12")), new HashSet<>(Arrays.asList("12", 12.0)));
+
+        index.remove(12.0);
+        Assert.assertTrue(index.contains("12"));
+        index.remove("12");
+        Assert.assertFalse(index.contains("12"));
+        Assert.assertTrue(index.search("12", 0).isEmpty());
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        Random random = new Random(11);
+        List<String> values = new ArrayList<>(new LinkedHashSet<>(randomValues(random, 300)));
+        EditDistanceIndex index = new EditDistanceIndex(values);
+        Collections.shuffle(values, random);
+        List<String> removed = new ArrayList<>(values.subList(0, values.size() * 3 / 4));
+        List<String> kept = new ArrayList<>(values.subList(values.size() * 3 / 4, values.size()));
+        // removing most values rebuilds the tree along the way
+        removed.forEach(index::remove);
+        Assert.assertEquals(index.size(), kept.size());
+        for (String query : randomValues(random, 30)) {
+            Assert.assertEquals(index.search(query, 2), bruteForce(kept, query, 2));
+        }
+
+        index.add(removed.get(0));
+        Assert.assertTrue(index.contains(removed.get(0)));
+        kept.add(removed.get(0));
+        for (String query : randomValues(random, 30)) {
+            Assert.assertEquals(index.search(query, 2), bruteForce(kept, query, 2));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.MassCellChange;
+import com.google.refine.model.changes.MassRowChange;
+
+public class ValueIndexTests extends RefineTest {
+
+    Project project;
+    Column column;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        project = createProjectWithColumns("ValueIndexTests", "a");
+        Object[] values = new Object[] { "foo", "bar", "foo", "", 12L, new EvalError("boom") };
+        for (Object value : values) {
+            Row row = new Row(1);
+            row.setCell(0, new Cell((Serializable) value, null));
+            project.rows.add(row);
+        }
+        project.update();
+        column = project.columnModel.getColumnByName("a");
+    }
+
+    private BitSet bits(int... rows) {
+        BitSet bitSet = new BitSet();
+        for (int row : rows) {
+            bitSet.set(row);
+        }
+        return bitSet;
+    }
+
+    @Test
+    public void testLookup() {
+        ValueIndex index = column.getValueIndex(project);
+
+        Assert.assertEquals(index.getRowCount(), 6);
+        Assert.assertEquals(index.getValueCount(), 3);
+        Assert.assertEquals(index.getRows(new Object[] { "foo" }, false, false), bits(0, 2));
+        Assert.assertEquals(index.getRows(new Object[] { "foo", "bar" }, false, false), bits(0, 1, 2));
+        Assert.assertEquals(index.getRows(new Object[] { 12.0 }, true, true), bits(3, 4, 5));
+        Assert.assertEquals(index.getRows(new Object[] { "12", "baz" }, false, false), bits());
+    }
+
+    @Test
+    public void testPatchedByCellChange() {
+        ValueIndex index = column.getValueIndex(project);
+        CellChange change = new CellChange(0, 0, project.rows.get(0).getCell(0), new Cell("bar", null));
+
+        change.apply(project);
+        Assert.assertSame(column.getValueIndex(project), index);
+        Assert.assertEquals(index.getRows(new Object[] { "foo" }, false, false), bits(2));
+        Assert.assertEquals(index.getRows(new Object[] { "bar" }, false, false), bits(0, 1));
+
+        change.revert(project);
+        Assert.assertEquals(index.getRows(new Object[] { "foo" }, false, false), bits(0, 2));
+        Assert.assertEquals(index.getRows(new Object[] { "bar" }, false, false), bits(1));
+    }
+
+    @Test
+    public void testPatchedByMassCellChange() {
+        ValueIndex index = column.getValueIndex(project);
+        CellChange[] changes = new CellChange[] {
+                new CellChange(0, 0, project.rows.get(0).getCell(0), null),
+                new CellChange(2, 0, project.rows.get(2).getCell(0), new Cell("baz", null)),
+        };
+        MassCellChange change = new MassCellChange(changes, "a", false);
+
+        change.apply(project);
+        Assert.assertEquals(index.getRows(new Object[] { "foo" }, false, false), bits());
+        Assert.assertEquals(index.getRows(new Object[] { "baz" }, true, false), bits(0, 2, 3));
+        Assert.assertEquals(index.getValueCount(), 3);
+
+        change.revert(project);
+        Assert.assertEquals(index.getRows(new Object[] { "foo", "baz" }, true, false), bits(0, 2, 3));
+        Assert.assertEquals(index.getValueCount(), 3);
+    }
+
+    @Test
+    public void testBatchUpdateMatchesRebuild() {
+        Project large = createProjectWithColumns("ValueIndexBatchTests", "a");
+        for (int i = 0; i < 1000; i++) {
+            Row row = new Row(1);
+            row.setCell(0, new Cell(i % 3 == 0 ? " x" : "y", null));
+            large.rows.add(row);
+        }
+        large.update();
+        Column a = large.columnModel.getColumnByName("a");
+        ValueIndex index = a.getValueIndex(large);
+
+        // like value.trim() on most rows of one value
+        List<CellChange> changes = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 3) {
+            if (i % 9 != 0) {
+                changes.add(new CellChange(i, 0, large.rows.get(i).getCell(0), new Cell("x", null)));
+            }
+        }
+        MassCellChange change = new MassCellChange(changes, "a", false);
+
+        change.apply(large);
+        ValueIndex rebuilt = new ValueIndex(large, 0);
+        for (Object value : new Object[] { " x", "x", "y" }) {
+            Assert.assertEquals(index.getRows(new Object[] { value }, false, false),
+                    rebuilt.getRows(new Object[] { value }, false, false));
+        }
+        Assert.assertEquals(index.getValueCount(), 3);
+
+        change.revert(large);
+        Assert.assertEquals(index.getRows(new Object[] { "x" }, false, false), bits());
+        Assert.assertEquals(index.getValueCount(), 2);
+        Assert.assertEquals(index.countRows(" x"), 334);
+    }
+
+    @Test
+    public void testEditDistanceIndexPatchedByCellChange() {
+        EditDistanceIndex index = column.getValueIndex(project).getEditDistanceIndex();
+        // the number is indexed by its text
+        Assert.assertEquals(index.size(), 3);
+        Assert.assertEquals(index.search("fo", 1).keySet(), Collections.singleton("foo"));
+        Assert.assertEquals(index.search("13", 1).keySet(), Collections.singleton("12"));
+        Assert.assertEquals(column.getValueIndex(project).countRowsWithText("12"), 1);
+
+        CellChange change = new CellChange(1, 0, project.rows.get(1).getCell(0), new Cell("fox", null));
+        change.apply(project);
+        Assert.assertSame(column.getValueIndex(project).getEditDistanceIndex(), index);
+        Assert.assertEquals(index.search("fo", 1).keySet(), new HashSet<>(Arrays.asList("foo", "fox")));
+        Assert.assertFalse(index.contains("bar"));
+        Assert.assertEquals(column.getValueIndex(project).countRows("foo"), 2);
+
+        change.revert(project);
+        Assert.assertTrue(index.contains("bar"));
+        Assert.assertFalse(index.contains("fox"));
+    }
+
+    @Test
+    public void testDroppedByClearPrecomputes() {
+        ValueIndex index = column.getValueIndex(project);
+        column.clearPrecomputes();
+        Assert.assertNotSame(column.getValueIndex(project), index);
+    }
+
+    @Test
+    public void testRebuiltAfterMassRowChangeRevert() {
+        List<Row> reversed = new ArrayList<>(project.rows);
+        Collections.reverse(reversed);
+        MassRowChange change = new MassRowChange(reversed);
+
+        change.apply(project);
+        Assert.assertEquals(column.getValueIndex(project).getRows(new Object[] { "bar" }, false, false), bits(4));
+
+        // the row count is unchanged, but the rows have moved back
+        change.revert(project);
+        Assert.assertEquals(column.getValueIndex(project).getRows(new Object[] { "bar" }, false, false), bits(1));
+    }
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model.changes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.history.Change;
+import com.google.refine.model.Cell;
+import com.google.refine.model.DirtyRows;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.Pool;
+
+public class MassRowChangeTests extends RefineTest {
+
+    Project project;
+    List<Row> originalRows;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void SetUp() {
+        StringBuilder csv = new StringBuilder("a,b\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append("a" + i + ",b" + i + "\n");
+        }
+        project = createCSVProject(csv.toString());
+        originalRows = new ArrayList<Row>(project.rows);
+    }
+
+    /**
+     * Splits row 10 into two rows, removes row 50 and modifies row 80.
+     */
+    protected List<Row> editedRows() {
+        List<Row> newRows = new ArrayList<Row>();
+        for (int i = 0; i < project.rows.size(); i++) {
+            Row row = project.rows.get(i);
+            if (i == 10) {
+                Row first = row.dup();
+                first.setCell(1, new Cell("b10a", null));
+                newRows.add(first);
+                Row second = new Row(2);
+                second.setCell(1, new Cell("b10b", null));
+                newRows.add(second);
+            } else if (i == 80) {
+                Row modified = row.dup();
+                modified.setCell(0, new Cell("modified", null));
+                newRows.add(modified);
+            } else if (i != 50) {
+                newRows.add(row);
+            }
+        }
+        return newRows;
+    }
+
+    protected String save(Change change) throws Exception {
+        StringWriter writer = new StringWriter();
+        change.save(writer, new Properties());
+        return writer.toString();
+    }
+
+    protected void assertEdited(List<Row> rows) {
+        assertEquals(rows.size(), 100);
+        assertEquals(rows.get(10).getCellValue(1), "b10a");
+        assertEquals(rows.get(11).getCellValue(1), "b10b");
+        assertEquals(rows.get(50).getCellValue(0), "a49");
+        assertEquals(rows.get(51).getCellValue(0), "a51");
+        assertEquals(rows.get(80).getCellValue(0), "modified");
+        assertEquals(rows.get(99).getCellValue(0), "a99");
+    }
+
+    @Test
+    public void testApplyAndRevert() {
+        MassRowChange change = new MassRowChange(editedRows());
+        change.apply(project);
+
+        assertEdited(project.rows);
+        assertSame(project.rows.get(0), originalRows.get(0));
+        assertSame(project.rows.get(99), originalRows.get(99));
+        assertEquals(change._spans.size(), 3);
+
+        change.revert(project);
+        assertEquals(project.rows, originalRows);
+        for (int i = 0; i < originalRows.size(); i++) {
+            assertSame(project.rows.get(i), originalRows.get(i));
+        }
+    }
+
+    @Test
+    public void testSaveOnlyChangedRows() throws Exception {
+        MassRowChange change = new MassRowChange(editedRows());
+        change.apply(project);
+
+        String saved = save(change);
+        assertTrue(saved.startsWith("spanCount=3\n"));
+        assertFalse(saved.contains("\"a0\""));
+        // 3 new and 2 old rows for the split and the modification, 1 old row for the removal
+        assertEquals(saved.split("\n").length, 1 + 3 * 3 + 6 + 1);
+
+        Change loaded = MassRowChange.load(new LineNumberReader(new StringReader(saved)), new Pool());
+        change.revert(project);
+        assertEquals(project.rows, originalRows);
+
+        loaded.apply(project);
+        assertEdited(project.rows);
+        assertSame(project.rows.get(0), originalRows.get(0));
+        loaded.revert(project);
+        assertEquals(project.rows.size(), 100);
+        assertEquals(project.rows.get(50).getCellValue(0), "a50");
+        assertEquals(project.rows.get(80).getCellValue(0), "a80");
+    }
+
+    @Test
+    public void testLoadLegacyChange() throws Exception {
+        List<Row> newRows = editedRows();
+        StringWriter writer = new StringWriter();
+        MassRowChange.writeRows(writer, new Properties(), "newRowCount=", newRows);
+        MassRowChange.writeRows(writer, new Properties(), "oldRowCount=", originalRows);
+        writer.write("/ec/\n");
+
+        Change change = MassRowChange.load(new LineNumberReader(new StringReader(writer.toString())), new Pool());
+        change.apply(project);
+        assertEdited(project.rows);
+        change.revert(project);
+        assertEquals(project.rows.size(), 100);
+        assertEquals(project.rows.get(50).getCellValue(0), "a50");
+    }
+
+    @Test
+    public void testMarkDirtyRows() {
+        List<Row> newRows = new ArrayList<Row>(project.rows);
+        Row modified = newRows.get(42).dup();
+        modified.setCell(0, new Cell("modified", null));
+        newRows.set(42, modified);
+        MassRowChange change = new MassRowChange(newRows);
+        change.apply(project);
+
+        DirtyRows dirtyRows = new DirtyRows();
+        dirtyRows.clear();
+        change.markDirtyRows(dirtyRows);
+        assertFalse(dirtyRows.isAllDirty());
+        assertTrue(dirtyRows.isDirty(42));
+        assertFalse(dirtyRows.isDirty(43));
+
+        MassRowChange resize = new MassRowChange(editedRows());
+        resize.apply(project);
+        resize.markDirtyRows(dirtyRows);
+        assertTrue(dirtyRows.isAllDirty());
+    }
+
+    @Test
+    public void testDiffByContent() {
+        // rows decoded again from disk are equal copies of the rows of the project
+        List<Row> newRows = new ArrayList<Row>();
+        for (Row row : project.rows) {
+            newRows.add(row.dup());
+        }
+        Row modified = newRows.get(42).dup();
+        modified.setCell(0, new Cell("modified", null));
+        newRows.set(42, modified);
+
+        MassRowChange change = new MassRowChange(newRows);
+        change.apply(project);
+        assertEquals(change._spans.size(), 1);
+        assertEquals(change._spans.get(0).oldStart, 42);
+        assertEquals(change._spans.get(0).newRows.size(), 1);
+        assertSame(project.rows.get(41), originalRows.get(41));
+    }
+
+    @Test
+    public void testBuilder() {
+        Row split = project.rows.get(10).dup();
+        split.setCell(1, new Cell("b10a", null));
+        Row inserted = new Row(2);
+        inserted.setCell(1, new Cell("b10b", null));
+        Row modified = project.rows.get(80).dup();
+        modified.setCell(0, new Cell("modified", null));
+
+        MassRowChange change = new MassRowChange.Builder()
+                .replace(10, project.rows.subList(10, 11), Arrays.asList(split, inserted))
+                .replace(50, project.rows.subList(50, 51), Collections.<Row>emptyList())
+                .replace(80, project.rows.get(80), modified)
+                .build();
+        change.apply(project);
+        assertEdited(project.rows);
+        assertEquals(change._spans.size(), 3);
+        assertEquals(change._spans.get(2).newStart, 80);
+
+        change.revert(project);
+        for (int i = 0; i < originalRows.size(); i++) {
+            assertSame(project.rows.get(i), originalRows.get(i));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model.changes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.history.Change;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.util.Pool;
+
+public class MassRowColumnChangeTests extends RefineTest {
+
+    Project project;
+    List<Row> originalRows;
+    List<Column> newColumns;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void SetUp() {
+        StringBuilder csv = new StringBuilder("a,b\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append("a" + i + ",b" + i + "\n");
+        }
+        project = createCSVProject(csv.toString());
+        originalRows = new ArrayList<Row>(project.rows);
+        newColumns = new ArrayList<Column>(project.columnModel.columns);
+        newColumns.add(new Column(2, "c"));
+    }
+
+    /**
+     * Fills the new column in row 5 and removes row 7.
+     */
+    protected List<Row> editedRows() {
+        List<Row> newRows = new ArrayList<Row>();
+        for (int i = 0; i < project.rows.size(); i++) {
+            Row row = project.rows.get(i);
+            if (i == 5) {
+                Row modified = row.dup();
+                modified.setCell(2, new Cell("c5", null));
+                newRows.add(modified);
+            } else if (i != 7) {
+                newRows.add(row);
+            }
+        }
+        return newRows;
+    }
+
+    @Test
+    public void testOnlyChangedRowsAreKept() throws Exception {
+        MassRowColumnChange change = new MassRowColumnChange(newColumns, editedRows());
+        change.apply(project);
+
+        assertEquals(project.columnModel.columns.size(), 3);
+        assertEquals(project.rows.size(), 99);
+        assertEquals(project.rows.get(5).getCellValue(2), "c5");
+        assertEquals(project.rows.get(7).getCellValue(0), "a8");
+        assertSame(project.rows.get(98), originalRows.get(99));
+        assertEquals(change._spans.size(), 2);
+
+        StringWriter writer = new StringWriter();
+        change.save(writer, new Properties());
+        String saved = writer.toString();
+        assertFalse(saved.contains("\"a0\""));
+
+        change.revert(project);
+        assertEquals(project.columnModel.columns.size(), 2);
+        assertEquals(project.rows, originalRows);
+        for (int i = 0; i < originalRows.size(); i++) {
+            assertSame(project.rows.get(i), originalRows.get(i));
+        }
+
+        Change loaded = MassRowColumnChange.load(new LineNumberReader(new StringReader(saved)), new Pool());
+        loaded.apply(project);
+        assertEquals(project.rows.size(), 99);
+        assertEquals(project.rows.get(5).getCellValue(2), "c5");
+        loaded.revert(project);
+        assertEquals(project.rows.size(), 100);
+        assertEquals(project.rows.get(7).getCellValue(0), "a7");
+    }
+
+    @Test
+    public void testLoadLegacyChange() throws Exception {
+        StringWriter writer = new StringWriter();
+        writer.write("newColumnCount=" + newColumns.size() + "\n");
+        for (Column column : newColumns) {
+            column.save(writer);
+            writer.write('\n');
+        }
+        writer.write("oldColumnCount=" + project.columnModel.columns.size() + "\n");
+        for (Column column : project.columnModel.columns) {
+            column.save(writer);
+            writer.write('\n');
+        }
+        MassRowChange.writeRows(writer, new Properties(), "newRowCount=", editedRows());
+        MassRowChange.writeRows(writer, new Properties(), "oldRowCount=", originalRows);
+        writer.write("/ec/\n");
+
+        Change change = MassRowColumnChange.load(new LineNumberReader(new StringReader(writer.toString())), new Pool());
+        change.apply(project);
+        assertEquals(project.rows.size(), 99);
+        assertEquals(project.rows.get(5).getCellValue(2), "c5");
+        change.revert(project);
+        assertEquals(project.rows.size(), 100);
+        assertEquals(project.rows.get(7).getCellValue(0), "a7");
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.model.columnar;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class ColumnVectorTests extends RefineTest {
+
+    private Project createProject(Serializable... values) throws Exception {
+        Project project = createProjectWithColumns("ColumnVectorTests", "a");
+        for (Serializable value : values) {
+            Row row = new Row(1);
+            if (value != null) {
+                row.setCell(0, new Cell(value, null));
+            }
+            project.rows.add(row);
+        }
+        project.update();
+        return project;
+    }
+
+    @Test
+    public void testStringVector() throws Exception {
+        Project project = createProject("foo", null, "bar", "foo");
+        ColumnVector vector = ColumnVector.build(project, 0);
+
+        Assert.assertTrue(vector instanceof StringColumnVector);
+        StringColumnVector strings = (StringColumnVector) vector;
+        Assert.assertEquals(strings.getDictionary(), new String[] { "foo", "bar" });
+        Assert.assertEquals(strings.getCode(3), 0);
+        Assert.assertEquals(strings.getCode(1), -1);
+        Assert.assertTrue(vector.isNull(1));
+        Assert.assertEquals(vector.get(2), "bar");
+        Assert.assertNull(vector.get(1));
+    }
+
+    @Test
+    public void testNumericVectors() throws Exception {
+        ColumnVector longs = ColumnVector.build(createProject(1L, null, 3L), 0);
+        Assert.assertTrue(longs instanceof LongColumnVector);
+        Assert.assertEquals(((LongColumnVector) longs).getLong(2), 3L);
+        Assert.assertNull(longs.get(1));
+
+        ColumnVector doubles = ColumnVector.build(createProject(1.5, 2.5), 0);
+        Assert.assertTrue(doubles instanceof DoubleColumnVector);
+        Assert.assertEquals(doubles.get(1), 2.5);
+    }
+
+    @Test
+    public void testMixedVector() throws Exception {
+        OffsetDateTime date = OffsetDateTime.parse("2017-05-12T05:45:00Z");
+        ColumnVector vector = ColumnVector.build(createProject("foo", 2L, date), 0);
+
+        Assert.assertTrue(vector instanceof ObjectColumnVector);
+        Assert.assertEquals(vector.get(0), "foo");
+        Assert.assertEquals(vector.get(1), 2L);
+        Assert.assertEquals(vector.get(2), date);
+    }
+
+    @Test
+    public void testCachedInColumn() throws Exception {
+        Project project = createProject("foo", "bar");
+        Column column = project.columnModel.getColumnByName("a");
+
+        ColumnVector vector = ColumnVector.get(project, column);
+        Assert.assertSame(ColumnVector.get(project, column), vector);
+
+        column.clearPrecomputes();
+        Assert.assertNotSame(ColumnVector.get(project, column), vector);
+    }
+
+    @Test
+    public void testCountedInPrecomputes() throws Exception {
+        Project project = createProject("foo", "bar");
+        Column column = project.columnModel.getColumnByName("a");
+        Assert.assertEquals(column.estimatePrecomputes(), 0L);
+
+        ColumnVector vector = ColumnVector.get(project, column);
+        Assert.assertEquals(column.estimatePrecomputes(), vector.estimateMemory());
+    }
+
+    @Test
+    public void testRebuiltAfterProjectUpdate() throws Exception {
+        Project project = createProject("foo", "bar");
+        Column column = project.columnModel.getColumnByName("a");
+        ColumnVector vector = ColumnVector.get(project, column);
+
+        // same row count, but the rows have been swapped
+        Row first = project.rows.get(0);
+        project.rows.set(0, project.rows.get(1));
+        project.rows.set(1, first);
+        project.update();
+
+        ColumnVector rebuilt = ColumnVector.get(project, column);
+        Assert.assertNotSame(rebuilt, vector);
+        Assert.assertEquals(rebuilt.get(0), "bar");
+    }
+}
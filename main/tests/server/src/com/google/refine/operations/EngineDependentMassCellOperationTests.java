@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (C) 2018, OpenRefine contributors
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.google.refine.operations;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.RefineTest;
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.util.ParallelScan;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.operations.cell.MassEditOperation;
+import com.google.refine.operations.cell.MassEditOperation.Edit;
+import com.google.refine.operations.cell.TextTransformOperation;
+
+public class EngineDependentMassCellOperationTests extends RefineTest {
+
+    static final String ROWS_MODE = "{\"mode\":\"row-based\",\"facets\":[]}";
+    static final String RECORDS_MODE = "{\"mode\":\"record-based\",\"facets\":[]}";
+
+    private int minParallelSize;
+    private int chunkSize;
+    private ForkJoinPool pool;
+    private Project project;
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        minParallelSize = ParallelScan.MIN_PARALLEL_SIZE;
+        chunkSize = ParallelScan.CHUNK_SIZE;
+        pool = ParallelScan.getPool();
+        // make sure the rows are processed concurrently, even on a single core
+        ParallelScan.setPool(new ForkJoinPool(4));
+        ParallelScan.CHUNK_SIZE = 64;
+
+        StringBuilder sb = new StringBuilder("key,value\n");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i % 3 == 0 ? "" : "k" + (i % 17)).append(',');
+            sb.append(i % 11 == 0 ? "" : "v" + (i % 97)).append('\n');
+        }
+        project = createCSVProject(sb.toString());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ParallelScan.MIN_PARALLEL_SIZE = minParallelSize;
+        ParallelScan.CHUNK_SIZE = chunkSize;
+        ParallelScan.getPool().shutdown();
+        ParallelScan.setPool(pool);
+    }
+
+    private String runChange(EngineDependentMassCellOperation op, boolean parallel) throws Exception {
+        ParallelScan.MIN_PARALLEL_SIZE = parallel ? 1 : Integer.MAX_VALUE;
+        HistoryEntry entry = op.createHistoryEntry(project, 1234L);
+        StringWriter writer = new StringWriter();
+        entry.getChange().save(writer, new Properties());
+        return entry.description + "\n" + writer.toString();
+    }
+
+    private boolean isRowIndependent(EngineDependentMassCellOperation op) throws Exception {
+        return op.isRowIndependent(project);
+    }
+
+    private void assertSameChange(EngineDependentMassCellOperation op) throws Exception {
+        String sequential = runChange(op, false);
+        String parallel = runChange(op, true);
+        assertTrue(sequential.contains("cell="), sequential);
+        assertEquals(parallel, sequential);
+    }
+
+    @Test
+    public void testParallelTextTransform() throws Exception {
+        TextTransformOperation op = new TextTransformOperation(EngineConfig.reconstruct(ROWS_MODE),
+                "value", "grel:value + '-' + cells.key.value", OnError.SetToBlank, false, 0);
+        assertTrue(isRowIndependent(op));
+        assertSameChange(op);
+    }
+
+    @Test
+    public void testParallelTextTransformInRecordsMode() throws Exception {
+        TextTransformOperation op = new TextTransformOperation(EngineConfig.reconstruct(RECORDS_MODE),
+                "key", "grel:value.toUppercase()", OnError.KeepOriginal, true, 2);
+        assertSameChange(op);
+    }
+
+    @Test
+    public void testParallelMassEdit() throws Exception {
+        MassEditOperation op = new MassEditOperation(EngineConfig.reconstruct(ROWS_MODE),
+                "value", "grel:value", Arrays.asList(
+                        new Edit(Arrays.asList("v1", "v2"), false, false, "one or two"),
+                        new Edit(Collections.singletonList(""), true, false, "blank")));
+        assertSameChange(op);
+    }
+
+    @Test
+    public void testPartitionsShareTheFirstVisitorState() throws Exception {
+        int[] created = new int[1];
+        EngineDependentMassCellOperation op = new EngineDependentMassCellOperation(
+                EngineConfig.reconstruct(ROWS_MODE), "value", false) {
+            @Override
+            protected boolean isRowIndependent(Project project) {
+                return true;
+            }
+
+            @Override
+            protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, long historyEntryID) {
+                created[0]++;
+                return createVisitor(cellChanges);
+            }
+
+            private RowVisitor createVisitor(List<CellChange> cellChanges) {
+                return new PartitionableRowVisitor() {
+                    @Override
+                    public void start(Project project) {
+                    }
+
+                    @Override
+                    public boolean visit(Project project, int rowIndex, Row row) {
+                        Cell cell = row.getCell(1);
+                        cellChanges.add(new CellChange(rowIndex, 1, cell, new Cell("x", null)));
+                        return false;
+                    }
+
+                    @Override
+                    public void end(Project project) {
+                    }
+
+                    @Override
+                    public RowVisitor partition(List<CellChange> partitionChanges) {
+                        return createVisitor(partitionChanges);
+                    }
+                };
+            }
+
+            @Override
+            protected String createDescription(Column column, List<CellChange> cellChanges) {
+                return cellChanges.size() + " cells";
+            }
+        };
+
+        String parallel = runChange(op, true);
+        assertEquals(created[0], 1);
+        assertEquals(parallel, runChange(op, false));
+    }
+
+    @Test
+    public void testImpureExpressionsAreVisitedSequentially() throws Exception {
+        TextTransformOperation op = new TextTransformOperation(EngineConfig.reconstruct(ROWS_MODE),
+                "value", "grel:value + facetCount(value, 'value', 'value')", OnError.SetToBlank, false, 0);
+        assertFalse(isRowIndependent(op));
+    }
+}
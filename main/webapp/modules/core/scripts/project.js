@@ -596,11 +596,24 @@ function onLoad() {
       }
     }
 
+    var loadProgressTimer = window.setInterval(function() {
+      $.getJSON(
+        "command/core/get-project-load-progress?" + $.param({ project: theProject.id }), null,
+        function(data) {
+          if (data.loading && data.progress.rowCount > 0) {
+            $("#or-proj-starting").text($.i18n('core-project/loading-rows', data.progress.percent));
+          }
+        }
+      );
+    }, 1000);
+
     Refine.reinitializeProjectData(
       function() {
+        window.clearInterval(loadProgressTimer);
         initializeUI(uiState);
       },
       function() {
+        window.clearInterval(loadProgressTimer);
         $("#loading-message").hide();
       }
     );